@@ -33,6 +33,10 @@ import com.google.common.base.Objects;
  * <li>The idle delay is applied when the indexer performed to work.</li>
  * <li>The error delay is applied when the indexer threw an exception.</li>
  * </ul>
+ * Delays may be adaptive, if maximum idle or error delays greater than the base ones are provided.
+ * In that case the idle and error delays are doubled with each consecutive idle or failed cycle, up
+ * to the maximum, and reset after a successful one. Besides, the next cycle is run immediately
+ * while the indexer reports pending work (a target checkpoint different from the reached one).
  * @author Andres Rodriguez
  */
 @Immutable
@@ -45,6 +49,10 @@ public final class Delays implements Serializable {
 	private final long idle;
 	/** Error delay. */
 	private final long error;
+	/** Maximum idle delay. */
+	private final long maxIdle;
+	/** Maximum error delay. */
+	private final long maxError;
 
 	private static long checkNormal(long normal) {
 		checkArgument(normal >= 0, "The normal delay must be >= 0");
@@ -61,16 +69,28 @@ public final class Delays implements Serializable {
 		return error;
 	}
 
+	private static long checkMaxIdle(long maxIdle, long idle) {
+		checkArgument(maxIdle >= idle, "The maximum idle delay must be >= the idle delay");
+		return maxIdle;
+	}
+
+	private static long checkMaxError(long maxError, long error) {
+		checkArgument(maxError >= error, "The maximum error delay must be >= the error delay");
+		return maxError;
+	}
+
 	/** Constructor. */
-	private Delays(long normal, long idle, long error) {
+	private Delays(long normal, long idle, long error, long maxIdle, long maxError) {
 		this.normal = checkNormal(normal);
 		this.idle = checkIdle(idle);
 		this.error = checkError(error);
+		this.maxIdle = checkMaxIdle(maxIdle, idle);
+		this.maxError = checkMaxError(maxError, error);
 	}
 
 	/** Returns a constant delay specification. */
 	public static Delays constant(long delay) {
-		return new Delays(delay, delay, delay);
+		return new Delays(delay, delay, delay, delay, delay);
 	}
 
 	/**
@@ -81,7 +101,20 @@ public final class Delays implements Serializable {
 	 * @return The requested specification.
 	 */
 	public static Delays of(long normal, long idle, long error) {
-		return new Delays(normal, idle, error);
+		return new Delays(normal, idle, error, idle, error);
+	}
+
+	/**
+	 * Returns an adaptive delay specification.
+	 * @param normal Normal delay.
+	 * @param idle Base idle delay.
+	 * @param error Base error delay.
+	 * @param maxIdle Maximum idle delay. Must be >= the idle delay.
+	 * @param maxError Maximum error delay. Must be >= the error delay.
+	 * @return The requested specification.
+	 */
+	public static Delays adaptive(long normal, long idle, long error, long maxIdle, long maxError) {
+		return new Delays(normal, idle, error, maxIdle, maxError);
 	}
 
 	/** Returns the normal delay. */
@@ -94,23 +127,47 @@ public final class Delays implements Serializable {
 		if (normal == this.normal) {
 			return this;
 		}
-		return of(checkNormal(normal), this.idle, this.error);
+		return adaptive(checkNormal(normal), this.idle, this.error, this.maxIdle, this.maxError);
 	}
 
-	/** Returns a delay specification equal to this one but with the provided idle delay. */
+	/**
+	 * Returns a delay specification equal to this one but with the provided idle delay. If the
+	 * specification is not adaptive for idle cycles, the maximum idle delay is changed as well.
+	 */
 	public Delays setIdle(long idle) {
 		if (idle == this.idle) {
 			return this;
 		}
-		return of(this.normal, checkIdle(idle), this.error);
+		final long max = this.maxIdle > this.idle ? Math.max(this.maxIdle, idle) : idle;
+		return adaptive(this.normal, checkIdle(idle), this.error, max, this.maxError);
 	}
 
-	/** Returns a delay specification equal to this one but with the provided error delay. */
+	/**
+	 * Returns a delay specification equal to this one but with the provided error delay. If the
+	 * specification is not adaptive for errors, the maximum error delay is changed as well.
+	 */
 	public Delays setError(long error) {
 		if (error == this.error) {
 			return this;
 		}
-		return of(this.normal, this.idle, checkError(error));
+		final long max = this.maxError > this.error ? Math.max(this.maxError, error) : error;
+		return adaptive(this.normal, this.idle, checkError(error), this.maxIdle, max);
+	}
+
+	/** Returns a delay specification equal to this one but with the provided maximum idle delay. */
+	public Delays setMaxIdle(long maxIdle) {
+		if (maxIdle == this.maxIdle) {
+			return this;
+		}
+		return adaptive(this.normal, this.idle, this.error, checkMaxIdle(maxIdle, this.idle), this.maxError);
+	}
+
+	/** Returns a delay specification equal to this one but with the provided maximum error delay. */
+	public Delays setMaxError(long maxError) {
+		if (maxError == this.maxError) {
+			return this;
+		}
+		return adaptive(this.normal, this.idle, this.error, this.maxIdle, checkMaxError(maxError, this.error));
 	}
 
 	/** Returns the idle delay. */
@@ -123,9 +180,49 @@ public final class Delays implements Serializable {
 		return error;
 	}
 
+	/** Returns the maximum idle delay. */
+	public long getMaxIdle() {
+		return maxIdle;
+	}
+
+	/** Returns the maximum error delay. */
+	public long getMaxError() {
+		return maxError;
+	}
+
+	/** Returns whether the specification is adaptive. */
+	public boolean isAdaptive() {
+		return maxIdle > idle || maxError > error;
+	}
+
+	/** Returns the base delay doubled {@code n - 1} times, up to the provided maximum. */
+	private static long backoff(long base, long max, int n) {
+		long delay = base;
+		for (int i = 1; i < n && delay < max; i++) {
+			delay = delay > max / 2 ? max : Math.max(1L, delay * 2);
+		}
+		return Math.min(delay, max);
+	}
+
+	/**
+	 * Returns the delay to apply after a number of consecutive idle cycles.
+	 * @param n Number of consecutive idle cycles (including the last one).
+	 */
+	public long getIdle(int n) {
+		return backoff(idle, maxIdle, n);
+	}
+
+	/**
+	 * Returns the delay to apply after a number of consecutive failed cycles.
+	 * @param n Number of consecutive failed cycles (including the last one).
+	 */
+	public long getError(int n) {
+		return backoff(error, maxError, n);
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(normal, idle, error);
+		return Objects.hashCode(normal, idle, error, maxIdle, maxError);
 	}
 
 	@Override
@@ -135,13 +232,17 @@ public final class Delays implements Serializable {
 		}
 		if (obj instanceof Delays) {
 			Delays other = (Delays) obj;
-			return this.normal == other.normal && this.idle == other.idle && this.error == other.error;
+			return this.normal == other.normal && this.idle == other.idle && this.error == other.error
+					&& this.maxIdle == other.maxIdle && this.maxError == other.maxError;
 		}
 		return false;
 	}
 
 	@Override
 	public String toString() {
+		if (isAdaptive()) {
+			return String.format("Delays(%d, %d-%d, %d-%d)", normal, idle, maxIdle, error, maxError);
+		}
 		return String.format("Delays(%d, %d, %d)", normal, idle, error);
 	}
 
@@ -157,15 +258,22 @@ public final class Delays implements Serializable {
 		private final long idle;
 		/** Error delay. */
 		private final long error;
+		/** Maximum idle delay. */
+		private final long maxIdle;
+		/** Maximum error delay. */
+		private final long maxError;
 
 		public SerializationProxy(Delays d) {
 			this.normal = d.getNormal();
 			this.idle = d.getIdle();
 			this.error = d.getError();
+			this.maxIdle = d.getMaxIdle();
+			this.maxError = d.getMaxError();
 		}
 
 		private Object readResolve() {
-			return Delays.of(normal, idle, error);
+			// Forms without maximum delays are not adaptive
+			return Delays.adaptive(normal, idle, error, Math.max(idle, maxIdle), Math.max(error, maxError));
 		}
 	}
 
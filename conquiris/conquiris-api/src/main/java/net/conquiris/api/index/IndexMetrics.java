@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.api.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * Indexer service metrics, included in detailed reports. Metrics are identified by name and have a
+ * numeric value. Time values are expressed in ms.
+ * @author Andres Rodriguez
+ */
+@Immutable
+public final class IndexMetrics {
+	/** Number of merges performed. */
+	public static final String MERGES = "merges";
+	/** Time spent merging (ms). */
+	public static final String MERGE_TIME = "mergeTime";
+	/** Bytes written by merges. */
+	public static final String MERGE_BYTES = "mergeBytes";
+	/** Time merges have been paused by the IO throttle (ms). */
+	public static final String MERGE_THROTTLE_TIME = "mergeThrottleTime";
+	/** Current merge IO rate limit (MB/s). */
+	public static final String MERGE_RATE = "mergeRate";
+	/** Merges in progress. */
+	public static final String MERGES_RUNNING = "mergesRunning";
+	/** Documents added per second (rolling). */
+	public static final String ADDED_RATE = "addedPerSecond";
+	/** Documents updated per second (rolling). */
+	public static final String UPDATED_RATE = "updatedPerSecond";
+	/** Documents deleted per second (rolling). */
+	public static final String DELETED_RATE = "deletedPerSecond";
+	/** Number of indexing cycles run. */
+	public static final String CYCLES = "cycles";
+	/** Median indexing cycle duration (ms), over the recent cycles. */
+	public static final String CYCLE_TIME_P50 = "cycleTimeP50";
+	/** 90th percentile of the indexing cycle duration (ms), over the recent cycles. */
+	public static final String CYCLE_TIME_P90 = "cycleTimeP90";
+	/** 99th percentile of the indexing cycle duration (ms), over the recent cycles. */
+	public static final String CYCLE_TIME_P99 = "cycleTimeP99";
+	/** Number of commits performed. */
+	public static final String COMMITS = "commits";
+	/** Mean commit latency (ms), over the recent commits. */
+	public static final String COMMIT_LATENCY = "commitLatency";
+	/** Number of segment flushes. */
+	public static final String FLUSHES = "flushes";
+	/** RAM used by the index writer buffer at the end of the last cycle (bytes). */
+	public static final String RAM_BUFFER = "ramBuffer";
+	/** Time since the last commit (ms). */
+	public static final String TIME_SINCE_COMMIT = "timeSinceCommit";
+	/** Consecutive failed indexing cycles. */
+	public static final String CONSECUTIVE_ERRORS = "consecutiveErrors";
+
+	/** Empty metrics. */
+	private static final IndexMetrics EMPTY = new IndexMetrics(ImmutableSortedMap.<String, Double> of());
+
+	/** Metric values. */
+	private final ImmutableSortedMap<String, Double> values;
+
+	/** Returns the empty metrics object. */
+	public static IndexMetrics empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Creates a new metrics object.
+	 * @param values Metric values. Names must be non-empty and values must be non-null.
+	 * @return The created object.
+	 */
+	public static IndexMetrics of(Map<String, ? extends Number> values) {
+		checkNotNull(values, "The metric values must be provided");
+		final Builder builder = builder();
+		for (Entry<String, ? extends Number> e : values.entrySet()) {
+			builder.add(e.getKey(), checkNotNull(e.getValue(), "Null metric value").doubleValue());
+		}
+		return builder.build();
+	}
+
+	/** Creates a new builder. */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/** Constructor. */
+	private IndexMetrics(ImmutableSortedMap<String, Double> values) {
+		this.values = values;
+	}
+
+	/** Returns whether there are no metrics. */
+	public boolean isEmpty() {
+		return values.isEmpty();
+	}
+
+	/** Returns the value of a metric, or {@code null} if not included. */
+	@Nullable
+	public Double get(String name) {
+		return values.get(name);
+	}
+
+	/** Returns the metric values, sorted by name. */
+	public ImmutableSortedMap<String, Double> asMap() {
+		return values;
+	}
+
+	@Override
+	public int hashCode() {
+		return values.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof IndexMetrics) {
+			return values.equals(((IndexMetrics) obj).values);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+
+	/** Index metrics builder. */
+	public static final class Builder {
+		/** Values. */
+		private final ImmutableSortedMap.Builder<String, Double> values = ImmutableSortedMap.naturalOrder();
+
+		/** Constructor. */
+		private Builder() {
+		}
+
+		/**
+		 * Adds a metric.
+		 * @param name Metric name.
+		 * @param value Metric value.
+		 * @return This builder for method chaining.
+		 */
+		public Builder add(String name, double value) {
+			checkNotNull(name, "The metric name must be provided");
+			checkArgument(name.length() > 0, "The metric name must not be empty");
+			values.put(name, value);
+			return this;
+		}
+
+		/**
+		 * Adds every metric of the provided object.
+		 * @param metrics Metrics to add.
+		 * @return This builder for method chaining.
+		 */
+		public Builder addAll(IndexMetrics metrics) {
+			checkNotNull(metrics, "The metrics to add must be provided");
+			values.putAll(metrics.values);
+			return this;
+		}
+
+		/** Builds the metrics object. */
+		public IndexMetrics build() {
+			final ImmutableSortedMap<String, Double> map = values.build();
+			return map.isEmpty() ? EMPTY : new IndexMetrics(map);
+		}
+	}
+}
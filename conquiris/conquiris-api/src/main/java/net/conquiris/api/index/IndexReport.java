@@ -44,6 +44,8 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 	private final Optional<Delays> delays;
 	/** Index info. Not included in basic reports. */
 	private final Optional<IndexInfo> info;
+	/** Service metrics. Only included in detailed reports. */
+	private final Optional<IndexMetrics> metrics;
 
 	/**
 	 * Creates a new basic report.
@@ -53,7 +55,7 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 	 * @return The created report.
 	 */
 	public static IndexReport basic(boolean started, boolean active, IndexStatus status) {
-		return new IndexReport(IndexReportLevel.BASIC, started, active, status, null, null);
+		return new IndexReport(IndexReportLevel.BASIC, started, active, status, null, null, null);
 	}
 
 	/**
@@ -66,7 +68,7 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 	 * @return The created report.
 	 */
 	public static IndexReport normal(boolean started, boolean active, IndexStatus status, Delays delays, IndexInfo info) {
-		return new IndexReport(IndexReportLevel.NORMAL, started, active, status, delays, info);
+		return new IndexReport(IndexReportLevel.NORMAL, started, active, status, delays, info, null);
 	}
 
 	/**
@@ -79,16 +81,36 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 	 * @return The created report.
 	 */
 	public static IndexReport detailed(boolean started, boolean active, IndexStatus status, Delays delays, IndexInfo info) {
-		return new IndexReport(IndexReportLevel.DETAILED, started, active, status, delays, info);
+		return detailed(started, active, status, delays, info, IndexMetrics.empty());
+	}
+
+	/**
+	 * Creates a new detailed report.
+	 * @param started Whether the index is started.
+	 * @param active Whether the index is active. If started is false it will be set to false.
+	 * @param status Last known index status.
+	 * @param delays Index delay configuration.
+	 * @param info Index info.
+	 * @param metrics Service metrics.
+	 * @return The created report.
+	 */
+	public static IndexReport detailed(boolean started, boolean active, IndexStatus status, Delays delays,
+			IndexInfo info, IndexMetrics metrics) {
+		return new IndexReport(IndexReportLevel.DETAILED, started, active, status, delays, info, metrics);
 	}
 
 	/** Constructor. */
 	IndexReport(IndexReportLevel level, boolean started, boolean active, IndexStatus status, @Nullable Delays delays,
-			@Nullable IndexInfo info) {
+			@Nullable IndexInfo info, @Nullable IndexMetrics metrics) {
 		this.level = checkNotNull(level, "The index report level must be provided");
 		this.status = checkNotNull(status, "The index status must be provided");
 		this.started = started;
 		this.active = active && started;
+		if (level == IndexReportLevel.DETAILED) {
+			this.metrics = Optional.of(checkNotNull(metrics, "The service metrics must be provided"));
+		} else {
+			this.metrics = Optional.absent();
+		}
 		if (level == IndexReportLevel.BASIC) {
 			this.delays = Optional.absent();
 			this.info = Optional.absent();
@@ -143,9 +165,14 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 		return info;
 	}
 
+	/** Returns the service metrics. Only present in detailed reports. */
+	public Optional<IndexMetrics> getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(level, started, isIndexActive(), status, delays, info);
+		return Objects.hashCode(level, started, isIndexActive(), status, delays, info, metrics);
 	}
 
 	@Override
@@ -156,7 +183,8 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 		if (obj instanceof IndexReport) {
 			IndexReport other = (IndexReport) obj;
 			return this.level == other.level && this.started == other.started && this.active == other.active
-					&& this.status == other.status && Objects.equal(delays, other.delays) && Objects.equal(info, other.info);
+					&& this.status == other.status && Objects.equal(delays, other.delays) && Objects.equal(info, other.info)
+					&& Objects.equal(metrics, other.metrics);
 		}
 		return false;
 	}
@@ -168,6 +196,9 @@ public final class IndexReport implements IndexStatusProperty, IndexStartedFlag,
 			h.add("delays", delays.get());
 			h.add("info", info.get());
 		}
+		if (level == IndexReportLevel.DETAILED) {
+			h.add("metrics", metrics.get());
+		}
 		return h.toString();
 	}
 
@@ -30,7 +30,7 @@ public final class IndexerActivationPolicies {
 		return ConstantPolicies.ACTIVE;
 	}
 
-	/** Returns an always active policy. */
+	/** Returns an always inactive policy. */
 	public static IndexerActivationPolicy alwaysInactive() {
 		return ConstantPolicies.INACTIVE;
 	}
@@ -50,7 +50,7 @@ public final class IndexerActivationPolicies {
 		INACTIVE {
 			@Override
 			public boolean isActive() {
-				return true;
+				return false;
 			}
 
 			@Override
@@ -52,4 +52,11 @@ public interface IndexerService {
 	 * the activation policy is disabled. This operation is asynchronous.
 	 */
 	void reindex();
+
+	/**
+	 * Requests an indexing cycle to be run as soon as possible, instead of waiting for the scheduled
+	 * delay. Concurrent requests are coalesced into a single cycle. It is a no-op if the service is
+	 * stopped. This operation is asynchronous.
+	 */
+	void trigger();
 }
@@ -32,4 +32,7 @@ public interface LocalIndexerService extends IndexerService, IndexStatusProperty
 
 	/** Returns the current delay specification. */
 	Delays getDelays();
+
+	/** Returns the current service metrics. May be empty if the service collects no metrics. */
+	IndexMetrics getIndexMetrics();
 }
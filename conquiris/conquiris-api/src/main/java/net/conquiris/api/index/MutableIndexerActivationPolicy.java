@@ -50,7 +50,7 @@ public final class MutableIndexerActivationPolicy implements IndexerActivationPo
 	 * @return The requested policy.
 	 */
 	public static MutableIndexerActivationPolicy inactive() {
-		return create(true);
+		return create(false);
 	}
 
 	/**
@@ -82,4 +82,12 @@ public final class MutableIndexerActivationPolicy implements IndexerActivationPo
 	public boolean isActive() {
 		return active;
 	}
+
+	/**
+	 * Sets the current value.
+	 * @param active New value.
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
 }
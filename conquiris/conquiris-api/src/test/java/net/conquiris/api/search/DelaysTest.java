@@ -15,6 +15,9 @@
  */
 package net.conquiris.api.search;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import net.conquiris.api.index.Delays;
 import net.derquinse.common.test.EqualityTests;
 import net.derquinse.common.test.HessianSerializabilityTests;
@@ -30,6 +33,7 @@ public class DelaysTest {
 	private static final Delays ZERO = Delays.constant(0L);
 	private static final Delays ONE = Delays.constant(1L);
 	private static final Delays OTHER = Delays.of(1L, 2L, 3L);
+	private static final Delays ADAPTIVE = Delays.adaptive(1L, 2L, 3L, 20L, 30L);
 
 	/** Equality. */
 	@Test
@@ -37,6 +41,26 @@ public class DelaysTest {
 		EqualityTests.many(ZERO, ZERO.setNormal(0L), ZERO.setIdle(0L), ZERO.setError(0L), Delays.of(0, 0, 0));
 		EqualityTests.many(ONE, ONE.setNormal(1L), ONE.setIdle(1L), ONE.setError(1L), Delays.of(1, 1, 1));
 		EqualityTests.many(OTHER, ZERO.setNormal(1L).setIdle(2L).setError(3L), Delays.of(1, 2, 3));
+		EqualityTests.many(ADAPTIVE, OTHER.setMaxIdle(20L).setMaxError(30L), Delays.adaptive(1, 2, 3, 20, 30));
+	}
+
+	/** Adaptive delays. */
+	@Test
+	public void adaptive() {
+		assertFalse(OTHER.isAdaptive());
+		assertTrue(ADAPTIVE.isAdaptive());
+		assertEquals(OTHER.getIdle(5), 2L);
+		assertEquals(OTHER.getError(5), 3L);
+		assertEquals(ADAPTIVE.getIdle(1), 2L);
+		assertEquals(ADAPTIVE.getIdle(2), 4L);
+		assertEquals(ADAPTIVE.getIdle(4), 16L);
+		assertEquals(ADAPTIVE.getIdle(5), 20L);
+		assertEquals(ADAPTIVE.getIdle(Integer.MAX_VALUE), 20L);
+		assertEquals(ADAPTIVE.getError(1), 3L);
+		assertEquals(ADAPTIVE.getError(4), 24L);
+		assertEquals(ADAPTIVE.getError(5), 30L);
+		assertEquals(ADAPTIVE.setIdle(25L).getMaxIdle(), 25L);
+		assertEquals(OTHER.setIdle(25L).getMaxIdle(), 25L);
 	}
 
 	/** Serializability. */
@@ -48,5 +72,7 @@ public class DelaysTest {
 		HessianSerializabilityTests.both(ONE);
 		SerializabilityTests.check(OTHER);
 		HessianSerializabilityTests.both(OTHER);
+		SerializabilityTests.check(ADAPTIVE);
+		HessianSerializabilityTests.both(ADAPTIVE);
 	}
 }
@@ -15,6 +15,8 @@
  */
 package net.conquiris.api.index;
 
+import java.util.Map.Entry;
+
 import javax.annotation.Nullable;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -114,4 +116,64 @@ public interface DocumentWriter {
 	 */
 	DocumentWriter update(@Nullable Term term, @Nullable Document document, @Nullable Analyzer analyzer)
 			throws InterruptedException, IndexException;
+
+	/**
+	 * Adds a batch of documents. The service default analyzer will be used. Availability checks and
+	 * locking are performed once for the whole batch.
+	 * @param documents Documents to add. If {@code null} the method is a no-op. Null documents are
+	 *          ignored.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter addAll(@Nullable Iterable<? extends Document> documents) throws InterruptedException, IndexException;
+
+	/**
+	 * Adds a batch of documents. Availability checks and locking are performed once for the whole
+	 * batch.
+	 * @param documents Documents to add. If {@code null} the method is a no-op. Null documents are
+	 *          ignored.
+	 * @param analyzer Analyzer to use. If {@code null} the service default analyzer will be used.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter addAll(@Nullable Iterable<? extends Document> documents, @Nullable Analyzer analyzer)
+			throws InterruptedException, IndexException;
+
+	/**
+	 * Deletes the documents matching any of the provided terms in a single operation.
+	 * @param terms Terms to match. If none are provided the method is a no-op. Null terms are
+	 *          ignored.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter deleteTerms(Term... terms) throws InterruptedException, IndexException;
+
+	/**
+	 * Deletes the documents matching any of the provided terms in a single operation.
+	 * @param terms Terms to match. If {@code null} the method is a no-op. Null terms are ignored.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter deleteTerms(@Nullable Iterable<? extends Term> terms) throws InterruptedException, IndexException;
+
+	/**
+	 * Performs a batch of updates. For each entry the documents matching the key term are atomically
+	 * (with respect to index flushing) deleted and the value document added. The service default
+	 * analyzer will be used. Availability checks and locking are performed once for the whole batch.
+	 * @param updates Updates to perform. If {@code null} the method is a no-op. Entries with a
+	 *          {@code null} document are ignored and entries with a {@code null} term just add the
+	 *          document.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter updateAll(@Nullable Iterable<? extends Entry<Term, Document>> updates) throws InterruptedException,
+			IndexException;
+
+	/**
+	 * Performs a batch of updates. For each entry the documents matching the key term are atomically
+	 * (with respect to index flushing) deleted and the value document added. Availability checks and
+	 * locking are performed once for the whole batch.
+	 * @param updates Updates to perform. If {@code null} the method is a no-op. Entries with a
+	 *          {@code null} document are ignored and entries with a {@code null} term just add the
+	 *          document.
+	 * @param analyzer Analyzer to use. If {@code null} the service default analyzer will be used.
+	 * @return This writer for method chaining.
+	 */
+	DocumentWriter updateAll(@Nullable Iterable<? extends Entry<Term, Document>> updates, @Nullable Analyzer analyzer)
+			throws InterruptedException, IndexException;
 }
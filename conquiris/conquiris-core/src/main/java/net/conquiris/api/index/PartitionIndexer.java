@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.api.index;
+
+import javax.annotation.Nullable;
+
+/**
+ * Interface for partition indexers, used in resumable partitioned indexing.
+ * @author Andres Rodriguez
+ * @see Writer#runPartitions(java.util.concurrent.Executor, int, long, java.util.concurrent.TimeUnit,
+ *      String, Iterable, PartitionIndexer)
+ */
+public interface PartitionIndexer {
+	/**
+	 * Performs a step of the indexing of a partition. Steps should be bounded (e.g. by a maximum
+	 * number of records) so that the progress is committed regularly. Implementations are called
+	 * concurrently for different partitions and MUST BE thread-safe.
+	 * @param writer Writer to use.
+	 * @param partition Partition id.
+	 * @param checkpoint Partition checkpoint returned by the last step or {@code null} if the
+	 *          partition has not been started yet.
+	 * @return The new partition checkpoint, which must not be empty, or {@code null} if the partition
+	 *         is finished.
+	 * @throws IndexException if there's a problem with the index.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	@Nullable
+	String index(DocumentWriter writer, String partition, @Nullable String checkpoint) throws InterruptedException,
+			IndexException;
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.api.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import net.derquinse.common.base.NotInstantiable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Partitions support class. Splits numeric key spaces in ranges identified by strings of the form
+ * {@code lower:upper} (both inclusive).
+ * @author Andres Rodriguez
+ */
+public final class Partitions extends NotInstantiable {
+	private Partitions() {
+	}
+
+	/** Range bounds separator. */
+	private static final char SEPARATOR = ':';
+
+	/**
+	 * Splits a key range in a number of partitions of (approximately) the same size.
+	 * @param min Minimum key (inclusive).
+	 * @param max Maximum key (inclusive).
+	 * @param n Maximum number of partitions.
+	 * @return The partition ids, in key order.
+	 * @throws IllegalArgumentException if max &lt; min or n &lt; 1.
+	 */
+	public static List<String> ofLongRange(long min, long max, int n) {
+		checkArgument(max >= min, "The maximum key must be >= the minimum key");
+		checkArgument(n > 0, "The number of partitions must be > 0");
+		// Big integers are used so that the whole long domain is supported
+		final BigInteger count = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+		final BigInteger[] qr = count.divideAndRemainder(BigInteger.valueOf(n));
+		final int r = qr[1].intValue();
+		final ImmutableList.Builder<String> b = ImmutableList.builder();
+		BigInteger lower = BigInteger.valueOf(min);
+		for (int i = 0; i < n; i++) {
+			final BigInteger size = i < r ? qr[0].add(BigInteger.ONE) : qr[0];
+			if (size.signum() == 0) {
+				break;
+			}
+			final BigInteger upper = lower.add(size).subtract(BigInteger.ONE);
+			b.add(of(lower.longValue(), upper.longValue()));
+			lower = upper.add(BigInteger.ONE);
+		}
+		return b.build();
+	}
+
+	/** Returns the id of the partition containing the keys between lower and upper (inclusive). */
+	public static String of(long lower, long upper) {
+		checkArgument(upper >= lower, "The upper bound must be >= the lower bound");
+		return Long.toString(lower) + SEPARATOR + Long.toString(upper);
+	}
+
+	private static int separator(String partition) {
+		checkNotNull(partition, "The partition id must be provided");
+		final int i = partition.indexOf(SEPARATOR, 1);
+		checkArgument(i > 0, "Invalid partition id [%s]", partition);
+		return i;
+	}
+
+	/**
+	 * Returns the lower bound (inclusive) of a partition.
+	 * @throws IllegalArgumentException if the id is not valid.
+	 */
+	public static long lower(String partition) {
+		return Long.parseLong(partition.substring(0, separator(partition)));
+	}
+
+	/**
+	 * Returns the upper bound (inclusive) of a partition.
+	 * @throws IllegalArgumentException if the id is not valid.
+	 */
+	public static long upper(String partition) {
+		return Long.parseLong(partition.substring(separator(partition) + 1));
+	}
+}
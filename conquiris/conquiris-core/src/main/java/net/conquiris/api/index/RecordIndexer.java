@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.api.index;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+
+/**
+ * Interface for the record indexers used in document building pipelines. Implementations are called
+ * concurrently from several worker threads and MUST BE thread-safe.
+ * @author Andres Rodriguez
+ * @param <T> Source record type.
+ */
+public interface RecordIndexer<T> {
+	/**
+	 * Returns the key of a record. Records with the same key are written in the same order they were
+	 * provided by the source. If the key is not {@code null} the documents matching it are replaced.
+	 * This method is called from the source thread so it should be cheap.
+	 * @param record Source record.
+	 * @return The record key or {@code null} if the record document must just be added.
+	 */
+	@Nullable
+	Term getKey(T record);
+
+	/**
+	 * Builds the document for a record. This method is called from the worker threads.
+	 * @param record Source record.
+	 * @return The document to write or {@code null} if the documents matching the record key must be
+	 *         deleted.
+	 * @throws IndexException if there's a problem with the index.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	@Nullable
+	Document getDocument(T record) throws InterruptedException, IndexException;
+}
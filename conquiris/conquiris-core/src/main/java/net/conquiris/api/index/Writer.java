@@ -15,9 +15,12 @@
  */
 package net.conquiris.api.index;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -178,6 +181,66 @@ public interface Writer extends DocumentWriter {
 	Writer update(@Nullable Term term, @Nullable Document document, @Nullable Analyzer analyzer)
 			throws InterruptedException, IndexException;
 
+	/**
+	 * Adds a batch of documents. The service default analyzer will be used. Availability checks and
+	 * locking are performed once for the whole batch.
+	 * @param documents Documents to add. If {@code null} the method is a no-op. Null documents are
+	 *          ignored.
+	 * @return This writer for method chaining.
+	 */
+	Writer addAll(@Nullable Iterable<? extends Document> documents) throws InterruptedException, IndexException;
+
+	/**
+	 * Adds a batch of documents. Availability checks and locking are performed once for the whole
+	 * batch.
+	 * @param documents Documents to add. If {@code null} the method is a no-op. Null documents are
+	 *          ignored.
+	 * @param analyzer Analyzer to use. If {@code null} the service default analyzer will be used.
+	 * @return This writer for method chaining.
+	 */
+	Writer addAll(@Nullable Iterable<? extends Document> documents, @Nullable Analyzer analyzer)
+			throws InterruptedException, IndexException;
+
+	/**
+	 * Deletes the documents matching any of the provided terms in a single operation.
+	 * @param terms Terms to match. If none are provided the method is a no-op. Null terms are
+	 *          ignored.
+	 * @return This writer for method chaining.
+	 */
+	Writer deleteTerms(Term... terms) throws InterruptedException, IndexException;
+
+	/**
+	 * Deletes the documents matching any of the provided terms in a single operation.
+	 * @param terms Terms to match. If {@code null} the method is a no-op. Null terms are ignored.
+	 * @return This writer for method chaining.
+	 */
+	Writer deleteTerms(@Nullable Iterable<? extends Term> terms) throws InterruptedException, IndexException;
+
+	/**
+	 * Performs a batch of updates. For each entry the documents matching the key term are atomically
+	 * (with respect to index flushing) deleted and the value document added. The service default
+	 * analyzer will be used. Availability checks and locking are performed once for the whole batch.
+	 * @param updates Updates to perform. If {@code null} the method is a no-op. Entries with a
+	 *          {@code null} document are ignored and entries with a {@code null} term just add the
+	 *          document.
+	 * @return This writer for method chaining.
+	 */
+	Writer updateAll(@Nullable Iterable<? extends Entry<Term, Document>> updates) throws InterruptedException,
+			IndexException;
+
+	/**
+	 * Performs a batch of updates. For each entry the documents matching the key term are atomically
+	 * (with respect to index flushing) deleted and the value document added. Availability checks and
+	 * locking are performed once for the whole batch.
+	 * @param updates Updates to perform. If {@code null} the method is a no-op. Entries with a
+	 *          {@code null} document are ignored and entries with a {@code null} term just add the
+	 *          document.
+	 * @param analyzer Analyzer to use. If {@code null} the service default analyzer will be used.
+	 * @return This writer for method chaining.
+	 */
+	Writer updateAll(@Nullable Iterable<? extends Entry<Term, Document>> updates, @Nullable Analyzer analyzer)
+			throws InterruptedException, IndexException;
+
 	/**
 	 * Runs a collection of subindexers using the provided executor, waiting for them to finish.
 	 * @param executor Executor to use.
@@ -187,4 +250,63 @@ public interface Writer extends DocumentWriter {
 	Writer runSubindexers(Executor executor, Iterable<? extends Subindexer> subindexers) throws InterruptedException,
 			IndexException;
 
+	/**
+	 * Runs a parallel document building pipeline, waiting for every record read from the source to be
+	 * written. The source is read in the calling thread and the records are queued to a number of
+	 * workers that build and write the documents. Records with the same key are written in source
+	 * order.
+	 * @param executor Executor to use. It must be able to run all the workers concurrently.
+	 * @param workers Number of workers.
+	 * @param capacity Maximum number of records waiting to be processed.
+	 * @param source Record source. Null records are ignored.
+	 * @param indexer Record indexer used to compute the keys and build the documents.
+	 * @return This writer for method chaining.
+	 * @throws IllegalArgumentException if the number of workers or the capacity are not positive.
+	 * @throws IllegalStateException if the executor doesn't start all the workers.
+	 */
+	<T> Writer runPipeline(Executor executor, int workers, int capacity, Iterator<? extends T> source,
+			RecordIndexer<? super T> indexer) throws InterruptedException, IndexException;
+
+	/**
+	 * Runs a parallel document building pipeline and, once every record read from the source has been
+	 * successfully written, sets the new checkpoint.
+	 * @param executor Executor to use. It must be able to run all the workers concurrently.
+	 * @param workers Number of workers.
+	 * @param capacity Maximum number of records waiting to be processed.
+	 * @param source Record source. Null records are ignored.
+	 * @param indexer Record indexer used to compute the keys and build the documents.
+	 * @param checkpoint Checkpoint to set once the pipeline has finished.
+	 * @return This writer for method chaining.
+	 * @throws IllegalArgumentException if the number of workers or the capacity are not positive.
+	 * @throws IllegalStateException if the executor doesn't start all the workers.
+	 * @see #runPipeline(Executor, int, int, Iterator, RecordIndexer)
+	 * @see #setCheckpoint(String)
+	 */
+	<T> Writer runPipeline(Executor executor, int workers, int capacity, Iterator<? extends T> source,
+			RecordIndexer<? super T> indexer, @Nullable String checkpoint) throws InterruptedException, IndexException;
+
+	/**
+	 * Runs steps of a resumable partitioned indexing (e.g. a full reindex split in key ranges). The
+	 * progress of each partition is stored in the commit property {@code name.partition}, so once
+	 * committed, later calls (even after a restart) only run the unfinished partitions from their last
+	 * checkpoint. Up to {@code parallelism} tasks are submitted to the executor, which take steps of
+	 * the unfinished partitions from a shared queue until every partition is finished or the time
+	 * budget is exhausted (running steps are always completed). Once every partition is finished the
+	 * progress properties are removed in this writer, so the completion should be recorded in the same
+	 * commit (e.g. with the checkpoint) and a later call with the same name starts a new indexing.
+	 * @param executor Executor to use.
+	 * @param parallelism Maximum number of concurrent tasks.
+	 * @param time Time budget for this call.
+	 * @param unit Time budget unit.
+	 * @param name Partitioned indexing name, used as the progress properties prefix.
+	 * @param partitions Partition ids.
+	 * @param indexer Partition indexer.
+	 * @return True if every partition is finished.
+	 * @throws IllegalArgumentException if the parallelism or the time budget are not positive or the
+	 *           name is a reserved key.
+	 * @see Partitions
+	 */
+	boolean runPartitions(Executor executor, int parallelism, long time, TimeUnit unit, String name,
+			Iterable<String> partitions, PartitionIndexer indexer) throws InterruptedException, IndexException;
+
 }
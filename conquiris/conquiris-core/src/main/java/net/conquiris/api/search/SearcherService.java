@@ -18,10 +18,11 @@ package net.conquiris.api.search;
 import com.google.common.base.Function;
 
 /**
- * Conquiris Searcher Service. Each independent call may used a different lucene searcher.
+ * Conquiris Searcher Service. Each independent call may used a different lucene searcher. Services
+ * track their own load.
  * @author Andres Rodriguez
  */
-public interface SearcherService extends Searcher {
+public interface SearcherService extends Searcher, SearchLoad {
 	/**
 	 * Perform a personalized and potentially compound query. The searcher provided to the query
 	 * performs every operation using a single lucene searcher is guaranteed to be open only during
@@ -23,6 +23,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 
 import net.conquiris.api.index.Delays;
+import net.conquiris.api.index.IndexMetrics;
 import net.conquiris.api.index.IndexReport;
 import net.conquiris.api.index.IndexReportLevel;
 import net.conquiris.api.index.IndexerActivationPolicy;
@@ -45,6 +46,8 @@ public abstract class AbstractLocalIndexerService implements LocalIndexerService
 	private volatile Delays delays = DEFAULT_DELAYS;
 	/** Activation policy. */
 	private volatile IndexerActivationPolicy activationPolicy = alwaysActive();
+	/** Activation state found by the last check. */
+	private volatile boolean lastActive = false;
 	/** Service name. */
 	private volatile String name = null;
 	/** Logger to use. */
@@ -65,16 +68,26 @@ public abstract class AbstractLocalIndexerService implements LocalIndexerService
 	public final IndexReport getIndexReport(IndexReportLevel level) {
 		switch (checkNotNull(level, "The index report level must be provided")) {
 		case BASIC:
-			return IndexReport.basic(isIndexStarted(), isIndexActive(), getIndexStatus());
+			return IndexReport.basic(isIndexStarted(), wasIndexActive(), getIndexStatus());
 		case NORMAL:
-			return IndexReport.normal(isIndexStarted(), isIndexActive(), getIndexStatus(), getDelays(), getIndexInfo());
+			return IndexReport.normal(isIndexStarted(), wasIndexActive(), getIndexStatus(), getDelays(), getIndexInfo());
 		case DETAILED:
-			return IndexReport.detailed(isIndexStarted(), isIndexActive(), getIndexStatus(), getDelays(), getIndexInfo());
+			return IndexReport.detailed(isIndexStarted(), wasIndexActive(), getIndexStatus(), getDelays(), getIndexInfo(),
+					getIndexMetrics());
 		default:
 			throw new AssertionError(); // should not happen
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.LocalIndexerService#getIndexMetrics()
+	 */
+	@Override
+	public IndexMetrics getIndexMetrics() {
+		return IndexMetrics.empty();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.conquiris.api.index.LocalIndexerService#getDelays()
@@ -98,16 +111,44 @@ public abstract class AbstractLocalIndexerService implements LocalIndexerService
 	 */
 	@Override
 	public final boolean isIndexActive() {
+		boolean active = false;
 		try {
-			return activationPolicy.isActive() && isIndexStarted();
+			active = isIndexStarted() && activationPolicy.isActive();
 		} catch (RuntimeException e) {
 			log().error(e, "Unable to get current activation state");
 		}
-		return false;
+		lastActive = active;
+		return active;
+	}
+
+	/**
+	 * Returns the activation state found by the last check, without checking the activation policy
+	 * again. Used by reports, so that polling them never attempts to obtain the activation (e.g., a
+	 * leader lock).
+	 */
+	protected final boolean wasIndexActive() {
+		return lastActive && isIndexStarted();
+	}
+
+	/**
+	 * Releases the activation policy, if it is releasable. Called when the service is stopped, so that
+	 * another process can become active.
+	 */
+	protected final void releaseActivationPolicy() {
+		lastActive = false;
+		final IndexerActivationPolicy policy = activationPolicy;
+		if (policy instanceof ReleasableActivationPolicy) {
+			try {
+				((ReleasableActivationPolicy) policy).release();
+			} catch (RuntimeException e) {
+				log().error(e, "Unable to release the activation policy");
+			}
+		}
 	}
 
 	/**
-	 * Sets the activation policy.
+	 * Sets the activation policy. If the policy is releasable it is released when the service is
+	 * stopped.
 	 * @param activationPolicy Policy to use. If {@code null} an always active policy will be used.
 	 */
 	public void setActivationPolicy(@Nullable IndexerActivationPolicy activationPolicy) {
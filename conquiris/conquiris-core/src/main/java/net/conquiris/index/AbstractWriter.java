@@ -17,14 +17,24 @@ package net.conquiris.index;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 import net.conquiris.api.index.IndexException;
 import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.PartitionIndexer;
+import net.conquiris.api.index.RecordIndexer;
 import net.conquiris.api.index.Writer;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Abstract writer implementation. Includes the convenience methods.
  * @author Andres Rodriguez.
@@ -114,4 +124,73 @@ abstract class AbstractWriter implements Writer {
 		return this;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#addAll(java.lang.Iterable)
+	 */
+	@Override
+	public final Writer addAll(Iterable<? extends Document> documents) throws InterruptedException, IndexException {
+		return addAll(documents, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#deleteTerms(java.lang.Iterable)
+	 */
+	@Override
+	public final Writer deleteTerms(Iterable<? extends Term> terms) throws InterruptedException, IndexException {
+		return deleteTerms(terms == null ? new Term[0] : Iterables.toArray(terms, Term.class));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#updateAll(java.lang.Iterable)
+	 */
+	@Override
+	public final Writer updateAll(Iterable<? extends Entry<Term, Document>> updates) throws InterruptedException,
+			IndexException {
+		return updateAll(updates, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#runPipeline(java.util.concurrent.Executor, int, int,
+	 * java.util.Iterator, net.conquiris.api.index.RecordIndexer)
+	 */
+	@Override
+	public final <T> Writer runPipeline(Executor executor, int workers, int capacity, Iterator<? extends T> source,
+			RecordIndexer<? super T> indexer) throws InterruptedException, IndexException {
+		final IndexPipeline<T> pipeline = new IndexPipeline<T>(this, executor, workers, capacity, indexer);
+		if (ensureAvailable()) {
+			pipeline.run(source);
+		}
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#runPipeline(java.util.concurrent.Executor, int, int,
+	 * java.util.Iterator, net.conquiris.api.index.RecordIndexer, java.lang.String)
+	 */
+	@Override
+	public final <T> Writer runPipeline(Executor executor, int workers, int capacity, Iterator<? extends T> source,
+			RecordIndexer<? super T> indexer, String checkpoint) throws InterruptedException, IndexException {
+		runPipeline(executor, workers, capacity, source, indexer);
+		return setCheckpoint(checkpoint);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#runPartitions(java.util.concurrent.Executor, int, long,
+	 * java.util.concurrent.TimeUnit, java.lang.String, java.lang.Iterable,
+	 * net.conquiris.api.index.PartitionIndexer)
+	 */
+	@Override
+	public final boolean runPartitions(Executor executor, int parallelism, long time, TimeUnit unit, String name,
+			Iterable<String> partitions, PartitionIndexer indexer) throws InterruptedException, IndexException {
+		checkKey(PartitionRunner.key(checkNotNull(name, "The partitioned indexing name must be provided"), ""));
+		final PartitionRunner runner = new PartitionRunner(this, name, indexer, time, unit);
+		return ensureAvailable() && runner.run(executor, parallelism, partitions);
+	}
+
 }
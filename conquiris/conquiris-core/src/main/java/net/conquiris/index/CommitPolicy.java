@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Index commit policy. Committing makes the changes durable but requires syncing the index files,
+ * so an indexer service may defer the commit of an indexing cycle until any of the enabled
+ * thresholds is reached: a number of cycles with changes, a number of document operations, a
+ * number of bytes written by the index writer (flushed or buffered) or a maximum interval since the
+ * last commit. The checkpoint recorded in
+ * the commit data only advances when an actual commit is performed.
+ * @author Andres Rodriguez
+ */
+@Immutable
+public final class CommitPolicy {
+	/** Policy committing every cycle with changes. */
+	private static final CommitPolicy ALWAYS = new CommitPolicy(1, 0L, 0L, 0L);
+
+	/** Cycles with changes after which a commit is performed (disabled if <= 0). */
+	private final int cycles;
+	/** Document operations after which a commit is performed (disabled if <= 0). */
+	private final long documents;
+	/** Bytes written after which a commit is performed (disabled if <= 0). */
+	private final long bytes;
+	/** Maximum interval (ms) between commits (disabled if <= 0). */
+	private final long interval;
+
+	/** Returns the policy committing every cycle with changes. */
+	public static CommitPolicy always() {
+		return ALWAYS;
+	}
+
+	/**
+	 * Creates a new policy. A commit is performed when any of the enabled thresholds is reached.
+	 * @param cycles Cycles with changes after which a commit is performed (disabled if <= 0).
+	 * @param documents Document operations after which a commit is performed (disabled if <= 0).
+	 * @param bytes Bytes written by the index writer since the last commit, both flushed and buffered,
+	 *          after which a commit is performed (disabled if <= 0). Flushes of the RAM buffer don't
+	 *          reset the count, so it may be larger than the buffer size.
+	 * @param interval Maximum interval between commits (disabled if <= 0).
+	 * @param unit Interval unit.
+	 * @return The requested policy.
+	 * @throws IllegalArgumentException if no threshold is enabled.
+	 */
+	public static CommitPolicy of(int cycles, long documents, long bytes, long interval, TimeUnit unit) {
+		checkNotNull(unit, "The time unit must be provided");
+		final long ms = Math.max(0L, unit.toMillis(interval));
+		checkArgument(cycles > 0 || documents > 0 || bytes > 0 || ms > 0, "At least a commit threshold must be enabled");
+		final CommitPolicy policy = new CommitPolicy(Math.max(0, cycles), Math.max(0L, documents), Math.max(0L, bytes), ms);
+		return ALWAYS.equals(policy) ? ALWAYS : policy;
+	}
+
+	/** Constructor. */
+	private CommitPolicy(int cycles, long documents, long bytes, long interval) {
+		this.cycles = cycles;
+		this.documents = documents;
+		this.bytes = bytes;
+		this.interval = interval;
+	}
+
+	/** Returns the cycles with changes after which a commit is performed (0 if disabled). */
+	public int getCycles() {
+		return cycles;
+	}
+
+	/** Returns the document operations after which a commit is performed (0 if disabled). */
+	public long getDocuments() {
+		return documents;
+	}
+
+	/** Returns the bytes written after which a commit is performed (0 if disabled). */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/** Returns the maximum interval (ms) between commits (0 if disabled). */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns whether a commit must be performed.
+	 * @param pendingCycles Cycles with uncommitted changes, including the current one.
+	 * @param pendingDocuments Uncommitted document operations.
+	 * @param pendingBytes Bytes written by the index writer since the last commit.
+	 * @param elapsed Time (ms) since the last commit.
+	 */
+	boolean shouldCommit(int pendingCycles, long pendingDocuments, long pendingBytes, long elapsed) {
+		return (cycles > 0 && pendingCycles >= cycles) || (documents > 0 && pendingDocuments >= documents)
+				|| (bytes > 0 && pendingBytes >= bytes) || (interval > 0 && elapsed >= interval);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(cycles, documents, bytes, interval);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof CommitPolicy) {
+			final CommitPolicy other = (CommitPolicy) obj;
+			return cycles == other.cycles && documents == other.documents && bytes == other.bytes
+					&& interval == other.interval;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("cycles", cycles).add("documents", documents).add("bytes", bytes)
+				.add("interval", interval).toString();
+	}
+}
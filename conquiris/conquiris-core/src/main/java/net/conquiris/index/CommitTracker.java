@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.conquiris.api.index.IndexInfo;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps track of the changes performed on an index writer that have not been committed yet,
+ * according to the commit policy. The commit data of the deferred changes is kept so that the
+ * following cycles use it instead of the last commit one. The data and index info of the last
+ * commit are kept as well, so that no reader has to be opened to get them.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+final class CommitTracker {
+	/** Commit data of the uncommitted changes, or {@code null} if there are none. */
+	@GuardedBy("this")
+	private Map<String, String> pending = null;
+	/** Cycles with uncommitted changes. */
+	@GuardedBy("this")
+	private int cycles = 0;
+	/** Uncommitted document operations. */
+	@GuardedBy("this")
+	private long documents = 0L;
+	/** Last commit time. */
+	@GuardedBy("this")
+	private long lastCommit = System.currentTimeMillis();
+	/** Last commit data, if known. */
+	@GuardedBy("this")
+	private Map<String, String> commitData = null;
+	/** Last commit index info, if known. */
+	@GuardedBy("this")
+	private IndexInfo committed = null;
+
+	/** Statistics. */
+	private final IndexStats stats;
+
+	/**
+	 * Constructor.
+	 * @param stats Statistics to report the commits to.
+	 */
+	CommitTracker(IndexStats stats) {
+		this.stats = checkNotNull(stats, "The index statistics must be provided");
+	}
+
+	/** Returns the commit data of the uncommitted changes, or {@code null} if there are none. */
+	@Nullable
+	synchronized Map<String, String> getPending() {
+		return pending;
+	}
+
+	/**
+	 * Returns the last commit data, reading it from the index segments file if unknown. A directory
+	 * without any commit yet has empty commit data.
+	 * @param writer Index writer.
+	 */
+	synchronized Map<String, String> getCommitData(IndexWriter writer) throws IOException {
+		if (commitData == null) {
+			final Directory directory = writer.getDirectory();
+			Map<String, String> data = null;
+			if (IndexReader.indexExists(directory)) {
+				final SegmentInfos infos = new SegmentInfos();
+				infos.read(directory);
+				data = infos.getUserData();
+			}
+			commitData = data != null ? ImmutableMap.copyOf(data) : ImmutableMap.<String, String> of();
+		}
+		return commitData;
+	}
+
+	/** Returns the index info of the last commit performed through this tracker, if any. */
+	@Nullable
+	synchronized IndexInfo getCommitted() {
+		return committed;
+	}
+
+	/**
+	 * Returns whether a commit must be performed.
+	 * @param policy Commit policy.
+	 * @param changed Whether the current cycle has changes.
+	 * @param operations Document operations performed in the current cycle.
+	 * @param writer Index writer.
+	 */
+	synchronized boolean shouldCommit(CommitPolicy policy, boolean changed, long operations, IndexWriter writer) {
+		if (!changed && pending == null) {
+			return false;
+		}
+		return policy.shouldCommit(cycles + (changed ? 1 : 0), documents + operations, uncommittedBytes(writer),
+				System.currentTimeMillis() - lastCommit);
+	}
+
+	/**
+	 * Returns the bytes written by an index writer since the last commit, both flushed and buffered.
+	 * Only the buffered ones are known if the writer is not metered.
+	 */
+	private static long uncommittedBytes(IndexWriter writer) {
+		if (writer instanceof MeteredIndexWriter) {
+			return ((MeteredIndexWriter) writer).getUncommittedBytes();
+		}
+		return writer.ramSizeInBytes();
+	}
+
+	/**
+	 * Commits the provided data, updating the timestamp and the sequence.
+	 * @param writer Index writer.
+	 * @param data Commit data. The sequence must be the one of the last commit.
+	 */
+	synchronized void commit(IndexWriter writer, Map<String, String> data) throws IOException {
+		final long sequence = IndexInfo.fromMap(0, data).getSequence();
+		final Map<String, String> commit = Maps.newHashMap(data);
+		commit.put(IndexInfo.TIMESTAMP, Long.toString(System.currentTimeMillis()));
+		commit.put(IndexInfo.SEQUENCE, Long.toString(sequence + 1));
+		final long t0 = System.nanoTime();
+		writer.commit(commit);
+		if (writer instanceof MeteredIndexWriter) {
+			((MeteredIndexWriter) writer).committed();
+		}
+		stats.committed(System.nanoTime() - t0);
+		reset();
+		lastCommit = System.currentTimeMillis();
+		commitData = ImmutableMap.copyOf(commit);
+		committed = IndexInfo.fromMap(writer.numDocs(), commit);
+	}
+
+	/**
+	 * Defers the commit of the current cycle changes.
+	 * @param data Commit data. The sequence must be the one of the last commit.
+	 * @param operations Document operations performed in the current cycle.
+	 */
+	synchronized void defer(Map<String, String> data, long operations) {
+		pending = ImmutableMap.copyOf(data);
+		cycles++;
+		documents += operations;
+	}
+
+	/** Commits the deferred changes, if any. */
+	synchronized void flush(IndexWriter writer) throws IOException {
+		checkNotNull(writer);
+		if (pending != null) {
+			commit(writer, pending);
+		}
+	}
+
+	/** Discards the deferred changes (e.g., after a rollback). */
+	synchronized void reset() {
+		pending = null;
+		cycles = 0;
+		documents = 0L;
+	}
+
+	/** Discards the deferred changes and the last commit data (e.g., after recreating the index). */
+	synchronized void clear() {
+		reset();
+		commitData = null;
+		committed = null;
+	}
+}
@@ -16,6 +16,9 @@
 package net.conquiris.index;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map.Entry;
+
 import net.conquiris.api.index.DocumentWriter;
 import net.conquiris.api.index.IndexException;
 import net.conquiris.api.index.Writer;
@@ -102,4 +105,43 @@ final class DefaultDocumentWriter implements DocumentWriter {
 		return this;
 	}
 
+	@Override
+	public DocumentWriter addAll(Iterable<? extends Document> documents) throws InterruptedException, IndexException {
+		writer.addAll(documents);
+		return this;
+	}
+
+	@Override
+	public DocumentWriter addAll(Iterable<? extends Document> documents, Analyzer analyzer)
+			throws InterruptedException, IndexException {
+		writer.addAll(documents, analyzer);
+		return this;
+	}
+
+	@Override
+	public DocumentWriter deleteTerms(Term... terms) throws InterruptedException, IndexException {
+		writer.deleteTerms(terms);
+		return this;
+	}
+
+	@Override
+	public DocumentWriter deleteTerms(Iterable<? extends Term> terms) throws InterruptedException, IndexException {
+		writer.deleteTerms(terms);
+		return this;
+	}
+
+	@Override
+	public DocumentWriter updateAll(Iterable<? extends Entry<Term, Document>> updates) throws InterruptedException,
+			IndexException {
+		writer.updateAll(updates);
+		return this;
+	}
+
+	@Override
+	public DocumentWriter updateAll(Iterable<? extends Entry<Term, Document>> updates, Analyzer analyzer)
+			throws InterruptedException, IndexException {
+		writer.updateAll(updates, analyzer);
+		return this;
+	}
+
 }
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,6 +29,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -50,20 +52,20 @@ import net.derquinse.common.util.concurrent.Interruptions;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.util.ThreadInterruptedException;
 
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.io.Closeables;
+import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.Atomics;
 
 /**
@@ -71,6 +73,16 @@ import com.google.common.util.concurrent.Atomics;
  * @author Andres Rodriguez.
  */
 final class DefaultWriter extends AbstractWriter {
+	/** Predicate selecting complete terms. */
+	private enum CompleteTerm implements Predicate<Term> {
+		INSTANCE;
+
+		@Override
+		public boolean apply(Term input) {
+			return !isTermNull(input);
+		}
+	}
+
 	/** Log to use. */
 	private final ContextLog log;
 	/** Writer state lock. */
@@ -106,6 +118,25 @@ final class DefaultWriter extends AbstractWriter {
 	/** Target checkpoint. */
 	@GuardedBy("lock")
 	private volatile String targetCheckpoint;
+	/** Configured index order. */
+	@Nullable
+	private final IndexOrder order;
+	/** Index order lock, guarding the tracking of the order of the added documents. */
+	private final Object orderLock = new Object();
+	/** Whether all the documents in the index have been added in the configured order. */
+	@GuardedBy("orderLock")
+	private boolean ordered;
+	/** Last value added in order. */
+	@GuardedBy("orderLock")
+	private Long lastOrdered;
+	/** Commit policy. */
+	private final CommitPolicy policy;
+	/** Uncommitted changes tracker of the index writer. */
+	private final CommitTracker tracker;
+	/** Document operations performed. */
+	private final AtomicLong operations = new AtomicLong();
+	/** Service statistics. */
+	private final IndexStats stats;
 
 	/**
 	 * Default writer.
@@ -114,11 +145,20 @@ final class DefaultWriter extends AbstractWriter {
 	 * @param overrideCheckpoint Whether to override the checkpoint.
 	 * @param checkpoint Overridden checkpoint value.
 	 * @param created Whether the index has been requested to be created.
+	 * @param order Index order to keep track of, if any.
+	 * @param policy Commit policy.
+	 * @param tracker Uncommitted changes tracker of the index writer.
+	 * @param stats Service statistics.
 	 */
 	DefaultWriter(ContextLog log, IndexWriter writer, boolean overrideCheckpoint, @Nullable String checkpoint,
-			boolean created) throws IndexException {
+			boolean created, @Nullable IndexOrder order, CommitPolicy policy, CommitTracker tracker, IndexStats stats)
+			throws IndexException {
 		this.log = checkNotNull(log, "The log context must be provided");
 		this.writer = checkNotNull(writer, "The index writer must be provided");
+		this.order = order;
+		this.policy = checkNotNull(policy, "The commit policy must be provided");
+		this.tracker = checkNotNull(tracker, "The commit tracker must be provided");
+		this.stats = checkNotNull(stats, "The index statistics must be provided");
 		this.properties = new MapMaker().makeMap();
 		this.keys = Collections.unmodifiableSet(this.properties.keySet());
 		// Read properties
@@ -126,33 +166,40 @@ final class DefaultWriter extends AbstractWriter {
 			final Map<String, String> commitData;
 			final int documents;
 			if (created) {
+				tracker.clear();
 				commitData = ImmutableMap.of();
 				documents = 0;
 			} else {
-				final IndexReader reader = IndexReader.open(writer, false);
-				boolean threw = true;
-				try {
-					Map<String, String> data = reader.getIndexCommit().getUserData();
-					if (overrideCheckpoint) {
-						final Map<String, String> modified = Maps.newHashMap();
-						if (data != null) {
-							modified.putAll(data);
-						}
-						modified.put(IndexInfo.CHECKPOINT, checkpoint);
-						commitData = modified;
-					} else {
-						commitData = data;
+				// Deferred changes, if any, are newer than the last commit
+				Map<String, String> data = tracker.getPending();
+				if (data == null) {
+					data = tracker.getCommitData(writer);
+				}
+				if (overrideCheckpoint) {
+					final Map<String, String> modified = Maps.newHashMap();
+					if (data != null) {
+						modified.putAll(data);
 					}
-					documents = reader.numDocs();
-					threw = false;
-				} finally {
-					Closeables.close(reader, threw);
+					modified.put(IndexInfo.CHECKPOINT, checkpoint);
+					commitData = modified;
+				} else {
+					commitData = data;
 				}
+				documents = writer.numDocs();
 			}
 			this.indexInfo = IndexInfo.fromMap(documents, commitData);
 			this.checkpoint = this.indexInfo.getCheckpoint();
 			this.targetCheckpoint = this.indexInfo.getTargetCheckpoint();
 			this.properties.putAll(this.indexInfo.getProperties());
+			if (order != null) {
+				if (documents == 0) {
+					this.ordered = true;
+				} else if (commitData != null && order.equals(IndexOrder.fromCommitData(commitData))) {
+					final String last = commitData.get(IndexOrder.LAST);
+					this.lastOrdered = last != null ? Longs.tryParse(last) : null;
+					this.ordered = last == null || lastOrdered != null;
+				}
+			}
 		} catch (LockObtainFailedException e) {
 			indexStatus.compareAndSet(IndexStatus.OK, IndexStatus.LOCKED);
 			throw new IndexException(e);
@@ -169,7 +216,8 @@ final class DefaultWriter extends AbstractWriter {
 	}
 
 	/**
-	 * Called when the writer can't be used any longer.
+	 * Called when the writer can't be used any longer. The changes are committed or deferred
+	 * according to the commit policy.
 	 * @return The writer result.
 	 */
 	WriterResult done() throws InterruptedException {
@@ -184,12 +232,16 @@ final class DefaultWriter extends AbstractWriter {
 				if (!canContinue()) {
 					log.trace("Writer rolled back");
 					result = WriterResult.ERROR;
+					tracker.reset();
 					writer.rollback();
 				} else if (!updated && equal(checkpoint, indexInfo.getCheckpoint())
 						&& equal(targetCheckpoint, indexInfo.getTargetCheckpoint()) && equal(properties, indexInfo.getProperties())) {
 					log.trace("Writer unchanged");
 					result = WriterResult.IDLE;
-					writer.rollback();
+					if (tracker.shouldCommit(policy, false, 0L, writer)) {
+						tracker.flush(writer);
+						log.trace("Deferred changes committed");
+					}
 				} else {
 					Map<String, String> data = Maps.newHashMap(properties);
 					if (checkpoint != null) {
@@ -198,10 +250,24 @@ final class DefaultWriter extends AbstractWriter {
 					if (targetCheckpoint != null) {
 						data.put(IndexInfo.TARGET_CHECKPOINT, targetCheckpoint);
 					}
-					data.put(IndexInfo.TIMESTAMP, Long.toString(System.currentTimeMillis()));
-					data.put(IndexInfo.SEQUENCE, Long.toString(indexInfo.getSequence() + 1));
-					writer.commit(data);
-					log.trace("Writer committed");
+					data.put(IndexInfo.TIMESTAMP, Long.toString(indexInfo.getTimestamp()));
+					data.put(IndexInfo.SEQUENCE, Long.toString(indexInfo.getSequence()));
+					synchronized (orderLock) {
+						if (order != null && ordered) {
+							data.put(IndexOrder.ORDER, order.toString());
+							if (lastOrdered != null) {
+								data.put(IndexOrder.LAST, lastOrdered.toString());
+							}
+						}
+					}
+					final long ops = operations.get();
+					if (tracker.shouldCommit(policy, true, ops, writer)) {
+						tracker.commit(writer, data);
+						log.trace("Writer committed");
+					} else {
+						tracker.defer(data, ops);
+						log.trace("Writer commit deferred");
+					}
 				}
 			} catch (LockObtainFailedException e) {
 				indexStatus.compareAndSet(IndexStatus.OK, IndexStatus.LOCKED);
@@ -276,8 +342,8 @@ final class DefaultWriter extends AbstractWriter {
 	 */
 	@Override
 	public IndexInfo getIndexInfo() throws InterruptedException {
-		// TODO Auto-generated method stub
-		return null;
+		ensureAvailable();
+		return indexInfo;
 	}
 
 	/*
@@ -417,6 +483,40 @@ final class DefaultWriter extends AbstractWriter {
 		return a != null ? a : writer.getAnalyzer();
 	}
 
+	/**
+	 * Adds or updates a document, keeping track of the index order. Only the check of the order is
+	 * serialized: concurrent additions may still get document ids out of order, but searches verify
+	 * the order of each segment before relying on it, so the recorded order is only a hint.
+	 * @param term Term of the documents to replace or {@code null} to add the document.
+	 */
+	private void addInOrder(@Nullable Term term, Document document, Analyzer analyzer) throws IOException {
+		if (order != null) {
+			final long value = order.value(document);
+			synchronized (orderLock) {
+				if (ordered) {
+					if (lastOrdered != null && !order.follows(lastOrdered, value)) {
+						log.trace("Document added out of the configured index order");
+						ordered = false;
+					} else {
+						lastOrdered = value;
+					}
+				}
+			}
+		}
+		addOrUpdate(term, document, analyzer);
+	}
+
+	private void addOrUpdate(@Nullable Term term, Document document, Analyzer analyzer) throws IOException {
+		operations.incrementAndGet();
+		if (term == null) {
+			writer.addDocument(document, analyzer);
+			stats.added(1L);
+		} else {
+			writer.updateDocument(term, document, analyzer);
+			stats.updated(1L);
+		}
+	}
+
 	private abstract class IndexOp {
 		IndexOp() {
 		}
@@ -465,7 +565,7 @@ final class DefaultWriter extends AbstractWriter {
 			@Override
 			boolean perform() throws IOException, InterruptedException {
 				if (document != null) {
-					writer.addDocument(document, analyzer(analyzer));
+					addInOrder(null, document, analyzer(analyzer));
 					return true;
 				}
 				return false;
@@ -483,7 +583,15 @@ final class DefaultWriter extends AbstractWriter {
 		new IndexOp() {
 			@Override
 			boolean perform() throws IOException, InterruptedException {
-				writer.deleteDocuments(new MatchAllDocsQuery());
+				synchronized (orderLock) {
+					final int documents = writer.numDocs();
+					writer.deleteDocuments(new MatchAllDocsQuery());
+					operations.incrementAndGet();
+					stats.deleted(documents);
+					// No live documents left to be out of order
+					ordered = order != null;
+					lastOrdered = null;
+				}
 				return true;
 			}
 		}.run();
@@ -501,6 +609,8 @@ final class DefaultWriter extends AbstractWriter {
 			boolean perform() throws IOException, InterruptedException {
 				if (!isTermNull(term)) {
 					writer.deleteDocuments(term);
+					operations.incrementAndGet();
+					stats.deleted(1L);
 					return true;
 				}
 				return false;
@@ -520,11 +630,65 @@ final class DefaultWriter extends AbstractWriter {
 			@Override
 			boolean perform() throws IOException, InterruptedException {
 				if (document != null) {
+					addInOrder(isTermNull(term) ? null : term, document, analyzer(analyzer));
+					return true;
+				}
+				return false;
+			}
+		}.run();
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#addAll(java.lang.Iterable, org.apache.lucene.analysis.Analyzer)
+	 */
+	@Override
+	public Writer addAll(final Iterable<? extends Document> documents, final Analyzer analyzer)
+			throws InterruptedException {
+		new IndexOp() {
+			@Override
+			boolean perform() throws IOException, InterruptedException {
+				boolean performed = false;
+				if (documents != null) {
+					final Analyzer a = analyzer(analyzer);
+					for (Document document : documents) {
+						if (document != null) {
+							addInOrder(null, document, a);
+							performed = true;
+						}
+					}
+				}
+				return performed;
+			}
+		}.run();
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#deleteTerms(org.apache.lucene.index.Term[])
+	 */
+	@Override
+	public Writer deleteTerms(final Term... terms) throws InterruptedException {
+		new IndexOp() {
+			@Override
+			boolean perform() throws IOException, InterruptedException {
+				if (terms == null || terms.length == 0) {
+					return false;
+				}
+				Term[] valid = terms;
+				for (Term term : terms) {
 					if (isTermNull(term)) {
-						writer.addDocument(document, analyzer(analyzer));
-					} else {
-						writer.updateDocument(term, document, analyzer(analyzer));
+						valid = Iterables.toArray(Iterables.filter(Arrays.asList(terms), CompleteTerm.INSTANCE),
+								Term.class);
+						break;
 					}
+				}
+				if (valid.length > 0) {
+					writer.deleteDocuments(valid);
+					operations.addAndGet(valid.length);
+					stats.deleted(valid.length);
 					return true;
 				}
 				return false;
@@ -533,6 +697,34 @@ final class DefaultWriter extends AbstractWriter {
 		return this;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.Writer#updateAll(java.lang.Iterable, org.apache.lucene.analysis.Analyzer)
+	 */
+	@Override
+	public Writer updateAll(final Iterable<? extends Entry<Term, Document>> updates, final Analyzer analyzer)
+			throws InterruptedException {
+		new IndexOp() {
+			@Override
+			boolean perform() throws IOException, InterruptedException {
+				boolean performed = false;
+				if (updates != null) {
+					final Analyzer a = analyzer(analyzer);
+					for (Entry<Term, Document> update : updates) {
+						final Document document = update != null ? update.getValue() : null;
+						if (document != null) {
+							final Term term = update.getKey();
+							addInOrder(isTermNull(term) ? null : term, document, a);
+							performed = true;
+						}
+					}
+				}
+				return performed;
+			}
+		}.run();
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.conquiris.api.index.Writer#runSubindexers(java.util.concurrent.Executor,
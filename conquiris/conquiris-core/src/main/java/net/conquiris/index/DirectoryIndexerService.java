@@ -15,52 +15,99 @@
  */
 package net.conquiris.index;
 
+import static com.google.common.base.Objects.equal;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+import net.conquiris.api.index.Delays;
 import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.IndexMetrics;
 import net.conquiris.api.index.IndexStatus;
 import net.conquiris.api.index.Indexer;
 import net.conquiris.api.index.WriterResult;
+import net.conquiris.api.search.IndexNotAvailableException;
+import net.conquiris.api.search.Reader;
+import net.conquiris.api.search.ReaderSupplier;
+import net.conquiris.search.ReaderSuppliers;
 
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
 
 import com.google.common.base.Supplier;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Atomics;
 
 /**
  * Default directory-based indexer service implementation.
  * @author Andres Rodriguez
  */
 public final class DirectoryIndexerService extends AbstractLocalIndexerService {
+	/** RAM buffer size (MB) used when building shadow indexes. */
+	private static final double BULK_RAM_BUFFER_MB = 64.0;
+	/** Merge factor used when building shadow indexes. */
+	private static final int BULK_MERGE_FACTOR = 30;
+
 	/** Indexer to use. */
 	private final Indexer indexer;
-	/** Lucene directory to use. */
-	private final Directory directory;
+	/** Lucene directory in use. */
+	private volatile Directory directory;
+	/** Current directory supplier. */
+	private final Supplier<Directory> directorySupplier = new CurrentDirectory();
+	/** Shadow directories supplier. If not null, reindexing is performed in shadow directories. */
+	private volatile Supplier<? extends Directory> shadowSupplier = null;
+	/** Directory switch listener, if any. */
+	private volatile DirectorySwitchListener switchListener = null;
 	/** Writer configuration supplier. */
 	private final Supplier<IndexWriterConfig> configSupplier;
 	/** Last known index status. */
 	private volatile IndexStatus indexStatus = IndexStatus.OK;
+	/** Last commit index info, if known. */
+	private final AtomicReference<IndexInfo> indexInfo = Atomics.newReference();
+	/**
+	 * Generation of the cached index info, increased every time it is set or invalidated so that
+	 * info read from the directory before is not cached.
+	 */
+	@GuardedBy("indexInfo")
+	private long infoGeneration = 0L;
 	/** Service lock. */
 	private final Lock lock = new ReentrantLock();
 	/** Service session. */
 	@GuardedBy("lock")
 	private volatile Session session;
+	/** Index order to keep. */
+	private volatile IndexOrder indexOrder = null;
+	/** Commit policy. */
+	private volatile CommitPolicy commitPolicy = CommitPolicy.always();
+	/** Near-real-time reader supplier. */
+	private final NearRealTime nearRealTime = new NearRealTime();
+	/** Merge IO throttle. */
+	private volatile MergeThrottle mergeThrottle = null;
+	/** Shared scheduler. */
+	private volatile IndexerScheduler scheduler = null;
+	/** Indexing statistics. */
+	private final IndexStats stats = new IndexStats();
 
 	public DirectoryIndexerService(Indexer indexer, Directory directory, Supplier<IndexWriterConfig> configSupplier) {
 		this.indexer = checkNotNull(indexer, "The indexer to use must be provided");
@@ -70,7 +117,47 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 
 	@Override
 	public IndexInfo getIndexInfo() {
-		return new GetIndexInfo().get();
+		final IndexInfo info = indexInfo.get();
+		return info != null ? info : new GetIndexInfo().get();
+	}
+
+	/** Updates the cached index info with the last commit performed through a tracker, if any. */
+	private void published(CommitTracker commits) {
+		final IndexInfo info = commits.getCommitted();
+		if (info != null) {
+			setIndexInfo(info);
+		}
+	}
+
+	/**
+	 * Sets the cached index info.
+	 * @param info Index info or {@code null} to invalidate the cached one.
+	 */
+	private void setIndexInfo(@Nullable IndexInfo info) {
+		synchronized (indexInfo) {
+			infoGeneration++;
+			indexInfo.set(info);
+		}
+	}
+
+	/** Returns the generation of the cached index info. */
+	private long getInfoGeneration() {
+		synchronized (indexInfo) {
+			return infoGeneration;
+		}
+	}
+
+	/**
+	 * Caches index info read from the directory if none is cached and the cache has not been set or
+	 * invalidated since the read started.
+	 * @param generation Cache generation when the read started.
+	 */
+	private void cacheIndexInfo(long generation, IndexInfo info) {
+		synchronized (indexInfo) {
+			if (generation == infoGeneration) {
+				indexInfo.compareAndSet(null, info);
+			}
+		}
 	}
 
 	@Override
@@ -102,6 +189,7 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 			}
 			session = null;
 			s.shutdown();
+			releaseActivationPolicy();
 		} finally {
 			lock.unlock();
 		}
@@ -129,17 +217,210 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 			if (s == null) {
 				return; // already stopped
 			}
-			new Task(s);
+			new Task(s, shadowSupplier != null);
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	@Override
+	public void trigger() {
+		final Session s = session;
+		if (s != null) {
+			s.trigger();
+		}
+	}
+
 	@Override
 	public boolean isIndexStarted() {
 		return session != null;
 	}
 
+	/** Returns the index order to keep, if any. */
+	@Nullable
+	public IndexOrder getIndexOrder() {
+		return indexOrder;
+	}
+
+	/**
+	 * Sets the index order to keep. Documents must be added in that order. Merges are restricted to
+	 * adjacent segments so that the order is preserved, and the order is recorded in the commit data
+	 * while no document is added out of order. Takes effect the next time the writer is opened.
+	 * @param indexOrder Index order or {@code null} for no order.
+	 */
+	public void setIndexOrder(@Nullable IndexOrder indexOrder) {
+		this.indexOrder = indexOrder;
+	}
+
+	/** Returns the directory currently in use. It changes when a shadow reindex is completed. */
+	public Directory getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns a supplier of the directory currently in use. Reader suppliers built on it follow the
+	 * switch to a new directory after a shadow reindex.
+	 * @see net.conquiris.search.ReaderSuppliers#directory(Supplier)
+	 */
+	public Supplier<Directory> getDirectorySupplier() {
+		return directorySupplier;
+	}
+
+	/** Returns the shadow directories supplier, if any. */
+	@Nullable
+	public Supplier<? extends Directory> getShadowSupplier() {
+		return shadowSupplier;
+	}
+
+	/**
+	 * Sets the shadow directories supplier. If set, reindexing builds a new index in a directory
+	 * provided by the supplier, using bulk loading settings, while the current one keeps being updated
+	 * and serving. Once the new index has caught up (an indexing cycle ends at the committed checkpoint
+	 * of the current index) the service atomically switches to it. The previous directory is no longer
+	 * used by the service.
+	 * @param shadowSupplier Shadow directories supplier or {@code null} to recreate the index in place.
+	 * @see #setSwitchListener(DirectorySwitchListener)
+	 */
+	public void setShadowSupplier(@Nullable Supplier<? extends Directory> shadowSupplier) {
+		this.shadowSupplier = shadowSupplier;
+	}
+
+	/** Returns the directory switch listener, if any. */
+	@Nullable
+	public DirectorySwitchListener getSwitchListener() {
+		return switchListener;
+	}
+
+	/**
+	 * Sets the listener notified after the service switches to a rebuilt shadow index.
+	 * @param switchListener Directory switch listener or {@code null} for no notification.
+	 */
+	public void setSwitchListener(@Nullable DirectorySwitchListener switchListener) {
+		this.switchListener = switchListener;
+	}
+
+	/** Returns the commit policy. */
+	public CommitPolicy getCommitPolicy() {
+		return commitPolicy;
+	}
+
+	/**
+	 * Sets the commit policy. Changes whose commit is deferred are visible through the near-real-time
+	 * reader supplier and are committed when the policy allows it or when the service is stopped.
+	 * @param commitPolicy Commit policy or {@code null} to commit every cycle with changes.
+	 */
+	public void setCommitPolicy(@Nullable CommitPolicy commitPolicy) {
+		this.commitPolicy = commitPolicy != null ? commitPolicy : CommitPolicy.always();
+	}
+
+	/** Returns the shared scheduler, if any. */
+	@Nullable
+	public IndexerScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Sets the scheduler shared with other services. If not set, each time the service is started it
+	 * creates its own single thread executor. Takes effect the next time the service is started.
+	 * @param scheduler Shared scheduler or {@code null} to use an executor per service.
+	 */
+	public void setScheduler(@Nullable IndexerScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/** Returns the merge IO throttle, if any. */
+	@Nullable
+	public MergeThrottle getMergeThrottle() {
+		return mergeThrottle;
+	}
+
+	/**
+	 * Sets the merge IO throttle. If set, merges are performed by a concurrent merge scheduler and
+	 * their writes are rate limited by the throttle. Takes effect the next time the writer is opened.
+	 * @param mergeThrottle Merge throttle or {@code null} to use the configured merge scheduler.
+	 */
+	public void setMergeThrottle(@Nullable MergeThrottle mergeThrottle) {
+		this.mergeThrottle = mergeThrottle;
+	}
+
+	@Override
+	public IndexMetrics getIndexMetrics() {
+		final IndexMetrics.Builder builder = IndexMetrics.builder().addAll(stats.getMetrics());
+		final MergeThrottle throttle = mergeThrottle;
+		if (throttle != null) {
+			builder.addAll(throttle.getMetrics());
+		}
+		final long timestamp = getIndexInfo().getTimestamp();
+		if (timestamp > 0) {
+			builder.add(IndexMetrics.TIME_SINCE_COMMIT, Math.max(0L, System.currentTimeMillis() - timestamp));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns a supplier of readers including the changes of the last indexing cycle, even if their
+	 * commit has been deferred by the commit policy. Once used, the near-real-time reader is refreshed
+	 * after every indexing cycle. If the service is not started, readers are opened on the directory.
+	 * Provided readers are not reopenable and must be closed by the caller.
+	 */
+	public ReaderSupplier getNearRealTimeSupplier() {
+		return nearRealTime;
+	}
+
+	/** Current directory supplier. */
+	private final class CurrentDirectory implements Supplier<Directory> {
+		@Override
+		public Directory get() {
+			return directory;
+		}
+	}
+
+	/** Near-real-time reader supplier. */
+	private final class NearRealTime implements ReaderSupplier {
+		/** Whether the supplier has been used. */
+		private volatile boolean used = false;
+		/** Request count. */
+		private final AtomicLong requests = new AtomicLong();
+
+		@Override
+		public Reader get() {
+			used = true;
+			Reader reader = null;
+			lock.lock();
+			try {
+				final Session s = session;
+				if (s != null) {
+					reader = s.getVisible();
+					if (reader == null) {
+						// First request, open the reader on the session writer if there is one
+						s.refresh();
+						reader = s.getVisible();
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			try {
+				if (reader == null) {
+					if (IndexReader.indexExists(directory)) {
+						reader = Reader.of(IndexReader.open(directory), false);
+					} else {
+						reader = ReaderSuppliers.empty().get();
+					}
+				}
+				requests.incrementAndGet();
+				return reader;
+			} catch (IOException e) {
+				throw new IndexNotAvailableException(e);
+			}
+		}
+
+		@Override
+		public long getRequested() {
+			return requests.get();
+		}
+	}
+
 	/** Wrapped Lucene operation. */
 	private abstract class Wrapped<T> {
 		private String message;
@@ -176,7 +457,7 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 		abstract T run() throws IOException;
 	}
 
-	/** Get index info. */
+	/** Get index info from the segments file of the last commit. The result is cached. */
 	private final class GetIndexInfo extends Wrapped<IndexInfo> {
 		GetIndexInfo() {
 			super("Unable to get index info", IndexInfo.empty());
@@ -184,48 +465,292 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 
 		@Override
 		IndexInfo run() throws IOException {
-			if (!IndexReader.indexExists(directory)) {
+			final long generation = getInfoGeneration();
+			final Directory current = directory;
+			if (!IndexReader.indexExists(current)) {
 				return IndexInfo.empty();
 			}
-			final IndexReader reader = IndexReader.open(directory);
-			boolean threw = true;
-			try {
-				IndexInfo info = IndexInfo.fromMap(reader.numDocs(), reader.getIndexCommit().getUserData());
-				threw = false;
-				return info;
-			} finally {
-				Closeables.close(reader, threw);
+			final SegmentInfos infos = new SegmentInfos();
+			infos.read(current);
+			int documents = 0;
+			for (int i = 0; i < infos.size(); i++) {
+				final SegmentInfo segment = infos.info(i);
+				documents += segment.docCount - segment.getDelCount();
 			}
+			final IndexInfo info = IndexInfo.fromMap(documents, infos.getUserData());
+			// Commits, recreations and switches performed meanwhile take precedence
+			cacheIndexInfo(generation, info);
+			return info;
 		}
 	}
 
 	/** Open writer. */
 	private final class OpenWriter extends Wrapped<IndexWriter> {
+		private final Directory target;
 		private final boolean create;
+		private final boolean bulk;
+		private final IndexStats writerStats;
 
-		OpenWriter(boolean create) {
+		OpenWriter(Directory target, boolean create, boolean bulk, IndexStats writerStats) {
 			super("Unable to open index writer", null);
+			this.target = checkNotNull(target);
 			this.create = create;
+			this.bulk = bulk;
+			this.writerStats = checkNotNull(writerStats);
+		}
+
+		OpenWriter(boolean create) {
+			this(directory, create, false, stats);
 		}
 
 		@Override
 		IndexWriter run() throws IOException {
-			IndexWriterConfig config = checkNotNull(configSupplier.get(), "Null writer config supplied");
+			// Copied, as the settings below must not change the supplied configuration
+			final IndexWriterConfig config = (IndexWriterConfig) checkNotNull(configSupplier.get(),
+					"Null writer config supplied").clone();
 			config.setOpenMode(create ? OpenMode.CREATE : OpenMode.CREATE_OR_APPEND);
-			return new IndexWriter(directory, config);
+			if (bulk) {
+				// Larger flushes and fewer merges while loading. Log merge policies keep the order.
+				config.setRAMBufferSizeMB(Math.max(config.getRAMBufferSizeMB(), BULK_RAM_BUFFER_MB));
+				final LogByteSizeMergePolicy policy = new LogByteSizeMergePolicy();
+				policy.setMergeFactor(BULK_MERGE_FACTOR);
+				config.setMergePolicy(policy);
+			} else if (indexOrder != null && !(config.getMergePolicy() instanceof LogMergePolicy)) {
+				// Log merge policies only merge adjacent segments, preserving the document order
+				config.setMergePolicy(new LogByteSizeMergePolicy());
+			}
+			final MergeThrottle throttle = mergeThrottle;
+			if (throttle != null) {
+				config.setMergeScheduler(new ThrottledMergeScheduler(throttle));
+				return new MeteredIndexWriter(new ThrottledDirectory(target, throttle), config, writerStats);
+			}
+			return new MeteredIndexWriter(target, config, writerStats);
+		}
+	}
+
+	/** Index being rebuilt in a shadow directory. */
+	private final class Shadow {
+		/** Shadow directory. */
+		private final Directory directory;
+		/** Shadow index writer. */
+		@GuardedBy("lock")
+		private IndexWriter writer = null;
+		/** Whether the shadow index has been created. */
+		@GuardedBy("lock")
+		private boolean started = false;
+		/** Whether the current writer has created the index and no cycle has been completed. */
+		@GuardedBy("lock")
+		private boolean creating = false;
+		/** Shadow indexing statistics, kept apart so that the service ones are not counted twice. */
+		private final IndexStats shadowStats = new IndexStats();
+		/** Uncommitted changes tracker. */
+		private final CommitTracker commits = new CommitTracker(shadowStats);
+
+		Shadow(Directory directory) {
+			this.directory = checkNotNull(directory, "Null shadow directory supplied");
+		}
+
+		IndexWriter getOpenWriter() {
+			lock.lock();
+			try {
+				if (writer == null) {
+					writer = new OpenWriter(directory, !started, true, shadowStats).get();
+					if (writer != null) {
+						creating = !started;
+						started = true;
+					}
+				}
+				return writer;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Returns whether the next cycle is the one creating the index. */
+		boolean isCreating() {
+			lock.lock();
+			try {
+				return creating;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Called after a cycle has been completed. */
+		void completed() {
+			lock.lock();
+			try {
+				creating = false;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Commits the deferred changes, if any, and closes the writer.
+		 * @return Whether every change has been committed.
+		 */
+		boolean closeWriter() {
+			lock.lock();
+			try {
+				return close(writer, commits);
+			} finally {
+				writer = null;
+				creating = false;
+				lock.unlock();
+			}
+		}
+
+		/** Discards the uncommitted changes and closes the writer. */
+		void rollbackWriter() {
+			lock.lock();
+			try {
+				rollback(writer, commits);
+			} finally {
+				writer = null;
+				creating = false;
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Commits the deferred changes of an index writer, if any, and closes it.
+	 * @param writer Writer to close. May be {@code null}.
+	 * @param commits Tracker of the uncommitted changes of the writer.
+	 * @return Whether every change has been committed.
+	 */
+	private boolean close(@Nullable IndexWriter writer, CommitTracker commits) {
+		if (writer == null) {
+			return true;
+		}
+		boolean threw = true;
+		try {
+			commits.flush(writer);
+			threw = false;
+		} catch (IOException e) {
+			log().error(e, "Unable to commit deferred changes");
+		} catch (AlreadyClosedException e) {
+			// Nothing to do
+		} finally {
+			commits.reset();
+			try {
+				Closeables.close(writer, threw);
+			} catch (IOException e) {
+				threw = true;
+			}
+		}
+		return !threw;
+	}
+
+	/**
+	 * Discards the uncommitted changes of an index writer and closes it.
+	 * @param writer Writer to roll back. May be {@code null}.
+	 * @param commits Tracker of the uncommitted changes of the writer.
+	 */
+	private void rollback(@Nullable IndexWriter writer, CommitTracker commits) {
+		commits.reset();
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.rollback();
+		} catch (IOException e) {
+			// Swallowed
+		} catch (AlreadyClosedException e) {
+			// Already rolled back
+		}
+	}
+
+	/** Indexing cycle. */
+	private final class Cycle {
+		/** Writer result. */
+		private WriterResult result = WriterResult.ERROR;
+		/** Checkpoint at the end of the cycle. */
+		private String checkpoint = null;
+		/** Target checkpoint at the end of the cycle. */
+		private String targetCheckpoint = null;
+		/** Cycle duration (ns). */
+		private long nanos = 0L;
+		/** RAM used by the index writer buffer at the end of the cycle. */
+		private long ramBytes = 0L;
+		/** Statistics of the index the cycle is run on. */
+		private final IndexStats cycleStats;
+
+		Cycle(IndexStats cycleStats) {
+			this.cycleStats = cycleStats;
+		}
+
+		/**
+		 * Runs the indexer.
+		 * @return True if the cycle was completed, even if the writer result is an error.
+		 */
+		boolean run(IndexWriter indexWriter, CommitTracker commits, boolean overrideCheckpoint, String checkpoint,
+				boolean create) {
+			final long t0 = System.nanoTime();
+			try {
+				final DefaultWriter writer = new DefaultWriter(writerLog(), indexWriter, overrideCheckpoint, checkpoint, create,
+						indexOrder, commitPolicy, commits, cycleStats);
+				indexer.index(writer);
+				this.checkpoint = writer.getCheckpoint();
+				this.targetCheckpoint = writer.getTargetCheckpoint();
+				result = writer.done();
+				if (result != WriterResult.ERROR) {
+					ramBytes = indexWriter.ramSizeInBytes();
+				}
+				return true;
+			} catch (InterruptedException e) {
+				// Nothing to do.
+			} catch (Exception e) {
+				log().error(e, "Uncaught exception");
+			} finally {
+				nanos = System.nanoTime() - t0;
+			}
+			return false;
 		}
 	}
 
 	/** Service session. */
 	private final class Session {
-		/** Executor. */
-		private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		/** Executor. Only used if there is no shared scheduler. */
+		private final ScheduledExecutorService executor;
+		/** Shared scheduler lane, if any. */
+		private final IndexerScheduler.Lane lane;
 		/** Index writer. */
 		@GuardedBy("lock")
 		private IndexWriter indexWriter = null;
 		/** Whether the session is active. */
 		@GuardedBy("lock")
 		private boolean active = true;
+		/** Index being rebuilt in a shadow directory. */
+		@GuardedBy("lock")
+		private Shadow shadow = null;
+		/** Uncommitted changes tracker. */
+		private final CommitTracker commits = new CommitTracker(stats);
+		/** Near-real-time reader. */
+		@GuardedBy("lock")
+		private IndexReader visible = null;
+		/** Consecutive idle cycles. Only used by scheduled tasks. */
+		private int idleCycles = 0;
+		/** Consecutive failed cycles. Only used by scheduled tasks. */
+		private int failedCycles = 0;
+		/** Next scheduled task execution. */
+		@GuardedBy("lock")
+		private ScheduledFuture<?> next = null;
+		/** Whether a cycle has been triggered and has not started yet. */
+		@GuardedBy("lock")
+		private boolean triggered = false;
+
+		Session() {
+			final IndexerScheduler s = scheduler;
+			if (s != null) {
+				executor = null;
+				lane = s.newLane();
+			} else {
+				executor = Executors.newSingleThreadScheduledExecutor();
+				lane = null;
+			}
+		}
 
 		IndexWriter getOpenWriter(boolean create) {
 			lock.lock();
@@ -234,8 +759,11 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 					return null;
 				}
 				// If we are recreating we don't reuse the writer
-				if (create && indexWriter != null) {
-					closeWriter();
+				if (create) {
+					if (indexWriter != null) {
+						closeWriter();
+					}
+					setIndexInfo(null);
 				}
 				if (indexWriter == null) {
 					indexWriter = new OpenWriter(create).get();
@@ -246,20 +774,166 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 			}
 		}
 
+		/** Commits the deferred changes, if any, and closes the writer. */
 		void closeWriter() {
 			lock.lock();
-			boolean nullify = false;
 			try {
-				if (indexWriter != null) {
-					Closeables.close(indexWriter, false);
-					nullify = true;
+				closeVisible();
+				close(indexWriter, commits);
+				published(commits);
+			} finally {
+				indexWriter = null;
+				lock.unlock();
+			}
+		}
+
+		/** Discards the uncommitted changes and closes the writer. */
+		void rollbackWriter() {
+			lock.lock();
+			try {
+				closeVisible();
+				rollback(indexWriter, commits);
+			} finally {
+				indexWriter = null;
+				lock.unlock();
+			}
+		}
+
+		/** Refreshes the near-real-time reader, if it has been requested. */
+		void refresh() {
+			if (!nearRealTime.used) {
+				return;
+			}
+			lock.lock();
+			try {
+				if (!active || indexWriter == null) {
+					return;
+				}
+				final IndexReader reader;
+				if (visible == null) {
+					reader = IndexReader.open(indexWriter, true);
+				} else {
+					reader = IndexReader.openIfChanged(visible, indexWriter, true);
+				}
+				if (reader != null) {
+					closeVisible();
+					visible = reader;
 				}
 			} catch (IOException e) {
-				// TODO log
+				log().error(e, "Unable to refresh near-real-time reader");
+			} catch (AlreadyClosedException e) {
+				closeVisible();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Returns a reference to the near-real-time reader, if any. */
+		Reader getVisible() {
+			lock.lock();
+			try {
+				if (visible == null) {
+					return null;
+				}
+				visible.incRef();
+				return Reader.of(visible, false);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void closeVisible() {
+			if (visible != null) {
+				try {
+					visible.close();
+				} catch (IOException e) {
+					// Swallowed
+				} finally {
+					visible = null;
+				}
+			}
+		}
+
+		/** Starts a new shadow index, discarding the current one if any. */
+		Shadow startShadow() {
+			lock.lock();
+			try {
+				final Supplier<? extends Directory> supplier = shadowSupplier;
+				if (!active || supplier == null) {
+					return null;
+				}
+				closeShadow();
+				shadow = new Shadow(supplier.get());
+				return shadow;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Returns the shadow index being rebuilt, if any. */
+		Shadow getShadow() {
+			lock.lock();
+			try {
+				return active ? shadow : null;
 			} finally {
-				if (nullify) {
-					indexWriter = null;
+				lock.unlock();
+			}
+		}
+
+		/** Discards the shadow index being rebuilt, if any. */
+		void closeShadow() {
+			lock.lock();
+			try {
+				if (shadow != null) {
+					shadow.rollbackWriter();
+					shadow = null;
 				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Switches the service to a shadow index, notifying the switch listener, if any. */
+		void switchTo(Shadow s) {
+			final Directory previous;
+			lock.lock();
+			try {
+				if (!active || shadow != s || !shadow.closeWriter()) {
+					return;
+				}
+				closeWriter();
+				previous = directory;
+				directory = shadow.directory;
+				commits.clear();
+				setIndexInfo(shadow.commits.getCommitted());
+				shadow = null;
+				log().trace("Switched to rebuilt index");
+			} finally {
+				lock.unlock();
+			}
+			final DirectorySwitchListener listener = switchListener;
+			if (listener != null) {
+				try {
+					listener.switched(previous, s.directory);
+				} catch (RuntimeException e) {
+					log().error(e, "Directory switch listener failed");
+				}
+			}
+		}
+
+		/**
+		 * Releases the index writers while the indexer is inactive, committing the deferred changes and
+		 * discarding the shadow index, if any.
+		 */
+		void release() {
+			lock.lock();
+			try {
+				if (indexWriter != null || shadow != null) {
+					log().trace("Indexer inactive. Releasing index writers");
+				}
+				closeWriter();
+				closeShadow();
+			} finally {
 				lock.unlock();
 			}
 		}
@@ -268,8 +942,17 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 			lock.lock();
 			try {
 				active = false;
-				executor.shutdownNow();
+				if (next != null) {
+					next.cancel(false);
+					next = null;
+				}
+				if (lane != null) {
+					lane.shutdownNow();
+				} else {
+					executor.shutdownNow();
+				}
 				closeWriter();
+				closeShadow();
 			} finally {
 				lock.unlock();
 			}
@@ -279,13 +962,61 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 			lock.lock();
 			try {
 				if (active) {
-					executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+					final ScheduledFuture<?> future;
+					if (lane != null) {
+						future = lane.schedule(task, delay);
+					} else {
+						future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+					}
+					if (task.scheduled) {
+						next = future;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Runs the next scheduled cycle as soon as possible. If it is already running, another one is
+		 * run right after it. Triggers received before the cycle starts are coalesced.
+		 */
+		void trigger() {
+			lock.lock();
+			try {
+				if (!active || triggered) {
+					return;
+				}
+				triggered = true;
+				if (next != null && next.cancel(false)) {
+					next = null;
+					new Task(this, 0L);
 				}
 			} finally {
 				lock.unlock();
 			}
 		}
 
+		/** Called when a scheduled cycle starts. */
+		void clearTrigger() {
+			lock.lock();
+			try {
+				triggered = false;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Schedules the next cycle, immediately if triggered while running the last one. */
+		void reschedule(long delay) {
+			lock.lock();
+			try {
+				new Task(this, triggered ? 0L : delay);
+			} finally {
+				lock.unlock();
+			}
+		}
+
 	}
 
 	/** Base task. */
@@ -298,70 +1029,146 @@ public final class DirectoryIndexerService extends AbstractLocalIndexerService {
 		private final String checkpoint;
 		/** Whether to recreate the index. */
 		private final boolean create;
+		/** Whether to start rebuilding the index in a shadow directory. */
+		private final boolean shadow;
 
 		/** Internal constructor. */
 		private Task(Session session, boolean scheduled, long delay, boolean overrideCheckpoint, String checkpoint,
-				boolean create) {
+				boolean create, boolean shadow) {
 			this.session = checkNotNull(session);
 			this.scheduled = scheduled;
 			this.overrideCheckpoint = overrideCheckpoint;
 			this.checkpoint = checkpoint;
 			this.create = create;
+			this.shadow = shadow;
 			session.schelude(this, delay);
 		}
 
 		/** Scheduled task constructor. */
 		Task(Session session, long delay) {
-			this(session, true, delay, false, null, false);
+			this(session, true, delay, false, null, false, false);
 		}
 
 		/** Checkpoint setter constructor. */
 		Task(Session session, @Nullable String checkpoint) {
-			this(session, false, 0L, true, checkpoint, false);
+			this(session, false, 0L, true, checkpoint, false, false);
 		}
 
-		/** Index recreation. */
-		Task(Session session) {
-			this(session, false, 0L, false, null, true);
+		/**
+		 * Index recreation.
+		 * @param shadow Whether to rebuild the index in a shadow directory instead of recreating it in
+		 *          place.
+		 */
+		Task(Session session, boolean shadow) {
+			this(session, false, 0L, false, null, !shadow, shadow);
 		}
 
 		@Override
 		public final void run() {
-			boolean ok = false;
 			WriterResult result = WriterResult.ERROR;
-			final IndexWriter indexWriter = session.getOpenWriter(create);
+			boolean pending = false;
+			if (scheduled) {
+				session.clearTrigger();
+			}
+			if (!isIndexActive()) {
+				inactive();
+				return;
+			}
 			try {
-				final DefaultWriter writer = new DefaultWriter(writerLog(), indexWriter, overrideCheckpoint, checkpoint, create);
-				try {
-					indexer.index(writer);
-					result = writer.done();
-					ok = true;
-				} catch (InterruptedException e) {
-					// Nothing to do.
-				} catch (Exception e) {
-					log().error(e, "Uncaught exception");
+				if (shadow) {
+					result = WriterResult.IDLE;
+					session.startShadow();
+				} else {
+					final Cycle live = new Cycle(stats);
+					final boolean ok = live.run(session.getOpenWriter(create), session.commits, overrideCheckpoint, checkpoint,
+							create);
+					stats.cycle(live.nanos, live.result, live.ramBytes);
+					if (!ok || live.result == WriterResult.ERROR) {
+						session.rollbackWriter();
+					} else {
+						published(session.commits);
+						session.refresh();
+					}
+					result = live.result;
+					pending = live.result == WriterResult.NORMAL && live.targetCheckpoint != null
+							&& !live.targetCheckpoint.equals(live.checkpoint);
 				}
-			} finally {
-				if (!ok) {
-					session.closeWriter();
+				if (scheduled || shadow) {
+					result = combine(result, runShadow());
 				}
+			} finally {
 				if (scheduled) {
-					final long delay;
-					switch (result) {
-					case NORMAL:
-						delay = getDelays().getNormal();
-						break;
-					case IDLE:
-						delay = getDelays().getIdle();
-						break;
-					default:
-						delay = getDelays().getError();
-						break;
-					}
-					new Task(session, delay);
+					session.reschedule(delay(result, pending));
 				}
 			}
 		}
+
+		/**
+		 * Called instead of running a cycle while the indexer is inactive. Writers are released so that an
+		 * active indexer (e.g., in another process) can use the index, and the activation is checked again
+		 * after the idle delay.
+		 */
+		private void inactive() {
+			session.release();
+			if (scheduled) {
+				session.idleCycles = 0;
+				session.failedCycles = 0;
+				session.reschedule(getDelays().getIdle());
+			} else {
+				log().trace("Indexer inactive. Ignoring requested operation");
+			}
+		}
+
+		/**
+		 * Runs a cycle on the shadow index, if any, switching to it if it has caught up, i.e. its
+		 * checkpoint is the committed checkpoint of the current index.
+		 * @return The shadow cycle result or {@code null} if there is no shadow index.
+		 */
+		private WriterResult runShadow() {
+			final Shadow s = session.getShadow();
+			if (s == null) {
+				return null;
+			}
+			final Cycle cycle = new Cycle(s.shadowStats);
+			if (!cycle.run(s.getOpenWriter(), s.commits, false, null, s.isCreating()) || cycle.result == WriterResult.ERROR) {
+				s.rollbackWriter();
+				return WriterResult.ERROR;
+			}
+			s.completed();
+			if (equal(cycle.checkpoint, getIndexInfo().getCheckpoint())) {
+				session.switchTo(s);
+			}
+			return cycle.result;
+		}
+
+		/**
+		 * Computes the delay until the next scheduled cycle.
+		 * @param result Result of the last cycle.
+		 * @param pending Whether the indexer reported pending work.
+		 */
+		private long delay(WriterResult result, boolean pending) {
+			final Delays delays = getDelays();
+			switch (result) {
+			case NORMAL:
+				session.idleCycles = 0;
+				session.failedCycles = 0;
+				return pending && delays.isAdaptive() ? 0L : delays.getNormal();
+			case IDLE:
+				session.failedCycles = 0;
+				return delays.getIdle(++session.idleCycles);
+			default:
+				session.idleCycles = 0;
+				return delays.getError(++session.failedCycles);
+			}
+		}
+
+		/** Combines the results of the cycles run in the same task, for scheduling purposes. */
+		private WriterResult combine(WriterResult live, @Nullable WriterResult shadow) {
+			if (shadow == null || live == WriterResult.NORMAL || shadow == WriterResult.NORMAL) {
+				return shadow == WriterResult.NORMAL ? shadow : live;
+			}
+			return live == WriterResult.ERROR ? live : shadow;
+		}
 	}
 
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import org.apache.lucene.store.Directory;
+
+/**
+ * Listener notified when an indexer service switches to the directory of an index rebuilt in a
+ * shadow directory, e.g. to persist the directory to use after a restart.
+ * @author Andres Rodriguez
+ */
+public interface DirectorySwitchListener {
+	/**
+	 * Called after the service has switched to a new directory. The new directory has been committed
+	 * and is already used by the service, while the previous one is no longer used.
+	 * @param previous Directory used before the switch.
+	 * @param current Directory used after the switch.
+	 */
+	void switched(Directory previous, Directory current);
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.conquiris.api.index.IndexInfo;
+import net.conquiris.schema.InstantSchemaItem;
+import net.conquiris.schema.IntegerSchemaItem;
+import net.conquiris.schema.LongSchemaItem;
+import net.conquiris.schema.SchemaItem;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Index-time document order. Lucene assigns document ids in insertion order, so an index is kept
+ * sorted if documents are added in the configured order and merges only combine adjacent segments.
+ * Documents without a value for the field are considered to have the value 0.
+ * @author Andres Rodriguez
+ */
+@Immutable
+public final class IndexOrder {
+	/** Commit property with the order all the documents in the index have been added with. */
+	public static final String ORDER = IndexInfo.RESERVED_PREFIX + "indexOrder";
+	/** Commit property with the last value added in order. */
+	public static final String LAST = IndexInfo.RESERVED_PREFIX + "indexOrderLast";
+
+	/** Field. */
+	private final String field;
+	/** Whether the field is an int field. */
+	private final boolean isInt;
+	/** Whether the order is descending. */
+	private final boolean reverse;
+
+	private static String checkIndexed(SchemaItem item) {
+		checkNotNull(item, "The schema item must be provided");
+		checkArgument(item.isIndexed(), "The provided field [%s] is not indexed", item.getName());
+		return item.getName();
+	}
+
+	/** Creates a new order by a long field. */
+	public static IndexOrder of(LongSchemaItem item, boolean reverse) {
+		return new IndexOrder(checkIndexed(item), false, reverse);
+	}
+
+	/** Creates a new order by an instant field. */
+	public static IndexOrder of(InstantSchemaItem item, boolean reverse) {
+		return new IndexOrder(checkIndexed(item), false, reverse);
+	}
+
+	/** Creates a new order by an int field. */
+	public static IndexOrder of(IntegerSchemaItem item, boolean reverse) {
+		return new IndexOrder(checkIndexed(item), true, reverse);
+	}
+
+	/**
+	 * Returns the order recorded in the provided commit data, if all the documents in the index have
+	 * been added in that order, or {@code null} otherwise.
+	 */
+	@Nullable
+	public static IndexOrder fromCommitData(@Nullable Map<String, String> data) {
+		if (data == null) {
+			return null;
+		}
+		final String value = data.get(ORDER);
+		if (value == null) {
+			return null;
+		}
+		final String[] parts = value.split(":");
+		if (parts.length != 3 || parts[0].length() == 0) {
+			return null;
+		}
+		return new IndexOrder(parts[0], "int".equals(parts[1]), "desc".equals(parts[2]));
+	}
+
+	/** Constructor. */
+	private IndexOrder(String field, boolean isInt, boolean reverse) {
+		this.field = field;
+		this.isInt = isInt;
+		this.reverse = reverse;
+	}
+
+	/** Returns the field name. */
+	public String getField() {
+		return field;
+	}
+
+	/** Returns whether the order is descending. */
+	public boolean isReverse() {
+		return reverse;
+	}
+
+	/** Returns the sort field equivalent to this order. */
+	public SortField toSortField() {
+		return new SortField(field, isInt ? SortField.INT : SortField.LONG, reverse);
+	}
+
+	/** Returns whether the provided sort is equivalent to this order. */
+	public boolean matches(@Nullable Sort sort) {
+		if (sort == null) {
+			return false;
+		}
+		final SortField[] fields = sort.getSort();
+		return fields.length == 1 && toSortField().equals(fields[0]);
+	}
+
+	/** Returns the value of the order field in a document. */
+	long value(Document document) {
+		final Fieldable f = document.getFieldable(field);
+		if (f instanceof NumericField) {
+			final Number n = ((NumericField) f).getNumericValue();
+			if (n != null) {
+				return n.longValue();
+			}
+		}
+		return 0L;
+	}
+
+	/** Returns whether a value may be added after the provided one. */
+	boolean follows(long previous, long value) {
+		return reverse ? value <= previous : value >= previous;
+	}
+
+	@Override
+	public int hashCode() {
+		return field.hashCode() ^ (isInt ? 2 : 0) ^ (reverse ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof IndexOrder) {
+			final IndexOrder other = (IndexOrder) obj;
+			return field.equals(other.field) && isInt == other.isInt && reverse == other.reverse;
+		}
+		return false;
+	}
+
+	/** Returns the commit property value of this order. */
+	@Override
+	public String toString() {
+		return field + (isInt ? ":int:" : ":long:") + (reverse ? "desc" : "asc");
+	}
+}
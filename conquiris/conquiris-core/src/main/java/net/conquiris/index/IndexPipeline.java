@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.RecordIndexer;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Atomics;
+
+/**
+ * Parallel document building pipeline. Records are read from the source in the calling thread and
+ * distributed among a number of workers through bounded queues. Records with the same key are always
+ * sent to the same worker, so they are written in source order. Workers build the documents and
+ * write them in batches. As every worker must be running for the source to be read, the pipeline
+ * fails if the executor doesn't start all of them in a short time.
+ * @author Andres Rodriguez
+ * @param <T> Source record type.
+ */
+final class IndexPipeline<T> {
+	/** Maximum number of operations written in a single batch. */
+	private static final int BATCH = 64;
+	/** Queue polling interval (ms), used to detect failures while waiting. */
+	private static final long WAIT = 100L;
+	/** Maximum time (ms) to wait for all the workers to start. */
+	private static final long START = 5000L;
+
+	/** Writer to use. */
+	private final AbstractWriter writer;
+	/** Executor to use. */
+	private final Executor executor;
+	/** Record indexer. */
+	private final RecordIndexer<? super T> indexer;
+	/** Workers. */
+	private final List<Worker> workers;
+	/** Started workers. */
+	private final CountDownLatch started;
+	/** Permits released by started workers when they finish. */
+	private final Semaphore finished = new Semaphore(0);
+	/** First failure. */
+	private final AtomicReference<Throwable> failure = Atomics.newReference();
+	/** Next worker for records without key. */
+	private int next = 0;
+
+	/**
+	 * Constructor.
+	 * @param writer Writer to use.
+	 * @param executor Executor to run the workers.
+	 * @param workers Number of workers.
+	 * @param capacity Maximum number of records waiting to be processed.
+	 * @param indexer Record indexer.
+	 */
+	IndexPipeline(AbstractWriter writer, Executor executor, int workers, int capacity, RecordIndexer<? super T> indexer) {
+		this.writer = checkNotNull(writer, "The writer must be provided");
+		this.executor = checkNotNull(executor, "The executor must be provided");
+		this.indexer = checkNotNull(indexer, "The record indexer must be provided");
+		checkArgument(workers > 0, "The number of workers must be > 0");
+		checkArgument(capacity > 0, "The pipeline capacity must be > 0");
+		final int perWorker = Math.max(1, capacity / workers);
+		this.workers = Lists.newArrayListWithCapacity(workers);
+		for (int i = 0; i < workers; i++) {
+			this.workers.add(new Worker(new ArrayBlockingQueue<Item>(perWorker)));
+		}
+		this.started = new CountDownLatch(workers);
+	}
+
+	/**
+	 * Runs the pipeline, waiting for every record read from the source to be written.
+	 * @param source Record source.
+	 * @throws IllegalStateException if the executor doesn't start all the workers.
+	 */
+	void run(Iterator<? extends T> source) throws InterruptedException, IndexException {
+		checkNotNull(source, "The record source must be provided");
+		boolean ok = false;
+		try {
+			for (Worker worker : workers) {
+				executor.execute(worker);
+			}
+			if (!started.await(START, MILLISECONDS)) {
+				throw new IllegalStateException("The executor has not started all the pipeline workers");
+			}
+			produce(source);
+			ok = true;
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		} finally {
+			// Workers not started yet won't ever run
+			int running = 0;
+			for (Worker worker : workers) {
+				if (!worker.state.compareAndSet(NEW, CANCELLED)) {
+					running++;
+				}
+			}
+			if (ok) {
+				for (Worker worker : workers) {
+					put(worker.queue, Item.END);
+				}
+			}
+			try {
+				finished.acquire(running);
+			} catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+			}
+		}
+		final Throwable t = failure.get();
+		if (t != null) {
+			Throwables.propagateIfInstanceOf(t, InterruptedException.class);
+			throw Throwables.propagate(t);
+		}
+	}
+
+	/** Reads the source, distributing the records among the workers. */
+	private void produce(Iterator<? extends T> source) throws InterruptedException {
+		int count = 0;
+		while (source.hasNext()) {
+			if (++count % BATCH == 0 && !writer.ensureAvailable()) {
+				return;
+			}
+			final T record = source.next();
+			if (record != null) {
+				final Term key = indexer.getKey(record);
+				if (!put(queue(key), new Item(key, record))) {
+					return;
+				}
+			}
+		}
+	}
+
+	/** Selects the worker queue for a key. */
+	private BlockingQueue<Item> queue(Term key) {
+		final int n = workers.size();
+		if (key == null) {
+			next = (next + 1) % n;
+			return workers.get(next).queue;
+		}
+		return workers.get((key.hashCode() & Integer.MAX_VALUE) % n).queue;
+	}
+
+	/**
+	 * Puts an item in a queue, waiting for space to become available.
+	 * @return True if the item was queued, false if the pipeline has failed.
+	 */
+	private boolean put(BlockingQueue<Item> queue, Item item) throws InterruptedException {
+		while (!queue.offer(item, WAIT, MILLISECONDS)) {
+			if (failure.get() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Pipeline item. */
+	private static final class Item {
+		/** End of input marker. */
+		static final Item END = new Item(null, null);
+
+		/** Record key. */
+		final Term key;
+		/** Record. */
+		final Object record;
+
+		Item(Term key, Object record) {
+			this.key = key;
+			this.record = record;
+		}
+	}
+
+	/** Worker state: not started. */
+	private static final int NEW = 0;
+	/** Worker state: running. */
+	private static final int RUNNING = 1;
+	/** Worker state: cancelled before starting. */
+	private static final int CANCELLED = 2;
+
+	/** Pipeline worker. */
+	private final class Worker implements Runnable {
+		/** Worker queue. */
+		private final BlockingQueue<Item> queue;
+		/** Worker state. */
+		private final AtomicInteger state = new AtomicInteger(NEW);
+		/** Current batch. */
+		private final List<Item> batch = Lists.newArrayListWithCapacity(BATCH);
+		/** Pending updates. */
+		private final List<Entry<Term, Document>> updates = Lists.newArrayListWithCapacity(BATCH);
+
+		Worker(BlockingQueue<Item> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			if (!state.compareAndSet(NEW, RUNNING)) {
+				return;
+			}
+			started.countDown();
+			try {
+				while (failure.get() == null) {
+					final Item item = queue.poll(WAIT, MILLISECONDS);
+					if (item != null) {
+						batch.add(item);
+						queue.drainTo(batch, BATCH - 1);
+						final boolean end = write();
+						batch.clear();
+						if (end) {
+							return;
+						}
+					}
+				}
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				finished.release();
+			}
+		}
+
+		/**
+		 * Writes the current batch.
+		 * @return True if the end of the input has been reached.
+		 */
+		@SuppressWarnings("unchecked")
+		private boolean write() throws InterruptedException {
+			boolean end = false;
+			for (Item item : batch) {
+				if (item == Item.END) {
+					end = true;
+					break;
+				}
+				final Document document = indexer.getDocument((T) item.record);
+				if (document != null) {
+					updates.add(Maps.immutableEntry(item.key, document));
+				} else if (item.key != null) {
+					flush();
+					writer.delete(item.key);
+				}
+			}
+			flush();
+			return end;
+		}
+
+		/** Writes the pending updates. */
+		private void flush() throws InterruptedException {
+			if (!updates.isEmpty()) {
+				writer.updateAll(updates);
+				updates.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.conquiris.api.index.IndexMetrics;
+import net.conquiris.api.index.WriterResult;
+
+/**
+ * Indexing statistics of a service, reported as index metrics. Document operations are collected
+ * with striped counters. Cycle and commit durations are kept for the most recent ones only, and
+ * document rates are computed over a rolling window.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+final class IndexStats {
+	/** Number of recent samples kept. */
+	private static final int SAMPLES = 256;
+	/** Rolling window for the document rates (ns). */
+	private static final long WINDOW = TimeUnit.MINUTES.toNanos(1L);
+	/** Nanoseconds per ms. */
+	private static final double NS_PER_MS = 1000000.0;
+
+	/** Documents added. */
+	private final StripedCounter added = new StripedCounter();
+	/** Documents updated. */
+	private final StripedCounter updated = new StripedCounter();
+	/** Documents deleted. */
+	private final StripedCounter deleted = new StripedCounter();
+	/** Segment flushes. */
+	private final AtomicLong flushes = new AtomicLong();
+	/** Merges in progress. */
+	private final AtomicInteger merging = new AtomicInteger();
+	/** Consecutive failed cycles. */
+	private final AtomicInteger errors = new AtomicInteger();
+	/** Writer RAM buffer at the end of the last cycle. */
+	private volatile long ramBuffer = 0L;
+	/** Recent cycle durations (ns). */
+	private final Samples cycles = new Samples();
+	/** Recent commit durations (ns). */
+	private final Samples commits = new Samples();
+	/** Document counters at the end of the recent cycles, for the rates. */
+	@GuardedBy("this")
+	private final long[][] marks = new long[SAMPLES][];
+	/** Number of marks recorded. */
+	@GuardedBy("this")
+	private long markCount = 0L;
+	/** Creation time (ns). */
+	private final long created = System.nanoTime();
+
+	/** Constructor. */
+	IndexStats() {
+	}
+
+	/** Called when documents are added. */
+	void added(long n) {
+		added.add(n);
+	}
+
+	/** Called when documents are updated. */
+	void updated(long n) {
+		updated.add(n);
+	}
+
+	/** Called when documents are deleted. */
+	void deleted(long n) {
+		deleted.add(n);
+	}
+
+	/** Called after the index writer flushes a segment. */
+	void flushed() {
+		flushes.incrementAndGet();
+	}
+
+	/** Called when a merge starts. */
+	void mergeStarted() {
+		merging.incrementAndGet();
+	}
+
+	/** Called when a merge finishes. */
+	void mergeFinished() {
+		merging.decrementAndGet();
+	}
+
+	/**
+	 * Called after a commit.
+	 * @param nanos Commit duration (ns).
+	 */
+	void committed(long nanos) {
+		commits.record(nanos);
+	}
+
+	/**
+	 * Called after an indexing cycle on the current index.
+	 * @param nanos Cycle duration (ns).
+	 * @param result Cycle result.
+	 * @param ramBytes RAM used by the index writer buffer.
+	 */
+	void cycle(long nanos, WriterResult result, long ramBytes) {
+		cycles.record(nanos);
+		ramBuffer = ramBytes;
+		if (result == WriterResult.ERROR) {
+			errors.incrementAndGet();
+		} else {
+			errors.set(0);
+		}
+		final long[] mark = { System.nanoTime(), added.get(), updated.get(), deleted.get() };
+		synchronized (this) {
+			marks[(int) (markCount++ % SAMPLES)] = mark;
+		}
+	}
+
+	/**
+	 * Returns the document counters at the start of the rate window: the newest mark older than the
+	 * window, so that the operations of every cycle in the window are included. If there is none, the
+	 * oldest kept mark or, if no mark has been dropped, the counters at creation.
+	 */
+	private synchronized long[] windowStart(long now) {
+		final long first = Math.max(0L, markCount - SAMPLES);
+		for (long i = markCount - 1; i >= first; i--) {
+			final long[] mark = marks[(int) (i % SAMPLES)];
+			if (now - mark[0] > WINDOW) {
+				return mark;
+			}
+		}
+		if (first > 0) {
+			return marks[(int) (first % SAMPLES)];
+		}
+		return new long[] { created, 0L, 0L, 0L };
+	}
+
+	/** Returns the statistics as index metrics. */
+	IndexMetrics getMetrics() {
+		final IndexMetrics.Builder builder = IndexMetrics.builder();
+		final long now = System.nanoTime();
+		final long[] start = windowStart(now);
+		final double seconds = Math.max(now - start[0], 1L) / (NS_PER_MS * 1000.0);
+		builder.add(IndexMetrics.ADDED_RATE, (added.get() - start[1]) / seconds);
+		builder.add(IndexMetrics.UPDATED_RATE, (updated.get() - start[2]) / seconds);
+		builder.add(IndexMetrics.DELETED_RATE, (deleted.get() - start[3]) / seconds);
+		builder.add(IndexMetrics.CYCLES, cycles.count());
+		final long[] cycleTimes = cycles.sorted();
+		if (cycleTimes.length > 0) {
+			builder.add(IndexMetrics.CYCLE_TIME_P50, percentile(cycleTimes, 0.50));
+			builder.add(IndexMetrics.CYCLE_TIME_P90, percentile(cycleTimes, 0.90));
+			builder.add(IndexMetrics.CYCLE_TIME_P99, percentile(cycleTimes, 0.99));
+		}
+		builder.add(IndexMetrics.COMMITS, commits.count());
+		final long[] commitTimes = commits.sorted();
+		if (commitTimes.length > 0) {
+			long total = 0L;
+			for (long t : commitTimes) {
+				total += t;
+			}
+			builder.add(IndexMetrics.COMMIT_LATENCY, total / NS_PER_MS / commitTimes.length);
+		}
+		builder.add(IndexMetrics.FLUSHES, flushes.get());
+		builder.add(IndexMetrics.RAM_BUFFER, ramBuffer);
+		builder.add(IndexMetrics.MERGES_RUNNING, merging.get());
+		builder.add(IndexMetrics.CONSECUTIVE_ERRORS, errors.get());
+		return builder.build();
+	}
+
+	/** Returns a percentile (ms) of a sorted array of durations (ns). */
+	private static double percentile(long[] sorted, double p) {
+		final int i = Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(i, 0)] / NS_PER_MS;
+	}
+
+	/** Most recent samples of a value. */
+	private static final class Samples {
+		/** Values. */
+		@GuardedBy("this")
+		private final long[] values = new long[SAMPLES];
+		/** Number of values recorded. */
+		@GuardedBy("this")
+		private long count = 0L;
+
+		synchronized void record(long value) {
+			values[(int) (count++ % SAMPLES)] = value;
+		}
+
+		synchronized long count() {
+			return count;
+		}
+
+		/** Returns the kept values, sorted. */
+		long[] sorted() {
+			final long[] copy;
+			synchronized (this) {
+				copy = Arrays.copyOf(values, (int) Math.min(count, SAMPLES));
+			}
+			Arrays.sort(copy);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Scheduler shared by several indexer services. Delayed tasks are handled by a single timer and run
+ * by a bounded worker pool, so the number of threads does not depend on the number of services. Each
+ * service gets a lane: tasks of the same lane are run one at a time and in order, and lanes with
+ * pending tasks take turns in the worker pool (running one task per turn), as long as the worker
+ * executor runs its tasks in FIFO order.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class IndexerScheduler {
+	/** Timer. */
+	private final ScheduledExecutorService timer;
+	/** Workers. */
+	private final Executor workers;
+	/** Whether the executors are owned by the scheduler. */
+	private final boolean owned;
+
+	/**
+	 * Creates a new scheduler with its own timer thread and worker pool.
+	 * @param workers Number of worker threads (> 0).
+	 * @return The created scheduler.
+	 */
+	public static IndexerScheduler create(int workers) {
+		checkArgument(workers > 0, "The number of workers must be > 0");
+		final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("conquiris-timer-%d").setDaemon(true).build());
+		final ExecutorService pool = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+				.setNameFormat("conquiris-worker-%d").setDaemon(true).build());
+		return new IndexerScheduler(timer, pool, true);
+	}
+
+	/**
+	 * Creates a new scheduler based on existing executors, which are not shut down by the scheduler.
+	 * @param timer Executor used only to wait for the task delays. Tasks are not run in it.
+	 * @param workers Executor used to run the tasks. It should run submitted tasks in FIFO order.
+	 * @return The created scheduler.
+	 */
+	public static IndexerScheduler of(ScheduledExecutorService timer, Executor workers) {
+		return new IndexerScheduler(timer, workers, false);
+	}
+
+	/** Constructor. */
+	private IndexerScheduler(ScheduledExecutorService timer, Executor workers, boolean owned) {
+		this.timer = checkNotNull(timer, "The timer must be provided");
+		this.workers = checkNotNull(workers, "The worker executor must be provided");
+		this.owned = owned;
+	}
+
+	/** Shuts down the executors if they are owned by the scheduler. Running tasks are interrupted. */
+	public void shutdown() {
+		if (owned) {
+			timer.shutdownNow();
+			((ExecutorService) workers).shutdownNow();
+		}
+	}
+
+	/** Creates a new lane. */
+	Lane newLane() {
+		return new Lane();
+	}
+
+	/** Serial task queue of a service. */
+	final class Lane implements Runnable {
+		/** Tasks ready to run. */
+		@GuardedBy("this")
+		private final Queue<Runnable> ready = new ArrayDeque<Runnable>();
+		/** Whether the lane has been submitted to the workers or it is running. */
+		@GuardedBy("this")
+		private boolean submitted = false;
+		/** Whether the lane has been shut down. */
+		@GuardedBy("this")
+		private boolean shutdown = false;
+		/** Thread running a task of the lane. */
+		@GuardedBy("this")
+		private Thread thread = null;
+
+		private Lane() {
+		}
+
+		/**
+		 * Schedules a task.
+		 * @param task Task to run.
+		 * @param delay Delay (ms).
+		 * @return The future of the delay. If cancelled, the task is not run.
+		 */
+		ScheduledFuture<?> schedule(final Runnable task, long delay) {
+			return timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					enqueue(task);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+
+		/** Adds a task to the lane. */
+		private synchronized void enqueue(Runnable task) {
+			if (shutdown) {
+				return;
+			}
+			ready.add(task);
+			submit();
+		}
+
+		@GuardedBy("this")
+		private void submit() {
+			if (submitted || ready.isEmpty()) {
+				return;
+			}
+			submitted = true;
+			try {
+				workers.execute(this);
+			} catch (RejectedExecutionException e) {
+				submitted = false;
+				ready.clear();
+			}
+		}
+
+		/** Runs one task and gives way to other lanes. */
+		@Override
+		public void run() {
+			final Runnable task;
+			synchronized (this) {
+				task = ready.poll();
+				if (task == null || shutdown) {
+					submitted = false;
+					return;
+				}
+				thread = Thread.currentThread();
+			}
+			try {
+				task.run();
+			} finally {
+				synchronized (this) {
+					thread = null;
+					submitted = false;
+					submit();
+				}
+				// Clears interruptions aimed at the lane
+				Thread.interrupted();
+			}
+		}
+
+		/** Shuts down the lane, discarding pending tasks and interrupting the running one. */
+		synchronized void shutdownNow() {
+			shutdown = true;
+			ready.clear();
+			if (thread != null) {
+				thread.interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.NativeFSLockFactory;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Leader election activation policy based on a Lucene lock. The policy is active while it holds the
+ * lock. Inactive policies try to obtain it again once the retry interval has elapsed, so if several
+ * processes share the lock exactly one of them runs the indexer. With a native file system lock the
+ * lock is released by the operating system when the holding process dies, and another process takes
+ * over in at most the retry interval plus the indexer idle delay. A held lock is checked again every
+ * retry interval, and the policy becomes inactive for a retry interval if the lock has been lost.
+ * For file system locks that includes the lock file being removed or replaced by a new one, which
+ * another process may have locked. As file identities are not available, the policy stamps the lock
+ * file with a random past modification time when it obtains the lock, and the file is considered
+ * replaced if it no longer has it. Indexer services release the lock when they are stopped.
+ * <p>
+ * Native file system locks are only reliable on local file systems. On NFS and other network file
+ * systems, depending on the client and server, they may not be exclusive among hosts or may not be
+ * released when a host dies, so several processes could run the indexer at the same time. In that
+ * case a lock implementation suited to the shared storage must be provided instead.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class LockActivationPolicy implements ReleasableActivationPolicy {
+	/** Default lock name. */
+	private static final String DEFAULT_NAME = "conquiris-indexer";
+	/** Range (s) of the lock file stamps. */
+	private static final int STAMP_RANGE = 1000000;
+
+	/** Lock to use. */
+	private final Lock lock;
+	/** Lock file, if known. */
+	@Nullable
+	private final File lockFile;
+	/** Random source for the lock file stamps. */
+	private final Random random = new Random();
+	/** Retry interval (ns). */
+	private final long retry;
+	/** Whether the lock is held. */
+	@GuardedBy("this")
+	private boolean held = false;
+	/** Modification time the held lock file has been stamped with. */
+	@GuardedBy("this")
+	private long stamp = 0L;
+	/** Time (ns) of the last check of the held lock. */
+	@GuardedBy("this")
+	private long lastCheck = 0L;
+	/** Time (ns) of the last attempt. */
+	@GuardedBy("this")
+	private long lastAttempt = 0L;
+	/** Whether an attempt has been made. */
+	@GuardedBy("this")
+	private boolean attempted = false;
+
+	/**
+	 * Creates a new policy based on a lock.
+	 * @param lock Lock to use. It must not be used by anything else in the process.
+	 * @param retry Retry interval (>= 0).
+	 * @param unit Retry interval unit.
+	 * @return The requested policy.
+	 */
+	public static LockActivationPolicy of(Lock lock, long retry, TimeUnit unit) {
+		return new LockActivationPolicy(lock, null, retry, unit);
+	}
+
+	/**
+	 * Creates a new policy based on a native file system lock in the provided directory. It may be
+	 * shared among several hosts only if the file system supports native locks reliably (see the
+	 * class documentation).
+	 * @param lockDir Lock directory.
+	 * @param retry Retry interval (>= 0).
+	 * @param unit Retry interval unit.
+	 * @return The requested policy.
+	 */
+	public static LockActivationPolicy file(File lockDir, long retry, TimeUnit unit) {
+		checkNotNull(lockDir, "The lock directory must be provided");
+		try {
+			final NativeFSLockFactory factory = new NativeFSLockFactory(lockDir);
+			factory.setLockPrefix(null);
+			return new LockActivationPolicy(factory.makeLock(DEFAULT_NAME), new File(lockDir, DEFAULT_NAME), retry, unit);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(String.format("Unable to use lock directory %s", lockDir), e);
+		}
+	}
+
+	/** Constructor. */
+	private LockActivationPolicy(Lock lock, @Nullable File lockFile, long retry, TimeUnit unit) {
+		this.lock = checkNotNull(lock, "The lock must be provided");
+		this.lockFile = lockFile;
+		checkArgument(retry >= 0, "The retry interval must be >= 0");
+		this.retry = checkNotNull(unit, "The retry interval unit must be provided").toNanos(retry);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.index.IndexerActivationPolicy#isActive()
+	 */
+	@Override
+	public synchronized boolean isActive() {
+		final long now = System.nanoTime();
+		if (held) {
+			if (now - lastCheck < retry || isValid()) {
+				return true;
+			}
+			// Lost: released so that it can be obtained again, after a retry interval
+			unlock();
+			attempted = true;
+			lastAttempt = now;
+			return false;
+		}
+		if (attempted && now - lastAttempt < retry) {
+			return false;
+		}
+		attempted = true;
+		lastAttempt = now;
+		try {
+			held = lock.obtain();
+		} catch (IOException e) {
+			held = false;
+		}
+		if (held) {
+			stamp();
+		}
+		lastCheck = now;
+		return held;
+	}
+
+	/** Stamps the lock file, if known, with a random whole-second time in the past. */
+	@GuardedBy("this")
+	private void stamp() {
+		if (lockFile == null) {
+			return;
+		}
+		final long seconds = System.currentTimeMillis() / 1000L - 1L - random.nextInt(STAMP_RANGE);
+		final long time = seconds * 1000L;
+		stamp = lockFile.setLastModified(time) ? time : lockFile.lastModified();
+	}
+
+	/** Checks whether the held lock is still valid. */
+	@GuardedBy("this")
+	private boolean isValid() {
+		lastCheck = System.nanoTime();
+		try {
+			return lock.isLocked() && (lockFile == null || (stamp != 0L && lockFile.lastModified() == stamp));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/** Releases the lock, ignoring errors. */
+	@GuardedBy("this")
+	private void unlock() {
+		held = false;
+		try {
+			lock.release();
+		} catch (IOException e) {
+			// Swallowed
+		}
+	}
+
+	/**
+	 * Releases the lock, if held, allowing another process to become active. The policy will try to
+	 * obtain the lock again after the retry interval.
+	 */
+	@Override
+	public synchronized void release() {
+		if (!held) {
+			return;
+		}
+		unlock();
+		attempted = true;
+		lastAttempt = System.nanoTime();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return MoreObjects.toStringHelper(this).add("lock", lock).add("held", held).toString();
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.conquiris.api.index.IndexMetrics;
+import net.conquiris.api.search.SearchLoad;
+
+import org.apache.lucene.util.ThreadInterruptedException;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * IO throttle for segment merges. Limits the rate at which merges write to the index directory so
+ * that they do not saturate the disk used by searches. If a search load signal is provided, a lower
+ * rate is used while searches are busy. A throttle may be shared among several writers, in which
+ * case the limit applies to all of them.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class MergeThrottle {
+	/** Bytes per MB. */
+	private static final double MB = 1024.0 * 1024.0;
+
+	/** Rate limit (MB/s). */
+	private final double rate;
+	/** Rate limit while searches are busy (MB/s). */
+	private final double busyRate;
+	/** Search load signal. */
+	@Nullable
+	private final SearchLoad load;
+	/** Number of in-flight searches from which searches are considered busy. */
+	private final int busyInFlight;
+	/** Search latency (ms) from which searches are considered busy. */
+	private final double busyLatency;
+	/** Whether the current thread is merging. */
+	private final ThreadLocal<Boolean> merging = new ThreadLocal<Boolean>();
+	/** Time (ns) until which the IO budget has been consumed. */
+	@GuardedBy("this")
+	private long lastNS = System.nanoTime();
+	/** Number of merges performed. */
+	private final AtomicLong merges = new AtomicLong();
+	/** Time spent merging (ns). */
+	private final AtomicLong mergeTime = new AtomicLong();
+	/** Bytes written by merges. */
+	private final AtomicLong mergeBytes = new AtomicLong();
+	/** Time spent paused (ns). */
+	private final AtomicLong throttleTime = new AtomicLong();
+
+	/**
+	 * Creates a fixed rate merge throttle.
+	 * @param mbPerSec Rate limit (MB/s). Must be > 0.
+	 */
+	public static MergeThrottle of(double mbPerSec) {
+		return new MergeThrottle(mbPerSec, mbPerSec, null, Integer.MAX_VALUE, Double.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a merge throttle that adapts to the search load.
+	 * @param mbPerSec Rate limit (MB/s) while searches are not busy. Must be > 0.
+	 * @param busyMBPerSec Rate limit (MB/s) while searches are busy. Must be > 0.
+	 * @param load Search load signal (e.g., a searcher service).
+	 * @param busyInFlight Number of in-flight searches from which searches are considered busy.
+	 * @param busyLatency Search latency (ms) from which searches are considered busy.
+	 */
+	public static MergeThrottle adaptive(double mbPerSec, double busyMBPerSec, SearchLoad load, int busyInFlight,
+			double busyLatency) {
+		checkNotNull(load, "The search load signal must be provided");
+		return new MergeThrottle(mbPerSec, busyMBPerSec, load, busyInFlight, busyLatency);
+	}
+
+	/** Constructor. */
+	private MergeThrottle(double rate, double busyRate, SearchLoad load, int busyInFlight, double busyLatency) {
+		checkArgument(rate > 0, "The merge rate limit must be > 0");
+		checkArgument(busyRate > 0, "The busy merge rate limit must be > 0");
+		checkArgument(busyInFlight > 0, "The busy in-flight searches threshold must be > 0");
+		checkArgument(busyLatency > 0, "The busy search latency threshold must be > 0");
+		this.rate = rate;
+		this.busyRate = busyRate;
+		this.load = load;
+		this.busyInFlight = busyInFlight;
+		this.busyLatency = busyLatency;
+	}
+
+	/** Returns whether searches are currently busy. */
+	public boolean isBusy() {
+		if (load == null) {
+			return false;
+		}
+		try {
+			return load.getInFlight() >= busyInFlight || load.getLatency() >= busyLatency;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/** Returns the current rate limit (MB/s). */
+	public double getRate() {
+		return isBusy() ? busyRate : rate;
+	}
+
+	/** Returns the number of merges performed. */
+	public long getMerges() {
+		return merges.get();
+	}
+
+	/** Returns the time spent merging (ms). */
+	public long getMergeTime() {
+		return TimeUnit.NANOSECONDS.toMillis(mergeTime.get());
+	}
+
+	/** Returns the bytes written by merges. */
+	public long getMergeBytes() {
+		return mergeBytes.get();
+	}
+
+	/** Returns the time merges have been paused (ms). */
+	public long getThrottleTime() {
+		return TimeUnit.NANOSECONDS.toMillis(throttleTime.get());
+	}
+
+	/** Returns the throttle statistics as index metrics. */
+	public IndexMetrics getMetrics() {
+		return IndexMetrics.builder().add(IndexMetrics.MERGES, getMerges())
+				.add(IndexMetrics.MERGE_TIME, getMergeTime()).add(IndexMetrics.MERGE_BYTES, getMergeBytes())
+				.add(IndexMetrics.MERGE_THROTTLE_TIME, getThrottleTime()).add(IndexMetrics.MERGE_RATE, getRate())
+				.build();
+	}
+
+	/** Returns whether the current thread is performing a merge. */
+	boolean isMerging() {
+		return merging.get() != null;
+	}
+
+	/** Marks the start of a merge in the current thread. */
+	void started() {
+		merging.set(Boolean.TRUE);
+	}
+
+	/**
+	 * Marks the end of a merge in the current thread.
+	 * @param nanos Merge duration (ns).
+	 */
+	void finished(long nanos) {
+		merging.remove();
+		merges.incrementAndGet();
+		mergeTime.addAndGet(nanos);
+	}
+
+	/**
+	 * Accounts for bytes written by a merge, pausing the current thread as needed to keep the rate
+	 * limit.
+	 * @param bytes Number of bytes written since the last call.
+	 */
+	void pause(long bytes) {
+		mergeBytes.addAndGet(bytes);
+		final long ns = (long) (bytes * 1000000000.0 / (getRate() * MB));
+		final long now = System.nanoTime();
+		final long target;
+		synchronized (this) {
+			lastNS = Math.max(lastNS, now) + ns;
+			target = lastNS;
+		}
+		final long wait = target - now;
+		if (wait <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		} catch (InterruptedException e) {
+			throw new ThreadInterruptedException(e);
+		} finally {
+			throttleTime.addAndGet(System.nanoTime() - now);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("rate", rate).add("busyRate", busyRate).add("busy", isBusy())
+				.toString();
+	}
+}
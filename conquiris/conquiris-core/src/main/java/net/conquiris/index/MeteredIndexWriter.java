@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy.OneMerge;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Index writer that reports its flushes and merges to the service statistics and keeps track of the
+ * bytes flushed since the last commit.
+ * @author Andres Rodriguez
+ */
+final class MeteredIndexWriter extends IndexWriter {
+	/** Statistics. */
+	private final IndexStats stats;
+	/** Buffered bytes flushed since the last commit. */
+	private final AtomicLong flushedBytes = new AtomicLong();
+
+	/** Constructor. */
+	MeteredIndexWriter(Directory directory, IndexWriterConfig config, IndexStats stats) throws IOException {
+		super(directory, config);
+		this.stats = checkNotNull(stats, "The index statistics must be provided");
+	}
+
+	/** Returns the bytes written since the last commit, both flushed and buffered. */
+	long getUncommittedBytes() {
+		return flushedBytes.get() + ramSizeInBytes();
+	}
+
+	/** Called after the writer has been committed. */
+	void committed() {
+		flushedBytes.set(0L);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.index.IndexWriter#doBeforeFlush()
+	 */
+	@Override
+	protected void doBeforeFlush() throws IOException {
+		try {
+			flushedBytes.addAndGet(ramSizeInBytes());
+		} catch (AlreadyClosedException e) {
+			// Flush performed while closing, the changes are committed afterwards
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.index.IndexWriter#doAfterFlush()
+	 */
+	@Override
+	protected void doAfterFlush() throws IOException {
+		stats.flushed();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.index.IndexWriter#merge(org.apache.lucene.index.MergePolicy.OneMerge)
+	 */
+	@Override
+	public void merge(OneMerge merge) throws IOException {
+		stats.mergeStarted();
+		try {
+			super.merge(merge);
+		} finally {
+			stats.mergeFinished();
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.TimeUnit;
+
+import net.conquiris.api.index.DocumentWriter;
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.PartitionIndexer;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Resumable partitioned indexing runner. The progress of each partition is stored as a commit
+ * property. Unfinished partitions are kept in a shared queue from which a number of tasks take
+ * indexing steps, so that faster tasks take more work, until every partition is finished or the time
+ * budget is exhausted. Once every partition is finished the progress properties are removed, so a
+ * later run with the same name starts a new indexing.
+ * @author Andres Rodriguez
+ */
+final class PartitionRunner {
+	/** Progress property value of finished partitions. */
+	static final String FINISHED = "";
+
+	/** Returns the progress property key of a partition. */
+	static String key(String name, String partition) {
+		return name + '.' + partition;
+	}
+
+	/** Writer to use. */
+	private final AbstractWriter writer;
+	/** Document writer provided to the indexer. */
+	private final DocumentWriter documentWriter;
+	/** Partitioned indexing name. */
+	private final String name;
+	/** Partition indexer. */
+	private final PartitionIndexer indexer;
+	/** Deadline (nano time) after which no new steps are started. */
+	private final long deadline;
+	/** Unfinished partitions. */
+	private final Queue<String> pending = new ConcurrentLinkedQueue<String>();
+	/** Whether any of the tasks has failed. */
+	private volatile boolean failed = false;
+
+	/**
+	 * Constructor.
+	 * @param writer Writer to use.
+	 * @param name Partitioned indexing name.
+	 * @param indexer Partition indexer.
+	 * @param time Time budget.
+	 * @param unit Time budget unit.
+	 */
+	PartitionRunner(AbstractWriter writer, String name, PartitionIndexer indexer, long time, TimeUnit unit) {
+		this.writer = checkNotNull(writer, "The writer must be provided");
+		this.documentWriter = new DefaultDocumentWriter(writer);
+		this.name = checkNotNull(name, "The partitioned indexing name must be provided");
+		this.indexer = checkNotNull(indexer, "The partition indexer must be provided");
+		checkArgument(time > 0, "The time budget must be > 0");
+		this.deadline = System.nanoTime() + checkNotNull(unit, "The time unit must be provided").toNanos(time);
+	}
+
+	/**
+	 * Runs the indexing steps.
+	 * @param executor Executor to use.
+	 * @param parallelism Maximum number of concurrent tasks.
+	 * @param partitions Partition ids.
+	 * @return True if every partition is finished.
+	 */
+	boolean run(Executor executor, int parallelism, Iterable<String> partitions) throws InterruptedException,
+			IndexException {
+		checkNotNull(executor, "The executor must be provided");
+		checkArgument(parallelism > 0, "The parallelism must be > 0");
+		checkNotNull(partitions, "The partitions must be provided");
+		final List<String> keys = Lists.newArrayList();
+		for (String partition : partitions) {
+			checkNotNull(partition, "Null partition ids not allowed");
+			final String key = key(name, partition);
+			keys.add(key);
+			if (!FINISHED.equals(writer.getProperty(key))) {
+				pending.add(partition);
+			}
+		}
+		final int n = Math.min(parallelism, pending.size());
+		final CompletionService<Void> ecs = new ExecutorCompletionService<Void>(executor);
+		for (int i = 0; i < n; i++) {
+			ecs.submit(new Task());
+		}
+		Throwable failure = null;
+		try {
+			for (int i = 0; i < n; i++) {
+				try {
+					ecs.take().get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			failed = true;
+			throw e;
+		}
+		if (failure != null) {
+			Throwables.propagateIfInstanceOf(failure, InterruptedException.class);
+			throw Throwables.propagate(failure);
+		}
+		if (!pending.isEmpty()) {
+			return false;
+		}
+		for (String key : keys) {
+			writer.setProperty(key, null);
+		}
+		return true;
+	}
+
+	/** Partition indexing task. */
+	private final class Task implements Callable<Void> {
+		Task() {
+		}
+
+		@Override
+		public Void call() throws Exception {
+			boolean ok = false;
+			try {
+				while (!failed && System.nanoTime() < deadline && writer.ensureAvailable()) {
+					final String partition = pending.poll();
+					if (partition == null) {
+						break;
+					}
+					final String key = key(name, partition);
+					final String checkpoint = indexer.index(documentWriter, partition, writer.getProperty(key));
+					checkState(!FINISHED.equals(checkpoint), "Empty checkpoint returned for partition [%s]", partition);
+					if (checkpoint == null) {
+						writer.setProperty(key, FINISHED);
+					} else {
+						writer.setProperty(key, checkpoint);
+						pending.add(partition);
+					}
+				}
+				ok = true;
+			} finally {
+				if (!ok) {
+					failed = true;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import net.conquiris.api.index.IndexerActivationPolicy;
+
+/**
+ * Activation policy holding a resource while active (e.g., a leader lock), which indexer services
+ * release when they are stopped.
+ * @author Andres Rodriguez
+ */
+public interface ReleasableActivationPolicy extends IndexerActivationPolicy {
+	/**
+	 * Releases the held resource, if any, allowing another process to become active. The policy may
+	 * become active again when checked later.
+	 */
+	void release();
+}
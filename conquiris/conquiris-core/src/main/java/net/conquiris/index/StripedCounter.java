@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Counter spread over several cells, selected by thread, so that concurrent updates do not contend
+ * on a single value. Reading the value adds up the cells.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+final class StripedCounter {
+	/** Number of stripes (power of 2). */
+	private static final int STRIPES;
+	/** Cells per stripe. Only the first one is used, the rest avoid false sharing. */
+	private static final int PADDING = 8;
+
+	static {
+		int n = 1;
+		final int cpus = Runtime.getRuntime().availableProcessors();
+		while (n < cpus && n < 64) {
+			n <<= 1;
+		}
+		STRIPES = n;
+	}
+
+	/** Cells. */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	/** Constructor. */
+	StripedCounter() {
+	}
+
+	/** Adds a value to the counter. */
+	void add(long value) {
+		final int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+		cells.addAndGet(stripe * PADDING, value);
+	}
+
+	/** Increments the counter. */
+	void increment() {
+		add(1L);
+	}
+
+	/** Returns the current value. */
+	long get() {
+		long sum = 0L;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockFactory;
+
+/**
+ * Directory wrapper that rate limits the outputs created by merge threads. Every other operation is
+ * delegated. Closing the wrapper does not close the delegate.
+ * @author Andres Rodriguez
+ */
+final class ThrottledDirectory extends Directory {
+	/** Number of bytes written between pauses. */
+	private static final int CHUNK = 64 * 1024;
+
+	/** Wrapped directory. */
+	private final Directory delegate;
+	/** Merge throttle. */
+	private final MergeThrottle throttle;
+
+	/** Constructor. */
+	ThrottledDirectory(Directory delegate, MergeThrottle throttle) {
+		this.delegate = checkNotNull(delegate, "The directory to throttle must be provided");
+		this.throttle = checkNotNull(throttle, "The merge throttle must be provided");
+	}
+
+	@Override
+	public String[] listAll() throws IOException {
+		return delegate.listAll();
+	}
+
+	@Override
+	public boolean fileExists(String name) throws IOException {
+		return delegate.fileExists(name);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public long fileModified(String name) throws IOException {
+		return delegate.fileModified(name);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public void touchFile(String name) throws IOException {
+		delegate.touchFile(name);
+	}
+
+	@Override
+	public void deleteFile(String name) throws IOException {
+		delegate.deleteFile(name);
+	}
+
+	@Override
+	public long fileLength(String name) throws IOException {
+		return delegate.fileLength(name);
+	}
+
+	@Override
+	public IndexOutput createOutput(String name) throws IOException {
+		final IndexOutput output = delegate.createOutput(name);
+		return throttle.isMerging() ? new ThrottledOutput(output) : output;
+	}
+
+	@Override
+	public void sync(Collection<String> names) throws IOException {
+		delegate.sync(names);
+	}
+
+	@Override
+	public IndexInput openInput(String name) throws IOException {
+		return delegate.openInput(name);
+	}
+
+	@Override
+	public IndexInput openInput(String name, int bufferSize) throws IOException {
+		return delegate.openInput(name, bufferSize);
+	}
+
+	@Override
+	public Lock makeLock(String name) {
+		return delegate.makeLock(name);
+	}
+
+	@Override
+	public void clearLock(String name) throws IOException {
+		delegate.clearLock(name);
+	}
+
+	@Override
+	public void setLockFactory(LockFactory lockFactory) throws IOException {
+		delegate.setLockFactory(lockFactory);
+	}
+
+	@Override
+	public LockFactory getLockFactory() {
+		return delegate.getLockFactory();
+	}
+
+	@Override
+	public String getLockID() {
+		return delegate.getLockID();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The delegate is owned by the service.
+	}
+
+	@Override
+	public String toString() {
+		return "Throttled(" + delegate + ")";
+	}
+
+	/** Rate limited output. */
+	private final class ThrottledOutput extends IndexOutput {
+		/** Wrapped output. */
+		private final IndexOutput output;
+		/** Bytes written since the last pause. */
+		private long pending = 0L;
+
+		ThrottledOutput(IndexOutput output) {
+			this.output = output;
+		}
+
+		private void written(int bytes) {
+			pending += bytes;
+			if (pending >= CHUNK) {
+				final long bytesToPause = pending;
+				pending = 0L;
+				throttle.pause(bytesToPause);
+			}
+		}
+
+		@Override
+		public void writeByte(byte b) throws IOException {
+			output.writeByte(b);
+			written(1);
+		}
+
+		@Override
+		public void writeBytes(byte[] b, int offset, int length) throws IOException {
+			output.writeBytes(b, offset, length);
+			written(length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			output.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			output.close();
+			if (pending > 0) {
+				throttle.pause(pending);
+				pending = 0L;
+			}
+		}
+
+		@Override
+		public long getFilePointer() {
+			return output.getFilePointer();
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			output.seek(pos);
+		}
+
+		@Override
+		public long length() throws IOException {
+			return output.length();
+		}
+
+		@Override
+		public void setLength(long length) throws IOException {
+			output.setLength(length);
+		}
+	}
+}
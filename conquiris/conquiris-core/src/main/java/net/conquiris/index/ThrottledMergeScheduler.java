@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.MergePolicy.OneMerge;
+
+/**
+ * Concurrent merge scheduler that marks merge threads in a merge throttle, so that their writes
+ * through a {@link ThrottledDirectory} are rate limited, and collects merge statistics.
+ * @author Andres Rodriguez
+ */
+final class ThrottledMergeScheduler extends ConcurrentMergeScheduler {
+	/** Merge throttle. */
+	private final MergeThrottle throttle;
+
+	/** Constructor. */
+	ThrottledMergeScheduler(MergeThrottle throttle) {
+		this.throttle = checkNotNull(throttle, "The merge throttle must be provided");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.index.ConcurrentMergeScheduler#doMerge(org.apache.lucene.index.MergePolicy.
+	 * OneMerge)
+	 */
+	@Override
+	protected void doMerge(OneMerge merge) throws IOException {
+		final long t0 = System.nanoTime();
+		throttle.started();
+		try {
+			super.doMerge(merge);
+		} finally {
+			throttle.finished(System.nanoTime() - t0);
+		}
+	}
+}
@@ -24,6 +24,8 @@ import net.conquiris.api.search.Reader;
 import net.conquiris.api.search.ReaderSupplier;
 import net.conquiris.api.search.SearchException;
 
+import org.apache.lucene.index.IndexReader;
+
 /**
  * Abstract class for reader supplier implementations. This class takes care of the requests count
  * and exception transformation.
@@ -58,6 +60,15 @@ abstract class AbstractReaderSupplier implements ReaderSupplier {
 
 	abstract Reader doGet() throws Exception;
 
+	/**
+	 * Returns whether a reader provided by this supplier is still based on the current source of
+	 * readers. If not, managed suppliers open a new reader instead of reopening it.
+	 * @param reader Reader to check.
+	 */
+	boolean isCurrent(IndexReader reader) {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.conquiris.api.search.ReaderSupplier#getRequested()
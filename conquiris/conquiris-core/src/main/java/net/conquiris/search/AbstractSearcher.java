@@ -150,12 +150,17 @@ abstract class AbstractSearcher implements Searcher {
 		});
 	}
 
-	/** TopDocs helper method. */
+	/**
+	 * TopDocs helper method. Sorts by a single numeric field matching the order the index has been
+	 * kept in terminate collection early on segments already in sort order.
+	 */
 	private TopDocs getTopDocs(IndexSearcher searcher, Query query, Filter filter, Sort sort, int hits)
 			throws IOException {
 		final TopDocs docs;
 		if (sort == null) {
 			docs = searcher.search(query, filter, hits);
+		} else if (SortedSegments.isIndexOrder(searcher.getIndexReader(), sort)) {
+			docs = SortedSegments.search(searcher, query, filter, sort, hits);
 		} else {
 			docs = searcher.search(query, filter, hits, sort);
 		}
@@ -119,12 +119,23 @@ final class DefaultManagedReaderSupplier extends AbstractReaderSupplier implemen
 				}
 			} else if (watch == null || watch.elapsed(TimeUnit.MILLISECONDS) > holdTime) {
 				IndexReader indexReader = reader.get();
-				IndexReader reopened = IndexReader.openIfChanged(indexReader);
-				if (reopened != null) {
-					start(Reader.of(reopened, true));
+				if (source instanceof AbstractReaderSupplier && !((AbstractReaderSupplier) source).isCurrent(indexReader)) {
+					// The source has moved to a different index
+					final Reader fresh = checkNotNull(source.get(), "The source supplier returned a null reader");
+					start(fresh);
 					this.reopened.incrementAndGet();
+					if (reader == null) { // Not reopenable
+						ok = true;
+						return fresh;
+					}
 				} else {
-					this.reused.incrementAndGet();
+					IndexReader reopened = IndexReader.openIfChanged(indexReader);
+					if (reopened != null) {
+						start(Reader.of(reopened, true));
+						this.reopened.incrementAndGet();
+					} else {
+						this.reused.incrementAndGet();
+					}
 				}
 			} else {
 				this.reused.incrementAndGet();
@@ -18,6 +18,8 @@ package net.conquiris.search;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.conquiris.api.search.ReaderSupplier;
 import net.conquiris.api.search.Searcher;
@@ -33,8 +35,19 @@ import com.google.common.base.Function;
  * @author Andres Rodriguez
  */
 final class DefaultSearcherService extends AbstractSearcher implements SearcherService {
+	/** Weight of the last sample in the latency moving average. */
+	private static final double ALPHA = 0.2;
+	/** Time constant (ns) of the decay of the latency moving average while there are no samples. */
+	private static final double DECAY = TimeUnit.SECONDS.toNanos(1L);
+
 	/** Reader supplier to use. */
 	private final ReaderSupplier supplier;
+	/** Searches in progress. */
+	private final AtomicInteger inFlight = new AtomicInteger();
+	/** Latency moving average (ms) at the time of the last sample. */
+	private double latency = 0.0;
+	/** Time (ns) of the last latency sample. */
+	private long sampled = System.nanoTime();
 
 	/** Constructor. */
 	DefaultSearcherService(ReaderSupplier supplier) {
@@ -56,6 +69,53 @@ final class DefaultSearcherService extends AbstractSearcher implements SearcherS
 		});
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.search.SearchLoad#getInFlight()
+	 */
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.api.search.SearchLoad#getLatency()
+	 */
+	@Override
+	public double getLatency() {
+		synchronized (inFlight) {
+			return decayed(System.nanoTime());
+		}
+	}
+
+	/** Returns the latency moving average decayed for the time elapsed since the last sample. */
+	private double decayed(long now) {
+		return latency * Math.exp((sampled - now) / DECAY);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.search.AbstractSearcher#perform(net.conquiris.search.AbstractSearcher.Op)
+	 */
+	@Override
+	<T> T perform(Op<T> operation) {
+		inFlight.incrementAndGet();
+		final long t0 = System.nanoTime();
+		try {
+			return super.perform(operation);
+		} finally {
+			final long t1 = System.nanoTime();
+			final double ms = (t1 - t0) / 1000000.0;
+			synchronized (inFlight) {
+				final double current = decayed(t1);
+				latency = current + ALPHA * (ms - current);
+				sampled = t1;
+			}
+			inFlight.decrementAndGet();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.conquiris.search.AbstractSearcher#getIndexSearcher()
@@ -25,21 +25,38 @@ import org.apache.lucene.index.IndexNotFoundException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.Directory;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
 /**
  * Single directory unmanaged reader supplier implementation. If no index is found in the directory
- * a non-reopenable empty reader is returned and the request is counted as successful.
+ * a non-reopenable empty reader is returned and the request is counted as successful. The directory
+ * is provided by a supplier, so it may change over time (e.g., after a shadow reindex).
  * @author Andres Rodriguez
  */
 final class DirectoryReaderSupplier extends AbstractReaderSupplier {
-	/** Directory. */
-	private final Directory directory;
+	/** Directory supplier. */
+	private final Supplier<? extends Directory> directory;
 
 	/**
 	 * Constructor.
 	 * @param directory Directory to use.
 	 */
 	DirectoryReaderSupplier(Directory directory) {
-		this.directory = checkNotNull(directory, "The index directory must be provided");
+		this(Suppliers.ofInstance(checkNotNull(directory, "The index directory must be provided")));
+	}
+
+	/**
+	 * Constructor.
+	 * @param directory Supplier of the directory to use.
+	 */
+	DirectoryReaderSupplier(Supplier<? extends Directory> directory) {
+		this.directory = checkNotNull(directory, "The index directory supplier must be provided");
+	}
+
+	/** Returns the current directory. */
+	private Directory directory() {
+		return checkNotNull(directory.get(), "Null index directory supplied");
 	}
 
 	/*
@@ -49,11 +66,24 @@ final class DirectoryReaderSupplier extends AbstractReaderSupplier {
 	@Override
 	Reader doGet() throws IOException {
 		try {
-			final IndexReader reader = IndexReader.open(directory);
+			final IndexReader reader = IndexReader.open(directory());
 			return Reader.of(reader, true);
 		} catch (IndexNotFoundException e) {
 			return ReaderSuppliers.empty().get();
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.search.AbstractReaderSupplier#isCurrent(org.apache.lucene.index.IndexReader)
+	 */
+	@Override
+	boolean isCurrent(IndexReader reader) {
+		try {
+			return reader.directory() == directory();
+		} catch (UnsupportedOperationException e) {
+			return true;
+		}
+	}
+
 }
@@ -22,6 +22,8 @@ import net.derquinse.common.base.NotInstantiable;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.store.Directory;
 
+import com.google.common.base.Supplier;
+
 /**
  * Reader suppliers support class.
  * @author Andres Rodriguez
@@ -44,6 +46,15 @@ public final class ReaderSuppliers extends NotInstantiable {
 		return new DirectoryReaderSupplier(directory);
 	}
 
+	/**
+	 * Returns an unmanaged reader supplier using the directory provided by a supplier. Managed
+	 * suppliers built on it open a new reader when the supplied directory changes.
+	 * @param directory Directory supplier to use.
+	 */
+	public static ReaderSupplier directory(Supplier<? extends Directory> directory) {
+		return new DirectoryReaderSupplier(directory);
+	}
+
 	/**
 	 * Returns an unmanaged near-real-time reader supplier using the provided index writer.
 	 * @param writer Index writer.
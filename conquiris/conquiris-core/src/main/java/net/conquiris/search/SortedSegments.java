@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.search;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import net.conquiris.index.IndexOrder;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ReaderUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Sorted search with early termination for segments whose documents are already in sort order,
+ * used only when the index has been kept in that order (see {@link IndexOrder}). Only sorts by a
+ * single int or long field are supported. Whether a segment is in order is checked once per
+ * segment core on the FieldCache values the sort loads anyway, so the result is always the same as
+ * the one of a full search. Collection of a segment in order stops once it has provided the
+ * requested number of hits, and the rest of its documents are not visited. The number of matching
+ * documents of such a segment is then estimated from the density of matches in the visited part, so
+ * the total number of hits is an estimate unless every segment has been fully visited.
+ * @author Andres Rodriguez
+ */
+final class SortedSegments {
+	/** Not instantiable. */
+	private SortedSegments() {
+		throw new AssertionError();
+	}
+
+	/** Segment values in non-decreasing order. */
+	private static final int ASCENDING = 1;
+	/** Segment values in non-increasing order. */
+	private static final int DESCENDING = 2;
+
+	/** Segment orders by segment core. */
+	private static final Cache<Object, ConcurrentMap<String, Integer>> CACHE = CacheBuilder.newBuilder().weakKeys()
+			.build();
+
+	/** Per-core map factory. */
+	private enum NewMap implements Callable<ConcurrentMap<String, Integer>> {
+		INSTANCE;
+
+		@Override
+		public ConcurrentMap<String, Integer> call() {
+			return Maps.newConcurrentMap();
+		}
+	}
+
+	/** Returns the sort field if the provided sort is supported, {@code null} otherwise. */
+	@Nullable
+	static SortField supported(@Nullable Sort sort) {
+		if (sort == null) {
+			return null;
+		}
+		final SortField[] fields = sort.getSort();
+		if (fields.length != 1) {
+			return null;
+		}
+		final SortField f = fields[0];
+		final int type = f.getType();
+		if ((type == SortField.INT || type == SortField.LONG) && f.getField() != null && f.getParser() == null) {
+			return f;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether a sort is supported and the commit data of the index read by the provided
+	 * reader records that all its documents have been added in the order of the sort.
+	 */
+	static boolean isIndexOrder(IndexReader reader, @Nullable Sort sort) throws IOException {
+		if (supported(sort) == null) {
+			return false;
+		}
+		final Map<String, String> data;
+		try {
+			data = reader.getIndexCommit().getUserData();
+		} catch (UnsupportedOperationException e) {
+			return false; // Not a directory reader
+		}
+		final IndexOrder order = IndexOrder.fromCommitData(data);
+		return order != null && order.matches(sort);
+	}
+
+	/** Returns the order flags of a segment for a field. */
+	private static int order(IndexReader reader, SortField field) throws IOException {
+		final ConcurrentMap<String, Integer> map;
+		try {
+			map = CACHE.get(reader.getCoreCacheKey(), NewMap.INSTANCE);
+		} catch (ExecutionException e) {
+			throw new UncheckedExecutionException(e.getCause());
+		}
+		final String key = field.getField() + (field.getType() == SortField.INT ? ":int" : ":long");
+		Integer order = map.get(key);
+		if (order == null) {
+			order = compute(reader, field);
+			map.putIfAbsent(key, order);
+		}
+		return order;
+	}
+
+	private static int compute(IndexReader reader, SortField field) throws IOException {
+		int order = ASCENDING | DESCENDING;
+		if (field.getType() == SortField.INT) {
+			final int[] values = FieldCache.DEFAULT.getInts(reader, field.getField());
+			for (int i = 1; i < values.length && order != 0; i++) {
+				if (values[i] < values[i - 1]) {
+					order &= ~ASCENDING;
+				} else if (values[i] > values[i - 1]) {
+					order &= ~DESCENDING;
+				}
+			}
+		} else {
+			final long[] values = FieldCache.DEFAULT.getLongs(reader, field.getField());
+			for (int i = 1; i < values.length && order != 0; i++) {
+				if (values[i] < values[i - 1]) {
+					order &= ~ASCENDING;
+				} else if (values[i] > values[i - 1]) {
+					order &= ~DESCENDING;
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Performs a sorted search.
+	 * @param searcher Searcher to use.
+	 * @param query Query.
+	 * @param filter Filter, if any.
+	 * @param sort Sort to use. Must be supported.
+	 * @param n Number of hits to collect. It is limited to the number of documents of the index.
+	 * @return The top documents. The total number of hits may be an estimate.
+	 */
+	static TopDocs search(IndexSearcher searcher, Query query, @Nullable Filter filter, Sort sort, int n)
+			throws IOException {
+		final SortField field = supported(sort);
+		// As IndexSearcher does, don't allocate a queue larger than the index
+		final int hits = Math.max(1, Math.min(n, searcher.maxDoc()));
+		final int required = field.getReverse() ? DESCENDING : ASCENDING;
+		final Weight weight = searcher.createNormalizedWeight(filter == null ? query : new FilteredQuery(query, filter));
+		final TopFieldCollector collector = TopFieldCollector.create(sort, hits, true, false, false, true);
+		final List<IndexReader> segments = Lists.newArrayList();
+		ReaderUtil.gatherSubReaders(segments, searcher.getIndexReader());
+		long total = 0;
+		int docBase = 0;
+		for (IndexReader segment : segments) {
+			final Scorer scorer = weight.scorer(segment, true, false);
+			if (scorer != null) {
+				collector.setNextReader(segment, docBase);
+				collector.setScorer(scorer);
+				final int limit = (order(segment, field) & required) != 0 ? hits : Integer.MAX_VALUE;
+				int count = 0;
+				while (count < limit && scorer.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+					collector.collect(scorer.docID());
+					count++;
+				}
+				// Segment in order: the remaining documents can't be competitive, estimate their number
+				long matches = count;
+				if (count == limit) {
+					final int doc = scorer.nextDoc();
+					if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+						matches = (count + 1L) * segment.maxDoc() / (doc + 1);
+					}
+				}
+				total += matches;
+			}
+			docBase += segment.maxDoc();
+		}
+		final TopDocs docs = collector.topDocs();
+		docs.totalHits = (int) Math.min(Integer.MAX_VALUE, total);
+		return docs;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.api.index;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for Partitions.
+ * @author Andres Rodriguez
+ */
+public class PartitionsTest {
+	@Test
+	public void split() {
+		assertEquals(Partitions.ofLongRange(1, 10, 3), ImmutableList.of("1:4", "5:7", "8:10"));
+		assertEquals(Partitions.ofLongRange(-2, 0, 5), ImmutableList.of("-2:-2", "-1:-1", "0:0"));
+		assertEquals(Partitions.ofLongRange(7, 7, 1), ImmutableList.of("7:7"));
+		List<String> all = Partitions.ofLongRange(Long.MIN_VALUE, Long.MAX_VALUE, 2);
+		assertEquals(all.size(), 2);
+		assertEquals(Partitions.lower(all.get(0)), Long.MIN_VALUE);
+		assertEquals(Partitions.upper(all.get(0)), -1L);
+		assertEquals(Partitions.lower(all.get(1)), 0L);
+		assertEquals(Partitions.upper(all.get(1)), Long.MAX_VALUE);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalid() {
+		Partitions.lower("12");
+	}
+}
@@ -24,9 +24,12 @@ import net.conquiris.search.ReaderSuppliers;
 import net.conquiris.search.Searchers;
 import net.conquiris.support.TestSupport;
 
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
 
+import com.google.common.base.Supplier;
+
 /**
  * Tests for DefaultIndexerService.
  * @author Andres Rodriguez
@@ -53,9 +56,13 @@ public class AbstractDirectoryIndexerServiceTest {
 	}
 
 	final void create(Indexer indexer) {
+		create(indexer, Conquiris.writerConfigSupplier());
+	}
+
+	final void create(Indexer indexer, Supplier<IndexWriterConfig> configSupplier) {
 		directory = new RAMDirectory();
-		searcher = Searchers.service(ReaderSuppliers.directory(directory));
-		service = new DirectoryIndexerService(indexer, directory, Conquiris.writerConfigSupplier());
+		service = new DirectoryIndexerService(indexer, directory, configSupplier);
+		searcher = Searchers.service(ReaderSuppliers.directory(service.getDirectorySupplier()));
 		service.setDelays(Delays.constant(50));
 	}
 }
@@ -18,6 +18,8 @@ package net.conquiris.index;
 import static org.testng.Assert.assertTrue;
 import net.conquiris.support.TestIndexer;
 import net.conquiris.support.TestMultiIndexer;
+import net.conquiris.support.TestPartitionedIndexer;
+import net.conquiris.support.TestPipelineIndexer;
 import net.conquiris.support.TestSimpleIndexer;
 
 import org.testng.annotations.Test;
@@ -77,4 +79,23 @@ public class DirectoryIndexerServiceSMTest extends AbstractDirectoryIndexerServi
 		testService();
 	}
 
+	@Test(dependsOnMethods = "multi")
+	public void pipeline() throws InterruptedException {
+		final TestPipelineIndexer pipeline = new TestPipelineIndexer();
+		indexer = pipeline;
+		indexer.setTarget(20000);
+		try {
+			testService();
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+
+	@Test(dependsOnMethods = "pipeline")
+	public void partitioned() throws InterruptedException {
+		indexer = new TestPartitionedIndexer();
+		indexer.setTarget(2000);
+		testService();
+	}
+
 }
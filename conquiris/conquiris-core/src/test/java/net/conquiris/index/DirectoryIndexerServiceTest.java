@@ -15,12 +15,47 @@
  */
 package net.conquiris.index;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.conquiris.api.index.Checkpoints;
+import net.conquiris.api.index.Delays;
+import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.IndexMetrics;
+import net.conquiris.api.index.IndexReport;
+import net.conquiris.api.index.IndexReportLevel;
+import net.conquiris.api.index.MutableIndexerActivationPolicy;
+import net.conquiris.api.search.SearchLoad;
+import net.conquiris.api.search.SearcherService;
+import net.conquiris.lucene.Conquiris;
+import net.conquiris.search.Searchers;
 import net.conquiris.support.TestIndexer;
 import net.conquiris.support.TestSimpleIndexer;
+import net.conquiris.support.TestSupport;
 
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.RAMDirectory;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
 /**
  * Tests for DefaultIndexerService: Methods.
  * @author Andres Rodriguez
@@ -99,4 +134,338 @@ public class DirectoryIndexerServiceTest extends AbstractDirectoryIndexerService
 		service.setCheckpoint(null);
 		checkEmpty();
 	}
+
+	private void waitFor(int cp) throws InterruptedException {
+		for (int i = 0; i < 200 && checkpoint() < cp; i++) {
+			Thread.sleep(50L);
+		}
+		assertEquals(checkpoint(), cp);
+	}
+
+	@Test
+	public void shadow() throws InterruptedException {
+		create(200);
+		service.setShadowSupplier(new Supplier<Directory>() {
+			@Override
+			public Directory get() {
+				return new RAMDirectory();
+			}
+		});
+		final List<Directory> switched = Lists.newCopyOnWriteArrayList();
+		service.setSwitchListener(new DirectorySwitchListener() {
+			@Override
+			public void switched(Directory previous, Directory current) {
+				switched.add(previous);
+				switched.add(current);
+			}
+		});
+		waitFor(200);
+		final Directory original = service.getDirectory();
+		assertTrue(switched.isEmpty());
+		service.reindex();
+		Thread.sleep(100L);
+		// The current index keeps serving while the shadow one is built
+		assertEquals(checkpoint(), 200);
+		assertEquals(count(), 200);
+		for (int i = 0; i < 200 && service.getDirectory() == original; i++) {
+			Thread.sleep(50L);
+		}
+		assertNotSame(service.getDirectory(), original);
+		assertEquals(checkpoint(), 200);
+		assertEquals(count(), 200);
+		assertEquals(switched.size(), 2);
+		assertSame(switched.get(0), original);
+		assertSame(switched.get(1), service.getDirectory());
+		service.stop();
+	}
+
+	private static IndexInfo read(Directory directory) throws IOException {
+		final SegmentInfos infos = new SegmentInfos();
+		infos.read(directory);
+		return IndexInfo.fromMap(0, infos.getUserData());
+	}
+
+	@Test
+	public void infoCache() throws Exception {
+		create(100);
+		waitFor(100);
+		service.stop();
+		final Directory current = service.getDirectory();
+		final IndexWriter w = new IndexWriter(current, Conquiris.writerConfig());
+		w.addDocument(TestSupport.document(CP1));
+		w.commit(ImmutableMap.of(IndexInfo.CHECKPOINT, Integer.toString(CP1)));
+		w.close();
+		// Reports are served from the cached info
+		assertEquals(checkpoint(), 100);
+		assertEquals(service.getIndexReport(IndexReportLevel.DETAILED).getInfo().get().getCheckpoint(), "100");
+		assertEquals(new DirectoryIndexerService(indexer, current, Conquiris.writerConfigSupplier()).getIndexInfo()
+				.getCheckpoint(), Integer.toString(CP1));
+	}
+
+	@Test
+	public void infoCreated() throws Exception {
+		create(100);
+		waitFor(100);
+		indexer.setTarget(50);
+		service.reindex();
+		for (int i = 0; i < 200 && checkpoint() != 50; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		assertEquals(checkpoint(), 50);
+		assertEquals(service.getIndexInfo().getSequence(), read(service.getDirectory()).getSequence());
+		assertEquals(service.getIndexInfo().getDocuments(), 50);
+	}
+
+	@Test
+	public void infoSwitched() throws Exception {
+		create(100);
+		service.setShadowSupplier(new Supplier<Directory>() {
+			@Override
+			public Directory get() {
+				return new RAMDirectory();
+			}
+		});
+		waitFor(100);
+		final Directory original = service.getDirectory();
+		service.reindex();
+		for (int i = 0; i < 200 && service.getDirectory() == original; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		assertNotSame(service.getDirectory(), original);
+		final IndexInfo info = read(service.getDirectory());
+		assertEquals(service.getIndexInfo().getSequence(), info.getSequence());
+		assertEquals(service.getIndexInfo().getCheckpoint(), info.getCheckpoint());
+	}
+
+	@Test
+	public void deferred() throws InterruptedException {
+		create(100);
+		service.setCommitPolicy(CommitPolicy.of(1000, 0L, 0L, 0L, TimeUnit.MILLISECONDS));
+		final SearcherService nrt = Searchers.service(service.getNearRealTimeSupplier());
+		int visible = TestSupport.getCount(nrt);
+		for (int i = 0; i < 200 && visible < 100; i++) {
+			Thread.sleep(50L);
+			visible = TestSupport.getCount(nrt);
+		}
+		// Changes are visible before being committed
+		assertEquals(visible, 100);
+		assertTrue(checkpoint() < 100);
+		// Deferred changes are committed when the service is stopped
+		service.stop();
+		assertEquals(checkpoint(), 100);
+		assertEquals(count(), 100);
+	}
+
+	@Test
+	public void bytes() throws InterruptedException {
+		indexer.setTarget(Integer.MAX_VALUE - 10);
+		create(indexer, new Supplier<IndexWriterConfig>() {
+			@Override
+			public IndexWriterConfig get() {
+				return Conquiris.writerConfig().setRAMBufferSizeMB(0.05);
+			}
+		});
+		// The threshold is larger than the RAM buffer, so it is only reached counting flushed bytes
+		service.setCommitPolicy(CommitPolicy.of(0, 0L, 256 * 1024L, 0L, TimeUnit.MILLISECONDS));
+		service.start();
+		for (int i = 0; i < 400 && checkpoint() == 0; i++) {
+			Thread.sleep(50L);
+		}
+		assertTrue(checkpoint() > 0);
+		service.stop();
+	}
+
+	@Test
+	public void throttled() throws InterruptedException {
+		final SearchLoad load = new SearchLoad() {
+			@Override
+			public int getInFlight() {
+				return 0;
+			}
+
+			@Override
+			public double getLatency() {
+				return 500.0;
+			}
+		};
+		final MergeThrottle throttle = MergeThrottle.adaptive(100.0, 1.0, load, 10, 100.0);
+		assertTrue(throttle.isBusy());
+		assertEquals(throttle.getRate(), 1.0);
+		assertFalse(MergeThrottle.of(100.0).isBusy());
+		indexer.setTarget(300);
+		// Small segments and merge factor, so that every few cycles segments are merged
+		create(indexer, new Supplier<IndexWriterConfig>() {
+			@Override
+			public IndexWriterConfig get() {
+				final LogDocMergePolicy policy = new LogDocMergePolicy();
+				policy.setMergeFactor(2);
+				return Conquiris.writerConfig().setMaxBufferedDocs(10).setMergePolicy(policy);
+			}
+		});
+		service.setMergeThrottle(throttle);
+		service.start();
+		waitFor(300);
+		assertEquals(count(), 300);
+		IndexMetrics metrics = null;
+		for (int i = 0; i < 100; i++) {
+			final IndexReport report = service.getIndexReport(IndexReportLevel.DETAILED);
+			metrics = report.getMetrics().get();
+			if (metrics.get(IndexMetrics.MERGE_THROTTLE_TIME).doubleValue() > 0.0) {
+				break;
+			}
+			Thread.sleep(50L);
+		}
+		assertEquals(metrics.get(IndexMetrics.MERGE_RATE).doubleValue(), 1.0);
+		assertTrue(metrics.get(IndexMetrics.MERGE_BYTES).doubleValue() > 0.0);
+		assertTrue(metrics.get(IndexMetrics.MERGE_THROTTLE_TIME).doubleValue() > 0.0);
+		service.stop();
+		assertTrue(throttle.getMerges() > 0);
+	}
+
+	@Test
+	public void inactive() throws InterruptedException {
+		final MutableIndexerActivationPolicy policy = MutableIndexerActivationPolicy.inactive();
+		indexer.setTarget(100);
+		create(indexer);
+		service.setActivationPolicy(policy);
+		service.start();
+		Thread.sleep(300L);
+		assertFalse(service.isIndexActive());
+		assertEquals(checkpoint(), 0);
+		policy.setActive(true);
+		waitFor(100);
+		assertEquals(count(), 100);
+		service.stop();
+	}
+
+	@Test
+	public void lock() {
+		final File dir = Files.createTempDir();
+		final LockActivationPolicy p1 = LockActivationPolicy.file(dir, 0L, TimeUnit.MILLISECONDS);
+		final LockActivationPolicy p2 = LockActivationPolicy.file(dir, 0L, TimeUnit.MILLISECONDS);
+		assertTrue(p1.isActive());
+		assertFalse(p2.isActive());
+		p1.release();
+		assertTrue(p2.isActive());
+		assertFalse(p1.isActive());
+		p2.release();
+	}
+
+	@Test
+	public void lockReleased() throws InterruptedException {
+		final File dir = Files.createTempDir();
+		final LockActivationPolicy p1 = LockActivationPolicy.file(dir, 0L, TimeUnit.MILLISECONDS);
+		final LockActivationPolicy p2 = LockActivationPolicy.file(dir, 0L, TimeUnit.MILLISECONDS);
+		indexer.setTarget(50);
+		create(indexer);
+		service.setActivationPolicy(p1);
+		// Reports don't try to obtain the lock
+		assertFalse(service.getIndexReport(IndexReportLevel.BASIC).isIndexActive());
+		assertTrue(p2.isActive());
+		p2.release();
+		service.start();
+		waitFor(50);
+		assertTrue(service.getIndexReport(IndexReportLevel.BASIC).isIndexActive());
+		assertFalse(p2.isActive());
+		// Stopping the service releases the lock
+		service.stop();
+		assertFalse(service.getIndexReport(IndexReportLevel.BASIC).isIndexActive());
+		assertTrue(p2.isActive());
+		p2.release();
+	}
+
+	@Test
+	public void lockLost() {
+		final AtomicBoolean locked = new AtomicBoolean();
+		final AtomicBoolean taken = new AtomicBoolean();
+		final Lock lock = new Lock() {
+			@Override
+			public boolean obtain() {
+				return !taken.get() && locked.compareAndSet(false, true);
+			}
+
+			@Override
+			public void release() {
+				locked.set(false);
+			}
+
+			@Override
+			public boolean isLocked() {
+				return locked.get();
+			}
+		};
+		final LockActivationPolicy p = LockActivationPolicy.of(lock, 0L, TimeUnit.MILLISECONDS);
+		assertTrue(p.isActive());
+		assertTrue(p.isActive());
+		// Lost and taken by another process
+		locked.set(false);
+		taken.set(true);
+		assertFalse(p.isActive());
+		// Available again
+		taken.set(false);
+		assertTrue(p.isActive());
+		assertTrue(locked.get());
+		p.release();
+		assertFalse(locked.get());
+	}
+
+	@Test
+	public void lockReplaced() throws Exception {
+		final File dir = Files.createTempDir();
+		final LockActivationPolicy p = LockActivationPolicy.file(dir, 100L, TimeUnit.MILLISECONDS);
+		assertTrue(p.isActive());
+		// Lock file removed and created again, e.g. by another process about to lock it
+		final File file = new File(dir, "conquiris-indexer");
+		assertTrue(file.delete());
+		assertTrue(file.createNewFile());
+		Thread.sleep(150L);
+		assertFalse(p.isActive());
+		// Nobody has locked the new file, so it is obtained after the retry interval
+		Thread.sleep(150L);
+		assertTrue(p.isActive());
+		p.release();
+	}
+
+	@Test
+	public void shared() throws InterruptedException {
+		final IndexerScheduler scheduler = IndexerScheduler.create(2);
+		final List<DirectoryIndexerService> services = Lists.newArrayList();
+		for (int i = 0; i < 5; i++) {
+			final TestIndexer tenant = new TestSimpleIndexer();
+			tenant.setTarget(100 * (i + 1));
+			final DirectoryIndexerService s = new DirectoryIndexerService(tenant, new RAMDirectory(),
+					Conquiris.writerConfigSupplier());
+			s.setDelays(Delays.constant(50));
+			s.setScheduler(scheduler);
+			s.start();
+			services.add(s);
+		}
+		for (int i = 0; i < 5; i++) {
+			final DirectoryIndexerService s = services.get(i);
+			final int target = 100 * (i + 1);
+			for (int j = 0; j < 200 && Checkpoints.ofInt(s.getIndexInfo().getCheckpoint(), 0) < target; j++) {
+				Thread.sleep(50L);
+			}
+			assertEquals(Checkpoints.ofInt(s.getIndexInfo().getCheckpoint(), 0), target);
+			s.stop();
+		}
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void detailed() throws InterruptedException {
+		create(100);
+		waitFor(100);
+		final IndexMetrics metrics = service.getIndexReport(IndexReportLevel.DETAILED).getMetrics().get();
+		assertTrue(metrics.get(IndexMetrics.CYCLES).doubleValue() > 0.0);
+		assertTrue(metrics.get(IndexMetrics.COMMITS).doubleValue() > 0.0);
+		assertTrue(metrics.get(IndexMetrics.ADDED_RATE).doubleValue() > 0.0);
+		assertTrue(metrics.get(IndexMetrics.CYCLE_TIME_P99).doubleValue() >= metrics.get(IndexMetrics.CYCLE_TIME_P50)
+				.doubleValue());
+		assertTrue(metrics.get(IndexMetrics.TIME_SINCE_COMMIT).doubleValue() >= 0.0);
+		assertEquals(metrics.get(IndexMetrics.CONSECUTIVE_ERRORS).doubleValue(), 0.0);
+		service.stop();
+	}
 }
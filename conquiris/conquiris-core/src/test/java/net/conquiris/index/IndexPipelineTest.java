@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.Indexer;
+import net.conquiris.api.index.RecordIndexer;
+import net.conquiris.api.index.Writer;
+import net.conquiris.lucene.document.DocumentBuilder;
+import net.conquiris.schema.IntegerSchemaItem;
+import net.conquiris.schema.SchemaItems;
+import net.conquiris.support.TestSupport;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Atomics;
+
+/**
+ * Tests for IndexPipeline.
+ * @author Andres Rodriguez
+ */
+public class IndexPipelineTest extends AbstractDirectoryIndexerServiceTest {
+	private static final int WORKERS = 4;
+	private static final int N = 500;
+	private static final int VERSIONS = 3;
+	private static final IntegerSchemaItem VERSION = SchemaItems.intValue("VERSION", true, true, true);
+
+	/** Records: key and version, version 0 meaning a delete. */
+	private enum Records implements RecordIndexer<int[]> {
+		INSTANCE;
+
+		@Override
+		public Term getKey(int[] record) {
+			return TestSupport.termId(record[0]);
+		}
+
+		@Override
+		public Document getDocument(int[] record) throws InterruptedException, IndexException {
+			if (record[0] == -1) {
+				throw new IllegalStateException("Failed record");
+			}
+			if (record[1] == 0) {
+				return null;
+			}
+			return DocumentBuilder.create().add(TestSupport.ID, record[0]).add(VERSION, record[1]).build();
+		}
+	}
+
+	/** Runs a pipeline once, keeping the failure if any. */
+	private static final class PipelineIndexer implements Indexer {
+		private final ExecutorService executor;
+		private final List<int[]> records;
+		private final AtomicReference<RuntimeException> failure = Atomics.newReference();
+
+		PipelineIndexer(ExecutorService executor, List<int[]> records) {
+			this.executor = executor;
+			this.records = records;
+		}
+
+		@Override
+		public void index(Writer writer) throws InterruptedException, IndexException {
+			if (writer.getCheckpoint() != null || failure.get() != null) {
+				return;
+			}
+			try {
+				writer.runPipeline(executor, WORKERS, 16, records.iterator(), Records.INSTANCE, "1");
+			} catch (RuntimeException e) {
+				failure.set(e);
+			}
+		}
+	}
+
+	private PipelineIndexer run(ExecutorService executor, List<int[]> records) throws InterruptedException {
+		final PipelineIndexer indexer = new PipelineIndexer(executor, records);
+		create(indexer);
+		service.start();
+		for (int i = 0; i < 400 && checkpoint() == 0 && indexer.failure.get() == null; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		return indexer;
+	}
+
+	private static int[] record(int key, int version) {
+		return new int[] { key, version };
+	}
+
+	/** Returns the versions of the documents with a key. */
+	private static List<Integer> versions(IndexReader reader, int key) throws IOException {
+		final List<Integer> versions = Lists.newArrayList();
+		final TermDocs docs = reader.termDocs(TestSupport.termId(key));
+		try {
+			while (docs.next()) {
+				versions.add(Integer.valueOf(reader.document(docs.doc()).get(VERSION.getName())));
+			}
+		} finally {
+			docs.close();
+		}
+		return versions;
+	}
+
+	@Test
+	public void keyOrder() throws Exception {
+		final List<int[]> records = Lists.newArrayList();
+		for (int v = 1; v <= VERSIONS; v++) {
+			for (int i = 1; i <= N; i++) {
+				records.add(record(i, v));
+			}
+		}
+		for (int i = 3; i <= N; i += 3) {
+			records.add(record(i, 0));
+		}
+		for (int i = 6; i <= N; i += 6) {
+			records.add(record(i, VERSIONS + 1));
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+		try {
+			run(executor, records);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(checkpoint(), 1);
+		final IndexReader reader = IndexReader.open(service.getDirectory());
+		try {
+			for (int i = 1; i <= N; i++) {
+				final List<Integer> versions = versions(reader, i);
+				if (i % 6 == 0) {
+					assertEquals(versions, Lists.newArrayList(VERSIONS + 1));
+				} else if (i % 3 == 0) {
+					assertTrue(versions.isEmpty());
+				} else {
+					assertEquals(versions, Lists.newArrayList(VERSIONS));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void workerFailure() throws Exception {
+		final List<int[]> records = Lists.newArrayList();
+		for (int i = 1; i <= N; i++) {
+			records.add(record(i, 1));
+			if (i == N / 2) {
+				records.add(record(-1, 1));
+			}
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+		final PipelineIndexer indexer;
+		try {
+			indexer = run(executor, records);
+		} finally {
+			executor.shutdownNow();
+		}
+		final RuntimeException failure = indexer.failure.get();
+		assertNotNull(failure);
+		assertEquals(failure.getMessage(), "Failed record");
+		assertEquals(checkpoint(), 0);
+	}
+
+	@Test
+	public void notStarted() throws Exception {
+		final List<int[]> records = Lists.newArrayList();
+		for (int i = 1; i <= N; i++) {
+			records.add(record(i, 1));
+		}
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final PipelineIndexer indexer;
+		try {
+			indexer = run(executor, records);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertTrue(indexer.failure.get() instanceof IllegalStateException);
+		assertEquals(checkpoint(), 0);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import net.conquiris.api.index.IndexMetrics;
+import net.conquiris.api.index.WriterResult;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for IndexStats.
+ * @author Andres Rodriguez
+ */
+public class IndexStatsTest {
+	private static double rate(IndexStats stats, String name) {
+		return stats.getMetrics().get(name).doubleValue();
+	}
+
+	@Test
+	public void burstThenIdle() throws InterruptedException {
+		final IndexStats stats = new IndexStats();
+		stats.added(1000);
+		stats.updated(10);
+		stats.cycle(1000L, WriterResult.NORMAL, 0L);
+		for (int i = 0; i < 5; i++) {
+			Thread.sleep(10L);
+			stats.cycle(1000L, WriterResult.IDLE, 0L);
+		}
+		assertTrue(rate(stats, IndexMetrics.ADDED_RATE) > 0.0);
+		assertTrue(rate(stats, IndexMetrics.UPDATED_RATE) > 0.0);
+		assertEquals(rate(stats, IndexMetrics.DELETED_RATE), 0.0);
+		assertEquals(rate(stats, IndexMetrics.CYCLES), 6.0);
+	}
+
+	@Test
+	public void manyCycles() {
+		final IndexStats stats = new IndexStats();
+		for (int i = 0; i < 1000; i++) {
+			stats.deleted(1);
+			stats.cycle(1000L, WriterResult.NORMAL, 0L);
+		}
+		// Older marks have been dropped, the oldest kept one is used
+		assertTrue(rate(stats, IndexMetrics.DELETED_RATE) > 0.0);
+	}
+
+	@Test
+	public void mergesRunning() {
+		final IndexStats stats = new IndexStats();
+		stats.mergeStarted();
+		stats.mergeStarted();
+		assertEquals(rate(stats, IndexMetrics.MERGES_RUNNING), 2.0);
+		stats.mergeFinished();
+		assertEquals(rate(stats, IndexMetrics.MERGES_RUNNING), 1.0);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.conquiris.api.index.Checkpoints;
+import net.conquiris.api.index.DocumentWriter;
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.Indexer;
+import net.conquiris.api.index.PartitionIndexer;
+import net.conquiris.api.index.Partitions;
+import net.conquiris.api.index.Writer;
+import net.conquiris.support.TestSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests for PartitionRunner.
+ * @author Andres Rodriguez
+ */
+public class PartitionRunnerTest extends AbstractDirectoryIndexerServiceTest {
+	private static final String NAME = "reindex";
+	private static final int N = 400;
+	private static final int STEP = 25;
+	private static final List<String> PARTITIONS = Partitions.ofLongRange(1, N, 4);
+
+	/** Adds the documents of each partition in steps, failing once in the middle of a run. */
+	private static final class Steps implements PartitionIndexer {
+		private final AtomicBoolean failed = new AtomicBoolean();
+		private final Set<String> started = Sets.newSetFromMap(Maps.<String, Boolean> newConcurrentMap());
+
+		@Override
+		public String index(DocumentWriter writer, String partition, String checkpoint) throws InterruptedException,
+				IndexException {
+			final long lower = Partitions.lower(partition);
+			final long upper = Partitions.upper(partition);
+			final long start = Checkpoints.ofLong(checkpoint, lower - 1) + 1;
+			if (start == lower) {
+				started.add(partition);
+			}
+			if (start == lower + 2 * STEP && failed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Failed step");
+			}
+			Thread.sleep(10L);
+			final long end = Math.min(upper, start + STEP - 1);
+			for (long i = start; i <= end; i++) {
+				writer.add(TestSupport.document((int) i));
+			}
+			return end < upper ? Long.toString(end) : null;
+		}
+	}
+
+	/** Runs a number of partitioned indexings with the same name, with a short time budget. */
+	private static final class Reindexer implements Indexer {
+		private final ExecutorService executor;
+		private final Steps steps;
+		private volatile int rounds = 1;
+
+		Reindexer(ExecutorService executor, Steps steps) {
+			this.executor = executor;
+			this.steps = steps;
+		}
+
+		@Override
+		public void index(Writer writer) throws InterruptedException, IndexException {
+			final int done = Checkpoints.ofInt(writer.getCheckpoint(), 0);
+			if (done < rounds && writer.runPartitions(executor, 2, 50L, TimeUnit.MILLISECONDS, NAME, PARTITIONS, steps)) {
+				writer.setCheckpoint(Integer.toString(done + 1));
+			}
+		}
+	}
+
+	private void waitFor(int cp) throws InterruptedException {
+		for (int i = 0; i < 400 && checkpoint() < cp; i++) {
+			Thread.sleep(50L);
+		}
+		assertEquals(checkpoint(), cp);
+	}
+
+	private void checkCleared() {
+		for (String key : service.getIndexInfo().getProperties().keySet()) {
+			assertFalse(key.startsWith(NAME + '.'), key);
+		}
+	}
+
+	@Test
+	public void resume() throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Steps steps = new Steps();
+			final Reindexer indexer = new Reindexer(executor, steps);
+			create(indexer);
+			service.start();
+			waitFor(1);
+			assertTrue(steps.failed.get());
+			assertEquals(steps.started, Sets.newHashSet(PARTITIONS));
+			// Finished and committed steps are not run again after the failure
+			assertEquals(count(), N);
+			for (int i = 1; i <= N; i += 7) {
+				found(i);
+			}
+			checkCleared();
+			// A new run with the same name indexes every partition again
+			steps.started.clear();
+			indexer.rounds = 2;
+			waitFor(2);
+			assertEquals(steps.started, Sets.newHashSet(PARTITIONS));
+			assertEquals(count(), 2 * N);
+			checkCleared();
+			service.stop();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
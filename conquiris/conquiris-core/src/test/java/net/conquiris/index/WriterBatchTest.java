@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.index;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.conquiris.api.index.Checkpoints;
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.Indexer;
+import net.conquiris.api.index.Writer;
+import net.conquiris.support.TestSupport;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for the batch operations of the writer.
+ * @author Andres Rodriguez
+ */
+public class WriterBatchTest extends AbstractDirectoryIndexerServiceTest {
+	private static final int N = 100;
+	private static final int UPDATED = 10;
+	private static final int OFFSET = 1000;
+
+	/** Runs a different batch operation in each step. */
+	private static final class BatchIndexer implements Indexer {
+		private final int last;
+
+		BatchIndexer(int last) {
+			this.last = last;
+		}
+
+		@Override
+		public void index(Writer writer) throws InterruptedException, IndexException {
+			final int step = Checkpoints.ofInt(writer.getCheckpoint(), 0) + 1;
+			if (step > last) {
+				return;
+			}
+			switch (step) {
+			case 1:
+				final List<Document> documents = Lists.newArrayList();
+				for (int i = 1; i <= N; i++) {
+					documents.add(TestSupport.document(i));
+				}
+				writer.addAll(documents);
+				writer.addAll(null);
+				break;
+			case 2:
+				final List<Entry<Term, Document>> updates = Lists.newArrayList();
+				for (int i = 1; i <= UPDATED; i++) {
+					updates.add(Maps.immutableEntry(TestSupport.termId(i), TestSupport.document(i + OFFSET)));
+				}
+				writer.updateAll(updates);
+				writer.updateAll(null);
+				break;
+			case 3:
+				writer.deleteTerms(TestSupport.termId(11), null, TestSupport.termId(12));
+				writer.deleteTerms(ImmutableList.of(TestSupport.termId(13)));
+				writer.deleteTerms();
+				writer.deleteTerms((Term[]) null);
+				writer.deleteTerms((Iterable<Term>) null);
+				break;
+			default:
+				writer.deleteAll();
+			}
+			writer.setCheckpoint(Integer.toString(step));
+		}
+	}
+
+	private void run(int last) throws InterruptedException {
+		create(new BatchIndexer(last));
+		service.start();
+		for (int i = 0; i < 200 && checkpoint() < last; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		assertEquals(checkpoint(), last);
+	}
+
+	@Test
+	public void addAll() throws InterruptedException {
+		run(1);
+		assertEquals(count(), N);
+		found(1);
+		found(N);
+	}
+
+	@Test
+	public void updateAll() throws InterruptedException {
+		run(2);
+		assertEquals(count(), N);
+		for (int i = 1; i <= UPDATED; i++) {
+			notFound(i);
+			found(i + OFFSET);
+		}
+		found(UPDATED + 1);
+	}
+
+	@Test
+	public void deleteTerms() throws InterruptedException {
+		run(3);
+		assertEquals(count(), N - 3);
+		notFound(11);
+		notFound(12);
+		notFound(13);
+		found(14);
+		found(1 + OFFSET);
+	}
+
+	@Test
+	public void deleteAll() throws InterruptedException {
+		run(4);
+		assertEquals(count(), 0);
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+
+/**
+ * Tests for AdaptiveRangeFilter.
+ * @author Andres Rodriguez
+ */
+public class AdaptiveRangeFilterTest {
+	private static final int N = 5000;
+	/** Long values are spaced by this factor. */
+	private static final long FACTOR = 3000000000L;
+
+	private IndexReader reader;
+	private IndexReader segment;
+
+	@BeforeMethod
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			if (hasField(i)) {
+				final int value = value(i);
+				d.add(new NumericField("int").setIntValue(value));
+				d.add(new NumericField("long").setLongValue(value * FACTOR));
+			}
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		segment = segments[0];
+	}
+
+	@AfterMethod
+	public void close() throws IOException {
+		FieldCache.DEFAULT.purge(segment);
+		reader.close();
+	}
+
+	/** Some documents don't have the fields, their FieldCache value is zero. */
+	private static boolean hasField(int doc) {
+		return doc % 10 != 9;
+	}
+
+	/** Document order is not the value order. */
+	private static int value(int doc) {
+		return (doc * 7919) % N - N / 2;
+	}
+
+	private static FixedBitSet bits(DocIdSet set) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(N);
+		final DocIdSetIterator it = set.iterator();
+		if (it != null) {
+			bits.or(it);
+		}
+		return bits;
+	}
+
+	private static FixedBitSet expected(Range<Integer> range) {
+		final FixedBitSet bits = new FixedBitSet(N);
+		for (int i = 0; i < N; i++) {
+			if (hasField(i) && range.contains(value(i))) {
+				bits.set(i);
+			}
+		}
+		return bits;
+	}
+
+	private static Range<Long> longs(Range<Integer> range) {
+		if (!range.hasLowerBound()) {
+			return Range.upTo(range.upperEndpoint() * FACTOR, range.upperBoundType());
+		}
+		if (!range.hasUpperBound()) {
+			return Range.downTo(range.lowerEndpoint() * FACTOR, range.lowerBoundType());
+		}
+		return Range.range(range.lowerEndpoint() * FACTOR, range.lowerBoundType(), range.upperEndpoint() * FACTOR,
+				range.upperBoundType());
+	}
+
+	private void check(Filter filter, Range<Integer> range) throws IOException {
+		assertEquals(bits(filter.getDocIdSet(segment)), expected(range), filter + " " + range);
+	}
+
+	private static final ImmutableList<Range<Integer>> RANGES = ImmutableList.<Range<Integer>> builder()
+			.add(Range.closed(-10, 10)).add(Range.open(-10, 10)).add(Range.closedOpen(100, 101))
+			.add(Range.openClosed(100, 101)).add(Range.open(5, 6)).add(Range.closed(-N, N))
+			.add(Range.closed(-N / 2, N / 2 - 1)).add(Range.open(-N / 2, N / 2 - 1)).add(Range.atLeast(-100))
+			.add(Range.greaterThan(-100)).add(Range.atMost(1000)).add(Range.lessThan(1000))
+			.add(Range.atLeast(Integer.MAX_VALUE)).add(Range.range(-N, BoundType.OPEN, 0, BoundType.CLOSED))
+			.add(Range.closedOpen(0, 1)).add(Range.atLeast(0)).add(Range.lessThan(0)).build();
+
+	/** Checks all ranges and returns the number of segments evaluated by FieldCache scan. */
+	private long checkAll() throws IOException {
+		long fieldCache = 0;
+		for (Range<Integer> range : RANGES) {
+			final AdaptiveRangeFilter<Integer> ints = Filters.adaptiveIntRange("int", range);
+			check(ints, range);
+			final AdaptiveRangeFilter<Long> longs = Filters.adaptiveLongRange("long", longs(range));
+			check(longs, range);
+			assertEquals(ints.getTrieCount() + ints.getFieldCacheCount(), 1L);
+			assertEquals(longs.getTrieCount() + longs.getFieldCacheCount(), 1L);
+			fieldCache += ints.getFieldCacheCount() + longs.getFieldCacheCount();
+		}
+		return fieldCache;
+	}
+
+	@Test
+	public void notLoaded() throws IOException {
+		assertEquals(checkAll(), 0L);
+	}
+
+	@Test
+	public void missing() throws IOException {
+		FieldCache.DEFAULT.getInts(segment, "int");
+		// Wide range containing zero, the documents without the field must not match
+		final Range<Integer> range = Range.atLeast(-N);
+		final AdaptiveRangeFilter<Integer> wide = Filters.adaptiveIntRange("int", range);
+		check(wide, range);
+		assertEquals(wide.getFieldCacheCount(), 1L);
+		assertEquals(bits(wide.getDocIdSet(segment)).cardinality(), N - N / 10);
+	}
+
+	@Test
+	public void loaded() throws IOException {
+		// Field values loaded, e.g. by sorting
+		FieldCache.DEFAULT.getInts(segment, "int");
+		FieldCache.DEFAULT.getLongs(segment, "long");
+		assertEquals(checkAll() > 0L, true);
+		// Narrow ranges are still evaluated by trie enumeration
+		final AdaptiveRangeFilter<Integer> narrow = Filters.adaptiveIntRange("int", Range.closed(0, 10));
+		narrow.getDocIdSet(segment);
+		assertEquals(narrow.getTrieCount(), 1L);
+		// Wide ranges scan the loaded values
+		final AdaptiveRangeFilter<Integer> wide = Filters.adaptiveIntRange("int", Range.atLeast(-N));
+		wide.getDocIdSet(segment);
+		assertEquals(wide.getFieldCacheCount(), 1L);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.SortedSet;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Tests for CompactStringIndex and CompactStringComparatorSource.
+ * @author Andres Rodriguez
+ */
+public class CompactStringIndexTest {
+	private static final int N = 300;
+	/** Terms, including multi-byte and supplementary characters. */
+	private static final String[] TERMS = { "a", "ab", "b", "\u00f1and\u00fa", "z", "\u00e9t\u00e9", "\u4e2d\u6587",
+			"\uD834\uDD1E clef" };
+
+	private IndexReader reader;
+	private IndexSearcher searcher;
+
+	/** Value of a document or {@code null} if missing. */
+	private static String value(int doc) {
+		if (doc % 11 == 0) {
+			return null;
+		}
+		final int i = (doc * 7) % 23;
+		return i < TERMS.length ? TERMS[i] : "term" + i;
+	}
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriterConfig config = Conquiris.writerConfig();
+		// Several segments, with different terms
+		config.setMaxBufferedDocs(70);
+		config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+		final IndexWriter w = new IndexWriter(directory, config);
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			final String v = value(i);
+			if (v != null) {
+				d.add(new Field("s", v, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+			}
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		assertTrue(reader.getSequentialSubReaders().length > 1);
+		searcher = new IndexSearcher(reader);
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		searcher.close();
+		reader.close();
+	}
+
+	private void checkIndex(IndexReader segment, int docBase, boolean direct) throws IOException {
+		final CompactStringIndex index = CompactStringIndex.get(segment, "s", direct);
+		assertSame(CompactStringIndex.get(segment, "s", direct), index);
+		final SortedSet<String> terms = Sets.newTreeSet();
+		for (int doc = 0; doc < segment.maxDoc(); doc++) {
+			final String v = value(docBase + doc);
+			if (v != null) {
+				terms.add(v);
+			}
+			assertEquals(index.term(index.ord(doc)), v);
+		}
+		assertEquals(index.numTerms(), terms.size());
+		assertNull(index.term(0));
+		int ord = 1;
+		for (String term : terms) {
+			assertEquals(index.term(ord), term);
+			assertEquals(index.binarySearch(term), ord);
+			// Smallest string greater than the term, inserted before the next one
+			assertEquals(index.binarySearch(term + "\u0000"), -(ord + 1) - 1);
+			ord++;
+		}
+		assertEquals(index.binarySearch(""), -1 - 1);
+	}
+
+	@Test
+	public void index() throws IOException {
+		for (boolean direct : new boolean[] { false, true }) {
+			int docBase = 0;
+			for (IndexReader segment : reader.getSequentialSubReaders()) {
+				checkIndex(segment, docBase, direct);
+				docBase += segment.maxDoc();
+			}
+		}
+	}
+
+	@Test
+	public void missingField() throws IOException {
+		final IndexReader segment = reader.getSequentialSubReaders()[0];
+		final CompactStringIndex index = CompactStringIndex.get(segment, "none", false);
+		assertEquals(index.numTerms(), 0);
+		assertEquals(index.ord(0), 0);
+		assertEquals(index.binarySearch("a"), -2);
+	}
+
+	/** Checks the compact sort against the FieldCache string sort. */
+	@Test
+	public void sort() throws IOException {
+		for (boolean direct : new boolean[] { false, true }) {
+			for (boolean reverse : new boolean[] { false, true }) {
+				for (int hits : new int[] { 10, 50, N }) {
+					final Sort expected = new Sort(new SortField("s", SortField.STRING, reverse), SortField.FIELD_DOC);
+					final Sort actual = new Sort(new SortField("s", new CompactStringComparatorSource(direct), reverse),
+							SortField.FIELD_DOC);
+					final TopFieldDocs e = searcher.search(new MatchAllDocsQuery(), null, hits, expected);
+					final TopFieldDocs a = searcher.search(new MatchAllDocsQuery(), null, hits, actual);
+					assertEquals(a.scoreDocs.length, e.scoreDocs.length);
+					for (int i = 0; i < e.scoreDocs.length; i++) {
+						final FieldDoc ed = (FieldDoc) e.scoreDocs[i];
+						final FieldDoc ad = (FieldDoc) a.scoreDocs[i];
+						assertEquals(ad.doc, ed.doc, "direct=" + direct + " reverse=" + reverse + " position " + i);
+						assertEquals(ad.fields[0], ed.fields[0]);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for DocIdSets and the compact doc id set representations.
+ * @author Andres Rodriguez
+ */
+public class DocIdSetsTest {
+	/** Block size of BlockDocIdSet. */
+	private static final int BLOCK = 1 << 16;
+	/** Three full blocks and a partial one. */
+	private static final int MAX_DOC = 3 * BLOCK + 123;
+	/** Maximum cardinality of a sparse set. */
+	private static final int SPARSE = MAX_DOC >>> 5;
+	/** Minimum cardinality of a dense set. */
+	private static final int DENSE = MAX_DOC >>> 3;
+
+	private final Random random = new Random(17L);
+
+	/** Creates a random set, always including the block edges. */
+	private FixedBitSet bits(int cardinality) {
+		final FixedBitSet bits = new FixedBitSet(MAX_DOC);
+		if (cardinality == MAX_DOC) {
+			bits.set(0, MAX_DOC);
+			return bits;
+		}
+		int n = 0;
+		final int[] edges = { 0, BLOCK - 1, BLOCK, 2 * BLOCK, MAX_DOC - 1 };
+		for (int doc : edges) {
+			bits.set(doc);
+			n++;
+		}
+		while (n < cardinality) {
+			if (!bits.getAndSet(random.nextInt(MAX_DOC))) {
+				n++;
+			}
+		}
+		return bits;
+	}
+
+	/** Returns the first document of the reference bit set at or after the target. */
+	private static int next(FixedBitSet expected, int target) {
+		final int doc = expected.nextSetBit(target);
+		return doc < 0 ? DocIdSetIterator.NO_MORE_DOCS : doc;
+	}
+
+	/** Checks iteration and advance against the reference bit set. */
+	private void check(FixedBitSet expected, DocIdSet set) throws IOException {
+		assertEquals(DocIdSets.cardinality(set), expected.cardinality());
+		assertTrue(DocIdSets.sizeOf(set) > 0L);
+		DocIdSetIterator it = set.iterator();
+		assertEquals(it.docID(), -1);
+		for (int doc = expected.nextSetBit(0); doc >= 0; doc = doc + 1 < MAX_DOC ? expected.nextSetBit(doc + 1) : -1) {
+			assertEquals(it.nextDoc(), doc);
+			assertEquals(it.docID(), doc);
+		}
+		assertEquals(it.nextDoc(), DocIdSetIterator.NO_MORE_DOCS);
+		assertEquals(it.nextDoc(), DocIdSetIterator.NO_MORE_DOCS);
+		// Advance to block edges and random targets, only beyond the current document as required by
+		// the DocIdSetIterator contract
+		final int[] targets = { 1, BLOCK - 2, BLOCK - 1, BLOCK, BLOCK + 1, 2 * BLOCK - 1, 2 * BLOCK + 1, 3 * BLOCK,
+				MAX_DOC - 1 };
+		it = set.iterator();
+		for (int target : targets) {
+			if (target > it.docID()) {
+				assertEquals(it.advance(target), next(expected, target));
+			}
+		}
+		assertEquals(it.advance(MAX_DOC), DocIdSetIterator.NO_MORE_DOCS);
+		it = set.iterator();
+		int target = 0;
+		while (true) {
+			target += 1 + random.nextInt(2000);
+			if (target >= MAX_DOC) {
+				assertEquals(it.advance(target), DocIdSetIterator.NO_MORE_DOCS);
+				break;
+			}
+			final int doc = it.advance(target);
+			assertEquals(doc, next(expected, target));
+			if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+				break;
+			}
+			target = doc;
+		}
+	}
+
+	/** Checks both compaction methods and returns the result of the bit set one. */
+	private DocIdSet compact(int cardinality) throws IOException {
+		final FixedBitSet bits = bits(cardinality);
+		final DocIdSet fromIterator = DocIdSets.compact(bits.iterator(), MAX_DOC);
+		check(bits, fromIterator);
+		final DocIdSet fromBits = DocIdSets.compact(new FixedBitSet(bits));
+		check(bits, fromBits);
+		assertEquals(fromBits.getClass(), fromIterator.getClass());
+		return fromBits;
+	}
+
+	@Test
+	public void sparse() throws IOException {
+		assertTrue(compact(10) instanceof IntArrayDocIdSet);
+		assertTrue(compact(SPARSE) instanceof IntArrayDocIdSet);
+	}
+
+	@Test
+	public void medium() throws IOException {
+		assertTrue(compact(SPARSE + 1) instanceof BlockDocIdSet);
+		assertTrue(compact(DENSE - 1) instanceof BlockDocIdSet);
+	}
+
+	@Test
+	public void dense() throws IOException {
+		assertTrue(compact(DENSE) instanceof FixedBitSet);
+		assertTrue(compact(MAX_DOC) instanceof FixedBitSet);
+	}
+
+	@Test
+	public void empty() throws IOException {
+		assertSame(DocIdSets.compact(new FixedBitSet(MAX_DOC)), DocIdSet.EMPTY_DOCIDSET);
+		assertSame(DocIdSets.compact(new FixedBitSet(MAX_DOC).iterator(), MAX_DOC), DocIdSet.EMPTY_DOCIDSET);
+		assertSame(DocIdSets.compact(null, MAX_DOC), DocIdSet.EMPTY_DOCIDSET);
+	}
+
+	/** Array blocks hold up to 4096 documents, bitmap blocks more. */
+	@Test
+	public void blocks() throws IOException {
+		final int maxArray = BLOCK >>> 4;
+		final FixedBitSet bits = new FixedBitSet(MAX_DOC);
+		for (int i = 0; i < maxArray; i++) {
+			bits.set(i * 16);
+		}
+		for (int i = 0; i <= maxArray; i++) {
+			bits.set(BLOCK + i * 15);
+		}
+		bits.set(BLOCK + 15 * maxArray + 1);
+		for (int i = 0; i < 2000; i++) {
+			bits.set(2 * BLOCK + random.nextInt(BLOCK));
+		}
+		bits.set(MAX_DOC - 1);
+		// First block stored as an array, second one as a bitmap
+		check(bits, BlockDocIdSet.of(bits));
+	}
+}
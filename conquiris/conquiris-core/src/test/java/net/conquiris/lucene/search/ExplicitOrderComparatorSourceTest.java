@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for ExplicitOrderComparatorSource.
+ * @author Andres Rodriguez
+ */
+public class ExplicitOrderComparatorSourceTest {
+	private static final int N = 100;
+	/** Order, with a duplicate and a value not in the index. */
+	private static final ImmutableList<Integer> ORDER = ImmutableList.of(7, 3, 100, 5, 3);
+
+	private IndexReader reader;
+	private IndexSearcher searcher;
+
+	/** Value of a document or {@code null} if missing. */
+	private static Integer value(int doc) {
+		return doc % 9 == 0 ? null : doc % 10;
+	}
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriterConfig config = Conquiris.writerConfig();
+		// Several segments
+		config.setMaxBufferedDocs(30);
+		config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+		final IndexWriter w = new IndexWriter(directory, config);
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			final Integer v = value(i);
+			if (v != null) {
+				d.add(new NumericField("int").setIntValue(v));
+				d.add(new NumericField("long").setLongValue(v));
+				d.add(new NumericField("double").setDoubleValue(v));
+			}
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		searcher = new IndexSearcher(reader);
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		searcher.close();
+		reader.close();
+	}
+
+	/** Expected documents: in list order, then the rest by document. */
+	private static List<Integer> expected(List<Integer> order) {
+		final List<Integer> docs = Lists.newArrayList();
+		for (Integer v : order) {
+			for (int i = 0; i < N; i++) {
+				if (v.equals(value(i)) && !docs.contains(i)) {
+					docs.add(i);
+				}
+			}
+		}
+		for (int i = 0; i < N; i++) {
+			if (!docs.contains(i)) {
+				docs.add(i);
+			}
+		}
+		return docs;
+	}
+
+	private void check(String field, FieldComparatorSource source, List<Integer> order, int hits)
+			throws IOException {
+		final Sort sort = new Sort(new SortField(field, source), SortField.FIELD_DOC);
+		final TopFieldDocs docs = searcher.search(new MatchAllDocsQuery(), null, hits, sort);
+		final List<Integer> expected = expected(order);
+		for (int i = 0; i < hits; i++) {
+			final FieldDoc hit = (FieldDoc) docs.scoreDocs[i];
+			final int doc = expected.get(i);
+			assertEquals(hit.doc, doc, field + " position " + i);
+			// The sort value is the field value, not the rank
+			final Integer v = value(doc);
+			if (v == null) {
+				assertNull(hit.fields[0]);
+			} else {
+				assertEquals(((Number) hit.fields[0]).intValue(), v.intValue());
+			}
+		}
+	}
+
+	@Test
+	public void order() throws IOException {
+		for (int hits : new int[] { 15, N }) {
+			check("int", ExplicitOrderComparatorSource.ofInts("int", ORDER), ORDER, hits);
+			check("long", ExplicitOrderComparatorSource.ofLongs("long", ImmutableList.of(7L, 3L, 100L, 5L, 3L)), ORDER,
+					hits);
+			check("double", ExplicitOrderComparatorSource.ofDoubles("double", ImmutableList.of(7.0, 3.0, 100.0, 5.0)),
+					ORDER, hits);
+		}
+	}
+
+	@Test
+	public void manyLists() throws IOException {
+		// More value lists than rank arrays cached per segment
+		for (int k = 0; k < 40; k++) {
+			final List<Integer> order = ImmutableList.of(k % 10, (k + 3) % 10);
+			check("int", ExplicitOrderComparatorSource.ofInts("int", order), order, 20);
+		}
+	}
+
+	@Test
+	public void compareValues() throws IOException {
+		final FieldComparator<Number> c = ExplicitOrderComparatorSource.ofInts("int", ORDER).newComparator("int", 1, 0,
+				false);
+		assertTrue(c.compareValues(7, 3) < 0);
+		assertTrue(c.compareValues(5, 3) > 0);
+		assertTrue(c.compareValues(5, 1) < 0);
+		assertTrue(c.compareValues(5, null) < 0);
+		assertEquals(c.compareValues(1, null), 0);
+	}
+}
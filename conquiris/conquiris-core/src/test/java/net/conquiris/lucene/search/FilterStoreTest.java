@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests for FilterStore.
+ * @author Andres Rodriguez
+ */
+public class FilterStoreTest {
+	private static final int N = 1000;
+	private static final String ID = "filter";
+
+	private File base;
+	private FilterStore store;
+
+	@BeforeMethod
+	public void create() throws IOException {
+		base = Files.createTempDir();
+		store = FilterStore.open(new File(base, "store"));
+	}
+
+	@AfterMethod
+	public void delete() {
+		delete(base);
+	}
+
+	private static void delete(File file) {
+		final File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	/** Creates a single segment index with N documents and opens it. */
+	private IndexReader index(String name) throws IOException {
+		final FSDirectory directory = FSDirectory.open(new File(base, name));
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			d.add(new Field("id", Integer.toString(i), Field.Store.YES, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.close();
+		return IndexReader.open(directory);
+	}
+
+	private static IndexReader segment(IndexReader reader) {
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		return segments[0];
+	}
+
+	private static FixedBitSet bits(int step) {
+		final FixedBitSet bits = new FixedBitSet(N);
+		for (int i = 0; i < N; i += step) {
+			bits.set(i);
+		}
+		return bits;
+	}
+
+	private static FixedBitSet bits(DocIdSet set) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(N);
+		bits.or(set.iterator());
+		return bits;
+	}
+
+	private File stored() {
+		final File[] files = new File(base, "store").listFiles();
+		assertEquals(files.length, 1);
+		return files[0];
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		final IndexReader reader = index("index");
+		try {
+			final IndexReader segment = segment(reader);
+			assertNull(store.load(ID, segment));
+			for (int step : new int[] { 1, 3, 100 }) {
+				final FixedBitSet expected = bits(step);
+				store.save(ID, segment, DocIdSets.compact(expected));
+				assertEquals(bits(store.load(ID, segment)), expected);
+			}
+			assertNull(store.load("other", segment));
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void otherDirectory() throws IOException {
+		final IndexReader r1 = index("index1");
+		final IndexReader r2 = index("index2");
+		try {
+			assertEquals(((SegmentReader) segment(r1)).getSegmentName(), ((SegmentReader) segment(r2)).getSegmentName());
+			store.save(ID, segment(r1), DocIdSets.compact(bits(2)));
+			assertNotNull(store.load(ID, segment(r1)));
+			// Same segment name and size in a different index
+			assertNull(store.load(ID, segment(r2)));
+			store.retain(r2);
+			assertNull(store.load(ID, segment(r1)));
+		} finally {
+			r1.close();
+			r2.close();
+		}
+	}
+
+	@Test
+	public void invalidLength() throws IOException {
+		final IndexReader reader = index("index");
+		try {
+			final IndexReader segment = segment(reader);
+			store.save(ID, segment, bits(1));
+			final File file = stored();
+			final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				// Header: magic, version, maxDoc, type and length
+				raf.seek(16L);
+				raf.writeInt(1);
+			} finally {
+				raf.close();
+			}
+			assertNull(store.load(ID, segment));
+			assertFalse(file.exists());
+		} finally {
+			reader.close();
+		}
+	}
+}
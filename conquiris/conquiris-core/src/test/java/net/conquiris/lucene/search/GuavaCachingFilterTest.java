@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.OpenBitSet;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for GuavaCachingFilter.
+ * @author Andres Rodriguez
+ */
+public class GuavaCachingFilterTest {
+	private static final int N = 10;
+	private static final Filter FILTER = new QueryWrapperFilter(new TermQuery(new Term("k", "a")));
+
+	/** Reader before the deletion. */
+	private IndexReader r1;
+	/** Reader after the deletion. */
+	private IndexReader r2;
+
+	static int count(DocIdSet set) throws IOException {
+		final DocIdSetIterator it = set.iterator();
+		int n = 0;
+		if (it != null) {
+			while (it.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@BeforeMethod
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			d.add(new Field("id", Integer.toString(i), Field.Store.YES, Field.Index.NOT_ANALYZED));
+			d.add(new Field("k", "a", Field.Store.NO, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.commit();
+		r1 = IndexReader.open(directory);
+		w.deleteDocuments(new Term("id", "3"));
+		w.close();
+		r2 = IndexReader.openIfChanged(r1);
+		assertSame(segment(r1).getCoreCacheKey(), segment(r2).getCoreCacheKey());
+	}
+
+	@AfterMethod
+	public void close() throws IOException {
+		r1.close();
+		r2.close();
+	}
+
+	private static IndexReader segment(IndexReader reader) {
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		return segments[0];
+	}
+
+	@Test
+	public void olderReaderAfterNewer() throws IOException {
+		final GuavaCachingFilter f = GuavaCachingFilter.of(FILTER, FilterCache.create(1 << 20, 1));
+		assertEquals(count(f.getDocIdSet(segment(r2))), N - 1);
+		// The older reader must see the document deleted in the newer one
+		assertEquals(count(f.getDocIdSet(segment(r1))), N);
+		assertEquals(count(f.getDocIdSet(segment(r2))), N - 1);
+	}
+
+	@Test
+	public void newerReaderAfterOlder() throws IOException {
+		final GuavaCachingFilter f = GuavaCachingFilter.of(FILTER, FilterCache.create(1 << 20, 1));
+		assertEquals(count(f.getDocIdSet(segment(r1))), N);
+		// The newer reader reuses the entry of the core applying its deletions
+		assertEquals(count(f.getDocIdSet(segment(r2))), N - 1);
+		assertEquals(f.stats().hitCount(), 1L);
+	}
+
+	@Test
+	public void unknownSetsAreCompacted() throws IOException {
+		final Filter filter = new Filter() {
+			@Override
+			public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+				final OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+				bits.set(0, reader.maxDoc());
+				// Cacheable, but of a type the cache cannot measure
+				return new DocIdSet() {
+					@Override
+					public DocIdSetIterator iterator() throws IOException {
+						return bits.iterator();
+					}
+
+					@Override
+					public boolean isCacheable() {
+						return true;
+					}
+				};
+			}
+		};
+		final FilterCache cache = FilterCache.create(1 << 20, 1);
+		final DocIdSet set = GuavaCachingFilter.of(filter, cache).getDocIdSet(segment(r1));
+		assertTrue(DocIdSets.isCompact(set));
+		assertEquals(count(set), N);
+		assertEquals(cache.sizeInBytes(), DocIdSets.sizeOf(set) + FilterCache.ENTRY_OVERHEAD);
+	}
+
+	@Test(expectedExceptions = StackOverflowError.class)
+	public void errorsAreUnwrapped() throws IOException {
+		final Filter filter = new Filter() {
+			@Override
+			public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+				throw new StackOverflowError();
+			}
+		};
+		GuavaCachingFilter.of(filter, FilterCache.create(1 << 20, 1)).getDocIdSet(segment(r1));
+	}
+}
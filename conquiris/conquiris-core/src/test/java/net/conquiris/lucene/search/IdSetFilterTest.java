@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for IdSetFilter.
+ * @author Andres Rodriguez
+ */
+public class IdSetFilterTest {
+	private static final int N = 2000;
+	/** Number of documents per group value. */
+	private static final int GROUP = 7;
+
+	private IndexReader reader;
+	private IndexReader segment;
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			d.add(new Field("id", Integer.toString(i), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			d.add(new Field("group", Integer.toString(i / GROUP), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			d.add(new NumericField("int").setIntValue(i));
+			d.add(new NumericField("long").setLongValue(i * 1000000000L));
+			// Field sorting after the id field, to be reached by forward scans
+			d.add(new Field("other", Integer.toString(i), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		segment = segments[0];
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private static FixedBitSet bits(DocIdSet set) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(N);
+		final DocIdSetIterator it = set.iterator();
+		if (it != null) {
+			bits.or(it);
+		}
+		return bits;
+	}
+
+	private void check(Filter filter, FixedBitSet expected) throws IOException {
+		assertEquals(bits(filter.getDocIdSet(segment)), expected);
+	}
+
+	private void check(IdSetFilter filter, FixedBitSet expected) throws IOException {
+		check((Filter) filter, expected);
+		check((Filter) filter.withBloomFilter(), expected);
+	}
+
+	/** Checks a set of document numbers, including absent ids. */
+	private void checkIds(int... values) throws IOException {
+		final List<String> ids = Lists.newArrayList();
+		final int[] ints = new int[values.length];
+		final long[] longs = new long[values.length];
+		final FixedBitSet expected = new FixedBitSet(N);
+		for (int i = 0; i < values.length; i++) {
+			final int v = values[i];
+			ids.add(Integer.toString(v));
+			ints[i] = v;
+			longs[i] = v * 1000000000L;
+			if (v >= 0 && v < N) {
+				expected.set(v);
+			}
+		}
+		check(Filters.ids("id", ids), expected);
+		check(Filters.intIds("int", ints), expected);
+		check(Filters.longIds("long", longs), expected);
+	}
+
+	@Test
+	public void empty() throws IOException {
+		assertSame(Filters.ids("id").getDocIdSet(segment), DocIdSet.EMPTY_DOCIDSET);
+		assertSame(Filters.ids("id", "x", "y").getDocIdSet(segment), DocIdSet.EMPTY_DOCIDSET);
+		assertSame(Filters.ids("missing", "1").getDocIdSet(segment), DocIdSet.EMPTY_DOCIDSET);
+	}
+
+	@Test
+	public void single() throws IOException {
+		checkIds(0);
+		checkIds(N - 1);
+		checkIds(N);
+		checkIds(-1);
+	}
+
+	@Test
+	public void duplicates() throws IOException {
+		checkIds(5, 5, 3, 5, 3);
+		assertEquals(Filters.ids("id", "5", "5", "3").size(), 2);
+		assertEquals(Filters.intIds("int", 5, 5, 3).size(), 2);
+	}
+
+	@Test
+	public void dense() throws IOException {
+		// Consecutive terms, reached by forward scans
+		final int[] values = new int[500];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 700 + i;
+		}
+		checkIds(values);
+	}
+
+	@Test
+	public void sparse() throws IOException {
+		// Gaps longer than the forward scan, reached by seeks
+		final int[] values = new int[40];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i * 51;
+		}
+		checkIds(values);
+	}
+
+	@Test
+	public void random() throws IOException {
+		final Random r = new Random(0L);
+		for (int k = 0; k < 20; k++) {
+			final int[] values = new int[1 + r.nextInt(300)];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = r.nextInt(N + 100) - 50;
+			}
+			checkIds(values);
+		}
+	}
+
+	@Test
+	public void lastTerms() throws IOException {
+		// Ids past the last term of the field, followed by another field
+		checkIds(999, 9999, 99999);
+		check(Filters.ids("group", "0", "1", Integer.toString((N - 1) / GROUP), "zzz"), groups(0, 1, (N - 1) / GROUP));
+	}
+
+	@Test
+	public void severalDocumentsPerTerm() throws IOException {
+		check(Filters.ids("group", "3", "10", "100"), groups(3, 10, 100));
+	}
+
+	private static FixedBitSet groups(int... groups) {
+		final FixedBitSet expected = new FixedBitSet(N);
+		for (int g : groups) {
+			expected.set(g * GROUP, Math.min(N, (g + 1) * GROUP));
+		}
+		return expected;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for NegatingFilter.
+ * @author Andres Rodriguez
+ */
+public class NegatingFilterTest {
+	private static final int N = 100;
+
+	private IndexReader reader;
+	private IndexReader segment;
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			d.add(new Field("k", i % 3 == 0 ? "a" : "b", Field.Store.NO, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		segment = segments[0];
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private static Filter term(String value) {
+		return new QueryWrapperFilter(new TermQuery(new Term("k", value)));
+	}
+
+	/** Filter returning the provided set. */
+	private static Filter of(final DocIdSet set) {
+		return new Filter() {
+			@Override
+			public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+				return set;
+			}
+		};
+	}
+
+	private static FixedBitSet bits(DocIdSet set) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(N);
+		final DocIdSetIterator it = set.iterator();
+		int last = -1;
+		for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+			assertEquals(it.docID(), doc);
+			assertEquals(doc > last, true);
+			bits.set(doc);
+			last = doc;
+		}
+		assertEquals(it.nextDoc(), DocIdSetIterator.NO_MORE_DOCS);
+		return bits;
+	}
+
+	@Test
+	public void negated() throws IOException {
+		final FixedBitSet bits = bits(Filters.negate(term("a")).getDocIdSet(segment));
+		for (int i = 0; i < N; i++) {
+			assertEquals(bits.get(i), i % 3 != 0, "Document " + i);
+		}
+		assertEquals(bits(Filters.negate(Filters.negate(term("a"))).getDocIdSet(segment)),
+				bits(term("a").getDocIdSet(segment)));
+	}
+
+	@Test
+	public void advance() throws IOException {
+		final DocIdSetIterator it = Filters.negate(term("a")).getDocIdSet(segment).iterator();
+		// Targets beyond the current document, as required by the DocIdSetIterator contract
+		assertEquals(it.advance(3), 4);
+		assertEquals(it.advance(5), 5);
+		assertEquals(it.nextDoc(), 7);
+		assertEquals(it.advance(98), 98);
+		assertEquals(it.advance(99), DocIdSetIterator.NO_MORE_DOCS);
+		assertEquals(it.docID(), DocIdSetIterator.NO_MORE_DOCS);
+	}
+
+	@Test
+	public void emptyOrNull() throws IOException {
+		assertEquals(bits(Filters.negate(of(null)).getDocIdSet(segment)).cardinality(), N);
+		assertEquals(bits(Filters.negate(of(DocIdSet.EMPTY_DOCIDSET)).getDocIdSet(segment)).cardinality(), N);
+		final FixedBitSet all = new FixedBitSet(N);
+		all.set(0, N);
+		assertEquals(bits(Filters.negate(of(all)).getDocIdSet(segment)).cardinality(), 0);
+	}
+
+	@Test
+	public void estimate() throws IOException {
+		// Unknown cardinalities are reported as such, known ones are complemented
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.negate(term("a")), segment), -1);
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.negate(Filters.ids("k", "a", "b")), segment), N - 2);
+	}
+}
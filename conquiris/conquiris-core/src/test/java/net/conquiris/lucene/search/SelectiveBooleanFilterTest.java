@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanFilter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilterClause;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for SelectiveBooleanFilter.
+ * @author Andres Rodriguez
+ */
+public class SelectiveBooleanFilterTest {
+	private static final int N = 50;
+
+	private IndexReader reader;
+	private IndexReader segment;
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			d.add(new Field("id", Integer.toString(i), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			d.add(new Field("k", i % 2 == 0 ? "a" : "b", Field.Store.NO, Field.Index.NOT_ANALYZED));
+			d.add(new Field("m", Integer.toString(i % 5), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		final IndexReader[] segments = reader.getSequentialSubReaders();
+		assertEquals(segments.length, 1);
+		segment = segments[0];
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private static Filter term(String field, String value) {
+		return new QueryWrapperFilter(new TermQuery(new Term(field, value)));
+	}
+
+	private static FixedBitSet bits(DocIdSet set) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(N);
+		final DocIdSetIterator it = set != null ? set.iterator() : null;
+		if (it != null) {
+			bits.or(it);
+		}
+		return bits;
+	}
+
+	/** Checks the selective filter against Lucene's boolean filter. */
+	private void check(Occur[] occurs, Filter[] filters) throws IOException {
+		final BooleanFilter expected = new BooleanFilter();
+		final BooleanFilter selective = new SelectiveBooleanFilter();
+		for (int i = 0; i < filters.length; i++) {
+			expected.add(new FilterClause(filters[i], occurs[i]));
+			selective.add(new FilterClause(filters[i], occurs[i]));
+		}
+		assertEquals(bits(selective.getDocIdSet(segment)), bits(expected.getDocIdSet(segment)));
+	}
+
+	@Test
+	public void negatedIdSet() throws IOException {
+		// At least maxDoc absent ids: the negation is estimated as empty but matches every document
+		final List<String> absent = Lists.newArrayList();
+		for (int i = 0; i < 2 * N; i++) {
+			absent.add("x" + i);
+		}
+		final Filter negated = Filters.negate(Filters.ids("id", absent));
+		assertEquals(SelectiveBooleanFilter.estimate(negated, segment), 0);
+		final Filter a = term("k", "a");
+		final DocIdSet set = Filters.booleanFilter(Occur.MUST, negated, a).getDocIdSet(segment);
+		assertEquals(bits(set), bits(a.getDocIdSet(segment)));
+		assertEquals(bits(set).cardinality(), N / 2);
+	}
+
+	@Test
+	public void termsEstimate() throws IOException {
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.terms(new Term("k", "a")), segment), N / 2);
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.terms(new Term("m", "0"), new Term("m", "1")), segment),
+				2 * N / 5);
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.terms(new Term("k", "a"), new Term("k", "b")), segment), N);
+		assertEquals(SelectiveBooleanFilter.estimate(Filters.terms(new Term("k", "z")), segment), 0);
+		final Filter m = Filters.terms(new Term("m", "0"), new Term("m", "3"));
+		check(new Occur[] { Occur.MUST, Occur.MUST }, new Filter[] { Filters.terms(new Term("k", "a")), m });
+		check(new Occur[] { Occur.MUST, Occur.MUST_NOT }, new Filter[] { m, Filters.terms(new Term("k", "b")) });
+	}
+
+	@Test
+	public void sameAsBooleanFilter() throws IOException {
+		final Filter a = term("k", "a");
+		final Filter m0 = term("m", "0");
+		final Filter m1 = term("m", "1");
+		final Filter ids = Filters.ids("id", "0", "1", "2", "3", "10", "11");
+		final Filter none = term("k", "z");
+		check(new Occur[] { Occur.MUST, Occur.MUST }, new Filter[] { a, ids });
+		check(new Occur[] { Occur.MUST, Occur.MUST }, new Filter[] { ids, Filters.negate(ids) });
+		check(new Occur[] { Occur.MUST, Occur.SHOULD, Occur.SHOULD }, new Filter[] { a, m0, m1 });
+		check(new Occur[] { Occur.SHOULD, Occur.MUST_NOT }, new Filter[] { m0, a });
+		check(new Occur[] { Occur.MUST_NOT }, new Filter[] { ids });
+		check(new Occur[] { Occur.MUST, Occur.MUST_NOT }, new Filter[] { Filters.negate(none), ids });
+		check(new Occur[] { Occur.SHOULD, Occur.SHOULD }, new Filter[] { none, ids });
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+/**
+ * Tests for the primitive comparator sources.
+ * @author Andres Rodriguez
+ */
+public class ValueComparatorSourceTest {
+	private static final int N = 200;
+	/** Number of hits requested, smaller than the number of documents to exercise the bottom slot. */
+	private static final int HITS = 40;
+	/** Numbers of hits requested, with missing values only in the full list. */
+	private static final int[] SIZES = { HITS, N };
+
+	private IndexReader reader;
+	private IndexSearcher searcher;
+
+	/** Value of a document or {@code null} if missing. */
+	private static Integer value(int doc) {
+		return doc % 7 == 0 ? null : (doc * 37) % 101 - 50;
+	}
+
+	@BeforeClass
+	public void create() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriterConfig config = Conquiris.writerConfig();
+		// Several segments
+		config.setMaxBufferedDocs(50);
+		config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+		final IndexWriter w = new IndexWriter(directory, config);
+		for (int i = 0; i < N; i++) {
+			final Document d = new Document();
+			final Integer v = value(i);
+			if (v != null) {
+				d.add(new NumericField("int").setIntValue(v));
+				d.add(new NumericField("long").setLongValue(v * 10000000000L));
+				d.add(new NumericField("float").setFloatValue(v / 4.0f));
+				d.add(new NumericField("double").setDoubleValue(v / 8.0));
+			}
+			w.addDocument(d);
+		}
+		w.close();
+		reader = IndexReader.open(directory);
+		searcher = new IndexSearcher(reader);
+	}
+
+	@AfterClass
+	public void close() throws IOException {
+		searcher.close();
+		reader.close();
+	}
+
+	/** Natural order of the absolute values, to check that the comparator is used. */
+	private static int compare(int v1, int v2) {
+		return Ints.compare(Math.abs(v1), Math.abs(v2));
+	}
+
+	/** Expected documents: present values by the comparator, then missing ones, ties by document. */
+	private static List<Integer> expected(final boolean reverse, int hits) {
+		final List<Integer> docs = Lists.newArrayList();
+		for (int i = 0; i < N; i++) {
+			docs.add(i);
+		}
+		Collections.sort(docs, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer d1, Integer d2) {
+				final Integer v1 = value(d1);
+				final Integer v2 = value(d2);
+				if (v1 == null || v2 == null) {
+					if (v1 != v2) {
+						return v1 == null ? 1 : -1;
+					}
+				} else {
+					final int c = ValueComparatorSourceTest.compare(v1, v2);
+					if (c != 0) {
+						return reverse ? -c : c;
+					}
+				}
+				return d1 - d2;
+			}
+		});
+		return docs.subList(0, hits);
+	}
+
+	private void check(String field, FieldComparatorSource source, double scale) throws IOException {
+		for (boolean reverse : new boolean[] { false, true }) {
+			final Sort sort = new Sort(new SortField(field, source, reverse), SortField.FIELD_DOC);
+			for (int hits : SIZES) {
+				final TopFieldDocs docs = searcher.search(new MatchAllDocsQuery(), null, hits, sort);
+				assertEquals(docs.totalHits, N);
+				assertEquals(docs.scoreDocs.length, hits);
+				final List<Integer> expected = expected(reverse, hits);
+				for (int i = 0; i < hits; i++) {
+					final FieldDoc hit = (FieldDoc) docs.scoreDocs[i];
+					final int doc = expected.get(i);
+					assertEquals(hit.doc, doc, field + " reverse=" + reverse + " position " + i);
+					final Integer v = value(doc);
+					if (v == null) {
+						// Missing values last in both directions
+						assertNull(hit.fields[0]);
+					} else {
+						assertEquals(((Number) hit.fields[0]).doubleValue(), v * scale);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void ints() throws IOException {
+		check("int", new IntValueComparatorSource(new IntValueComparator() {
+			@Override
+			public int compare(int v1, int v2) {
+				return ValueComparatorSourceTest.compare(v1, v2);
+			}
+		}), 1.0);
+	}
+
+	@Test
+	public void longs() throws IOException {
+		check("long", new LongValueComparatorSource(new LongValueComparator() {
+			@Override
+			public int compare(long v1, long v2) {
+				return ValueComparatorSourceTest.compare((int) (v1 / 10000000000L), (int) (v2 / 10000000000L));
+			}
+		}), 10000000000.0);
+	}
+
+	@Test
+	public void floats() throws IOException {
+		check("float", new FloatValueComparatorSource(new FloatValueComparator() {
+			@Override
+			public int compare(float v1, float v2) {
+				return ValueComparatorSourceTest.compare(Math.round(v1 * 4), Math.round(v2 * 4));
+			}
+		}), 0.25);
+	}
+
+	@Test
+	public void doubles() throws IOException {
+		check("double", new DoubleValueComparatorSource(new DoubleValueComparator() {
+			@Override
+			public int compare(double v1, double v2) {
+				return ValueComparatorSourceTest.compare((int) Math.round(v1 * 8), (int) Math.round(v2 * 8));
+			}
+		}), 0.125);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.search;
+
+import static org.testng.Assert.assertEquals;
+
+import java.text.Collator;
+import java.util.Locale;
+
+import net.conquiris.api.search.AbstractHitMapper;
+import net.conquiris.api.search.HitMapper;
+import net.conquiris.api.search.PageResult;
+import net.conquiris.api.search.Searcher;
+import net.conquiris.lucene.Conquiris;
+import net.conquiris.lucene.document.DocumentBuilder;
+import net.conquiris.lucene.index.CollationKeys;
+import net.conquiris.lucene.search.Filters;
+import net.conquiris.lucene.search.Hit;
+import net.conquiris.lucene.search.SortBuilder;
+import net.conquiris.schema.SchemaItems;
+import net.conquiris.schema.TextSchemaItem;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermRangeFilter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for collated fields.
+ * @author Andres Rodriguez
+ */
+public class CollationTest {
+	private static final Locale ES = new Locale("es");
+	private static final TextSchemaItem NAME = SchemaItems.collated("NAME", true, true, ES);
+	private static final ImmutableList<String> SORTED = ImmutableList.of("abeja",
+			"\u00e1rbol", "nube", "\u00d1u", "oso", "zorro");
+
+	private static final HitMapper<String> MAPPER = new AbstractHitMapper<String>() {
+		public String apply(Hit hit) {
+			return hit.item(NAME).get();
+		}
+	};
+
+	private static Directory create() throws Exception {
+		Directory directory = new RAMDirectory();
+		IndexWriter w = new IndexWriter(directory, Conquiris.writerConfig());
+		for (String name : ImmutableList.of("zorro", "\u00d1u", "\u00e1rbol", "oso", "abeja", "nube")) {
+			w.addDocument(DocumentBuilder.create().add(NAME, name).build());
+		}
+		w.close();
+		return directory;
+	}
+
+	private static void check(Searcher s, Filter filter, int from, int to) {
+		PageResult<String> p = s.getPage(MAPPER, new MatchAllDocsQuery(), 0, 10, filter, SortBuilder.newBuilder()
+				.add(NAME).build(), null);
+		assertEquals(p.size(), to - from);
+		for (int i = from; i < to; i++) {
+			assertEquals(p.get(i - from), SORTED.get(i));
+		}
+	}
+
+	@Test
+	public void test() throws Exception {
+		Searcher s = Searchers.service(ReaderSuppliers.managed(create()));
+		check(s, null, 0, SORTED.size());
+		check(s, Filters.collatedRange(NAME, "b", "o", true, false), 2, 4);
+		check(s, Filters.collatedRange(NAME, "ar", null, true, false), 1, SORTED.size());
+		TermRangeFilter f = Filters.termRange(NAME, "b", "o", true, false, Collator.getInstance(ES));
+		assertEquals(f.getField(), CollationKeys.field(NAME));
+		check(s, f, 2, 4);
+	}
+
+}
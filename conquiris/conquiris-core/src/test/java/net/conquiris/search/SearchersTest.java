@@ -28,6 +28,7 @@ import java.util.concurrent.TimeUnit;
 
 import net.conquiris.api.search.ManagedReaderSupplier;
 import net.conquiris.api.search.ReaderSupplier;
+import net.conquiris.api.search.Searcher;
 import net.conquiris.api.search.SearcherService;
 import net.conquiris.support.TestSupport;
 
@@ -35,6 +36,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.primitives.Longs;
 
 /**
@@ -175,6 +177,30 @@ public class SearchersTest {
 		}
 		join("Complex Concurrent", s);
 	}
+
+	@Test
+	public void latencyDecay() throws Exception {
+		// Own fixtures, the shared ones are built up by the other tests
+		final Directory local = new RAMDirectory();
+		TestSupport.write(local, FROM, TO);
+		final SearcherService searcher = Searchers.service(ReaderSuppliers.directory(local));
+		searcher.search(new Function<Searcher, Void>() {
+			@Override
+			public Void apply(Searcher input) {
+				try {
+					Thread.sleep(200L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			}
+		});
+		final double latency = searcher.getLatency();
+		assertTrue(latency > 10.0);
+		// No searches are completed meanwhile
+		Thread.sleep(1000L);
+		assertTrue(searcher.getLatency() < latency / 2);
+	}
 	
 	
 }
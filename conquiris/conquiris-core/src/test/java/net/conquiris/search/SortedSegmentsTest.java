@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.search;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import net.conquiris.index.IndexOrder;
+import net.conquiris.lucene.Conquiris;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeFilter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Tests for SortedSegments.
+ * @author Andres Rodriguez
+ */
+public class SortedSegmentsTest {
+	private static final String FIELD = "v";
+	private static final int SEGMENTS = 5;
+	private static final int SEGMENT_SIZE = 20;
+	private static final int N = SEGMENTS * SEGMENT_SIZE;
+
+	private static final Sort ASC = new Sort(new SortField(FIELD, SortField.INT));
+	private static final Sort DESC = new Sort(new SortField(FIELD, SortField.INT, true));
+
+	/**
+	 * Creates an index of several segments with values added in order, with ties. The last segment is
+	 * out of order if requested.
+	 */
+	private static Directory create(boolean descending, boolean unordered, Map<String, String> commitData)
+			throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriterConfig config = Conquiris.writerConfig();
+		config.setMaxBufferedDocs(SEGMENT_SIZE);
+		config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+		final IndexWriter w = new IndexWriter(directory, config);
+		for (int i = 0; i < N; i++) {
+			int value = descending ? (N - i) / 3 : i / 3;
+			if (unordered && i >= N - SEGMENT_SIZE) {
+				value = (i * 7) % SEGMENT_SIZE;
+			}
+			final Document d = new Document();
+			d.add(new NumericField(FIELD, Field.Store.YES, true).setIntValue(value));
+			d.add(new Field("k", i % 3 == 0 ? "a" : "b", Field.Store.NO, Field.Index.NOT_ANALYZED));
+			w.addDocument(d);
+		}
+		w.commit(commitData);
+		w.close();
+		return directory;
+	}
+
+	private static void check(IndexSearcher searcher, Query query, Filter filter, Sort sort, int n) throws Exception {
+		final TopDocs expected = searcher.search(query, filter, n, sort);
+		final TopDocs actual = SortedSegments.search(searcher, query, filter, sort, n);
+		if (n >= SEGMENT_SIZE || (filter == null && query instanceof MatchAllDocsQuery)) {
+			// Every segment fully visited or matches evenly distributed
+			assertEquals(actual.totalHits, expected.totalHits);
+		} else {
+			// Estimated
+			assertEquals(actual.totalHits > 0, expected.totalHits > 0);
+			assertTrue(actual.totalHits >= actual.scoreDocs.length);
+		}
+		assertEquals(actual.scoreDocs.length, expected.scoreDocs.length);
+		for (int i = 0; i < expected.scoreDocs.length; i++) {
+			assertEquals(actual.scoreDocs[i].doc, expected.scoreDocs[i].doc);
+		}
+	}
+
+	private static void check(Directory directory) throws Exception {
+		final IndexReader reader = IndexReader.open(directory);
+		try {
+			final IndexSearcher searcher = new IndexSearcher(reader);
+			assertEquals(reader.getSequentialSubReaders().length, SEGMENTS);
+			final Filter filter = NumericRangeFilter.newIntRange(FIELD, 5, 25, true, false);
+			for (Sort sort : new Sort[] { ASC, DESC }) {
+				for (int n : new int[] { 1, 7, SEGMENT_SIZE, N, 2 * N, Integer.MAX_VALUE }) {
+					check(searcher, new MatchAllDocsQuery(), null, sort, n);
+					check(searcher, new TermQuery(new Term("k", "a")), null, sort, n);
+					check(searcher, new MatchAllDocsQuery(), filter, sort, n);
+					check(searcher, new TermQuery(new Term("k", "c")), null, sort, n);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void ascending() throws Exception {
+		check(create(false, false, ImmutableMap.<String, String> of()));
+	}
+
+	@Test
+	public void descending() throws Exception {
+		check(create(true, false, ImmutableMap.<String, String> of()));
+	}
+
+	@Test
+	public void unordered() throws Exception {
+		check(create(false, true, ImmutableMap.<String, String> of()));
+		check(create(true, true, ImmutableMap.<String, String> of()));
+	}
+
+	@Test
+	public void indexOrder() throws Exception {
+		final IndexReader unrecorded = IndexReader.open(create(false, false, ImmutableMap.<String, String> of()));
+		assertFalse(SortedSegments.isIndexOrder(unrecorded, ASC));
+		unrecorded.close();
+		final IndexReader recorded = IndexReader.open(create(false, false,
+				ImmutableMap.of(IndexOrder.ORDER, FIELD + ":int:asc")));
+		assertTrue(SortedSegments.isIndexOrder(recorded, ASC));
+		assertFalse(SortedSegments.isIndexOrder(recorded, DESC));
+		assertFalse(SortedSegments.isIndexOrder(recorded, new Sort(new SortField(FIELD, SortField.LONG))));
+		assertFalse(SortedSegments.isIndexOrder(recorded, new Sort(new SortField(FIELD, SortField.INT),
+				SortField.FIELD_DOC)));
+		assertFalse(SortedSegments.isIndexOrder(recorded, null));
+		recorded.close();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.support;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.conquiris.api.index.Checkpoints;
+import net.conquiris.api.index.DocumentWriter;
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.PartitionIndexer;
+import net.conquiris.api.index.Partitions;
+import net.conquiris.api.index.Writer;
+
+/**
+ * Partitioned indexer used for tests. The checkpoint is only advanced once every partition is
+ * finished.
+ * @author Andres Rodriguez
+ */
+public final class TestPartitionedIndexer extends TestIndexer {
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	public TestPartitionedIndexer() {
+	}
+
+	@Override
+	int index(int cp, Writer writer) throws InterruptedException, IndexException {
+		final int target = getTarget();
+		if (cp >= target) {
+			return cp;
+		}
+		final String name = "reindex" + target;
+		if (writer.runPartitions(executor, 4, 1, TimeUnit.SECONDS, name, Partitions.ofLongRange(cp + 1, target, 8),
+				Steps.INSTANCE)) {
+			return target;
+		}
+		return cp;
+	}
+
+	private enum Steps implements PartitionIndexer {
+		INSTANCE;
+
+		@Override
+		public String index(DocumentWriter writer, String partition, String checkpoint) throws InterruptedException,
+				IndexException {
+			final long upper = Partitions.upper(partition);
+			final long start = Checkpoints.ofLong(checkpoint, Partitions.lower(partition) - 1) + 1;
+			final long end = Math.min(upper, start + 49);
+			for (long i = start; i <= end; i++) {
+				writer.add(TestSupport.document((int) i));
+			}
+			return end < upper ? Long.toString(end) : null;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.support;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.conquiris.api.index.IndexException;
+import net.conquiris.api.index.RecordIndexer;
+import net.conquiris.api.index.Writer;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Pipeline indexer used for tests.
+ * @author Andres Rodriguez
+ */
+public final class TestPipelineIndexer extends TestIndexer {
+	private static final int WORKERS = 4;
+	private final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+
+	public TestPipelineIndexer() {
+	}
+
+	@Override
+	int index(int cp, Writer writer) throws InterruptedException, IndexException {
+		int start = cp + 1;
+		final int end = Math.min(getTarget(), start + 99);
+		List<Integer> records = Lists.newArrayList();
+		for (int i = start; i <= end; i++) {
+			records.add(i);
+		}
+		writer.runPipeline(executor, WORKERS, 32, records.iterator(), Records.INSTANCE);
+		return Math.max(cp, end);
+	}
+
+	/** Shuts down the workers executor. */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private enum Records implements RecordIndexer<Integer> {
+		INSTANCE;
+
+		@Override
+		public Term getKey(Integer record) {
+			return TestSupport.termId(record);
+		}
+
+		@Override
+		public Document getDocument(Integer record) throws InterruptedException, IndexException {
+			return TestSupport.document(record);
+		}
+	}
+}
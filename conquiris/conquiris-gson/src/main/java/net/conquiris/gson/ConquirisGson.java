@@ -18,6 +18,7 @@ package net.conquiris.gson;
 import static com.google.common.base.Preconditions.checkNotNull;
 import net.conquiris.api.index.Delays;
 import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.IndexMetrics;
 import net.conquiris.api.index.IndexReport;
 
 import com.google.common.base.Supplier;
@@ -46,6 +47,7 @@ public final class ConquirisGson {
 		checkNotNull(builder, "The builder to decorate must be provided");
 		builder.registerTypeAdapter(Delays.class, new GsonDelays());
 		builder.registerTypeAdapter(IndexInfo.class, new GsonIndexInfo());
+		builder.registerTypeAdapter(IndexMetrics.class, new GsonIndexMetrics());
 		builder.registerTypeAdapter(IndexReport.class, new GsonIndexReport());
 		return builder;
 	}
@@ -31,7 +31,8 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 /**
- * Gson representation for {@link Delays}.
+ * Gson representation for {@link Delays}: an array with the normal, idle and error delays, followed
+ * by the maximum idle and error delays if the specification is adaptive.
  * @author Andres Rodriguez
  */
 public final class GsonDelays implements JsonSerializer<Delays>, JsonDeserializer<Delays> {
@@ -45,6 +46,10 @@ public final class GsonDelays implements JsonSerializer<Delays>, JsonDeserialize
 		array.add(new JsonPrimitive(src.getNormal()));
 		array.add(new JsonPrimitive(src.getIdle()));
 		array.add(new JsonPrimitive(src.getError()));
+		if (src.isAdaptive()) {
+			array.add(new JsonPrimitive(src.getMaxIdle()));
+			array.add(new JsonPrimitive(src.getMaxError()));
+		}
 		return array;
 	}
 
@@ -54,6 +59,10 @@ public final class GsonDelays implements JsonSerializer<Delays>, JsonDeserialize
 		checkArgument(json.isJsonArray(), "Expected JSON Array to deserialize Delays object.");
 		final JsonArray array = json.getAsJsonArray();
 		checkArgument(array.size() >= 3, "Expected JSON Array with at least 3 arguments to deserialize Delays object.");
+		if (array.size() >= 5) {
+			return Delays.adaptive(array.get(0).getAsLong(), array.get(1).getAsLong(), array.get(2).getAsLong(), array.get(3)
+					.getAsLong(), array.get(4).getAsLong());
+		}
 		return Delays.of(array.get(0).getAsLong(), array.get(1).getAsLong(), array.get(2).getAsLong());
 	}
 }
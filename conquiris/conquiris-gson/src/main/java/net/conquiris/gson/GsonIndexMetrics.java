@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.gson;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.reflect.Type;
+import java.util.Map.Entry;
+
+import net.conquiris.api.index.IndexMetrics;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+/**
+ * Gson representation for {@link IndexMetrics}: an object with a numeric property per metric.
+ * @author Andres Rodriguez
+ */
+public final class GsonIndexMetrics implements JsonSerializer<IndexMetrics>, JsonDeserializer<IndexMetrics> {
+	/** Constructor. */
+	public GsonIndexMetrics() {
+	}
+
+	@Override
+	public JsonElement serialize(IndexMetrics src, Type typeOfSrc, JsonSerializationContext context) {
+		final JsonObject object = new JsonObject();
+		for (Entry<String, Double> e : src.asMap().entrySet()) {
+			object.addProperty(e.getKey(), e.getValue());
+		}
+		return object;
+	}
+
+	@Override
+	public IndexMetrics deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+			throws JsonParseException {
+		checkArgument(json.isJsonObject(), "Expected JSON Object to deserialize IndexMetrics.");
+		final IndexMetrics.Builder builder = IndexMetrics.builder();
+		for (Entry<String, JsonElement> e : json.getAsJsonObject().entrySet()) {
+			builder.add(e.getKey(), e.getValue().getAsDouble());
+		}
+		return builder.build();
+	}
+}
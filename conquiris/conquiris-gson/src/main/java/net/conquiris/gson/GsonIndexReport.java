@@ -21,6 +21,7 @@ import java.lang.reflect.Type;
 
 import net.conquiris.api.index.Delays;
 import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.IndexMetrics;
 import net.conquiris.api.index.IndexReport;
 import net.conquiris.api.index.IndexReportLevel;
 import net.conquiris.api.index.IndexStatus;
@@ -50,6 +51,8 @@ public final class GsonIndexReport implements JsonSerializer<IndexReport>, JsonD
 	private static final String DELAYS = "delays";
 	/** Index info. Not included in basic reports. */
 	private static final String INFO = "info";
+	/** Service metrics. Only included in detailed reports. */
+	private static final String METRICS = "metrics";
 
 	/** Constructor. */
 	public GsonIndexReport() {
@@ -66,6 +69,9 @@ public final class GsonIndexReport implements JsonSerializer<IndexReport>, JsonD
 			object.add(DELAYS, context.serialize(src.getDelays().get()));
 			object.add(INFO, context.serialize(src.getInfo().get()));
 		}
+		if (src.getLevel() == IndexReportLevel.DETAILED) {
+			object.add(METRICS, context.serialize(src.getMetrics().get()));
+		}
 		return object;
 	}
 
@@ -86,6 +92,12 @@ public final class GsonIndexReport implements JsonSerializer<IndexReport>, JsonD
 		if (level == IndexReportLevel.NORMAL) {
 			return IndexReport.normal(started, active, status, delays, info);
 		}
-		return IndexReport.detailed(started, active, status, delays, info);
+		final IndexMetrics metrics;
+		if (object.has(METRICS)) {
+			metrics = context.deserialize(object.get(METRICS), IndexMetrics.class);
+		} else {
+			metrics = IndexMetrics.empty();
+		}
+		return IndexReport.detailed(started, active, status, delays, info, metrics);
 	}
 }
@@ -28,6 +28,7 @@ public class GsonDelaysTest {
 	private static final Delays ZERO = Delays.constant(0L);
 	private static final Delays ONE = Delays.constant(1L);
 	private static final Delays OTHER = Delays.of(1L, 2L, 3L);
+	private static final Delays ADAPTIVE = Delays.adaptive(1L, 2L, 3L, 20L, 30L);
 
 	/** Serializability. */
 	@Test
@@ -35,5 +36,6 @@ public class GsonDelaysTest {
 		GsonSerializabilityTests.check(ConquirisGson.get(), ZERO);
 		GsonSerializabilityTests.check(ConquirisGson.get(), ONE);
 		GsonSerializabilityTests.check(ConquirisGson.get(), OTHER);
+		GsonSerializabilityTests.check(ConquirisGson.get(), ADAPTIVE);
 	}
 }
@@ -17,6 +17,7 @@ package net.conquiris.gson;
 
 import net.conquiris.api.index.Delays;
 import net.conquiris.api.index.IndexInfo;
+import net.conquiris.api.index.IndexMetrics;
 import net.conquiris.api.index.IndexReport;
 import net.conquiris.api.index.IndexStatus;
 import net.derquinse.common.test.GsonSerializabilityTests;
@@ -37,6 +38,8 @@ public class GsonIndexReportTest {
 			INFO);
 	private static final IndexReport DETAILED = IndexReport.detailed(true, true, IndexStatus.OK, Delays.constant(10L),
 			INFO);
+	private static final IndexReport METRICS = IndexReport.detailed(true, true, IndexStatus.OK, Delays.constant(10L),
+			INFO, IndexMetrics.builder().add(IndexMetrics.MERGES, 3).add(IndexMetrics.MERGE_RATE, 2.5).build());
 
 	/** Serializability. */
 	@Test
@@ -44,5 +47,6 @@ public class GsonIndexReportTest {
 		GsonSerializabilityTests.check(ConquirisGson.get(), BASIC);
 		GsonSerializabilityTests.check(ConquirisGson.get(), NORMAL);
 		GsonSerializabilityTests.check(ConquirisGson.get(), DETAILED);
+		GsonSerializabilityTests.check(ConquirisGson.get(), METRICS);
 	}
 }
@@ -22,6 +22,7 @@ import static net.conquiris.jersey.IndexerServiceResources.QP_LEVEL;
 import static net.conquiris.jersey.IndexerServiceResources.REINDEX;
 import static net.conquiris.jersey.IndexerServiceResources.START;
 import static net.conquiris.jersey.IndexerServiceResources.STOP;
+import static net.conquiris.jersey.IndexerServiceResources.TRIGGER;
 import net.conquiris.api.index.Delays;
 import net.conquiris.api.index.IndexReport;
 import net.conquiris.api.index.IndexReportLevel;
@@ -73,4 +74,9 @@ final class IndexerServiceClient implements IndexerService {
 		resource.path(REINDEX).post();
 	}
 
+	@Override
+	public void trigger() {
+		resource.path(TRIGGER).post();
+	}
+
 }
@@ -22,6 +22,7 @@ import static net.conquiris.jersey.IndexerServiceResources.QP_LEVEL;
 import static net.conquiris.jersey.IndexerServiceResources.REINDEX;
 import static net.conquiris.jersey.IndexerServiceResources.START;
 import static net.conquiris.jersey.IndexerServiceResources.STOP;
+import static net.conquiris.jersey.IndexerServiceResources.TRIGGER;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -103,4 +104,10 @@ public class IndexerServiceResource {
 		service.reindex();
 	}
 
+	@POST
+	@Path(TRIGGER)
+	public void trigger() {
+		service.trigger();
+	}
+
 }
@@ -85,5 +85,11 @@ public class ConquirisJerseyTest extends JerseyTest {
 		client.reindex();
 		Thread.sleep(200);
 		Assert.assertTrue(checkpoint(server) < 10000);
+		client.setDelays(Delays.constant(60000L));
+		Thread.sleep(200);
+		int cp = checkpoint(server);
+		client.trigger();
+		Thread.sleep(500);
+		Assert.assertTrue(checkpoint(server) > cp);
 	}
 }
@@ -42,4 +42,7 @@ public final class IndexerServiceResources {
 
 	/** Reindex resource. */
 	public static final String REINDEX = "reindex";
+
+	/** Trigger resource. */
+	public static final String TRIGGER = "trigger";
 }
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkState;
 import java.io.Reader;
 import java.util.UUID;
 
+import net.conquiris.lucene.index.CollationKeys;
 import net.conquiris.schema.BinarySchemaItem;
 import net.conquiris.schema.BooleanSchemaItem;
 import net.conquiris.schema.DoubleSchemaItem;
@@ -232,7 +233,8 @@ public abstract class BaseDocumentBuilder<B extends BaseDocumentBuilder<B>> exte
 	}
 
 	/**
-	 * Adds a textual field based on a schema item.
+	 * Adds a textual field based on a schema item. If the item is collated, the collation key of the
+	 * value is added as well.
 	 * @param item Schema item.
 	 * @param value Field value.
 	 * @return This builder.
@@ -240,7 +242,11 @@ public abstract class BaseDocumentBuilder<B extends BaseDocumentBuilder<B>> exte
 	 *           reached.
 	 */
 	public final B add(TextSchemaItem item, String value) {
-		return text(item).add(value);
+		text(item).add(value);
+		if (item.isCollated()) {
+			add(CollationKeys.fieldable(item, value));
+		}
+		return thisValue();
 	}
 
 	/**
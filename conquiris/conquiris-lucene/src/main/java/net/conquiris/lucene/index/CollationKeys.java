@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.text.Collator;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+import net.conquiris.schema.TextSchemaItem;
+import net.derquinse.common.base.NotInstantiable;
+
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.IndexableBinaryStringTools;
+
+/**
+ * Collation keys support class. For collated textual schema items the binary collation key of each
+ * value is indexed in an additional, untokenized field whose term order is the collation order, so
+ * that locale-aware ranges and sorts become plain term operations.
+ * @author Andres Rodriguez
+ */
+public final class CollationKeys extends NotInstantiable {
+	private CollationKeys() {
+	}
+
+	/** Suffix of the collation keys field name. */
+	public static final String SUFFIX = "#collated";
+
+	private static TextSchemaItem checkCollated(TextSchemaItem item) {
+		checkNotNull(item, "The schema item must be provided");
+		checkArgument(item.isCollated(), "The field [%s] is not collated", item.getName());
+		return item;
+	}
+
+	/**
+	 * Returns the name of the field containing the collation keys of a schema item.
+	 * @throws IllegalArgumentException if the item is not collated.
+	 */
+	public static String field(TextSchemaItem item) {
+		return checkCollated(item).getName() + SUFFIX;
+	}
+
+	/** Returns a new collator for the provided locale. */
+	public static Collator collator(Locale locale) {
+		return Collator.getInstance(checkNotNull(locale, "The collation locale must be provided"));
+	}
+
+	/**
+	 * Returns whether the collation keys of a schema item are compatible with a collator, i.e. the
+	 * item is collated and the collator is equivalent to the default one for the item locale.
+	 */
+	public static boolean isCompatible(TextSchemaItem item, @Nullable Collator collator) {
+		return item != null && collator != null && item.isCollated()
+				&& collator(item.getCollationLocale()).equals(collator);
+	}
+
+	/**
+	 * Returns the indexable collation key of a value. Keys are encoded with
+	 * {@link IndexableBinaryStringTools}, which preserves the binary order.
+	 * @param collator Collator to use.
+	 * @param value Value to compute the key of.
+	 */
+	public static String key(Collator collator, String value) {
+		checkNotNull(collator, "The collator must be provided");
+		checkNotNull(value, "The value must be provided");
+		final byte[] bytes = collator.getCollationKey(value).toByteArray();
+		final int n = IndexableBinaryStringTools.getEncodedLength(bytes, 0, bytes.length);
+		final char[] chars = new char[n];
+		IndexableBinaryStringTools.encode(bytes, 0, bytes.length, chars, 0, n);
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the indexable collation key of a value of a schema item.
+	 * @throws IllegalArgumentException if the item is not collated.
+	 */
+	public static String key(TextSchemaItem item, String value) {
+		return key(collator(checkCollated(item).getCollationLocale()), value);
+	}
+
+	/**
+	 * Returns the collation key term for a value of a schema item.
+	 * @throws IllegalArgumentException if the item is not collated.
+	 */
+	public static Term term(TextSchemaItem item, String value) {
+		return new Term(field(item), key(item, value));
+	}
+
+	/**
+	 * Returns the (unstored, untokenized, without norms nor frequencies) field containing the
+	 * collation key for a value of a schema item.
+	 * @throws IllegalArgumentException if the item is not collated.
+	 */
+	public static Fieldable fieldable(TextSchemaItem item, String value) {
+		final Field f = new Field(field(item), key(item, value), Store.NO, Index.NOT_ANALYZED_NO_NORMS);
+		f.setIndexOptions(IndexOptions.DOCS_ONLY);
+		return f;
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldCache.CacheEntry;
+import org.apache.lucene.search.FieldCacheRangeFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredDocIdSet;
+import org.apache.lucene.search.NumericRangeFilter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.NumericUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Numeric range filter that chooses, for each segment, between trie term enumeration and a scan of
+ * the FieldCache values of the field. The FieldCache path is only taken when the field values are
+ * already loaded for the segment (e.g. because of sorting) and the number of matching documents,
+ * estimated from the document frequencies of the trie terms covering the range, makes reading
+ * their postings more expensive than scanning the array. Per-filter and global statistics of the
+ * chosen paths are kept. As documents without the field have a FieldCache value of zero, if the
+ * range contains zero the FieldCache path is restricted to the documents with the field.
+ * @author Andres Rodriguez
+ */
+public final class AdaptiveRangeFilter<T extends Number> extends Filter {
+	/** Serial UID. */
+	private static final long serialVersionUID = -2609213788160416120L;
+
+	/**
+	 * Estimated cost of reading a matching document from the postings, relative to checking a
+	 * FieldCache array entry.
+	 */
+	private static final int POSTINGS_COST = 4;
+
+	/** Global number of segments filtered by trie term enumeration. */
+	private static final AtomicLong GLOBAL_TRIE = new AtomicLong();
+	/** Global number of segments filtered by FieldCache scan. */
+	private static final AtomicLong GLOBAL_FIELD_CACHE = new AtomicLong();
+
+	/** Interval after which a field found not to be loaded in the FieldCache is checked again. */
+	private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+	/** State of the fields in the FieldCache, by segment core. */
+	private static final Cache<Object, Loaded> LOADED = CacheBuilder.newBuilder().weakKeys().build();
+
+	/** Creates a new int range filter. */
+	static AdaptiveRangeFilter<Integer> newIntRange(String field, Integer min, Integer max, boolean minInclusive,
+			boolean maxInclusive) {
+		return new AdaptiveRangeFilter<Integer>(NumericRangeFilter.newIntRange(field, min, max, minInclusive,
+				maxInclusive), FieldCacheRangeFilter.newIntRange(field, null, min, max, minInclusive, maxInclusive),
+				int.class);
+	}
+
+	/** Creates a new long range filter. */
+	static AdaptiveRangeFilter<Long> newLongRange(String field, Long min, Long max, boolean minInclusive,
+			boolean maxInclusive) {
+		return new AdaptiveRangeFilter<Long>(NumericRangeFilter.newLongRange(field, min, max, minInclusive,
+				maxInclusive), FieldCacheRangeFilter.newLongRange(field, null, min, max, minInclusive, maxInclusive),
+				long.class);
+	}
+
+	/** Trie filter. */
+	private final NumericRangeFilter<T> trie;
+	/** FieldCache filter. */
+	private final FieldCacheRangeFilter<T> fieldCache;
+	/** FieldCache value type. */
+	private final Class<?> type;
+	/** Whether the range contains zero, the FieldCache value of documents without the field. */
+	private final boolean zero;
+	/** Number of segments filtered by trie term enumeration. */
+	private final AtomicLong trieCount = new AtomicLong();
+	/** Number of segments filtered by FieldCache scan. */
+	private final AtomicLong fieldCacheCount = new AtomicLong();
+
+	/** Constructor. */
+	private AdaptiveRangeFilter(NumericRangeFilter<T> trie, FieldCacheRangeFilter<T> fieldCache, Class<?> type) {
+		this.trie = checkNotNull(trie);
+		this.fieldCache = checkNotNull(fieldCache);
+		this.type = type;
+		final Number lower = trie.getMin();
+		final Number upper = trie.getMax();
+		final boolean aboveMin = lower == null || (trie.includesMin() ? lower.longValue() <= 0 : lower.longValue() < 0);
+		final boolean belowMax = upper == null || (trie.includesMax() ? upper.longValue() >= 0 : upper.longValue() > 0);
+		this.zero = aboveMin && belowMax;
+	}
+
+	/** Returns the field of the filter. */
+	public String getField() {
+		return trie.getField();
+	}
+
+	/** Returns the number of segments this filter has evaluated by trie term enumeration. */
+	public long getTrieCount() {
+		return trieCount.get();
+	}
+
+	/** Returns the number of segments this filter has evaluated by FieldCache scan. */
+	public long getFieldCacheCount() {
+		return fieldCacheCount.get();
+	}
+
+	/** Returns the number of segments evaluated by trie term enumeration by all adaptive filters. */
+	public static long getGlobalTrieCount() {
+		return GLOBAL_TRIE.get();
+	}
+
+	/** Returns the number of segments evaluated by FieldCache scan by all adaptive filters. */
+	public static long getGlobalFieldCacheCount() {
+		return GLOBAL_FIELD_CACHE.get();
+	}
+
+	@Override
+	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+		if (isLoaded(reader) && !cheaperByTrie(reader)) {
+			fieldCacheCount.incrementAndGet();
+			GLOBAL_FIELD_CACHE.incrementAndGet();
+			final DocIdSet set = fieldCache.getDocIdSet(reader);
+			if (zero) {
+				final Bits docsWithField = FieldCache.DEFAULT.getDocsWithField(reader, trie.getField());
+				if (!(docsWithField instanceof Bits.MatchAllBits)) {
+					return new WithField(set, docsWithField);
+				}
+			}
+			return set;
+		}
+		trieCount.incrementAndGet();
+		GLOBAL_TRIE.incrementAndGet();
+		return trie.getDocIdSet(reader);
+	}
+
+	/**
+	 * Returns whether the field values are already loaded in the FieldCache for the segment. As
+	 * finding it out requires scanning all the FieldCache entries, a negative answer is reused for a
+	 * short interval.
+	 */
+	private boolean isLoaded(IndexReader reader) {
+		final Object core = reader.getCoreCacheKey();
+		final String field = trie.getField();
+		final Loaded loaded;
+		try {
+			loaded = LOADED.get(core, NewLoaded.INSTANCE);
+		} catch (ExecutionException e) {
+			throw new UncheckedExecutionException(e.getCause());
+		}
+		if (loaded.fields.contains(field)) {
+			return true;
+		}
+		final long now = System.nanoTime();
+		final Long checked = loaded.unloaded.get(field);
+		if (checked != null && now - checked.longValue() < RECHECK_NANOS) {
+			return false;
+		}
+		for (CacheEntry e : FieldCache.DEFAULT.getCacheEntries()) {
+			if (e.getReaderKey() == core && type == e.getCacheType() && e.getCustom() == null
+					&& field.equals(e.getFieldName())) {
+				loaded.fields.add(field);
+				loaded.unloaded.remove(field);
+				return true;
+			}
+		}
+		loaded.unloaded.put(field, now);
+		return false;
+	}
+
+	/**
+	 * Estimates the number of matching documents from the trie terms covering the range and returns
+	 * whether reading their postings is cheaper than scanning the segment values.
+	 */
+	private boolean cheaperByTrie(IndexReader reader) throws IOException {
+		final long limit = reader.maxDoc() / POSTINGS_COST;
+		final Estimator estimator = new Estimator(reader, trie.getField(), limit);
+		final int step = trie.getPrecisionStep();
+		final boolean isInt = type == int.class;
+		final Number lower = trie.getMin();
+		final Number upper = trie.getMax();
+		long min = lower != null ? lower.longValue() : (isInt ? Integer.MIN_VALUE : Long.MIN_VALUE);
+		long max = upper != null ? upper.longValue() : (isInt ? Integer.MAX_VALUE : Long.MAX_VALUE);
+		if (lower != null && !trie.includesMin()) {
+			if (!isInt && min == Long.MAX_VALUE) {
+				return true; // Empty range
+			}
+			min++;
+		}
+		if (upper != null && !trie.includesMax()) {
+			if (!isInt && max == Long.MIN_VALUE) {
+				return true; // Empty range
+			}
+			max--;
+		}
+		if (min > max) {
+			return true; // Empty range
+		}
+		if (isInt) {
+			NumericUtils.splitIntRange(estimator.ints(), step, (int) min, (int) max);
+		} else {
+			NumericUtils.splitLongRange(estimator.longs(), step, min, max);
+		}
+		estimator.check();
+		return estimator.count < limit;
+	}
+
+	@Override
+	public String toString() {
+		return "Adaptive" + trie.toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof AdaptiveRangeFilter) {
+			return trie.equals(((AdaptiveRangeFilter<?>) o).trie);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return trie.hashCode() ^ 0x2C6B94E1;
+	}
+
+	/** Set restricted to the documents with the field. */
+	private static final class WithField extends FilteredDocIdSet {
+		/** Documents with the field. */
+		private final Bits docsWithField;
+
+		WithField(DocIdSet set, Bits docsWithField) {
+			super(set);
+			this.docsWithField = docsWithField;
+		}
+
+		@Override
+		protected boolean match(int doc) {
+			return docsWithField.get(doc);
+		}
+	}
+
+	/** State of the fields of a segment core in the FieldCache. */
+	private static final class Loaded {
+		/** Fields known to be loaded. */
+		private final Set<String> fields = Sets.newSetFromMap(Maps.<String, Boolean> newConcurrentMap());
+		/** Time of the last check of the fields found not to be loaded. */
+		private final ConcurrentMap<String, Long> unloaded = Maps.newConcurrentMap();
+	}
+
+	/** Per-core state factory. */
+	private enum NewLoaded implements Callable<Loaded> {
+		INSTANCE;
+
+		@Override
+		public Loaded call() {
+			return new Loaded();
+		}
+	}
+
+	/**
+	 * Sums the document frequencies of the trie terms of the sub-ranges, stopping once a limit is
+	 * reached.
+	 */
+	private static final class Estimator {
+		private final IndexReader reader;
+		private final String field;
+		private final long limit;
+		/** Estimated number of documents. */
+		private long count = 0;
+		/** Error found during estimation. */
+		private IOException error;
+
+		Estimator(IndexReader reader, String field, long limit) {
+			this.reader = reader;
+			this.field = field;
+			this.limit = limit;
+		}
+
+		NumericUtils.IntRangeBuilder ints() {
+			return new NumericUtils.IntRangeBuilder() {
+				@Override
+				public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+					add(minPrefixCoded, maxPrefixCoded);
+				}
+			};
+		}
+
+		NumericUtils.LongRangeBuilder longs() {
+			return new NumericUtils.LongRangeBuilder() {
+				@Override
+				public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+					add(minPrefixCoded, maxPrefixCoded);
+				}
+			};
+		}
+
+		private void add(String minPrefixCoded, String maxPrefixCoded) {
+			if (count >= limit || error != null) {
+				return;
+			}
+			try {
+				final TermEnum terms = reader.terms(new Term(field, minPrefixCoded));
+				try {
+					do {
+						final Term term = terms.term();
+						if (term == null || !field.equals(term.field()) || term.text().compareTo(maxPrefixCoded) > 0) {
+							break;
+						}
+						count += terms.docFreq();
+					} while (count < limit && terms.next());
+				} finally {
+					terms.close();
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+
+		void check() throws IOException {
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+}
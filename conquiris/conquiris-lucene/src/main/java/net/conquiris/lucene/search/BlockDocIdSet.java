@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+
+/**
+ * Doc id set split in blocks of 2^16 documents. Each block is stored as a sorted array of the low
+ * 16 bits of its documents or as a bitmap, whichever is smaller, and empty blocks take no space.
+ * Used for sets of medium density.
+ * @author Andres Rodriguez
+ */
+final class BlockDocIdSet extends DocIdSet {
+	/** Number of bits of the in-block document offset. */
+	private static final int BLOCK_BITS = 16;
+	/** Block size. */
+	private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+	/** In-block offset mask. */
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	/** Number of words of a bitmap block. */
+	private static final int BLOCK_WORDS = BLOCK_SIZE >>> 6;
+	/** Maximum cardinality of an array block. Above it the bitmap is smaller. */
+	private static final int MAX_ARRAY_CARDINALITY = BLOCK_SIZE >>> 4;
+
+	/** Array blocks, {@code null} for empty or bitmap blocks. */
+	private final short[][] arrays;
+	/** Bitmap blocks, {@code null} for empty or array blocks. */
+	private final long[][] bitmaps;
+	/** Number of documents in the set. */
+	private final int cardinality;
+
+	/** Creates a new set with the same documents as the provided bit set. */
+	static BlockDocIdSet of(FixedBitSet bits) {
+		checkNotNull(bits, "The bit set must be provided");
+		final long[] words = bits.getBits();
+		final int n = (bits.length() + BLOCK_MASK) >>> BLOCK_BITS;
+		final short[][] arrays = new short[n][];
+		final long[][] bitmaps = new long[n][];
+		int cardinality = 0;
+		for (int b = 0; b < n; b++) {
+			final int from = b * BLOCK_WORDS;
+			final int to = Math.min(from + BLOCK_WORDS, words.length);
+			int c = 0;
+			for (int w = from; w < to; w++) {
+				c += Long.bitCount(words[w]);
+			}
+			if (c == 0) {
+				continue;
+			}
+			cardinality += c;
+			if (c > MAX_ARRAY_CARDINALITY) {
+				bitmaps[b] = Arrays.copyOfRange(words, from, from + BLOCK_WORDS);
+			} else {
+				final short[] array = new short[c];
+				int i = 0;
+				for (int w = from; w < to; w++) {
+					long word = words[w];
+					final int base = (w - from) << 6;
+					while (word != 0) {
+						array[i++] = (short) (base + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+				arrays[b] = array;
+			}
+		}
+		return new BlockDocIdSet(arrays, bitmaps, cardinality);
+	}
+
+	/** Constructor. */
+	private BlockDocIdSet(short[][] arrays, long[][] bitmaps, int cardinality) {
+		this.arrays = arrays;
+		this.bitmaps = bitmaps;
+		this.cardinality = cardinality;
+	}
+
+	/** Returns the number of documents in the set. */
+	int cardinality() {
+		return cardinality;
+	}
+
+	/** Returns the estimated memory used by the set in bytes. */
+	long sizeInBytes() {
+		long size = 48L + 8L * (arrays.length + bitmaps.length);
+		for (int b = 0; b < arrays.length; b++) {
+			if (arrays[b] != null) {
+				size += 16L + 2L * arrays[b].length;
+			} else if (bitmaps[b] != null) {
+				size += 16L + 8L * bitmaps[b].length;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public boolean isCacheable() {
+		return true;
+	}
+
+	@Override
+	public DocIdSetIterator iterator() {
+		return new Iterator();
+	}
+
+	/** Returns the index of the next set bit in a bitmap block at or after index, or -1. */
+	private static int nextSetBit(long[] words, int index) {
+		int w = index >>> 6;
+		long word = words[w] >>> index;
+		if (word != 0) {
+			return index + Long.numberOfTrailingZeros(word);
+		}
+		while (++w < words.length) {
+			word = words[w];
+			if (word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return -1;
+	}
+
+	/** Returns the index of the first element of an array block at or after from that is >= value. */
+	private static int search(short[] array, int from, int value) {
+		int lo = from;
+		int hi = array.length;
+		if (lo < hi && (array[lo] & BLOCK_MASK) >= value) {
+			return lo;
+		}
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if ((array[mid] & BLOCK_MASK) < value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private final class Iterator extends DocIdSetIterator {
+		/** Current block. */
+		private int block = -1;
+		/** Index of the next element of the current block if it is an array block. */
+		private int index = 0;
+		/** Current document. */
+		private int doc = -1;
+
+		@Override
+		public int docID() {
+			return doc;
+		}
+
+		@Override
+		public int nextDoc() {
+			if (doc == NO_MORE_DOCS) {
+				return doc;
+			}
+			return advance(doc + 1);
+		}
+
+		@Override
+		public int advance(int target) {
+			int b = target >>> BLOCK_BITS;
+			int offset = target & BLOCK_MASK;
+			while (b < arrays.length) {
+				final short[] array = arrays[b];
+				if (array != null) {
+					final int i = search(array, b == block ? index : 0, offset);
+					if (i < array.length) {
+						block = b;
+						index = i + 1;
+						return doc = (b << BLOCK_BITS) | (array[i] & BLOCK_MASK);
+					}
+				} else if (bitmaps[b] != null) {
+					final int i = nextSetBit(bitmaps[b], offset);
+					if (i >= 0) {
+						block = b;
+						return doc = (b << BLOCK_BITS) | i;
+					}
+				}
+				b++;
+				offset = 0;
+			}
+			block = arrays.length;
+			return doc = NO_MORE_DOCS;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Implemented by filters able to cheaply estimate the number of documents they match in a segment
+ * without evaluating it. Used to order the evaluation of conjunctions. Estimates are heuristic and
+ * may be wrong in either direction, so they must never be used to skip the evaluation of a filter.
+ * @author Andres Rodriguez
+ */
+interface CardinalityEstimator {
+	/**
+	 * Returns an estimate of the number of documents matched in a segment, or -1 if no cheap
+	 * estimate is available.
+	 * @param reader Segment reader.
+	 */
+	int estimateCardinality(IndexReader reader) throws IOException;
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+
+/**
+ * String comparator source backed by {@link CompactStringIndex}. Within a segment documents are
+ * compared by ordinal, and values are only decoded for competitive hits. Documents without a term
+ * sort first, as with {@code SortField.STRING}.
+ * @author Andres Rodriguez
+ */
+final class CompactStringComparatorSource extends FieldComparatorSource {
+	/** Serial UID. */
+	private static final long serialVersionUID = -6716480209712861094L;
+
+	/** Whether the term block is stored in direct memory. */
+	private final boolean direct;
+
+	/**
+	 * Constructor.
+	 * @param direct Whether the term block is stored in direct memory.
+	 */
+	CompactStringComparatorSource(boolean direct) {
+		this.direct = direct;
+	}
+
+	@Override
+	public FieldComparator<String> newComparator(String fieldname, int numHits, int sortPos, boolean reversed)
+			throws IOException {
+		return new OrdComparator(fieldname, numHits);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CompactStringComparatorSource && direct == ((CompactStringComparatorSource) obj).direct;
+	}
+
+	@Override
+	public int hashCode() {
+		return direct ? 0x5D1E : 0x3C0A;
+	}
+
+	private static int compareValues(String v1, String v2) {
+		if (v1 == null) {
+			return v2 == null ? 0 : -1;
+		} else if (v2 == null) {
+			return 1;
+		}
+		return v1.compareTo(v2);
+	}
+
+	/** Ordinal comparator. Slot values are compared by ordinal if they come from the same segment. */
+	private final class OrdComparator extends FieldComparator<String> {
+		private final String field;
+		private final int[] ords;
+		private final String[] values;
+		private final int[] readerGen;
+		private int currentReaderGen = -1;
+		private CompactStringIndex index;
+		private int bottomSlot = -1;
+		private int bottomOrd;
+		private boolean bottomSameReader;
+		private String bottomValue;
+
+		OrdComparator(String field, int numHits) {
+			this.field = field;
+			this.ords = new int[numHits];
+			this.values = new String[numHits];
+			this.readerGen = new int[numHits];
+		}
+
+		@Override
+		public int compare(int slot1, int slot2) {
+			if (readerGen[slot1] == readerGen[slot2]) {
+				return ords[slot1] - ords[slot2];
+			}
+			return compareValues(values[slot1], values[slot2]);
+		}
+
+		@Override
+		public int compareBottom(int doc) {
+			final int docOrd = index.ord(doc);
+			if (bottomSameReader) {
+				return bottomOrd - docOrd;
+			}
+			// The bottom value is between bottomOrd and bottomOrd + 1
+			return bottomOrd >= docOrd ? 1 : -1;
+		}
+
+		@Override
+		public void copy(int slot, int doc) {
+			final int ord = index.ord(doc);
+			ords[slot] = ord;
+			values[slot] = index.term(ord);
+			readerGen[slot] = currentReaderGen;
+		}
+
+		@Override
+		public void setNextReader(IndexReader reader, int docBase) throws IOException {
+			index = CompactStringIndex.get(reader, field, direct);
+			currentReaderGen++;
+			if (bottomSlot != -1) {
+				setBottom(bottomSlot);
+			}
+		}
+
+		@Override
+		public void setBottom(int slot) {
+			bottomSlot = slot;
+			bottomValue = values[slot];
+			if (readerGen[slot] == currentReaderGen) {
+				bottomOrd = ords[slot];
+				bottomSameReader = true;
+			} else if (bottomValue == null) {
+				bottomOrd = 0;
+				bottomSameReader = true;
+				ords[slot] = 0;
+				readerGen[slot] = currentReaderGen;
+			} else {
+				final int ord = index.binarySearch(bottomValue);
+				if (ord < 0) {
+					bottomOrd = -ord - 2;
+					bottomSameReader = false;
+				} else {
+					bottomOrd = ord;
+					bottomSameReader = true;
+					ords[slot] = ord;
+					readerGen[slot] = currentReaderGen;
+				}
+			}
+		}
+
+		@Override
+		public String value(int slot) {
+			return values[slot];
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.packed.PackedInts;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Memory-compact per-segment string index. Each document is mapped to the ordinal of its term (0
+ * for no term) with a packed int array, and the terms are stored in a single UTF-8 block, addressed
+ * by packed offsets. Instances are cached by segment core, field and storage mode.
+ * @author Andres Rodriguez
+ */
+final class CompactStringIndex {
+	/** Bulk read buffer size. */
+	private static final int BUFFER_SIZE = 64;
+
+	/** Indexes by segment core. */
+	private static final Cache<Object, ConcurrentMap<String, CompactStringIndex>> CACHE = CacheBuilder.newBuilder()
+			.weakKeys().build();
+
+	/** Per-core map factory. */
+	private enum NewMap implements Callable<ConcurrentMap<String, CompactStringIndex>> {
+		INSTANCE;
+
+		@Override
+		public ConcurrentMap<String, CompactStringIndex> call() {
+			return Maps.newConcurrentMap();
+		}
+	}
+
+	/**
+	 * Returns the index of a field in a segment, building it if needed.
+	 * @param reader Segment reader.
+	 * @param field Field.
+	 * @param direct Whether to store the terms in direct memory.
+	 */
+	static CompactStringIndex get(IndexReader reader, String field, boolean direct) throws IOException {
+		final ConcurrentMap<String, CompactStringIndex> map;
+		try {
+			map = CACHE.get(reader.getCoreCacheKey(), NewMap.INSTANCE);
+		} catch (ExecutionException e) {
+			throw new UncheckedExecutionException(e.getCause());
+		}
+		final String key = direct ? field + "\u0000direct" : field;
+		CompactStringIndex index = map.get(key);
+		if (index == null) {
+			index = build(reader, field, direct);
+			final CompactStringIndex previous = map.putIfAbsent(key, index);
+			if (previous != null) {
+				index = previous;
+			}
+		}
+		return index;
+	}
+
+	/** Returns the length of the UTF-8 encoding of a string. */
+	private static int utf8Length(String s) {
+		final int n = s.length();
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			final char c = s.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private static CompactStringIndex build(IndexReader reader, String field, boolean direct) throws IOException {
+		final String f = checkNotNull(field).intern();
+		// First pass: number of terms and size of the term block.
+		int numTerms = 0;
+		long bytes = 0;
+		TermEnum terms = reader.terms(new Term(f, ""));
+		try {
+			for (Term t = terms.term(); t != null && t.field() == f; t = terms.next() ? terms.term() : null) {
+				numTerms++;
+				bytes += utf8Length(t.text());
+			}
+		} finally {
+			terms.close();
+		}
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Term block of field [" + f + "] too large");
+		}
+		final ByteBuffer block = direct ? ByteBuffer.allocateDirect((int) bytes) : ByteBuffer.allocate((int) bytes);
+		final PackedInts.Mutable offsets = PackedInts.getMutable(numTerms + 1, PackedInts.bitsRequired(bytes));
+		final PackedInts.Mutable ords = PackedInts.getMutable(reader.maxDoc(), PackedInts.bitsRequired(numTerms));
+		// Second pass: term block and ordinals.
+		final int[] docs = new int[BUFFER_SIZE];
+		final int[] freqs = new int[BUFFER_SIZE];
+		terms = reader.terms(new Term(f, ""));
+		final TermDocs termDocs = reader.termDocs();
+		try {
+			int ord = 0;
+			for (Term t = terms.term(); t != null && t.field() == f && ord < numTerms; t = terms.next() ? terms.term()
+					: null) {
+				block.put(t.text().getBytes(Charsets.UTF_8));
+				ord++;
+				offsets.set(ord, block.position());
+				termDocs.seek(terms);
+				int n;
+				while ((n = termDocs.read(docs, freqs)) > 0) {
+					for (int i = 0; i < n; i++) {
+						ords.set(docs[i], ord);
+					}
+				}
+			}
+		} finally {
+			try {
+				termDocs.close();
+			} finally {
+				terms.close();
+			}
+		}
+		return new CompactStringIndex(numTerms, block, offsets, ords);
+	}
+
+	/** Number of terms. */
+	private final int numTerms;
+	/** Term block. */
+	private final ByteBuffer block;
+	/** Term end offsets, indexed by ordinal. */
+	private final PackedInts.Reader offsets;
+	/** Document ordinals. */
+	private final PackedInts.Reader ords;
+
+	private CompactStringIndex(int numTerms, ByteBuffer block, PackedInts.Reader offsets, PackedInts.Reader ords) {
+		this.numTerms = numTerms;
+		this.block = block;
+		this.offsets = offsets;
+		this.ords = ords;
+	}
+
+	/** Returns the number of terms. */
+	int numTerms() {
+		return numTerms;
+	}
+
+	/** Returns the ordinal of a document (1-based, 0 for documents without term). */
+	int ord(int doc) {
+		return (int) ords.get(doc);
+	}
+
+	/** Returns the term with the provided ordinal, or {@code null} for ordinal 0. */
+	String term(int ord) {
+		if (ord == 0) {
+			return null;
+		}
+		final int from = (int) offsets.get(ord - 1);
+		final int to = (int) offsets.get(ord);
+		final byte[] b = new byte[to - from];
+		final ByteBuffer view = block.duplicate();
+		view.position(from);
+		view.get(b);
+		return new String(b, Charsets.UTF_8);
+	}
+
+	/**
+	 * Searches a term. Returns its ordinal if found, or -(insertion ordinal) - 1 otherwise, where the
+	 * insertion ordinal is the one of the first greater term.
+	 */
+	int binarySearch(String value) {
+		int lo = 1;
+		int hi = numTerms;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int c = term(mid).compareTo(value);
+			if (c < 0) {
+				lo = mid + 1;
+			} else if (c > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(lo + 1);
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * Doc id set support class. Provides compact representations chosen according to the density of
+ * the set:
+ * <ul>
+ * <li>Sparse sets (less than 1 in 32 documents) are stored as sorted int arrays.</li>
+ * <li>Dense sets (at least 1 in 8 documents) are stored as bit sets.</li>
+ * <li>Other sets are split in blocks of 2^16 documents, each of them stored as a sorted short
+ * array or a bitmap.</li>
+ * </ul>
+ * @author Andres Rodriguez
+ */
+public final class DocIdSets extends SearchSupport {
+	/** Not instantiable. */
+	private DocIdSets() {
+	}
+
+	/** Shift applied to the number of documents to get the maximum cardinality of a sparse set. */
+	private static final int SPARSE_SHIFT = 5;
+	/** Shift applied to the number of documents to get the minimum cardinality of a dense set. */
+	private static final int DENSE_SHIFT = 3;
+	/** Initial capacity of the array used to collect sparse sets. */
+	private static final int INITIAL_CAPACITY = 64;
+	/** Estimated size of doc id sets of unknown types. */
+	private static final long UNKNOWN_SIZE = 64L;
+
+	/**
+	 * Returns the estimated memory used by a doc id set in bytes. Only the representations provided
+	 * by this class and bit sets are measured, a small constant is returned for other types.
+	 */
+	public static long sizeOf(@Nullable DocIdSet set) {
+		if (set == null || set == DocIdSet.EMPTY_DOCIDSET) {
+			return 0L;
+		} else if (set instanceof IntArrayDocIdSet) {
+			return ((IntArrayDocIdSet) set).sizeInBytes();
+		} else if (set instanceof BlockDocIdSet) {
+			return ((BlockDocIdSet) set).sizeInBytes();
+		} else if (set instanceof FixedBitSet) {
+			return 32L + 8L * ((FixedBitSet) set).getBits().length;
+		} else if (set instanceof OpenBitSet) {
+			return 32L + 8L * ((OpenBitSet) set).getNumWords();
+		}
+		return UNKNOWN_SIZE;
+	}
+
+	/**
+	 * Returns whether a set is one of the representations returned by the compact methods, including
+	 * the bit sets used for dense sets.
+	 */
+	static boolean isCompact(@Nullable DocIdSet set) {
+		return set == DocIdSet.EMPTY_DOCIDSET || set instanceof IntArrayDocIdSet || set instanceof BlockDocIdSet
+				|| set instanceof FixedBitSet;
+	}
+
+	/**
+	 * Returns the number of documents of a set if it can be computed without iterating it, or -1
+	 * otherwise.
+	 */
+	public static int cardinality(@Nullable DocIdSet set) {
+		if (set == null || set == DocIdSet.EMPTY_DOCIDSET) {
+			return 0;
+		} else if (set instanceof IntArrayDocIdSet) {
+			return ((IntArrayDocIdSet) set).size();
+		} else if (set instanceof BlockDocIdSet) {
+			return ((BlockDocIdSet) set).cardinality();
+		} else if (set instanceof FixedBitSet) {
+			return ((FixedBitSet) set).cardinality();
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a compact cacheable doc id set with the documents of the provided iterator, which is
+	 * exhausted.
+	 * @param iterator Iterator to copy. If {@code null} an empty set is returned.
+	 * @param maxDoc Maximum document id (exclusive) of the segment.
+	 */
+	public static DocIdSet compact(@Nullable DocIdSetIterator iterator, int maxDoc) throws IOException {
+		checkArgument(maxDoc >= 0, "The maximum document must be >= 0");
+		if (iterator == null) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		final int sparseLimit = maxDoc >>> SPARSE_SHIFT;
+		int[] docs = new int[Math.min(sparseLimit, INITIAL_CAPACITY)];
+		int n = 0;
+		int doc;
+		while ((doc = iterator.nextDoc()) < maxDoc) {
+			if (n >= sparseLimit) {
+				// Too many documents for a sparse set
+				final FixedBitSet bits = new FixedBitSet(maxDoc);
+				for (int i = 0; i < n; i++) {
+					bits.set(docs[i]);
+				}
+				bits.set(doc);
+				bits.or(iterator);
+				return compact(bits);
+			}
+			if (n == docs.length) {
+				docs = Arrays.copyOf(docs, Math.min(sparseLimit, n << 1));
+			}
+			docs[n++] = doc;
+		}
+		if (n == 0) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		return new IntArrayDocIdSet(n == docs.length ? docs : Arrays.copyOf(docs, n), n);
+	}
+
+	/**
+	 * Returns a compact cacheable doc id set with the documents of the provided bit set. The result
+	 * may be the provided set itself, so it must not be modified afterwards.
+	 * @param bits Bit set to copy.
+	 */
+	public static DocIdSet compact(FixedBitSet bits) {
+		checkNotNull(bits, "The bit set must be provided");
+		final int maxDoc = bits.length();
+		final int cardinality = bits.cardinality();
+		if (cardinality == 0) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		if (cardinality >= (maxDoc >>> DENSE_SHIFT)) {
+			return bits;
+		}
+		if (cardinality <= (maxDoc >>> SPARSE_SHIFT)) {
+			final int[] docs = new int[cardinality];
+			int i = 0;
+			for (int doc = bits.nextSetBit(0); doc >= 0 && i < cardinality; doc = bits.nextSetBit(doc + 1)) {
+				docs[i++] = doc;
+				if (doc + 1 >= maxDoc) {
+					break;
+				}
+			}
+			return new IntArrayDocIdSet(docs, i);
+		}
+		return BlockDocIdSet.of(bits);
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+
+/**
+ * Double comparator source with an explicit primitive comparator.
+ * @author Andres Rodriguez
+ */
+final class DoubleValueComparatorSource extends ValueComparatorSource<Double> {
+	/** Serial UID. */
+	private static final long serialVersionUID = 7061032710450998313L;
+	/** Comparator. */
+	private final DoubleValueComparator comparator;
+
+	/**
+	 * Constructor.
+	 * @param comparator Comparator to use.
+	 */
+	DoubleValueComparatorSource(DoubleValueComparator comparator) {
+		this.comparator = checkNotNull(comparator, "The comparator to use must be provided");
+	}
+
+	@Override
+	ValueComparator newComparator(String field, int numHits, boolean reversed) {
+		return new DoubleComparator(field, numHits, reversed);
+	}
+
+	final class DoubleComparator extends ValueComparator {
+		/** Slot values. */
+		private final double[] values;
+		/** Current segment values. */
+		private double[] currentReaderValues;
+		private double bottom;
+
+		DoubleComparator(String field, int numHits, boolean reversed) {
+			super(field, numHits, reversed);
+			this.values = new double[numHits];
+		}
+
+		@Override
+		void load(IndexReader reader, String field) throws IOException {
+			currentReaderValues = FieldCache.DEFAULT.getDoubles(reader, field, FieldCache.NUMERIC_UTILS_DOUBLE_PARSER, true);
+		}
+
+		@Override
+		int compareSlots(int slot1, int slot2) {
+			return comparator.compare(values[slot1], values[slot2]);
+		}
+
+		@Override
+		int compareBottomValue(int doc) {
+			return comparator.compare(bottom, currentReaderValues[doc]);
+		}
+
+		@Override
+		void copyValue(int slot, int doc) {
+			values[slot] = currentReaderValues[doc];
+		}
+
+		@Override
+		void setBottomValue(int slot) {
+			bottom = values[slot];
+		}
+
+		@Override
+		Double slotValue(int slot) {
+			return values[slot];
+		}
+
+		@Override
+		int compareValue(Double v1, Double v2) {
+			return comparator.compare(v1.doubleValue(), v2.doubleValue());
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermsFilter;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Terms filter that estimates its cardinality in a segment as the sum of the document frequencies
+ * of its terms, which only requires looking the terms up in the terms index.
+ * @author Andres Rodriguez
+ */
+final class EstimatedTermsFilter extends TermsFilter implements CardinalityEstimator {
+	/** Serial UID. */
+	private static final long serialVersionUID = 5326590479417305618L;
+
+	/** Filter terms, in order. */
+	private final Set<Term> sorted = Sets.newTreeSet();
+
+	/** Constructor. */
+	EstimatedTermsFilter() {
+	}
+
+	@Override
+	public void addTerm(Term term) {
+		super.addTerm(term);
+		sorted.add(term);
+	}
+
+	/** Estimated as the sum of the document frequencies of the terms, at most the segment size. */
+	@Override
+	public int estimateCardinality(IndexReader reader) throws IOException {
+		final int maxDoc = reader.maxDoc();
+		long estimate = 0L;
+		for (Term term : sorted) {
+			estimate += reader.docFreq(term);
+			if (estimate >= maxDoc) {
+				return maxDoc;
+			}
+		}
+		return (int) estimate;
+	}
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Comparator source with an explicit order provided by a collection of values. Values not in the
+ * collection, and documents without a value, are assigned the last position. The rank of every
+ * document is computed once per segment core and value list into a packed array, cached like the
+ * FieldCache, so comparisons are a single array read. Only the rank arrays of the most recently
+ * used value lists of each segment are kept. The sort values reported for the hits are the field
+ * values, not their ranks.
+ * @author Andres Rodriguez
+ */
+final class ExplicitOrderComparatorSource extends FieldComparatorSource {
+	/** Serial UID. */
+	private static final long serialVersionUID = 4415263722006871906L;
+
+	/** Maximum number of value lists whose rank arrays are cached per segment. */
+	private static final int MAX_RANKS_PER_SEGMENT = 16;
+
+	/** Rank arrays by segment core and rank specification. */
+	private static final Cache<Object, Cache<Ranks, PackedInts.Reader>> CACHE = CacheBuilder.newBuilder().weakKeys()
+			.build();
+
+	/** Creates a source for an int field. */
+	static ExplicitOrderComparatorSource ofInts(String field, Iterable<? extends Integer> values) {
+		return new ExplicitOrderComparatorSource(new Ranks(field, ValueType.INT, values));
+	}
+
+	/** Creates a source for a long field. */
+	static ExplicitOrderComparatorSource ofLongs(String field, Iterable<? extends Long> values) {
+		return new ExplicitOrderComparatorSource(new Ranks(field, ValueType.LONG, values));
+	}
+
+	/** Creates a source for a float field. */
+	static ExplicitOrderComparatorSource ofFloats(String field, Iterable<? extends Float> values) {
+		return new ExplicitOrderComparatorSource(new Ranks(field, ValueType.FLOAT, values));
+	}
+
+	/** Creates a source for a double field. */
+	static ExplicitOrderComparatorSource ofDoubles(String field, Iterable<? extends Double> values) {
+		return new ExplicitOrderComparatorSource(new Ranks(field, ValueType.DOUBLE, values));
+	}
+
+	/** Returns the values in order, with duplicates and {@code nulls} filtered out. */
+	private static <T> Set<T> distinct(Iterable<? extends T> values) {
+		checkNotNull(values, "The value list must be provided");
+		final Set<T> set = Sets.newLinkedHashSet();
+		Iterables.addAll(set, Iterables.filter(values, Predicates.notNull()));
+		return set;
+	}
+
+	/** Rank specification. */
+	private final Ranks ranks;
+
+	/** Constructor. */
+	private ExplicitOrderComparatorSource(Ranks ranks) {
+		this.ranks = ranks;
+	}
+
+	@Override
+	public FieldComparator<Number> newComparator(String fieldname, int numHits, int sortPos, boolean reversed)
+			throws IOException {
+		return new RankComparator(numHits);
+	}
+
+	/** Returns the rank array of a segment, computing it if needed. */
+	private PackedInts.Reader getRanks(final IndexReader reader) throws IOException {
+		try {
+			return CACHE.get(reader.getCoreCacheKey(), NewCache.INSTANCE).get(ranks, new Callable<PackedInts.Reader>() {
+				@Override
+				public PackedInts.Reader call() throws IOException {
+					return ranks.compute(reader);
+				}
+			});
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new UncheckedExecutionException(cause);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof ExplicitOrderComparatorSource) {
+			return ranks.equals(((ExplicitOrderComparatorSource) obj).ranks);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return ranks.hashCode();
+	}
+
+	/** Comparator by rank. */
+	private final class RankComparator extends FieldComparator<Number> {
+		/** Slot ranks. */
+		private final int[] values;
+		/** Slot field values. */
+		private final Number[] fieldValues;
+		/** Current segment ranks. */
+		private PackedInts.Reader current;
+		/** Current segment field values. */
+		private SegmentValues currentValues;
+		private int bottom;
+
+		RankComparator(int numHits) {
+			this.values = new int[numHits];
+			this.fieldValues = new Number[numHits];
+		}
+
+		@Override
+		public void setNextReader(IndexReader reader, int docBase) throws IOException {
+			current = getRanks(reader);
+			currentValues = ranks.values(reader);
+		}
+
+		@Override
+		public int compare(int slot1, int slot2) {
+			return Ints.compare(values[slot1], values[slot2]);
+		}
+
+		@Override
+		public int compareBottom(int doc) {
+			return Ints.compare(bottom, (int) current.get(doc));
+		}
+
+		@Override
+		public void copy(int slot, int doc) {
+			values[slot] = (int) current.get(doc);
+			fieldValues[slot] = currentValues.get(doc);
+		}
+
+		@Override
+		public void setBottom(int slot) {
+			this.bottom = values[slot];
+		}
+
+		@Override
+		public Number value(int slot) {
+			return fieldValues[slot];
+		}
+
+		@Override
+		public int compareValues(@Nullable Number first, @Nullable Number second) {
+			return Ints.compare(ranks.rankOf(first), ranks.rankOf(second));
+		}
+	}
+
+	/** Per-core cache factory. */
+	private enum NewCache implements Callable<Cache<Ranks, PackedInts.Reader>> {
+		INSTANCE;
+
+		@Override
+		public Cache<Ranks, PackedInts.Reader> call() {
+			return CacheBuilder.newBuilder().maximumSize(MAX_RANKS_PER_SEGMENT).build();
+		}
+	}
+
+	/**
+	 * Field values of a segment. Values are compared through their sort keys, longs with the same
+	 * order as the values, so that the rank logic is shared by every value type.
+	 */
+	private static abstract class SegmentValues {
+		/** Documents with value, {@code null} if all documents have a value. */
+		private final Bits docsWithField;
+
+		SegmentValues(@Nullable Bits docsWithField) {
+			this.docsWithField = docsWithField;
+		}
+
+		/** Returns whether a document has no value. Missing values are read as zero keys. */
+		final boolean isMissing(int doc) {
+			return docsWithField != null && !docsWithField.get(doc);
+		}
+
+		/** Returns the value of a document, or {@code null} if the document has no value. */
+		@Nullable
+		final Number get(int doc) {
+			return isMissing(doc) ? null : value(doc);
+		}
+
+		/** Returns the value of a document with value. */
+		abstract Number value(int doc);
+
+		/** Returns the sort key of the value of a document with value. */
+		abstract long key(int doc);
+	}
+
+	/** Supported value types. */
+	private enum ValueType {
+		INT {
+			@Override
+			long key(Number value) {
+				return value.intValue();
+			}
+
+			@Override
+			SegmentValues values(IndexReader reader, String field, Bits docsWithField) throws IOException {
+				final int[] values = FieldCache.DEFAULT.getInts(reader, field, FieldCache.NUMERIC_UTILS_INT_PARSER, true);
+				return new SegmentValues(docsWithField) {
+					@Override
+					Number value(int doc) {
+						return values[doc];
+					}
+
+					@Override
+					long key(int doc) {
+						return values[doc];
+					}
+				};
+			}
+		},
+		LONG {
+			@Override
+			long key(Number value) {
+				return value.longValue();
+			}
+
+			@Override
+			SegmentValues values(IndexReader reader, String field, Bits docsWithField) throws IOException {
+				final long[] values = FieldCache.DEFAULT.getLongs(reader, field, FieldCache.NUMERIC_UTILS_LONG_PARSER, true);
+				return new SegmentValues(docsWithField) {
+					@Override
+					Number value(int doc) {
+						return values[doc];
+					}
+
+					@Override
+					long key(int doc) {
+						return values[doc];
+					}
+				};
+			}
+		},
+		FLOAT {
+			@Override
+			long key(Number value) {
+				return NumericUtils.floatToSortableInt(value.floatValue());
+			}
+
+			@Override
+			SegmentValues values(IndexReader reader, String field, Bits docsWithField) throws IOException {
+				final float[] values = FieldCache.DEFAULT.getFloats(reader, field, FieldCache.NUMERIC_UTILS_FLOAT_PARSER,
+						true);
+				return new SegmentValues(docsWithField) {
+					@Override
+					Number value(int doc) {
+						return values[doc];
+					}
+
+					@Override
+					long key(int doc) {
+						return NumericUtils.floatToSortableInt(values[doc]);
+					}
+				};
+			}
+		},
+		DOUBLE {
+			@Override
+			long key(Number value) {
+				return NumericUtils.doubleToSortableLong(value.doubleValue());
+			}
+
+			@Override
+			SegmentValues values(IndexReader reader, String field, Bits docsWithField) throws IOException {
+				final double[] values = FieldCache.DEFAULT.getDoubles(reader, field, FieldCache.NUMERIC_UTILS_DOUBLE_PARSER,
+						true);
+				return new SegmentValues(docsWithField) {
+					@Override
+					Number value(int doc) {
+						return values[doc];
+					}
+
+					@Override
+					long key(int doc) {
+						return NumericUtils.doubleToSortableLong(values[doc]);
+					}
+				};
+			}
+		};
+
+		/**
+		 * Returns the sort key of a value. Keys have the order of {@link Float#compare} and
+		 * {@link Double#compare} for floating point values.
+		 */
+		abstract long key(Number value);
+
+		/** Returns the field values of a segment. */
+		abstract SegmentValues values(IndexReader reader, String field, @Nullable Bits docsWithField)
+				throws IOException;
+	}
+
+	/** Rank specification: field, value type and value list. Used as cache key. */
+	private static final class Ranks {
+		/** Field. */
+		private final String field;
+		/** Value type. */
+		private final ValueType type;
+		/** Sorted value keys. */
+		private final long[] sorted;
+		/** Positions of the sorted values in the value list. */
+		private final int[] positions;
+
+		Ranks(String field, ValueType type, Iterable<? extends Number> values) {
+			this.field = checkNotNull(field);
+			this.type = type;
+			final Set<? extends Number> list = distinct(values);
+			final int n = list.size();
+			final long[] keys = new long[n];
+			int i = 0;
+			for (Number value : list) {
+				keys[i++] = type.key(value);
+			}
+			// Sorts the value indexes by key
+			final Integer[] index = new Integer[n];
+			for (i = 0; i < n; i++) {
+				index[i] = i;
+			}
+			Arrays.sort(index, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Longs.compare(keys[o1], keys[o2]);
+				}
+			});
+			this.sorted = new long[n];
+			this.positions = new int[n];
+			for (i = 0; i < n; i++) {
+				positions[i] = index[i];
+				sorted[i] = keys[index[i]];
+			}
+		}
+
+		/** Returns the rank of values not in the list. */
+		int otherRank() {
+			return positions.length;
+		}
+
+		/** Returns the rank of a value key. */
+		int rank(long key) {
+			final int i = Arrays.binarySearch(sorted, key);
+			return i < 0 ? otherRank() : positions[i];
+		}
+
+		/** Returns the rank of a value, or the rank of other values if {@code null}. */
+		int rankOf(@Nullable Number value) {
+			return value == null ? otherRank() : rank(type.key(value));
+		}
+
+		/** Returns the field values of a segment. */
+		SegmentValues values(IndexReader reader) throws IOException {
+			final Bits docsWithField = FieldCache.DEFAULT.getDocsWithField(reader, field);
+			return type.values(reader, field, docsWithField instanceof Bits.MatchAllBits ? null : docsWithField);
+		}
+
+		/** Computes the rank array of a segment. */
+		PackedInts.Reader compute(IndexReader reader) throws IOException {
+			final int maxDoc = reader.maxDoc();
+			final PackedInts.Mutable ranks = PackedInts.getMutable(maxDoc, PackedInts.bitsRequired(otherRank()));
+			if (positions.length == 0) {
+				return ranks; // all values are ranked 0
+			}
+			final SegmentValues values = values(reader);
+			for (int doc = 0; doc < maxDoc; doc++) {
+				final long key = values.key(doc);
+				ranks.set(doc, key == 0L && values.isMissing(doc) ? otherRank() : rank(key));
+			}
+			return ranks;
+		}
+
+		@Override
+		public int hashCode() {
+			return field.hashCode() ^ type.hashCode() ^ Arrays.hashCode(sorted) ^ Arrays.hashCode(positions);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Ranks) {
+				final Ranks other = (Ranks) obj;
+				return field.equals(other.field) && type == other.type && Arrays.equals(sorted, other.sorted)
+						&& Arrays.equals(positions, other.positions);
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,562 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredDocIdSet;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.AbstractCache.SimpleStatsCounter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of per-segment filter results that may be shared by many {@link GuavaCachingFilter}
+ * instances. Results computed on segments without deletions are keyed on the filter and the segment
+ * core, and are used by every reader of the core, applying its deletions when iterated. Results
+ * computed on segments with deletions already exclude the deleted documents, so they are only used
+ * by readers with the same deletions and are not persisted. Lucene filters can't be evaluated
+ * ignoring the deletions, so a segment that has deletions when it is first seen never gets a core
+ * result, unless one has been persisted. The cache is bounded by the estimated memory used by the
+ * cached sets. A frequency based admission policy prevents filters
+ * that are rarely used from evicting the frequently used ones: a result is only cached once it has
+ * been requested a minimum number of times in the recent past.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class FilterCache {
+	/** Estimated overhead of a cache entry in bytes. */
+	static final int ENTRY_OVERHEAD = 96;
+	/** Default minimum frequency for admission. */
+	private static final int DEFAULT_MIN_FREQUENCY = 2;
+	/** Width of the frequency sketch rows. */
+	private static final int SKETCH_WIDTH = 1 << 13;
+	/** Fraction of the maximum heap used by the shared cache. */
+	private static final int SHARED_HEAP_FRACTION = 10;
+
+	/** Shared instance. */
+	private static volatile FilterCache shared = null;
+
+	/** Creates the shared instance. */
+	private static synchronized void createShared() {
+		if (shared == null) {
+			shared = create(Runtime.getRuntime().maxMemory() / SHARED_HEAP_FRACTION);
+		}
+	}
+
+	/**
+	 * Returns the process-wide shared cache, bounded by a tenth of the maximum heap size.
+	 */
+	public static FilterCache shared() {
+		if (shared == null) {
+			createShared();
+		}
+		return shared;
+	}
+
+	/**
+	 * Creates a new memory-bounded cache.
+	 * @param maxBytes Maximum estimated size of the cached sets in bytes.
+	 * @param minFrequency Number of recent requests of a filter result needed for it to be cached.
+	 * @param duration the length of time after an entry is last accessed that it should be
+	 *          automatically removed.
+	 * @param unit the unit that {@code duration} is expressed in
+	 * @throws IllegalArgumentException if {@code maxBytes} or {@code duration} are negative or
+	 *           {@code minFrequency} is not positive.
+	 */
+	public static FilterCache create(long maxBytes, int minFrequency, long duration, TimeUnit unit) {
+		checkArgument(maxBytes >= 0, "The maximum size must be >= 0");
+		checkArgument(minFrequency > 0, "The minimum frequency must be > 0");
+		checkArgument(duration >= 0, "The duration must be >= 0");
+		checkNotNull(unit);
+		return new FilterCache(maxBytes, true, duration, unit, minFrequency);
+	}
+
+	/**
+	 * Creates a new memory-bounded cache with no expiration.
+	 * @param maxBytes Maximum estimated size of the cached sets in bytes.
+	 * @param minFrequency Number of recent requests of a filter result needed for it to be cached.
+	 * @throws IllegalArgumentException if {@code maxBytes} is negative or {@code minFrequency} is not
+	 *           positive.
+	 */
+	public static FilterCache create(long maxBytes, int minFrequency) {
+		checkArgument(maxBytes >= 0, "The maximum size must be >= 0");
+		checkArgument(minFrequency > 0, "The minimum frequency must be > 0");
+		return new FilterCache(maxBytes, true, 0L, null, minFrequency);
+	}
+
+	/**
+	 * Creates a new memory-bounded cache with no expiration that caches filter results requested at
+	 * least twice.
+	 * @param maxBytes Maximum estimated size of the cached sets in bytes.
+	 * @throws IllegalArgumentException if {@code maxBytes} is negative.
+	 */
+	public static FilterCache create(long maxBytes) {
+		return create(maxBytes, DEFAULT_MIN_FREQUENCY);
+	}
+
+	/**
+	 * Creates a new cache bounded by the number of entries, without admission policy.
+	 * @param size the maximum size of the cache.
+	 * @param duration the length of time after an entry is last accessed that it should be
+	 *          automatically removed.
+	 * @param unit the unit that {@code duration} is expressed in
+	 */
+	static FilterCache ofSize(int size, long duration, TimeUnit unit) {
+		return new FilterCache(size, false, duration, unit, 1);
+	}
+
+	/** Cache. */
+	private final Cache<Key, DocIdSet> cache;
+	/** Frequency sketch used for admission. {@code null} if every result is admitted. */
+	@Nullable
+	private final FrequencySketch sketch;
+	/** Minimum frequency for admission. */
+	private final int minFrequency;
+	/** Global statistics. */
+	private final SimpleStatsCounter stats = new SimpleStatsCounter();
+	/** Number of computed results not admitted in the cache. */
+	private final AtomicLong rejected = new AtomicLong();
+	/** Estimated size of the cached sets. */
+	private final AtomicLong bytes = new AtomicLong();
+	/** Persistent tier. */
+	@Nullable
+	private volatile FilterStore store = null;
+	/** Queue of the collected segment cores and deletions of the cached entries. */
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+	/**
+	 * Constructor.
+	 * @param maximum Maximum weight or size.
+	 * @param weighted Whether the cache is bounded by weight or by number of entries.
+	 * @param duration Expiration after last access.
+	 * @param unit Unit of the expiration time. If {@code null} entries do not expire.
+	 * @param minFrequency Minimum frequency for admission.
+	 */
+	private FilterCache(long maximum, boolean weighted, long duration, @Nullable TimeUnit unit, int minFrequency) {
+		final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (weighted) {
+			builder.maximumWeight(maximum);
+		} else {
+			builder.maximumSize(maximum);
+		}
+		if (unit != null) {
+			builder.expireAfterAccess(duration, unit);
+		}
+		final CacheBuilder<Key, DocIdSet> typed = builder.removalListener(new Listener());
+		if (weighted) {
+			typed.weigher(EntryWeigher.INSTANCE);
+		}
+		this.cache = typed.build();
+		this.minFrequency = minFrequency;
+		this.sketch = minFrequency > 1 ? new FrequencySketch(SKETCH_WIDTH) : null;
+	}
+
+	/** Returns the persistent tier, if any. */
+	@Nullable
+	public FilterStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Sets the persistent tier. Only the results of filters with an identity are persisted.
+	 * @param store Store to use. If {@code null} results are not persisted.
+	 */
+	public void setStore(@Nullable FilterStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Returns the cached result of a filter for a segment, computing it if needed.
+	 * @param filter Filter.
+	 * @param id Persistent filter identity. If {@code null} the result is not persisted.
+	 * @param reader Segment reader.
+	 * @param filterStats Statistics of the caching filter.
+	 */
+	DocIdSet get(Filter filter, @Nullable String id, IndexReader reader, SimpleStatsCounter filterStats)
+			throws IOException {
+		purge();
+		final Object core = reader.getCoreCacheKey();
+		final Key coreKey = new Key(filter, id, core, null, filterStats);
+		final DocIdSet coreSet = cache.getIfPresent(coreKey);
+		if (coreSet != null) {
+			hit(filterStats);
+			return live(reader, coreSet);
+		}
+		if (!reader.hasDeletions()) {
+			miss(filterStats);
+			return load(coreKey, reader, null);
+		}
+		final Key key = new Key(filter, id, core, reader.getDeletesCacheKey(), filterStats);
+		final DocIdSet set = cache.getIfPresent(key);
+		if (set != null) {
+			hit(filterStats);
+			return set;
+		}
+		miss(filterStats);
+		// Persisted results do not include deletions
+		final FilterStore s = id != null ? store : null;
+		final DocIdSet stored = s != null ? s.load(id, reader) : null;
+		if (stored != null) {
+			return live(reader, load(coreKey, reader, stored));
+		}
+		return load(key, reader, null);
+	}
+
+	private void hit(SimpleStatsCounter filterStats) {
+		stats.recordHits(1);
+		filterStats.recordHits(1);
+	}
+
+	private void miss(SimpleStatsCounter filterStats) {
+		stats.recordMisses(1);
+		filterStats.recordMisses(1);
+	}
+
+	/**
+	 * Loads a result, caching it if admitted.
+	 * @param key Cache key.
+	 * @param reader Segment reader. It must not have deletions if the key does not include them.
+	 * @param loaded Already loaded result, if any.
+	 */
+	private DocIdSet load(Key key, IndexReader reader, @Nullable DocIdSet loaded) throws IOException {
+		if (sketch == null || sketch.increment(key) >= minFrequency) {
+			final Key cachedKey = new Key(key, collected);
+			try {
+				return cache.get(cachedKey, new Loader(cachedKey, reader, loaded, true));
+			} catch (ExecutionException e) {
+				throw unwrap(e);
+			} catch (UncheckedExecutionException e) {
+				throw unwrap(e);
+			} catch (ExecutionError e) {
+				throw unwrap(e);
+			}
+		}
+		rejected.incrementAndGet();
+		return new Loader(key, reader, loaded, false).call();
+	}
+
+	/** Applies the deletions of a reader to a result computed without deletions. */
+	private static DocIdSet live(IndexReader reader, DocIdSet set) {
+		if (reader.hasDeletions() && set != DocIdSet.EMPTY_DOCIDSET) {
+			return new LiveDocIdSet(reader, set);
+		}
+		return set;
+	}
+
+	private static RuntimeException unwrap(Throwable e) throws IOException {
+		final Throwable cause = e.getCause();
+		if (cause instanceof IOException) {
+			throw (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new UncheckedExecutionException(cause);
+	}
+
+	/** Returns a current snapshot of this cache's cumulative statistics. */
+	public CacheStats stats() {
+		return stats.snapshot();
+	}
+
+	/** Returns the number of computed results that were not admitted in the cache. */
+	public long rejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Returns the cached set of a filter for a segment, if present, without loading it or recording
+	 * any statistics.
+	 */
+	@Nullable
+	DocIdSet peek(Filter filter, IndexReader reader) {
+		final Object core = reader.getCoreCacheKey();
+		final DocIdSet set = cache.getIfPresent(new Key(filter, null, core, null, null));
+		if (set != null || !reader.hasDeletions()) {
+			return set;
+		}
+		return cache.getIfPresent(new Key(filter, null, core, reader.getDeletesCacheKey(), null));
+	}
+
+	/** Returns the approximate number of entries in this cache. */
+	public long size() {
+		purge();
+		return cache.size();
+	}
+
+	/** Returns the estimated size of the cached sets in bytes. */
+	public long sizeInBytes() {
+		purge();
+		return bytes.get();
+	}
+
+	/** Discards the entries of the segments that have been collected. */
+	private void purge() {
+		Reference<?> ref;
+		while ((ref = collected.poll()) != null) {
+			// Cached keys are only equal to themselves once collected
+			cache.invalidate(((KeyReference) ref).key);
+		}
+	}
+
+	/** Discards all entries in the cache. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/** Weight of an entry. */
+	private static int weigh(DocIdSet set) {
+		return Ints.saturatedCast(ENTRY_OVERHEAD + DocIdSets.sizeOf(set));
+	}
+
+	/** Entry weigher. */
+	private enum EntryWeigher implements Weigher<Key, DocIdSet> {
+		INSTANCE;
+
+		@Override
+		public int weigh(Key key, DocIdSet value) {
+			return FilterCache.weigh(value);
+		}
+	}
+
+	/** Removal listener keeping track of evictions and used memory. */
+	private final class Listener implements RemovalListener<Key, DocIdSet> {
+		@Override
+		public void onRemoval(RemovalNotification<Key, DocIdSet> notification) {
+			final DocIdSet value = notification.getValue();
+			if (value != null) {
+				bytes.addAndGet(-weigh(value));
+			}
+			if (notification.wasEvicted()) {
+				stats.recordEviction();
+				final Key key = notification.getKey();
+				if (key != null) {
+					key.stats.recordEviction();
+				}
+			}
+		}
+	}
+
+	/** Weak reference to a segment core or deletions, pointing back to the cached key. */
+	private static final class KeyReference extends WeakReference<Object> {
+		private final Key key;
+
+		KeyReference(Object referent, ReferenceQueue<Object> queue, Key key) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Cache key. The segment core and deletions are weakly referenced so that cached entries do not
+	 * prevent closed segments from being collected. The references of the keys stored in the cache
+	 * are registered in a queue, so that the entries of collected segments are discarded.
+	 */
+	private static final class Key {
+		/** Filter. */
+		private final Filter filter;
+		/** Persistent filter identity. Not considered for equality. */
+		@Nullable
+		private final String id;
+		/** Segment core cache key. */
+		private final WeakReference<Object> core;
+		/** Identity hash code of the segment core cache key. */
+		private final int coreHash;
+		/** Segment deletions cache key, if the result includes deletions. */
+		@Nullable
+		private final WeakReference<Object> deletes;
+		/** Identity hash code of the segment deletions cache key. */
+		private final int deletesHash;
+		/** Statistics of the filter that created the key. */
+		private final SimpleStatsCounter stats;
+
+		Key(Filter filter, @Nullable String id, Object core, @Nullable Object deletes, SimpleStatsCounter stats) {
+			this.filter = filter;
+			this.id = id;
+			this.core = new WeakReference<Object>(core);
+			this.coreHash = System.identityHashCode(core);
+			this.deletes = deletes != null ? new WeakReference<Object>(deletes) : null;
+			this.deletesHash = System.identityHashCode(deletes);
+			this.stats = stats;
+		}
+
+		/** Creates a copy of a lookup key to be stored in the cache. */
+		Key(Key key, ReferenceQueue<Object> queue) {
+			this.filter = key.filter;
+			this.id = key.id;
+			final Object c = key.core.get();
+			this.core = new KeyReference(c, queue, this);
+			this.coreHash = key.coreHash;
+			final Object d = key.deletes != null ? key.deletes.get() : null;
+			this.deletes = d != null ? new KeyReference(d, queue, this) : null;
+			this.deletesHash = key.deletesHash;
+			this.stats = key.stats;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * filter.hashCode() + coreHash) + deletesHash;
+		}
+
+		private boolean sameDeletes(Key other) {
+			if (deletes == null || other.deletes == null) {
+				return deletes == other.deletes;
+			}
+			final Object d = deletes.get();
+			return d != null && deletesHash == other.deletesHash && d == other.deletes.get();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof Key) {
+				final Key other = (Key) obj;
+				final Object c = core.get();
+				return c != null && coreHash == other.coreHash && c == other.core.get() && sameDeletes(other)
+						&& filter.equals(other.filter);
+			}
+			return false;
+		}
+	}
+
+	/** Cache loader. */
+	private final class Loader implements Callable<DocIdSet> {
+		private final Key key;
+		private final IndexReader reader;
+		/** Already loaded result, if any. */
+		@Nullable
+		private final DocIdSet loaded;
+		/** Whether the loaded set is going to be cached. */
+		private final boolean cached;
+
+		Loader(Key key, IndexReader reader, @Nullable DocIdSet loaded, boolean cached) {
+			this.key = key;
+			this.reader = checkNotNull(reader, "The index reader must be provided");
+			this.loaded = loaded;
+			this.cached = cached;
+		}
+
+		@Override
+		public DocIdSet call() throws IOException {
+			// Only results without deletions are persisted
+			final FilterStore s = key.id != null && key.deletes == null ? store : null;
+			final DocIdSet stored = loaded != null || s == null ? loaded : s.load(key.id, reader);
+			if (stored != null) {
+				if (cached) {
+					bytes.addAndGet(weigh(stored));
+				}
+				return stored;
+			}
+			final Stopwatch w = Stopwatch.createStarted();
+			final DocIdSet set;
+			try {
+				set = docIdSetToCache(key.filter.getDocIdSet(reader));
+			} catch (IOException e) {
+				recordLoadException(w);
+				throw e;
+			} catch (RuntimeException e) {
+				recordLoadException(w);
+				throw e;
+			}
+			final long time = w.elapsed(TimeUnit.NANOSECONDS);
+			stats.recordLoadSuccess(time);
+			key.stats.recordLoadSuccess(time);
+			if (cached) {
+				bytes.addAndGet(weigh(set));
+				if (s != null) {
+					s.save(key.id, reader, set);
+				}
+			}
+			return set;
+		}
+
+		private void recordLoadException(Stopwatch w) {
+			final long time = w.elapsed(TimeUnit.NANOSECONDS);
+			stats.recordLoadException(time);
+			key.stats.recordLoadException(time);
+		}
+
+		/**
+		 * Provide the DocIdSet to be cached, using the DocIdSet provided by the wrapped Filter.
+		 * <p>
+		 * This implementation returns the given {@link DocIdSet} if it already is one of the compact
+		 * representations provided by {@link DocIdSets}, else it copies the set into the most compact
+		 * one, so that the size of every cached set is known. Bit sets are compacted unless they are
+		 * dense.
+		 */
+		private DocIdSet docIdSetToCache(DocIdSet docIdSet) throws IOException {
+			if (docIdSet == null) {
+				// this is better than returning null, as the nonnull result can be cached
+				return DocIdSet.EMPTY_DOCIDSET;
+			} else if (docIdSet instanceof FixedBitSet) {
+				return DocIdSets.compact((FixedBitSet) docIdSet);
+			} else if (DocIdSets.isCompact(docIdSet)) {
+				return docIdSet;
+			} else {
+				// null is allowed to be returned by iterator(),
+				// in this case we use the empty set,
+				// which is cacheable.
+				return DocIdSets.compact(docIdSet.iterator(), reader.maxDoc());
+			}
+		}
+	}
+
+	/** Doc id set that filters out the documents deleted in a reader. */
+	private static final class LiveDocIdSet extends FilteredDocIdSet {
+		private final IndexReader reader;
+
+		LiveDocIdSet(IndexReader reader, DocIdSet set) {
+			super(set);
+			this.reader = reader;
+		}
+
+		@Override
+		protected boolean match(int docid) {
+			return !reader.isDeleted(docid);
+		}
+	}
+}
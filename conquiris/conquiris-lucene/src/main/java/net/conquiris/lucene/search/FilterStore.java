@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closeables;
+
+/**
+ * Persistent tier for a {@link FilterCache}. Stores the cached results of identified filters in
+ * local files keyed by segment identity, segment size and filter identity, so that they can be
+ * reloaded after a restart instead of being computed again. As segments are immutable the stored
+ * results remain valid while the segment exists. Stored files are memory mapped when reloaded and
+ * copied into the compact in-heap representation, so that the memory accounting of the cache
+ * remains exact.
+ * <p>
+ * Segment names are reused when an index is created again or in a different directory, so a
+ * segment is identified by the path of its directory, its name and the timestamp and length of its
+ * main file. Only segments in file system directories are stored. Results of segments that no
+ * longer exist are never loaded, but their files are only deleted by {@link #retain} and
+ * {@link #clear}. The store is best effort: any error reading or writing a file is ignored and the
+ * result is computed as if it was not stored.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class FilterStore {
+	/** File extension. */
+	private static final String EXTENSION = ".fc";
+	/** Temporary file extension. */
+	private static final String TMP_EXTENSION = ".tmp";
+	/** Extension of compound segment files. */
+	private static final String COMPOUND_EXTENSION = ".cfs";
+	/** Extension of segment field infos files. */
+	private static final String FIELDS_EXTENSION = ".fnm";
+	/** File name separator. */
+	private static final String SEPARATOR = "-";
+	/** File magic number. */
+	private static final int MAGIC = 0x43514643;
+	/** File format version. */
+	private static final int VERSION = 1;
+	/** Type of files containing a sorted document id array. */
+	private static final int TYPE_DOCS = 0;
+	/** Type of files containing a bit set. */
+	private static final int TYPE_BITS = 1;
+
+	/** Base directory. */
+	private final File directory;
+
+	/**
+	 * Opens a store, creating its directory if needed.
+	 * @param directory Directory in which the files are stored.
+	 * @throws IOException if the directory can't be created.
+	 */
+	public static FilterStore open(File directory) throws IOException {
+		checkNotNull(directory, "The store directory must be provided");
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create filter store directory " + directory);
+		}
+		return new FilterStore(directory);
+	}
+
+	/** Constructor. */
+	private FilterStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the identity of the segment read by the provided reader or {@code null} if the reader
+	 * is not a segment reader of a file system directory.
+	 */
+	@Nullable
+	private static String segment(IndexReader reader) {
+		if (!(reader instanceof SegmentReader)) {
+			return null;
+		}
+		final SegmentReader segmentReader = (SegmentReader) reader;
+		final Directory d = segmentReader.directory();
+		if (!(d instanceof FSDirectory)) {
+			return null;
+		}
+		final File dir = ((FSDirectory) d).getDirectory();
+		final String name = segmentReader.getSegmentName();
+		File file = new File(dir, name + COMPOUND_EXTENSION);
+		if (!file.isFile()) {
+			file = new File(dir, name + FIELDS_EXTENSION);
+		}
+		final long modified = file.lastModified();
+		if (modified == 0L) {
+			return null;
+		}
+		return Hashing.sha1().newHasher().putString(dir.getAbsolutePath(), Charsets.UTF_8)
+				.putString(name, Charsets.UTF_8).putLong(modified).putLong(file.length()).hash().toString();
+	}
+
+	/** Returns the file for a filter and a segment. */
+	private File file(String id, String segment, int maxDoc) {
+		final String hash = Hashing.sha1().hashString(id, Charsets.UTF_8).toString();
+		return new File(directory, hash + SEPARATOR + maxDoc + SEPARATOR + segment + EXTENSION);
+	}
+
+	/**
+	 * Loads the stored result of a filter for a segment.
+	 * @param id Filter identity.
+	 * @param reader Segment reader.
+	 * @return The stored set or {@code null} if there is no stored result.
+	 */
+	@Nullable
+	DocIdSet load(String id, IndexReader reader) {
+		final String segment = segment(reader);
+		if (segment == null) {
+			return null;
+		}
+		final File file = file(id, segment, reader.maxDoc());
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			return read(file, reader.maxDoc());
+		} catch (IOException e) {
+			file.delete();
+		} catch (RuntimeException e) {
+			file.delete();
+		}
+		return null;
+	}
+
+	private static DocIdSet read(File file, int maxDoc) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		boolean threw = true;
+		try {
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+			checkArgument(buffer.getInt() == MAGIC && buffer.getInt() == VERSION, "Invalid filter store file");
+			checkArgument(buffer.getInt() == maxDoc, "Invalid filter store file size");
+			final int type = buffer.getInt();
+			final int length = buffer.getInt();
+			final DocIdSet set;
+			if (type == TYPE_DOCS) {
+				checkArgument(length >= 0 && length <= maxDoc && buffer.remaining() == 4L * length,
+						"Invalid filter store file length");
+				final int[] docs = new int[length];
+				buffer.asIntBuffer().get(docs);
+				int last = -1;
+				for (int doc : docs) {
+					checkArgument(doc > last && doc < maxDoc, "Invalid filter store file document");
+					last = doc;
+				}
+				set = length == 0 ? DocIdSet.EMPTY_DOCIDSET : new IntArrayDocIdSet(docs, length);
+			} else if (type == TYPE_BITS) {
+				checkArgument(length == FixedBitSet.bits2words(maxDoc) && buffer.remaining() == 8L * length,
+						"Invalid filter store file length");
+				final FixedBitSet bits = new FixedBitSet(maxDoc);
+				buffer.asLongBuffer().get(bits.getBits(), 0, length);
+				set = DocIdSets.compact(bits);
+			} else {
+				throw new IllegalArgumentException("Invalid filter store file type");
+			}
+			threw = false;
+			return set;
+		} finally {
+			Closeables.close(raf, threw);
+		}
+	}
+
+	/**
+	 * Stores the result of a filter for a segment.
+	 * @param id Filter identity.
+	 * @param reader Segment reader.
+	 * @param set Set to store.
+	 */
+	void save(String id, IndexReader reader, DocIdSet set) {
+		final String segment = segment(reader);
+		if (segment == null) {
+			return;
+		}
+		final int maxDoc = reader.maxDoc();
+		final File file = file(id, segment, maxDoc);
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(segment, TMP_EXTENSION, directory);
+			write(tmp, set, maxDoc);
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static void write(File file, DocIdSet set, int maxDoc) throws IOException {
+		final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		boolean threw = true;
+		try {
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+			os.writeInt(maxDoc);
+			if (set == DocIdSet.EMPTY_DOCIDSET) {
+				os.writeInt(TYPE_DOCS);
+				os.writeInt(0);
+			} else if (set instanceof IntArrayDocIdSet) {
+				final IntArrayDocIdSet docs = (IntArrayDocIdSet) set;
+				final int n = docs.size();
+				os.writeInt(TYPE_DOCS);
+				os.writeInt(n);
+				for (int i = 0; i < n; i++) {
+					os.writeInt(docs.get(i));
+				}
+			} else {
+				final FixedBitSet bits;
+				if (set instanceof FixedBitSet) {
+					bits = (FixedBitSet) set;
+				} else {
+					bits = new FixedBitSet(maxDoc);
+					final DocIdSetIterator it = set.iterator();
+					if (it != null) {
+						bits.or(it);
+					}
+				}
+				final long[] words = bits.getBits();
+				os.writeInt(TYPE_BITS);
+				os.writeInt(words.length);
+				for (long word : words) {
+					os.writeLong(word);
+				}
+			}
+			threw = false;
+		} finally {
+			Closeables.close(os, threw);
+		}
+	}
+
+	/**
+	 * Deletes the stored results of the segments not used by the provided reader. Should be called
+	 * on startup, after merges have removed segments and after the index has been created again or
+	 * switched to a different directory.
+	 * @param reader Top level reader of the index.
+	 */
+	public void retain(IndexReader reader) {
+		checkNotNull(reader, "The index reader must be provided");
+		final Set<String> segments = Sets.newHashSet();
+		addSegments(segments, reader);
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			final String name = file.getName();
+			if (name.endsWith(EXTENSION)) {
+				final String[] parts = name.substring(0, name.length() - EXTENSION.length()).split(SEPARATOR, 3);
+				if (parts.length != 3 || !segments.contains(parts[2])) {
+					file.delete();
+				}
+			} else if (name.endsWith(TMP_EXTENSION)) {
+				file.delete();
+			}
+		}
+	}
+
+	private static void addSegments(Set<String> segments, IndexReader reader) {
+		final String segment = segment(reader);
+		if (segment != null) {
+			segments.add(segment);
+		}
+		final IndexReader[] subReaders = reader.getSequentialSubReaders();
+		if (subReaders != null) {
+			for (IndexReader subReader : subReaders) {
+				addSegments(segments, subReader);
+			}
+		}
+	}
+
+	/** Deletes every stored result. */
+	public void clear() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.getName().endsWith(EXTENSION)) {
+				file.delete();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FilterStore(" + directory + ")";
+	}
+}
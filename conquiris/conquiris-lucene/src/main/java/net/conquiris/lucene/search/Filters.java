@@ -21,15 +21,18 @@ import static java.util.Arrays.asList;
 
 import java.text.Collator;
 import java.util.Arrays;
+import java.util.UUID;
 
 import javax.annotation.Nullable;
 
+import net.conquiris.lucene.index.CollationKeys;
 import net.conquiris.schema.DoubleSchemaItem;
 import net.conquiris.schema.FloatSchemaItem;
 import net.conquiris.schema.InstantSchemaItem;
 import net.conquiris.schema.IntegerSchemaItem;
 import net.conquiris.schema.LongSchemaItem;
 import net.conquiris.schema.TextSchemaItem;
+import net.conquiris.schema.UUIDSchemaItem;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -58,10 +61,13 @@ public final class Filters extends SearchSupport {
 		return new NegatingFilter(filter);
 	}
 
-	/** Constructs a filter for docs matching any of the terms added to it. */
+	/**
+	 * Constructs a filter for docs matching any of the terms added to it. The filter estimates its
+	 * cardinality from the document frequencies of its terms when evaluated in a boolean filter.
+	 */
 	public static TermsFilter terms(Iterable<Term> terms) {
 		checkNotNull(terms);
-		TermsFilter f = new TermsFilter();
+		TermsFilter f = new EstimatedTermsFilter();
 		for (Term t : terms) {
 			f.addTerm(t);
 		}
@@ -83,6 +89,56 @@ public final class Filters extends SearchSupport {
 		return terms(termBuilder, Arrays.asList(values));
 	}
 
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(String field, Iterable<String> values) {
+		return IdSetFilter.of(field, values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(String field, String... values) {
+		return IdSetFilter.of(field, values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(TextSchemaItem field, Iterable<String> values) {
+		return IdSetFilter.of(checkItem(field), values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(TextSchemaItem field, String... values) {
+		return IdSetFilter.of(checkItem(field), values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a numeric field. */
+	public static IdSetFilter intIds(String field, int... values) {
+		return IdSetFilter.ofInts(field, values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(IntegerSchemaItem field, int... values) {
+		return IdSetFilter.ofInts(checkItem(field), values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a numeric field. */
+	public static IdSetFilter longIds(String field, long... values) {
+		return IdSetFilter.ofLongs(field, values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(LongSchemaItem field, long... values) {
+		return IdSetFilter.ofLongs(checkItem(field), values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a UUID field. */
+	public static IdSetFilter uuidIds(String field, Iterable<UUID> values) {
+		return IdSetFilter.ofUUIDs(field, values);
+	}
+
+	/** Constructs a filter for docs matching any of a large set of values of a field. */
+	public static IdSetFilter ids(UUIDSchemaItem field, Iterable<UUID> values) {
+		return IdSetFilter.ofUUIDs(checkItem(field), values);
+	}
+
 	/**
 	 * Creates a new range filter.
 	 * @throws IllegalArgumentException if both limits are null.
@@ -105,11 +161,15 @@ public final class Filters extends SearchSupport {
 	}
 
 	/**
-	 * Creates a new range filter.
+	 * Creates a new range filter. If the field is collated with a locale compatible with the provided
+	 * collator, the range is evaluated as a plain term range over the collation keys field.
 	 * @throws IllegalArgumentException if both limits are null.
 	 */
 	public static TermRangeFilter termRange(TextSchemaItem field, @Nullable String lowerTerm, @Nullable String upperTerm,
 			boolean includeLower, boolean includeUpper, Collator collator) {
+		if (CollationKeys.isCompatible(field, collator)) {
+			return collatedRange(field, lowerTerm, upperTerm, includeLower, includeUpper);
+		}
 		return termRange(checkItem(field), lowerTerm, upperTerm, includeLower, includeUpper, collator);
 	}
 
@@ -143,10 +203,14 @@ public final class Filters extends SearchSupport {
 	}
 
 	/**
-	 * Creates a new range filter.
+	 * Creates a new range filter. If the field is collated with a locale compatible with the provided
+	 * collator, the range is evaluated as a plain term range over the collation keys field.
 	 * @throws IllegalArgumentException if the range has no bounds.
 	 */
 	public static TermRangeFilter termRange(TextSchemaItem field, Range<String> range, Collator collator) {
+		if (CollationKeys.isCompatible(field, collator)) {
+			return collatedRange(field, range);
+		}
 		return termRange(checkItem(field), range, collator);
 	}
 
@@ -158,6 +222,27 @@ public final class Filters extends SearchSupport {
 		return termRange(checkItem(field), range);
 	}
 
+	/**
+	 * Creates a new locale-aware range filter over the collation keys of a collated field.
+	 * @throws IllegalArgumentException if the field is not collated or both limits are null.
+	 */
+	public static TermRangeFilter collatedRange(TextSchemaItem field, @Nullable String lowerTerm,
+			@Nullable String upperTerm, boolean includeLower, boolean includeUpper) {
+		final String name = CollationKeys.field(field);
+		final Collator collator = CollationKeys.collator(field.getCollationLocale());
+		return termRange(name, collationKey(collator, lowerTerm), collationKey(collator, upperTerm), includeLower,
+				includeUpper);
+	}
+
+	/**
+	 * Creates a new locale-aware range filter over the collation keys of a collated field.
+	 * @throws IllegalArgumentException if the field is not collated or the range has no bounds.
+	 */
+	public static TermRangeFilter collatedRange(TextSchemaItem field, Range<String> range) {
+		checkRange(range);
+		return collatedRange(field, min(range), max(range), minIncluded(range), maxIncluded(range));
+	}
+
 	/**
 	 * Creates a new range filter.
 	 * @throws IllegalArgumentException if both limits are null.
@@ -349,6 +434,70 @@ public final class Filters extends SearchSupport {
 		return instantRange(checkItem(field), range);
 	}
 
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Integer> adaptiveIntRange(String field, Range<Integer> range) {
+		checkField(field);
+		checkRange(range);
+		return AdaptiveRangeFilter.newIntRange(field, min(range), max(range), minIncluded(range), maxIncluded(range));
+	}
+
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Integer> adaptiveIntRange(IntegerSchemaItem field, Range<Integer> range) {
+		return adaptiveIntRange(checkItem(field), range);
+	}
+
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Long> adaptiveLongRange(String field, Range<Long> range) {
+		checkField(field);
+		checkRange(range);
+		return AdaptiveRangeFilter.newLongRange(field, min(range), max(range), minIncluded(range), maxIncluded(range));
+	}
+
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Long> adaptiveLongRange(LongSchemaItem field, Range<Long> range) {
+		return adaptiveLongRange(checkItem(field), range);
+	}
+
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Long> adaptiveInstantRange(String field, Range<? extends ReadableInstant> range) {
+		checkField(field);
+		checkRange(range);
+		final ReadableInstant min = min(range);
+		final ReadableInstant max = max(range);
+		return AdaptiveRangeFilter.newLongRange(field, min != null ? min.getMillis() : null,
+				max != null ? max.getMillis() : null, minIncluded(range), maxIncluded(range));
+	}
+
+	/**
+	 * Creates a new range filter that chooses per segment between trie term enumeration and a
+	 * FieldCache scan.
+	 * @throws IllegalArgumentException if the range has no bounds.
+	 */
+	public static AdaptiveRangeFilter<Long> adaptiveInstantRange(InstantSchemaItem field,
+			Range<? extends ReadableInstant> range) {
+		return adaptiveInstantRange(checkItem(field), range);
+	}
+
 	/**
 	 * Adds clauses to a boolean filter.
 	 * @param filter Boolean filter to which the clauses are added.
@@ -381,25 +530,27 @@ public final class Filters extends SearchSupport {
 	}
 
 	/**
-	 * Creates a boolean filter.
+	 * Creates a boolean filter. MUST clauses are evaluated from the most selective one, and
+	 * evaluation stops as soon as the intermediate result is empty.
 	 * @param occur Specifies how clauses are to occur in matching documents.
 	 * @param filters Filters to use to build the clauses.
 	 * @return The boolean filter.
 	 * @throws IllegalArgumentException if the filters argument is empty.
 	 */
 	public static BooleanFilter booleanFilter(Occur occur, Iterable<? extends Filter> filters) {
-		return addClauses(new BooleanFilter(), occur, filters);
+		return addClauses(new SelectiveBooleanFilter(), occur, filters);
 	}
 
 	/**
-	 * Creates a boolean filter.
+	 * Creates a boolean filter. MUST clauses are evaluated from the most selective one, and
+	 * evaluation stops as soon as the intermediate result is empty.
 	 * @param occur Specifies how clauses are to occur in matching documents.
 	 * @param filters Filters to use to build the clauses.
 	 * @return The boolean filter.
 	 * @throws IllegalArgumentException if the filters argument is empty.
 	 */
 	public static BooleanFilter booleanFilter(Occur occur, Filter... filters) {
-		return addClauses(new BooleanFilter(), occur, filters);
+		return addClauses(new SelectiveBooleanFilter(), occur, filters);
 	}
 
 }
@@ -26,7 +26,9 @@ import org.apache.lucene.util.Bits;
 /**
  * Int comparator source with an explicit comparator.
  * @author Andres Rodriguez
+ * @deprecated Superseded by {@link FloatValueComparatorSource}, which does not box the values.
  */
+@Deprecated
 final class FloatComparatorSource extends GenericComparatorSource<Float> {
 	/** Serial UID. */
 	private static final long serialVersionUID = 6482544719528657501L;
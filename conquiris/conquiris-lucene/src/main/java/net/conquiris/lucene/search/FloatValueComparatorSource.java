@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+
+/**
+ * Float comparator source with an explicit primitive comparator.
+ * @author Andres Rodriguez
+ */
+final class FloatValueComparatorSource extends ValueComparatorSource<Float> {
+	/** Serial UID. */
+	private static final long serialVersionUID = 2623970653802736527L;
+	/** Comparator. */
+	private final FloatValueComparator comparator;
+
+	/**
+	 * Constructor.
+	 * @param comparator Comparator to use.
+	 */
+	FloatValueComparatorSource(FloatValueComparator comparator) {
+		this.comparator = checkNotNull(comparator, "The comparator to use must be provided");
+	}
+
+	@Override
+	ValueComparator newComparator(String field, int numHits, boolean reversed) {
+		return new FloatComparator(field, numHits, reversed);
+	}
+
+	final class FloatComparator extends ValueComparator {
+		/** Slot values. */
+		private final float[] values;
+		/** Current segment values. */
+		private float[] currentReaderValues;
+		private float bottom;
+
+		FloatComparator(String field, int numHits, boolean reversed) {
+			super(field, numHits, reversed);
+			this.values = new float[numHits];
+		}
+
+		@Override
+		void load(IndexReader reader, String field) throws IOException {
+			currentReaderValues = FieldCache.DEFAULT.getFloats(reader, field, FieldCache.NUMERIC_UTILS_FLOAT_PARSER, true);
+		}
+
+		@Override
+		int compareSlots(int slot1, int slot2) {
+			return comparator.compare(values[slot1], values[slot2]);
+		}
+
+		@Override
+		int compareBottomValue(int doc) {
+			return comparator.compare(bottom, currentReaderValues[doc]);
+		}
+
+		@Override
+		void copyValue(int slot, int doc) {
+			values[slot] = currentReaderValues[doc];
+		}
+
+		@Override
+		void setBottomValue(int slot) {
+			bottom = values[slot];
+		}
+
+		@Override
+		Float slotValue(int slot) {
+			return values[slot];
+		}
+
+		@Override
+		int compareValue(Float v1, Float v2) {
+			return comparator.compare(v1.floatValue(), v2.floatValue());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Count-min sketch estimating the recent access frequency of keys with 4-bit saturating counters.
+ * Counters are halved once the number of increments reaches the sample size, so the estimate
+ * favours recent accesses.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+final class FrequencySketch {
+	/** Number of rows. */
+	private static final int DEPTH = 4;
+	/** Maximum counter value. */
+	private static final int MAX_COUNT = 15;
+	/** Row seeds. */
+	private static final int[] SEEDS = { 0x97cb3127, 0x9e3779b9, 0x7f4a7c15, 0x85ebca6b };
+
+	/** Counters, one row after another. */
+	private final byte[] table;
+	/** Row index mask. */
+	private final int mask;
+	/** Number of increments after which the counters are halved. */
+	private final int sampleSize;
+	/** Increments since the last reset. */
+	private int additions = 0;
+
+	/**
+	 * Constructor.
+	 * @param width Row width. Rounded up to the next power of two.
+	 */
+	FrequencySketch(int width) {
+		final int w = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+		this.table = new byte[w * DEPTH];
+		this.mask = w - 1;
+		this.sampleSize = 10 * w;
+	}
+
+	private int index(int hash, int row) {
+		int h = hash * SEEDS[row];
+		h ^= h >>> 16;
+		return row * (mask + 1) + (h & mask);
+	}
+
+	/**
+	 * Records an access to a key.
+	 * @return The estimated frequency of the key including this access.
+	 */
+	synchronized int increment(Object key) {
+		final int hash = key.hashCode();
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < DEPTH; row++) {
+			final int i = index(hash, row);
+			if (table[i] < MAX_COUNT) {
+				table[i]++;
+			}
+			frequency = Math.min(frequency, table[i]);
+		}
+		if (++additions >= sampleSize) {
+			for (int i = 0; i < table.length; i++) {
+				table[i] >>>= 1;
+			}
+			additions >>>= 1;
+		}
+		return frequency;
+	}
+
+}
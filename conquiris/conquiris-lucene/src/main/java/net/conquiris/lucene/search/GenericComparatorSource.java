@@ -31,7 +31,9 @@ import org.apache.lucene.search.FieldComparatorSource;
  * Source for field comparators based on Java comparators. The comparators must support
  * {@code null} values.
  * @author Andres Rodriguez
+ * @deprecated Superseded by {@link ValueComparatorSource}, which does not box the values.
  */
+@Deprecated
 abstract class GenericComparatorSource<T> extends FieldComparatorSource {
 	/** Serial UID. */
 	private static final long serialVersionUID = -5332664958641451859L;
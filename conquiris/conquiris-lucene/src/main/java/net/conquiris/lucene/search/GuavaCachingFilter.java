@@ -19,36 +19,85 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
-import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
+
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.DocIdSet;
-import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
-import org.apache.lucene.util.FixedBitSet;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
- * A wrapping filter based on Guava {@link Cache}. Uses a caching mode equivalent to Lucene's
- * DeletesMode.RECACHE.
+ * A wrapping filter based on Guava {@link Cache}. Results computed on segments without deletions
+ * are keyed on the segment core and deletions are applied when the cached set is iterated, so
+ * deleting documents does not invalidate the cached entry. This only holds for segments first seen
+ * without deletions: the wrapped filter can't be evaluated ignoring the deletions of a segment, so
+ * results computed on a segment that already has deletions are keyed on them as well. Any further
+ * deletion invalidates such results, and they are not persisted. The cached sets are stored in a
+ * {@link FilterCache}, which may be shared among many filters.
  * @author Andres Rodriguez
  */
-public final class GuavaCachingFilter extends Filter {
+public final class GuavaCachingFilter extends Filter implements CardinalityEstimator {
 	/** Serial UID. */
 	private static final long serialVersionUID = -3469818482930960618L;
 
 	/** Wrapped filter. */
 	private final Filter filter;
+	/** Persistent identity. */
+	@Nullable
+	private final String id;
 	/** Cache. */
-	private final Cache<Object, DocIdSet> cache;
+	private final FilterCache cache;
+	/** Filter statistics. */
+	private final SimpleStatsCounter stats = new SimpleStatsCounter();
+
+	/**
+	 * Caching factory method. The primary cache is that from the filter key to the caching filter.
+	 * The cached results of all the created filters are stored in the provided filter cache.
+	 * @param loader Filter loader. Its result will be wrapped in a caching filter.
+	 * @param primarySize the maximum size of the primary cache.
+	 * @param primaryDuration the length of time after an entry is last accessed that it should be
+	 *          automatically removed from the primary cache.
+	 * @param primaryUnit the unit that {@code primaryDuration} is expressed in
+	 * @param cache Cache to store the filter results in.
+	 * @throws IllegalArgumentException if the size or the duration are negative
+	 */
+	public static <K, V extends Filter> LoadingCache<K, Filter> cachingFactory(final CacheLoader<K, V> loader,
+			final int primarySize, final long primaryDuration, final TimeUnit primaryUnit, final FilterCache cache) {
+		checkArgument(primarySize >= 0 && primaryDuration >= 0);
+		checkNotNull(primaryUnit);
+		checkNotNull(cache, "The filter cache must be provided");
+		final CacheLoader<K, Filter> primaryLoader = new CacheLoader<K, Filter>() {
+			public Filter load(K key) throws Exception {
+				return new GuavaCachingFilter(loader.load(key), null, cache);
+			}
+		};
+		return CacheBuilder.newBuilder().maximumSize(primarySize).expireAfterAccess(primaryDuration, primaryUnit)
+				.build(primaryLoader);
+	}
+
+	/**
+	 * Caching factory method. The primary cache is that from the filter key to the caching filter.
+	 * The cached results of all the created filters are stored in the shared filter cache.
+	 * @param loader Filter loader. Its result will be wrapped in a caching filter.
+	 * @param primarySize the maximum size of the primary cache.
+	 * @param primaryDuration the length of time after an entry is last accessed that it should be
+	 *          automatically removed from the primary cache.
+	 * @param primaryUnit the unit that {@code primaryDuration} is expressed in
+	 * @throws IllegalArgumentException if the size or the duration are negative
+	 */
+	public static <K, V extends Filter> LoadingCache<K, Filter> cachingFactory(final CacheLoader<K, V> loader,
+			final int primarySize, final long primaryDuration, final TimeUnit primaryUnit) {
+		return cachingFactory(loader, primarySize, primaryDuration, primaryUnit, FilterCache.shared());
+	}
 
 	/**
 	 * Caching factory method. The primary cache is that from the filter key to the cachinf filter.
@@ -64,7 +113,9 @@ public final class GuavaCachingFilter extends Filter {
 	 * @param secondaryUnit the unit that {@code secondaryDuration} is expressed in
 	 * @throws IllegalArgumentException if any of the sizes is negative
 	 * @throws IllegalArgumentException if any of the durations is negative
+	 * @deprecated Per-filter caches are not bounded by memory. Use a {@link FilterCache}.
 	 */
+	@Deprecated
 	public static <K, V extends Filter> LoadingCache<K, Filter> cachingFactory(final CacheLoader<K, V> loader,
 			final int primarySize, final long primaryDuration, final TimeUnit primaryUnit, final int secondarySize,
 			final long secondaryDuration, final TimeUnit secondaryUnit) {
@@ -73,11 +124,32 @@ public final class GuavaCachingFilter extends Filter {
 		checkNotNull(secondaryUnit);
 		final CacheLoader<K, Filter> primaryLoader = new CacheLoader<K, Filter>() {
 			public Filter load(K key) throws Exception {
-				return new GuavaCachingFilter(loader.load(key), secondarySize, secondaryDuration, secondaryUnit);
+				final FilterCache cache = FilterCache.ofSize(secondarySize, secondaryDuration, secondaryUnit);
+				return new GuavaCachingFilter(loader.load(key), null, cache);
 			}
 		};
-		return CacheBuilder.newBuilder().softValues().maximumSize(primarySize)
-				.expireAfterAccess(primaryDuration, primaryUnit).build(primaryLoader);
+		return CacheBuilder.newBuilder().maximumSize(primarySize).expireAfterAccess(primaryDuration, primaryUnit)
+				.build(primaryLoader);
+	}
+
+	/**
+	 * Factory method.
+	 * @param filter Filter to cache results of.
+	 * @param cache Cache to store the filter results in.
+	 */
+	public static GuavaCachingFilter of(Filter filter, FilterCache cache) {
+		return new GuavaCachingFilter(filter, null, cache);
+	}
+
+	/**
+	 * Factory method for a filter which results may be persisted by the cache store.
+	 * @param filter Filter to cache results of.
+	 * @param id Persistent filter identity. Must be stable across restarts and unique among the
+	 *          filters sharing the cache.
+	 * @param cache Cache to store the filter results in.
+	 */
+	public static GuavaCachingFilter of(Filter filter, String id, FilterCache cache) {
+		return new GuavaCachingFilter(filter, checkNotNull(id, "The filter identity must be provided"), cache);
 	}
 
 	/**
@@ -89,60 +161,55 @@ public final class GuavaCachingFilter extends Filter {
 	 * @param unit the unit that {@code duration} is expressed in
 	 * @throws IllegalArgumentException if {@code size} is negative
 	 * @throws IllegalArgumentException if {@code duration} is negative
+	 * @deprecated Per-filter caches are not bounded by memory. Use a {@link FilterCache}.
 	 */
+	@Deprecated
 	public static GuavaCachingFilter of(Filter filter, int size, long duration, TimeUnit unit) {
-		return new GuavaCachingFilter(filter, size, duration, unit);
+		return new GuavaCachingFilter(filter, null, FilterCache.ofSize(size, duration, unit));
 	}
 
 	/**
-	 * Factory method with a maximum size of 100 elements and a expiration time of 10 minutes.
+	 * Factory method using the shared filter cache.
 	 * @param filter Filter to cache results of
 	 */
 	public static GuavaCachingFilter of(Filter filter) {
-		return of(filter, 100, 10, TimeUnit.MINUTES);
+		return of(filter, FilterCache.shared());
 	}
 
 	/**
 	 * Constructor.
 	 * @param filter Filter to cache results of.
-	 * @param size the maximum size of the cache.
-	 * @param duration the length of time after an entry is last accessed that it should be
-	 *          automatically removed.
-	 * @param unit the unit that {@code duration} is expressed in
-	 * @throws IllegalArgumentException if {@code size} is negative
-	 * @throws IllegalArgumentException if {@code duration} is negative
+	 * @param id Persistent filter identity.
+	 * @param cache Cache to store the filter results in.
 	 */
-	private GuavaCachingFilter(Filter filter, int size, long duration, TimeUnit unit) {
+	private GuavaCachingFilter(Filter filter, @Nullable String id, FilterCache cache) {
 		this.filter = Preconditions.checkNotNull(filter, "The filter to cache must be provided");
-		this.cache = CacheBuilder.newBuilder().softValues().maximumSize(size).expireAfterAccess(duration, unit).build();
+		this.id = id;
+		this.cache = checkNotNull(cache, "The filter cache must be provided");
 	}
 
 	@Override
 	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
-		final Object key = reader.hasDeletions() ? reader.getDeletesCacheKey() : reader.getCoreCacheKey();
-		try {
-			return cache.get(key, new Loader(reader));
-		} catch (Throwable t) {
-			Throwable cause = t.getCause();
-			if (cause instanceof IOException) {
-				throw (IOException) cause;
-			}
-			if (cause instanceof RuntimeException) {
-				throw (RuntimeException) cause;
-			}
-			if (cause instanceof Error) {
-				throw (Error) cause;
-			}
-			if (t instanceof UncheckedExecutionException) {
-				throw (UncheckedExecutionException) t;
-			}
-			throw new UncheckedExecutionException(cause);
+		return cache.get(filter, id, reader, stats);
+	}
+
+	@Override
+	public int estimateCardinality(IndexReader reader) throws IOException {
+		final DocIdSet cached = cache.peek(filter, reader);
+		if (cached != null) {
+			return DocIdSets.cardinality(cached);
 		}
+		return SelectiveBooleanFilter.estimate(filter, reader);
 	}
 
-	/** Returns a current snapshot of this cache's cumulative statistics. */
+	/** Returns a current snapshot of this filter's cumulative statistics. */
 	public CacheStats stats() {
-		return cache.stats();
+		return stats.snapshot();
+	}
+
+	/** Returns the cache used to store the results of this filter. */
+	public FilterCache getCache() {
+		return cache;
 	}
 
 	@Override
@@ -162,45 +229,4 @@ public final class GuavaCachingFilter extends Filter {
 		return filter.hashCode() ^ 0x1117BF25;
 	}
 
-	/** Cache loader. */
-	private final class Loader implements Callable<DocIdSet> {
-		private final IndexReader reader;
-
-		Loader(IndexReader reader) {
-			this.reader = checkNotNull(reader, "The index reader must be provided");
-		}
-
-		@Override
-		public DocIdSet call() throws Exception {
-			return docIdSetToCache(filter.getDocIdSet(reader));
-		}
-
-		/**
-		 * Provide the DocIdSet to be cached, using the DocIdSet provided by the wrapped Filter.
-		 * <p>
-		 * This implementation returns the given {@link DocIdSet}, if {@link DocIdSet#isCacheable}
-		 * returns <code>true</code>, else it copies the {@link DocIdSetIterator} into an
-		 * {@link FixedBitSet}.
-		 */
-		private DocIdSet docIdSetToCache(DocIdSet docIdSet) throws IOException {
-			if (docIdSet == null) {
-				// this is better than returning null, as the nonnull result can be cached
-				return DocIdSet.EMPTY_DOCIDSET;
-			} else if (docIdSet.isCacheable()) {
-				return docIdSet;
-			} else {
-				final DocIdSetIterator it = docIdSet.iterator();
-				// null is allowed to be returned by iterator(),
-				// in this case we wrap with the empty set,
-				// which is cacheable.
-				if (it == null) {
-					return DocIdSet.EMPTY_DOCIDSET;
-				} else {
-					final FixedBitSet bits = new FixedBitSet(reader.maxDoc());
-					bits.or(it);
-					return bits;
-				}
-			}
-		}
-	}
 }
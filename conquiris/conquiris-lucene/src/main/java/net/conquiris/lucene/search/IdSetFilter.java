@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.NumericUtils;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.BloomFilter;
+
+/**
+ * Filter for documents matching any of a (possibly large) set of terms of a single field. Unlike
+ * Lucene's TermsFilter the terms are sorted and deduplicated once, and each segment's term
+ * dictionary is walked in a single forward merge, scanning short gaps and seeking only over long
+ * ones. Optionally, a per-segment bloom filter of the field terms is used to skip absent terms
+ * without touching the dictionary.
+ * @author Andres Rodriguez
+ */
+public final class IdSetFilter extends Filter implements CardinalityEstimator {
+	/** Serial UID. */
+	private static final long serialVersionUID = 8377213465201453311L;
+	/** Maximum number of terms to scan forward before seeking. */
+	private static final int MAX_SCAN = 16;
+	/** Size of the bulk read buffers. */
+	private static final int BUFFER_SIZE = 64;
+
+	/** Field. */
+	private final String field;
+	/** Sorted and deduplicated term texts. */
+	private final String[] texts;
+	/** Whether to use per-segment bloom filters. */
+	private final boolean bloom;
+
+	/** Creates a filter for a collection of string terms. */
+	public static IdSetFilter of(String field, Iterable<String> values) {
+		SearchSupport.checkField(field);
+		final ImmutableSortedSet<String> sorted = ImmutableSortedSet.copyOf(Ordering.natural(), values);
+		return new IdSetFilter(field, sorted.toArray(new String[sorted.size()]), false);
+	}
+
+	/** Creates a filter for a collection of string terms. */
+	public static IdSetFilter of(String field, String... values) {
+		return of(field, Arrays.asList(values));
+	}
+
+	/** Creates a filter for a collection of numeric int terms. */
+	public static IdSetFilter ofInts(String field, int... values) {
+		SearchSupport.checkField(field);
+		final String[] texts = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			texts[i] = NumericUtils.intToPrefixCoded(values[i]);
+		}
+		return new IdSetFilter(field, sortAndDedupe(texts), false);
+	}
+
+	/** Creates a filter for a collection of numeric long terms. */
+	public static IdSetFilter ofLongs(String field, long... values) {
+		SearchSupport.checkField(field);
+		final String[] texts = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			texts[i] = NumericUtils.longToPrefixCoded(values[i]);
+		}
+		return new IdSetFilter(field, sortAndDedupe(texts), false);
+	}
+
+	/** Creates a filter for a collection of UUID terms. */
+	public static IdSetFilter ofUUIDs(String field, Iterable<UUID> values) {
+		SearchSupport.checkField(field);
+		checkNotNull(values, "The values must be provided");
+		final ImmutableSortedSet.Builder<String> b = ImmutableSortedSet.naturalOrder();
+		for (UUID value : values) {
+			b.add(checkNotNull(value, "Null UUIDs not allowed").toString());
+		}
+		final ImmutableSortedSet<String> sorted = b.build();
+		return new IdSetFilter(field, sorted.toArray(new String[sorted.size()]), false);
+	}
+
+	/** Sorts and removes duplicates from an array of terms. */
+	private static String[] sortAndDedupe(String[] texts) {
+		if (texts.length == 0) {
+			return texts;
+		}
+		Arrays.sort(texts);
+		int n = 1;
+		for (int i = 1; i < texts.length; i++) {
+			if (!texts[i].equals(texts[n - 1])) {
+				texts[n++] = texts[i];
+			}
+		}
+		return n == texts.length ? texts : Arrays.copyOf(texts, n);
+	}
+
+	/** Constructor. */
+	private IdSetFilter(String field, String[] texts, boolean bloom) {
+		this.field = field.intern();
+		this.texts = texts;
+		this.bloom = bloom;
+	}
+
+	/** Returns a filter equal to this one that uses per-segment bloom filters to skip absent terms. */
+	public IdSetFilter withBloomFilter() {
+		if (bloom) {
+			return this;
+		}
+		return new IdSetFilter(field, texts, true);
+	}
+
+	/** Returns the number of distinct terms. */
+	public int size() {
+		return texts.length;
+	}
+
+	/** Estimated as one document per term, as the values are usually identifiers. */
+	@Override
+	public int estimateCardinality(IndexReader reader) {
+		return Math.min(texts.length, reader.maxDoc());
+	}
+
+	@Override
+	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+		if (texts.length == 0) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		final BloomFilter<CharSequence> filter = bloom ? TermBloomFilters.get(reader, field) : null;
+		final int[] docs = new int[BUFFER_SIZE];
+		final int[] freqs = new int[BUFFER_SIZE];
+		FixedBitSet bits = null;
+		TermEnum terms = null;
+		final TermDocs termDocs = reader.termDocs();
+		try {
+			for (String text : texts) {
+				if (filter != null && !filter.mightContain(text)) {
+					continue;
+				}
+				Term current = terms != null ? terms.term() : null;
+				// Forward scan over a short gap, seek over a long one
+				for (int i = 0; before(current, text); i++) {
+					if (i == MAX_SCAN) {
+						terms.close();
+						terms = null;
+						break;
+					}
+					current = terms.next() ? terms.term() : null;
+				}
+				if (terms == null) {
+					terms = reader.terms(new Term(field, text));
+					current = terms.term();
+				}
+				if (current == null || !isField(current)) {
+					break; // No more terms in the field
+				}
+				if (current.text().equals(text)) {
+					termDocs.seek(terms);
+					int n;
+					while ((n = termDocs.read(docs, freqs)) > 0) {
+						if (bits == null) {
+							bits = new FixedBitSet(reader.maxDoc());
+						}
+						for (int i = 0; i < n; i++) {
+							bits.set(docs[i]);
+						}
+					}
+				}
+			}
+		} finally {
+			try {
+				termDocs.close();
+			} finally {
+				if (terms != null) {
+					terms.close();
+				}
+			}
+		}
+		if (bits == null) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		return bits;
+	}
+
+	/** Returns whether a term belongs to the filtered field. */
+	private boolean isField(Term term) {
+		return field == term.field();
+	}
+
+	/** Returns whether a term of the field sorts before the provided text. */
+	private boolean before(Term term, String text) {
+		return term != null && isField(term) && term.text().compareTo(text) < 0;
+	}
+
+	@Override
+	public String toString() {
+		return "IdSetFilter(" + field + ", " + texts.length + " terms)";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof IdSetFilter) {
+			final IdSetFilter other = (IdSetFilter) o;
+			return bloom == other.bloom && field.equals(other.field) && Arrays.equals(texts, other.texts);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return field.hashCode() ^ Arrays.hashCode(texts) ^ (bloom ? 0x3E1F : 0x7A2B);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * Doc id set backed by a sorted array of document ids. Used for sparse sets.
+ * @author Andres Rodriguez
+ */
+final class IntArrayDocIdSet extends DocIdSet {
+	/** Sorted document ids. */
+	private final int[] docs;
+	/** Number of valid entries. */
+	private final int size;
+
+	/**
+	 * Constructor.
+	 * @param docs Sorted document ids, without duplicates. The array is not copied.
+	 * @param size Number of valid entries in the array.
+	 */
+	IntArrayDocIdSet(int[] docs, int size) {
+		this.docs = checkNotNull(docs, "The document ids must be provided");
+		checkArgument(size >= 0 && size <= docs.length, "Invalid size");
+		this.size = size;
+	}
+
+	/** Returns the number of documents in the set. */
+	int size() {
+		return size;
+	}
+
+	/** Returns the i-th document of the set. */
+	int get(int i) {
+		return docs[i];
+	}
+
+	/** Returns the estimated memory used by the set in bytes. */
+	long sizeInBytes() {
+		return 32L + 4L * docs.length;
+	}
+
+	@Override
+	public boolean isCacheable() {
+		return true;
+	}
+
+	@Override
+	public DocIdSetIterator iterator() {
+		return new Iterator();
+	}
+
+	private final class Iterator extends DocIdSetIterator {
+		/** Current index. */
+		private int i = -1;
+		/** Current document. */
+		private int doc = -1;
+
+		@Override
+		public int docID() {
+			return doc;
+		}
+
+		@Override
+		public int nextDoc() {
+			if (++i < size) {
+				return doc = docs[i];
+			}
+			i = size;
+			return doc = NO_MORE_DOCS;
+		}
+
+		@Override
+		public int advance(int target) {
+			// Galloping search for an upper bound followed by a binary search.
+			int lo = i + 1;
+			int hi = lo;
+			int step = 1;
+			while (hi < size && docs[hi] < target) {
+				lo = hi + 1;
+				hi += step;
+				step <<= 1;
+			}
+			hi = Math.min(hi, size);
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (docs[mid] < target) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			i = lo;
+			if (i >= size) {
+				i = size;
+				return doc = NO_MORE_DOCS;
+			}
+			return doc = docs[i];
+		}
+	}
+}
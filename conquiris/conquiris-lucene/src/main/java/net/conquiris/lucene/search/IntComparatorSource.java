@@ -26,7 +26,9 @@ import org.apache.lucene.util.Bits;
 /**
  * Int comparator source with an explicit comparator.
  * @author Andres Rodriguez
+ * @deprecated Superseded by {@link IntValueComparatorSource}, which does not box the values.
  */
+@Deprecated
 final class IntComparatorSource extends GenericComparatorSource<Integer> {
 	/** Serial UID. */
 	private static final long serialVersionUID = 6482544719528657501L;
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+/**
+ * Comparator for primitive int values, used to sort without boxing the field values.
+ * @author Andres Rodriguez
+ */
+public interface IntValueComparator {
+	/**
+	 * Compares two values.
+	 * @return A negative integer, zero or a positive integer as the first value is less than, equal
+	 *         to or greater than the second.
+	 */
+	int compare(int v1, int v2);
+}
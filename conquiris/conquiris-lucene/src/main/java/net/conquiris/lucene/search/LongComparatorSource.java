@@ -26,7 +26,9 @@ import org.apache.lucene.util.Bits;
 /**
  * Long comparator source with an explicit comparator.
  * @author Andres Rodriguez
+ * @deprecated Superseded by {@link LongValueComparatorSource}, which does not box the values.
  */
+@Deprecated
 final class LongComparatorSource extends GenericComparatorSource<Long> {
 	/** Serial UID. */
 	private static final long serialVersionUID = 6482544719528657501L;
@@ -23,13 +23,14 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
-import org.apache.lucene.util.FixedBitSet;
 
 /**
- * A wrapping filter that negates the provided one.
+ * A wrapping filter that negates the provided one. The negated set is evaluated lazily, skipping
+ * the documents of the wrapped filter while iterating, so it is not materialized unless it is
+ * wrapped in a caching filter.
  * @author Andres Rodriguez
  */
-final class NegatingFilter extends Filter {
+final class NegatingFilter extends Filter implements CardinalityEstimator {
 	/** Serial UID. */
 	private static final long serialVersionUID = 3218934851787738661L;
 
@@ -46,20 +47,99 @@ final class NegatingFilter extends Filter {
 
 	@Override
 	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
-		final int n = reader.maxDoc();
-		final FixedBitSet bits = new FixedBitSet(reader.maxDoc());
-		final DocIdSet set = filter.getDocIdSet(reader);
-		if (set == null || set == DocIdSet.EMPTY_DOCIDSET) {
-			bits.set(0, n);
-		} else {
-			DocIdSetIterator i = set.iterator();
-			if (i == null) {
-				bits.set(0, n);
-			} else {
-				bits.or(i);
-				bits.flip(0, n);
+		return new NegatedDocIdSet(reader.maxDoc(), filter.getDocIdSet(reader));
+	}
+
+	@Override
+	public int estimateCardinality(IndexReader reader) throws IOException {
+		final int estimate = SelectiveBooleanFilter.estimate(filter, reader);
+		return estimate < 0 ? -1 : Math.max(0, reader.maxDoc() - estimate);
+	}
+
+	@Override
+	public String toString() {
+		return "NegatingFilter(" + filter + ")";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof NegatingFilter))
+			return false;
+		return this.filter.equals(((NegatingFilter) o).filter);
+	}
+
+	@Override
+	public int hashCode() {
+		return filter.hashCode() ^ 0x5A1E3C8B;
+	}
+
+	/** Lazily evaluated negated set. Not cacheable, as it is evaluated on iteration. */
+	private static final class NegatedDocIdSet extends DocIdSet {
+		/** Maximum document (exclusive). */
+		private final int maxDoc;
+		/** Set to negate. */
+		private final DocIdSet set;
+
+		NegatedDocIdSet(int maxDoc, DocIdSet set) {
+			this.maxDoc = maxDoc;
+			this.set = set;
+		}
+
+		@Override
+		public boolean isCacheable() {
+			return false;
+		}
+
+		@Override
+		public DocIdSetIterator iterator() throws IOException {
+			if (set == null || set == DocIdSet.EMPTY_DOCIDSET) {
+				return new NegatedIterator(maxDoc, null);
+			}
+			return new NegatedIterator(maxDoc, set.iterator());
+		}
+	}
+
+	/** Iterator over the documents not returned by the negated iterator. */
+	private static final class NegatedIterator extends DocIdSetIterator {
+		/** Maximum document (exclusive). */
+		private final int maxDoc;
+		/** Iterator to negate. */
+		private final DocIdSetIterator excluded;
+		/** Current excluded document. */
+		private int next;
+		/** Current document. */
+		private int doc = -1;
+
+		NegatedIterator(int maxDoc, DocIdSetIterator excluded) {
+			this.maxDoc = maxDoc;
+			this.excluded = excluded;
+			this.next = excluded == null ? NO_MORE_DOCS : -1;
+		}
+
+		@Override
+		public int docID() {
+			return doc;
+		}
+
+		@Override
+		public int nextDoc() throws IOException {
+			if (doc == NO_MORE_DOCS) {
+				return doc;
+			}
+			return advance(doc + 1);
+		}
+
+		@Override
+		public int advance(int target) throws IOException {
+			for (int candidate = target; candidate < maxDoc; candidate++) {
+				if (next < candidate) {
+					next = excluded.advance(candidate);
+				}
+				if (next != candidate) {
+					return doc = candidate;
+				}
 			}
+			return doc = NO_MORE_DOCS;
 		}
-		return bits;
 	}
 }
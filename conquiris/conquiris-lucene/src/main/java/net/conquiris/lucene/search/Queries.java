@@ -28,6 +28,7 @@ import java.util.UUID;
 
 import javax.annotation.Nullable;
 
+import net.conquiris.lucene.index.CollationKeys;
 import net.conquiris.schema.BooleanSchemaItem;
 import net.conquiris.schema.DoubleSchemaItem;
 import net.conquiris.schema.FloatSchemaItem;
@@ -187,10 +188,14 @@ public final class Queries extends SearchSupport {
 
 	/**
 	 * Creates a new range query. If both limits are {@code null} a {@link MatchAllDocsQuery} is
-	 * returned.
+	 * returned. If the field is collated with a locale compatible with the provided collator, the
+	 * range is evaluated as a plain term range over the collation keys field.
 	 */
 	public static Query termRange(TextSchemaItem field, String lowerTerm, String upperTerm, boolean includeLower,
 			boolean includeUpper, Collator collator) {
+		if (CollationKeys.isCompatible(field, collator)) {
+			return collatedRange(field, lowerTerm, upperTerm, includeLower, includeUpper);
+		}
 		return termRange(checkItem(field), lowerTerm, upperTerm, includeLower, includeUpper, collator);
 	}
 
@@ -223,8 +228,13 @@ public final class Queries extends SearchSupport {
 
 	/**
 	 * Creates a new range query. If the range has no bounds a {@link MatchAllDocsQuery} is returned.
+	 * If the field is collated with a locale compatible with the provided collator, the range is
+	 * evaluated as a plain term range over the collation keys field.
 	 */
 	public static Query termRange(TextSchemaItem field, Range<String> range, Collator collator) {
+		if (CollationKeys.isCompatible(field, collator)) {
+			return collatedRange(field, range);
+		}
 		return termRange(checkItem(field), range, collator);
 	}
 
@@ -235,6 +245,29 @@ public final class Queries extends SearchSupport {
 		return termRange(checkItem(field), range);
 	}
 
+	/**
+	 * Creates a new locale-aware range query over the collation keys of a collated field. If both
+	 * limits are {@code null} a {@link MatchAllDocsQuery} is returned.
+	 * @throws IllegalArgumentException if the field is not collated.
+	 */
+	public static Query collatedRange(TextSchemaItem field, @Nullable String lowerTerm, @Nullable String upperTerm,
+			boolean includeLower, boolean includeUpper) {
+		final String name = CollationKeys.field(field);
+		final Collator collator = CollationKeys.collator(field.getCollationLocale());
+		return termRange(name, collationKey(collator, lowerTerm), collationKey(collator, upperTerm), includeLower,
+				includeUpper);
+	}
+
+	/**
+	 * Creates a new locale-aware range query over the collation keys of a collated field. If the
+	 * range has no bounds a {@link MatchAllDocsQuery} is returned.
+	 * @throws IllegalArgumentException if the field is not collated.
+	 */
+	public static Query collatedRange(TextSchemaItem field, Range<String> range) {
+		checkRange(range);
+		return collatedRange(field, min(range), max(range), minIncluded(range), maxIncluded(range));
+	}
+
 	/**
 	 * Creates a new range query. If both limits are {@code null} a {@link MatchAllDocsQuery} is
 	 * returned.
@@ -16,6 +16,12 @@
 package net.conquiris.lucene.search;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.text.Collator;
+
+import javax.annotation.Nullable;
+
+import net.conquiris.lucene.index.CollationKeys;
 import net.conquiris.schema.SchemaItem;
 import net.derquinse.common.base.NotInstantiable;
 
@@ -70,4 +76,9 @@ abstract class SearchSupport extends NotInstantiable {
 		return checkNotNull(field, "The term field schema item must be provided").getName();
 	}
 
+	/** Returns the collation key of a range limit (may be null). */
+	static String collationKey(Collator collator, @Nullable String value) {
+		return value != null ? CollationKeys.key(collator, value) : null;
+	}
+
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanFilter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilterClause;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Boolean filter that evaluates its MUST clauses in increasing order of estimated cardinality,
+ * starting from the most selective one, and stops as soon as an intermediate result is empty. The
+ * cardinality of a clause is estimated from its cached set, if any, or from the filter itself if it
+ * is a {@link CardinalityEstimator}, such as the term filters created by {@link Filters#terms} or
+ * id set filters. Clauses without an estimate are evaluated last, in the order they were added.
+ * The matched documents are the same as those of {@link BooleanFilter}.
+ * @author Andres Rodriguez
+ */
+final class SelectiveBooleanFilter extends BooleanFilter {
+	/** Serial UID. */
+	private static final long serialVersionUID = -4738027611927434385L;
+
+	/**
+	 * Returns an estimate of the number of documents matched by a filter in a segment, or -1 if no
+	 * cheap estimate is available.
+	 */
+	static int estimate(Filter filter, IndexReader reader) throws IOException {
+		if (filter instanceof CardinalityEstimator) {
+			return ((CardinalityEstimator) filter).estimateCardinality(reader);
+		}
+		return -1;
+	}
+
+	/** Constructor. */
+	SelectiveBooleanFilter() {
+	}
+
+	@Override
+	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+		final int maxDoc = reader.maxDoc();
+		if (maxDoc == 0) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		final List<Estimated> must = Lists.newArrayList();
+		final List<Filter> should = Lists.newArrayList();
+		final List<Filter> mustNot = Lists.newArrayList();
+		for (FilterClause c : clauses()) {
+			final Filter f = c.getFilter();
+			if (c.getOccur() == Occur.MUST) {
+				// Estimates are only used for ordering, an estimate of zero may still match documents
+				final int estimate = estimate(f, reader);
+				must.add(new Estimated(f, estimate < 0 ? Integer.MAX_VALUE : estimate, must.size()));
+			} else if (c.getOccur() == Occur.SHOULD) {
+				should.add(f);
+			} else {
+				mustNot.add(f);
+			}
+		}
+		FixedBitSet res = null;
+		// Conjunction, from the most selective clause
+		Collections.sort(must, EstimatedOrder.INSTANCE);
+		for (Estimated e : must) {
+			final DocIdSetIterator it = iterator(e.filter, reader);
+			if (it == null) {
+				return DocIdSet.EMPTY_DOCIDSET;
+			}
+			if (res == null) {
+				res = new FixedBitSet(maxDoc);
+				res.or(it);
+			} else {
+				res.and(it);
+			}
+			if (isEmpty(res)) {
+				return DocIdSet.EMPTY_DOCIDSET;
+			}
+		}
+		// Disjunction
+		if (!should.isEmpty()) {
+			FixedBitSet any = null;
+			for (Filter f : should) {
+				final DocIdSetIterator it = iterator(f, reader);
+				if (it != null) {
+					if (any == null) {
+						any = new FixedBitSet(maxDoc);
+					}
+					any.or(it);
+				}
+			}
+			if (any == null) {
+				return DocIdSet.EMPTY_DOCIDSET;
+			}
+			if (res == null) {
+				res = any;
+			} else {
+				res.and(any);
+			}
+			if (isEmpty(res)) {
+				return DocIdSet.EMPTY_DOCIDSET;
+			}
+		}
+		// Exclusions
+		for (Filter f : mustNot) {
+			if (res == null) {
+				res = new FixedBitSet(maxDoc);
+				res.set(0, maxDoc);
+			}
+			final DocIdSetIterator it = iterator(f, reader);
+			if (it != null) {
+				res.andNot(it);
+				if (isEmpty(res)) {
+					return DocIdSet.EMPTY_DOCIDSET;
+				}
+			}
+		}
+		return res != null ? res : DocIdSet.EMPTY_DOCIDSET;
+	}
+
+	private static DocIdSetIterator iterator(Filter filter, IndexReader reader) throws IOException {
+		final DocIdSet set = filter.getDocIdSet(reader);
+		return set == null || set == DocIdSet.EMPTY_DOCIDSET ? null : set.iterator();
+	}
+
+	private static boolean isEmpty(FixedBitSet bits) {
+		return bits.nextSetBit(0) < 0;
+	}
+
+	/** Clause with its estimated cardinality. */
+	private static final class Estimated {
+		final Filter filter;
+		final int estimate;
+		final int position;
+
+		Estimated(Filter filter, int estimate, int position) {
+			this.filter = filter;
+			this.estimate = estimate;
+			this.position = position;
+		}
+	}
+
+	/** Orders clauses by estimated cardinality and then by position. */
+	private enum EstimatedOrder implements Comparator<Estimated> {
+		INSTANCE;
+
+		@Override
+		public int compare(Estimated o1, Estimated o2) {
+			if (o1.estimate != o2.estimate) {
+				return o1.estimate < o2.estimate ? -1 : 1;
+			}
+			return o1.position - o2.position;
+		}
+	}
+}
@@ -16,11 +16,13 @@
 package net.conquiris.lucene.search;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
+import net.conquiris.lucene.index.CollationKeys;
 import net.conquiris.schema.BooleanSchemaItem;
 import net.conquiris.schema.DoubleSchemaItem;
 import net.conquiris.schema.FloatSchemaItem;
@@ -59,13 +61,22 @@ public final class SortBuilder implements Builder<Sort> {
 		return name;
 	}
 
+	/** Returns the field to sort by for a textual item: the collation keys field if the item is collated. */
+	private static String checkSortable(TextSchemaItem item) {
+		if (item != null && item.isCollated()) {
+			return CollationKeys.field(item);
+		}
+		return checkSortable((SchemaItem) item);
+	}
+
 	/** Creates a new builder. */
 	public static SortBuilder newBuilder() {
 		return new SortBuilder();
 	}
 
 	/**
-	 * Creates a sort by terms in the field specified by the provided schema item.
+	 * Creates a sort by terms in the field specified by the provided schema item. Collated items are
+	 * sorted by their collation keys, i.e., in the order defined by the item locale.
 	 * @param field Field identified by an schema item.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
@@ -83,6 +94,37 @@ public final class SortBuilder implements Builder<Sort> {
 		return field(field, false);
 	}
 
+	/**
+	 * Creates a sort by terms in the field specified by the provided schema item, using the provided
+	 * per-segment storage.
+	 * @param field Field identified by an schema item.
+	 * @param mode Storage mode.
+	 * @param reverse True if natural order should be reversed.
+	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 */
+	public static SortField field(TextSchemaItem field, StringSortMode mode, boolean reverse) {
+		checkNotNull(mode, "The string sort mode must be provided");
+		switch (mode) {
+		case COMPACT:
+			return new SortField(checkSortable(field), new CompactStringComparatorSource(false), reverse);
+		case COMPACT_DIRECT:
+			return new SortField(checkSortable(field), new CompactStringComparatorSource(true), reverse);
+		default:
+			return field(field, reverse);
+		}
+	}
+
+	/**
+	 * Creates a sort by terms in the field specified by the provided schema item, using the provided
+	 * per-segment storage.
+	 * @param field Field identified by an schema item.
+	 * @param mode Storage mode.
+	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 */
+	public static SortField field(TextSchemaItem field, StringSortMode mode) {
+		return field(field, mode, false);
+	}
+
 	/**
 	 * Creates a sort by terms in the field specified by the provided schema item.
 	 * @param field Field identified by an schema item.
@@ -203,7 +245,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(IntegerSchemaItem, IntValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public static SortField field(IntegerSchemaItem field, Comparator<Integer> comparator, boolean reverse) {
 		return new SortField(checkSortable(field), new IntComparatorSource(comparator), reverse);
 	}
@@ -213,11 +257,31 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(IntegerSchemaItem, IntValueComparator)} instead.
 	 */
+	@Deprecated
 	public static SortField field(IntegerSchemaItem field, Comparator<Integer> comparator) {
 		return field(field, comparator, false);
 	}
 
+	/**
+	 * Creates a sort field specified by the provided primitive comparator, comparing the cached field
+	 * values without boxing them. Documents without a value for the field sort after the rest, in
+	 * both directions. The same applies to the overloads for the other numeric schema items.
+	 * @param field Field identified by an schema item.
+	 * @param comparator Comparator to use.
+	 * @param reverse True if natural order should be reversed.
+	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 */
+	public static SortField field(IntegerSchemaItem field, IntValueComparator comparator, boolean reverse) {
+		return new SortField(checkSortable(field), new IntValueComparatorSource(comparator), reverse);
+	}
+
+	/** Creates a sort field specified by the provided primitive comparator, in natural order. */
+	public static SortField field(IntegerSchemaItem field, IntValueComparator comparator) {
+		return field(field, comparator, false);
+	}
+
 	/**
 	 * Creates a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -226,7 +290,8 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
 	 */
 	public static SortField field(IntegerSchemaItem field, Iterable<Integer> values, boolean reverse) {
-		return field(field, ExplicitComparator.of(values), false);
+		final String name = checkSortable(field);
+		return new SortField(name, ExplicitOrderComparatorSource.ofInts(name, values), reverse);
 	}
 
 	/**
@@ -255,7 +320,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(LongSchemaItem, LongValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public static SortField field(LongSchemaItem field, Comparator<Long> comparator, boolean reverse) {
 		return new SortField(checkSortable(field), new LongComparatorSource(comparator), reverse);
 	}
@@ -265,11 +332,26 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(LongSchemaItem, LongValueComparator)} instead.
 	 */
+	@Deprecated
 	public static SortField field(LongSchemaItem field, Comparator<Long> comparator) {
 		return field(field, comparator, false);
 	}
 
+	/**
+	 * Creates a sort field specified by the provided primitive comparator.
+	 * @see #field(IntegerSchemaItem, IntValueComparator, boolean)
+	 */
+	public static SortField field(LongSchemaItem field, LongValueComparator comparator, boolean reverse) {
+		return new SortField(checkSortable(field), new LongValueComparatorSource(comparator), reverse);
+	}
+
+	/** Creates a sort field specified by the provided primitive comparator, in natural order. */
+	public static SortField field(LongSchemaItem field, LongValueComparator comparator) {
+		return field(field, comparator, false);
+	}
+
 	/**
 	 * Creates a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -278,7 +360,8 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
 	 */
 	public static SortField field(LongSchemaItem field, Iterable<Long> values, boolean reverse) {
-		return field(field, ExplicitComparator.of(values), false);
+		final String name = checkSortable(field);
+		return new SortField(name, ExplicitOrderComparatorSource.ofLongs(name, values), reverse);
 	}
 
 	/**
@@ -307,7 +390,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(FloatSchemaItem, FloatValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public static SortField field(FloatSchemaItem field, Comparator<Float> comparator, boolean reverse) {
 		return new SortField(checkSortable(field), new FloatComparatorSource(comparator), reverse);
 	}
@@ -317,11 +402,26 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(FloatSchemaItem, FloatValueComparator)} instead.
 	 */
+	@Deprecated
 	public static SortField field(FloatSchemaItem field, Comparator<Float> comparator) {
 		return field(field, comparator, false);
 	}
 
+	/**
+	 * Creates a sort field specified by the provided primitive comparator.
+	 * @see #field(IntegerSchemaItem, IntValueComparator, boolean)
+	 */
+	public static SortField field(FloatSchemaItem field, FloatValueComparator comparator, boolean reverse) {
+		return new SortField(checkSortable(field), new FloatValueComparatorSource(comparator), reverse);
+	}
+
+	/** Creates a sort field specified by the provided primitive comparator, in natural order. */
+	public static SortField field(FloatSchemaItem field, FloatValueComparator comparator) {
+		return field(field, comparator, false);
+	}
+
 	/**
 	 * Creates a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -330,7 +430,8 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
 	 */
 	public static SortField field(FloatSchemaItem field, Iterable<Float> values, boolean reverse) {
-		return field(field, ExplicitComparator.of(values), false);
+		final String name = checkSortable(field);
+		return new SortField(name, ExplicitOrderComparatorSource.ofFloats(name, values), reverse);
 	}
 
 	/**
@@ -359,7 +460,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(DoubleSchemaItem, DoubleValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public static SortField field(DoubleSchemaItem field, Comparator<Double> comparator, boolean reverse) {
 		return new SortField(checkSortable(field), new DoubleComparatorSource(comparator), reverse);
 	}
@@ -369,11 +472,26 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #field(DoubleSchemaItem, DoubleValueComparator)} instead.
 	 */
+	@Deprecated
 	public static SortField field(DoubleSchemaItem field, Comparator<Double> comparator) {
 		return field(field, comparator, false);
 	}
 
+	/**
+	 * Creates a sort field specified by the provided primitive comparator.
+	 * @see #field(IntegerSchemaItem, IntValueComparator, boolean)
+	 */
+	public static SortField field(DoubleSchemaItem field, DoubleValueComparator comparator, boolean reverse) {
+		return new SortField(checkSortable(field), new DoubleValueComparatorSource(comparator), reverse);
+	}
+
+	/** Creates a sort field specified by the provided primitive comparator, in natural order. */
+	public static SortField field(DoubleSchemaItem field, DoubleValueComparator comparator) {
+		return field(field, comparator, false);
+	}
+
 	/**
 	 * Creates a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -382,7 +500,8 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
 	 */
 	public static SortField field(DoubleSchemaItem field, Iterable<Double> values, boolean reverse) {
-		return field(field, ExplicitComparator.of(values), false);
+		final String name = checkSortable(field);
+		return new SortField(name, ExplicitOrderComparatorSource.ofDoubles(name, values), reverse);
 	}
 
 	/**
@@ -466,6 +585,31 @@ public final class SortBuilder implements Builder<Sort> {
 		return add(field, false);
 	}
 
+	/**
+	 * Adds a sort by terms in the field specified by the provided schema item, using the provided
+	 * per-segment storage.
+	 * @param field Field identified by an schema item.
+	 * @param mode Storage mode.
+	 * @param reverse True if natural order should be reversed.
+	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @return This builder.
+	 */
+	public SortBuilder add(TextSchemaItem field, StringSortMode mode, boolean reverse) {
+		return add(field(field, mode, reverse));
+	}
+
+	/**
+	 * Adds a sort by terms in the field specified by the provided schema item, using the provided
+	 * per-segment storage.
+	 * @param field Field identified by an schema item.
+	 * @param mode Storage mode.
+	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @return This builder.
+	 */
+	public SortBuilder add(TextSchemaItem field, StringSortMode mode) {
+		return add(field(field, mode));
+	}
+
 	/**
 	 * Adds a sort by terms in the field specified by the provided schema item.
 	 * @param field Field identified by an schema item.
@@ -598,7 +742,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(IntegerSchemaItem, IntValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(IntegerSchemaItem field, Comparator<Integer> comparator, boolean reverse) {
 		return add(field(field, comparator, reverse));
 	}
@@ -608,11 +754,23 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(IntegerSchemaItem, IntValueComparator)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(IntegerSchemaItem field, Comparator<Integer> comparator) {
 		return add(field(field, comparator));
 	}
 
+	/** Adds the sort field specified by the provided primitive comparator. */
+	public SortBuilder add(IntegerSchemaItem field, IntValueComparator comparator, boolean reverse) {
+		return add(field(field, comparator, reverse));
+	}
+
+	/** Adds the sort field specified by the provided primitive comparator, in natural order. */
+	public SortBuilder add(IntegerSchemaItem field, IntValueComparator comparator) {
+		return add(field(field, comparator));
+	}
+
 	/**
 	 * Adds a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -650,7 +808,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(LongSchemaItem, LongValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(LongSchemaItem field, Comparator<Long> comparator, boolean reverse) {
 		return add(field(field, comparator, reverse));
 	}
@@ -660,11 +820,23 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(LongSchemaItem, LongValueComparator)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(LongSchemaItem field, Comparator<Long> comparator) {
 		return add(field(field, comparator));
 	}
 
+	/** Adds the sort field specified by the provided primitive comparator. */
+	public SortBuilder add(LongSchemaItem field, LongValueComparator comparator, boolean reverse) {
+		return add(field(field, comparator, reverse));
+	}
+
+	/** Adds the sort field specified by the provided primitive comparator, in natural order. */
+	public SortBuilder add(LongSchemaItem field, LongValueComparator comparator) {
+		return add(field(field, comparator));
+	}
+
 	/**
 	 * Adds a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -702,7 +874,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(FloatSchemaItem, FloatValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(FloatSchemaItem field, Comparator<Float> comparator, boolean reverse) {
 		return add(field(field, comparator, reverse));
 	}
@@ -712,11 +886,23 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(FloatSchemaItem, FloatValueComparator)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(FloatSchemaItem field, Comparator<Float> comparator) {
 		return add(field(field, comparator));
 	}
 
+	/** Adds the sort field specified by the provided primitive comparator. */
+	public SortBuilder add(FloatSchemaItem field, FloatValueComparator comparator, boolean reverse) {
+		return add(field(field, comparator, reverse));
+	}
+
+	/** Adds the sort field specified by the provided primitive comparator, in natural order. */
+	public SortBuilder add(FloatSchemaItem field, FloatValueComparator comparator) {
+		return add(field(field, comparator));
+	}
+
 	/**
 	 * Adds a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
@@ -754,7 +940,9 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param comparator Comparator to use.
 	 * @param reverse True if natural order should be reversed.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(DoubleSchemaItem, DoubleValueComparator, boolean)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(DoubleSchemaItem field, Comparator<Double> comparator, boolean reverse) {
 		return add(field(field, comparator, reverse));
 	}
@@ -764,11 +952,23 @@ public final class SortBuilder implements Builder<Sort> {
 	 * @param field Field identified by an schema item.
 	 * @param comparator Comparator to use.
 	 * @throws IllegalArgumentException if the provided schema item is not indexed.
+	 * @deprecated Use {@link #add(DoubleSchemaItem, DoubleValueComparator)} instead.
 	 */
+	@Deprecated
 	public SortBuilder add(DoubleSchemaItem field, Comparator<Double> comparator) {
 		return add(field(field, comparator));
 	}
 
+	/** Adds the sort field specified by the provided primitive comparator. */
+	public SortBuilder add(DoubleSchemaItem field, DoubleValueComparator comparator, boolean reverse) {
+		return add(field(field, comparator, reverse));
+	}
+
+	/** Adds the sort field specified by the provided primitive comparator, in natural order. */
+	public SortBuilder add(DoubleSchemaItem field, DoubleValueComparator comparator) {
+		return add(field(field, comparator));
+	}
+
 	/**
 	 * Adds a sort field specified by the provided value list.
 	 * @param field Field identified by an schema item.
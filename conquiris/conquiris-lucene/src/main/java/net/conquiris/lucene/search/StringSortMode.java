@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+/**
+ * Per-segment storage used to sort by the terms of a text field.
+ * @author Andres Rodriguez
+ */
+public enum StringSortMode {
+	/** Lucene's FieldCache StringIndex: an array of strings and an array of ordinals. */
+	STRING_INDEX,
+	/** Packed-int ordinals and a shared UTF-8 term block on the heap. */
+	COMPACT,
+	/** Packed-int ordinals on the heap and a shared UTF-8 term block in direct (off-heap) memory. */
+	COMPACT_DIRECT
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Per-segment bloom filters of the terms of a field. The filters are cached by segment core and
+ * field, and are built on first use by enumerating the field terms.
+ * @author Andres Rodriguez
+ */
+final class TermBloomFilters {
+	/** Not instantiable. */
+	private TermBloomFilters() {
+		throw new AssertionError();
+	}
+
+	/** False positive probability. */
+	private static final double FPP = 0.01;
+
+	/** Bloom filters by segment core and field. */
+	private static final Cache<Object, ConcurrentMap<String, BloomFilter<CharSequence>>> CACHE = CacheBuilder
+			.newBuilder().weakKeys().build();
+
+	/** Per-core map loader. */
+	private enum NewMap implements Callable<ConcurrentMap<String, BloomFilter<CharSequence>>> {
+		INSTANCE;
+
+		@Override
+		public ConcurrentMap<String, BloomFilter<CharSequence>> call() {
+			return Maps.newConcurrentMap();
+		}
+	}
+
+	/**
+	 * Returns the bloom filter of the terms of a field in a segment, building it if needed.
+	 * @param reader Segment reader.
+	 * @param field Field.
+	 */
+	static BloomFilter<CharSequence> get(IndexReader reader, String field) throws IOException {
+		final ConcurrentMap<String, BloomFilter<CharSequence>> map;
+		try {
+			map = CACHE.get(reader.getCoreCacheKey(), NewMap.INSTANCE);
+		} catch (ExecutionException e) {
+			throw new UncheckedExecutionException(e.getCause());
+		}
+		BloomFilter<CharSequence> bloom = map.get(field);
+		if (bloom == null) {
+			bloom = build(reader, field);
+			final BloomFilter<CharSequence> previous = map.putIfAbsent(field, bloom);
+			if (previous != null) {
+				bloom = previous;
+			}
+		}
+		return bloom;
+	}
+
+	private static BloomFilter<CharSequence> build(IndexReader reader, String field) throws IOException {
+		long expected;
+		try {
+			expected = reader.getUniqueTermCount();
+		} catch (UnsupportedOperationException e) {
+			expected = reader.maxDoc();
+		}
+		final BloomFilter<CharSequence> bloom = BloomFilter.create(Funnels.unencodedCharsFunnel(),
+				(int) Math.max(1L, Math.min(Integer.MAX_VALUE, expected)), FPP);
+		final TermEnum terms = reader.terms(new Term(field, ""));
+		try {
+			do {
+				final Term term = terms.term();
+				if (term == null || !field.equals(term.field())) {
+					break;
+				}
+				bloom.put(term.text());
+			} while (terms.next());
+		} finally {
+			terms.close();
+		}
+		return bloom;
+	}
+}
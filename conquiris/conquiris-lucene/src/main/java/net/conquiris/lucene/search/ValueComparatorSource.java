@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.conquiris.lucene.search;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.util.Bits;
+
+/**
+ * Base class for comparator sources with an explicit primitive comparator. The FieldCache values of
+ * each segment are used directly, without boxing. Documents without a value for the field sort
+ * after the rest, in both directions.
+ * @author Andres Rodriguez
+ */
+abstract class ValueComparatorSource<T extends Number> extends FieldComparatorSource {
+	/** Serial UID. */
+	private static final long serialVersionUID = 6016251652233563385L;
+
+	/** Constructor. */
+	ValueComparatorSource() {
+	}
+
+	@Override
+	public final FieldComparator<T> newComparator(String fieldname, int numHits, int sortPos, boolean reversed)
+			throws IOException {
+		return newComparator(fieldname, numHits, reversed);
+	}
+
+	abstract ValueComparator newComparator(String field, int numHits, boolean reversed);
+
+	/**
+	 * Base comparator, keeping track of missing values. Subclasses keep the primitive slot and
+	 * segment values.
+	 */
+	abstract class ValueComparator extends FieldComparator<T> {
+		/** Field name. */
+		private final String field;
+		/**
+		 * Result of comparing a missing value with a present one. The sort field reverses every
+		 * comparison, so it is inverted to keep missing values last.
+		 */
+		private final int missingOrder;
+		/** Whether the slot values are missing. */
+		private final boolean[] missing;
+		/** Current segment documents with value, {@code null} if all documents have a value. */
+		private Bits docsWithField;
+		private boolean bottomMissing;
+
+		ValueComparator(String field, int numHits, boolean reversed) {
+			this.field = checkNotNull(field);
+			this.missingOrder = reversed ? -1 : 1;
+			this.missing = new boolean[numHits];
+		}
+
+		/** Loads the values of a segment. */
+		abstract void load(IndexReader reader, String field) throws IOException;
+
+		/** Compares the present values of two slots. */
+		abstract int compareSlots(int slot1, int slot2);
+
+		/** Compares the present values of the bottom slot and a document. */
+		abstract int compareBottomValue(int doc);
+
+		/** Copies the value of a document into a slot. */
+		abstract void copyValue(int slot, int doc);
+
+		/** Sets the bottom value. */
+		abstract void setBottomValue(int slot);
+
+		/** Returns the present value of a slot. */
+		abstract T slotValue(int slot);
+
+		/** Compares two present boxed values. */
+		abstract int compareValue(T v1, T v2);
+
+		private boolean isMissing(int doc) {
+			return docsWithField != null && !docsWithField.get(doc);
+		}
+
+		private int compareMissing(boolean m1, boolean m2) {
+			return m1 == m2 ? 0 : (m1 ? missingOrder : -missingOrder);
+		}
+
+		@Override
+		public final void setNextReader(IndexReader reader, int docBase) throws IOException {
+			load(reader, field);
+			final Bits bits = FieldCache.DEFAULT.getDocsWithField(reader, field);
+			// optimization to remove unneeded checks on the bit interface:
+			docsWithField = bits instanceof Bits.MatchAllBits ? null : bits;
+		}
+
+		@Override
+		public final int compare(int slot1, int slot2) {
+			final boolean m1 = missing[slot1];
+			final boolean m2 = missing[slot2];
+			if (m1 || m2) {
+				return compareMissing(m1, m2);
+			}
+			return compareSlots(slot1, slot2);
+		}
+
+		@Override
+		public final int compareBottom(int doc) {
+			final boolean m = isMissing(doc);
+			if (bottomMissing || m) {
+				return compareMissing(bottomMissing, m);
+			}
+			return compareBottomValue(doc);
+		}
+
+		@Override
+		public final void copy(int slot, int doc) {
+			copyValue(slot, doc);
+			missing[slot] = isMissing(doc);
+		}
+
+		@Override
+		public final void setBottom(int slot) {
+			setBottomValue(slot);
+			bottomMissing = missing[slot];
+		}
+
+		@Override
+		public final T value(int slot) {
+			return missing[slot] ? null : slotValue(slot);
+		}
+
+		@Override
+		public final int compareValues(@Nullable T v1, @Nullable T v2) {
+			if (v1 == null || v2 == null) {
+				return compareMissing(v1 == null, v2 == null);
+			}
+			return compareValue(v1, v2);
+		}
+	}
+}
@@ -15,6 +15,10 @@
  */
 package net.conquiris.schema;
 
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
 import com.google.common.base.Objects;
 
 /**
@@ -34,6 +38,8 @@ class DefaultTextSchemaItem extends AbstractIndexableSchemaItem implements TextS
 	private final boolean positions;
 	/** Whether term vectors are stored with offsets. */
 	private final boolean offsets;
+	/** Collation locale (may be null). */
+	private final Locale collation;
 
 	/**
 	 * Constructor.
@@ -47,17 +53,37 @@ class DefaultTextSchemaItem extends AbstractIndexableSchemaItem implements TextS
 	 * @param vectors Whether term vectors are stored.
 	 * @param positions Whether term vectors are stored with positions (ignored if vectors is false).
 	 * @param offsets Whether term vectors are stored with offsets (ignored if vectors is false).
+	 * @param collation Locale used to index collation keys ({@code null} if no keys are indexed).
 	 */
 	DefaultTextSchemaItem(String name, int minOccurs, int maxOccurs, boolean stored, boolean indexed, boolean tokenized,
-			boolean norms, boolean vectors, boolean positions, boolean offsets) {
+			boolean norms, boolean vectors, boolean positions, boolean offsets, @Nullable Locale collation) {
 		super(name, minOccurs, maxOccurs, stored, indexed);
 		this.tokenized = tokenized;
 		this.norms = norms;
 		this.vectors = indexed && vectors;
 		this.positions = this.vectors && positions;
 		this.offsets = this.vectors && offsets;
+		this.collation = collation;
 		this.hash = Objects.hashCode(getClass(), name, minOccurs, maxOccurs, stored, indexed, norms, this.vectors,
-				this.positions, this.offsets);
+				this.positions, this.offsets, collation);
+	}
+
+	/**
+	 * Constructor for a non-collated item.
+	 * @param name Field name.
+	 * @param minOccurs Minimum number of occurrences.
+	 * @param maxOccurs Maximum number of occurrences.
+	 * @param stored Whether the field is stored.
+	 * @param indexed Whether the field is indexed.
+	 * @param tokenized Whether the field is tokenized.
+	 * @param norms Whether norms are stored.
+	 * @param vectors Whether term vectors are stored.
+	 * @param positions Whether term vectors are stored with positions (ignored if vectors is false).
+	 * @param offsets Whether term vectors are stored with offsets (ignored if vectors is false).
+	 */
+	DefaultTextSchemaItem(String name, int minOccurs, int maxOccurs, boolean stored, boolean indexed, boolean tokenized,
+			boolean norms, boolean vectors, boolean positions, boolean offsets) {
+		this(name, minOccurs, maxOccurs, stored, indexed, tokenized, norms, vectors, positions, offsets, null);
 	}
 
 	/*
@@ -105,6 +131,24 @@ class DefaultTextSchemaItem extends AbstractIndexableSchemaItem implements TextS
 		return offsets;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.schema.TextSchemaItem#isCollated()
+	 */
+	@Override
+	public final boolean isCollated() {
+		return collation != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.conquiris.schema.TextSchemaItem#getCollationLocale()
+	 */
+	@Override
+	public final Locale getCollationLocale() {
+		return collation;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
@@ -126,7 +170,7 @@ class DefaultTextSchemaItem extends AbstractIndexableSchemaItem implements TextS
 					&& getMinOccurs() == other.getMinOccurs() && getMaxOccurs() == other.getMaxOccurs()
 					&& isStored() == other.isStored() && isIndexed() == other.isIndexed() && tokenized == other.tokenized
 					&& norms == other.norms && vectors == other.vectors && positions == other.positions
-					&& offsets == other.offsets;
+					&& offsets == other.offsets && Objects.equal(collation, other.collation);
 		}
 		return false;
 	}
@@ -15,6 +15,10 @@
  */
 package net.conquiris.schema;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Locale;
+
 /**
  * Schema items factory methods.
  * @author Andres Rodriguez
@@ -370,6 +374,60 @@ public final class SchemaItems {
 		return text(name, required, stored, indexed, tokenized, norms, false, false, false);
 	}
 
+	/**
+	 * Creates a collated textual schema item. Besides the values, binary collation keys for the
+	 * provided locale are indexed so that locale-aware ranges and sorts become plain term operations.
+	 * @param name Field name.
+	 * @param minOccurs Minimum number of occurrences.
+	 * @param maxOccurs Maximum number of occurrences.
+	 * @param stored Whether the field is stored.
+	 * @param indexed Whether the field is indexed.
+	 * @param tokenized Whether the field is tokenized.
+	 * @param norms Whether norms are stored.
+	 * @param locale Locale used to compute the collation keys.
+	 */
+	public static TextSchemaItem collated(String name, int minOccurs, int maxOccurs, boolean stored, boolean indexed,
+			boolean tokenized, boolean norms, Locale locale) {
+		checkNotNull(locale, "The collation locale must be provided");
+		return new DefaultTextSchemaItem(name, minOccurs, maxOccurs, stored, indexed, tokenized, norms, false, false,
+				false, locale);
+	}
+
+	/**
+	 * Creates an indexed, non-tokenized collated textual schema item without norms.
+	 * @param name Field name.
+	 * @param minOccurs Minimum number of occurrences.
+	 * @param maxOccurs Maximum number of occurrences.
+	 * @param stored Whether the field is stored.
+	 * @param locale Locale used to compute the collation keys.
+	 */
+	public static TextSchemaItem collated(String name, int minOccurs, int maxOccurs, boolean stored, Locale locale) {
+		return collated(name, minOccurs, maxOccurs, stored, true, false, false, locale);
+	}
+
+	/**
+	 * Creates an indexed, non-tokenized collated textual schema item without norms and with any
+	 * number of occurrences.
+	 * @param name Field name.
+	 * @param stored Whether the field is stored.
+	 * @param locale Locale used to compute the collation keys.
+	 */
+	public static TextSchemaItem collated(String name, boolean stored, Locale locale) {
+		return collated(name, 0, Integer.MAX_VALUE, stored, locale);
+	}
+
+	/**
+	 * Creates an indexed, non-tokenized collated textual schema item without norms and with a single
+	 * occurrence.
+	 * @param name Field name.
+	 * @param required Whether the field is required.
+	 * @param stored Whether the field is stored.
+	 * @param locale Locale used to compute the collation keys.
+	 */
+	public static TextSchemaItem collated(String name, boolean required, boolean stored, Locale locale) {
+		return collated(name, required ? 1 : 0, 1, stored, locale);
+	}
+
 	/**
 	 * Creates an indexed and tokenized textual schema item. Norms are stored.
 	 * @param name Field name.
@@ -15,6 +15,10 @@
  */
 package net.conquiris.schema;
 
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
 import net.derquinse.common.meta.MetaFlag;
 
 /**
@@ -76,4 +80,22 @@ public interface TextSchemaItem extends SchemaItem {
 
 	/** Whether term vectors are stored with offsets. */
 	boolean isOffsets();
+
+	/** Collation keys indexed flag. */
+	MetaFlag<TextSchemaItem> COLLATED = new MetaFlag<TextSchemaItem>("collated") {
+		@Override
+		public boolean apply(TextSchemaItem input) {
+			return input.isCollated();
+		}
+	};
+
+	/**
+	 * Whether binary collation keys are indexed for the field values in addition to the values
+	 * themselves.
+	 */
+	boolean isCollated();
+
+	/** Returns the locale used to compute the collation keys or {@code null} if the field is not collated. */
+	@Nullable
+	Locale getCollationLocale();
 }
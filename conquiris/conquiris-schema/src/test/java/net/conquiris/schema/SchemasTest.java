@@ -15,9 +15,14 @@
  */
 package net.conquiris.schema;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+
+import java.util.Locale;
+
 import net.derquinse.common.test.EqualityTests;
 
 import org.testng.annotations.Test;
@@ -53,4 +58,18 @@ public final class SchemasTest {
 		EqualityTests.many(s2, s3, s4);
 	}
 
+	@Test
+	public void collated() {
+		TextSchemaItem plain = SchemaItems.text(T, true, true, true, false, false);
+		assertFalse(plain.isCollated());
+		assertNull(plain.getCollationLocale());
+		TextSchemaItem es = SchemaItems.collated(T, true, true, new Locale("es"));
+		assertTrue(es.isCollated());
+		assertTrue(TextSchemaItem.COLLATED.apply(es));
+		assertEquals(es.getCollationLocale(), new Locale("es"));
+		EqualityTests.many(es, SchemaItems.collated(T, true, true, new Locale("es")));
+		assertFalse(es.equals(plain));
+		assertFalse(es.equals(SchemaItems.collated(T, true, true, Locale.ENGLISH)));
+	}
+
 }